@@ -3,6 +3,7 @@ import { useRouter } from "next/router";
 import Head from "next/head";
 import { ArrowLeft, Sun, Moon, Paperclip, Send, Trash2, X, File, Image, Contact, BarChart3, CalendarDays, Plus, MapPin } from "lucide-react";
 import { wsService, ChatMessage } from "@/services/websocket";
+import { fileSrc } from "@/utils/attachments";
 
 export default function Chat() {
   const router = useRouter();
@@ -88,6 +89,14 @@ export default function Chat() {
       // Handle typing indicators (don't add to messages)
       if (message.type === "TYPING") {
         if (message.sender !== username) {
+          if (message.content === "STOPPED") {
+            setTypingUsers((prev) => {
+              const newSet = new Set(prev);
+              newSet.delete(message.sender);
+              return newSet;
+            });
+            return;
+          }
           setTypingUsers((prev) => new Set(prev).add(message.sender));
           if (typingTimeoutRef.current) clearTimeout(typingTimeoutRef.current);
           typingTimeoutRef.current = setTimeout(() => {
@@ -194,25 +203,17 @@ export default function Chat() {
     const q = pollQuestion.trim();
     const opts = pollOptions.map(o => o.trim()).filter(Boolean);
     if (!q || opts.length < 2 || !connected) return;
-    const pollData = JSON.stringify({ question: q, options: opts, votes: {} });
-    wsService.sendMessage(`__POLL__${pollData}`);
+    wsService.sendTypedMessage("POLL", { poll: { question: q, options: opts } });
     setShowPollModal(false);
     setPollQuestion("");
     setPollOptions(["", ""]);
   };
 
-  const handleVotePoll = (msgId: string, optionIndex: number) => {
-    if (!connected) return;
-    const voteData = JSON.stringify({ pollMessageId: msgId, optionIndex, voter: username });
-    wsService.sendMessage(`__POLL_VOTE__${voteData}`);
-  };
-
   const handleSendContact = () => {
     const name = contactName.trim();
     const phone = contactPhone.trim();
     if (!name || !phone || !connected) return;
-    const contactData = JSON.stringify({ name, phone });
-    wsService.sendMessage(`__CONTACT__${contactData}`);
+    wsService.sendTypedMessage("CONTACT", { contact: { name, phone } });
     setShowContactModal(false);
     setContactName("");
     setContactPhone("");
@@ -221,8 +222,7 @@ export default function Chat() {
   const handleSendEvent = () => {
     const title = eventTitle.trim();
     if (!title || !eventDate || !connected) return;
-    const eventData = JSON.stringify({ title, date: eventDate, time: eventTime, location: eventLocation.trim() });
-    wsService.sendMessage(`__EVENT__${eventData}`);
+    wsService.sendTypedMessage("EVENT", { event: { title, date: eventDate, time: eventTime, location: eventLocation.trim() } });
     setShowEventModal(false);
     setEventTitle("");
     setEventDate("");
@@ -230,27 +230,6 @@ export default function Chat() {
     setEventLocation("");
   };
 
-  const getPollVotes = (pollMsgId: string): Record<number, string[]> => {
-    const votes: Record<number, string[]> = {};
-    messages.forEach(m => {
-      if (m.content?.startsWith("__POLL_VOTE__")) {
-        try {
-          const v = JSON.parse(m.content.slice(13));
-          if (v.pollMessageId === pollMsgId) {
-            if (!votes[v.optionIndex]) votes[v.optionIndex] = [];
-            Object.values(votes).forEach(arr => {
-              const idx = arr.indexOf(v.voter);
-              if (idx !== -1) arr.splice(idx, 1);
-            });
-            if (!votes[v.optionIndex]) votes[v.optionIndex] = [];
-            votes[v.optionIndex].push(v.voter);
-          }
-        } catch { /* ignore */ }
-      }
-    });
-    return votes;
-  };
-
   const toggleDarkMode = () => {
     setDarkMode(!darkMode);
     document.documentElement.classList.toggle("dark");
@@ -424,103 +403,79 @@ export default function Chat() {
             <span className="font-semibold text-sm">{message.sender}</span>
           </div>
 
-          {message.type === "CHAT" && message.content?.startsWith("__POLL__") && (() => {
-            try {
-              const poll = JSON.parse(message.content!.slice(8));
-              const votes = getPollVotes(message.id!);
-              const totalVotes = Object.values(votes).reduce((s, arr) => s + arr.length, 0);
-              const myVoteOption = Object.entries(votes).find(([, voters]) => voters.includes(username as string))?.[0];
-              return (
-                <div className="min-w-[220px]">
-                  <div className="flex items-center gap-2 mb-2">
-                    <BarChart3 className="w-4 h-4 text-[#ffbc38]" />
-                    <span className="text-xs font-medium opacity-70">POLL</span>
-                  </div>
-                  <p className="font-medium text-sm mb-3">{poll.question}</p>
-                  <div className="space-y-2">
-                    {poll.options.map((opt: string, i: number) => {
-                      const count = (votes[i] || []).length;
-                      const pct = totalVotes > 0 ? Math.round((count / totalVotes) * 100) : 0;
-                      const isMyVote = String(i) === myVoteOption;
-                      return (
-                        <button
-                          key={i}
-                          type="button"
-                          onClick={(e) => { e.stopPropagation(); handleVotePoll(message.id!, i); }}
-                          className={`w-full text-left rounded-lg px-3 py-2 text-sm relative overflow-hidden transition ${isMyVote ? "ring-2 ring-blue-400" : "hover:opacity-80"}`}
-                          style={{ background: isOwnMessage ? "rgba(0,0,0,0.2)" : "rgba(0,0,0,0.05)" }}
-                        >
-                          <div className="absolute inset-0 bg-blue-400/30 transition-all" style={{ width: `${pct}%` }} />
-                          <div className="relative flex justify-between">
-                            <span>{opt}</span>
-                            {totalVotes > 0 && <span className="text-xs opacity-70">{pct}%</span>}
-                          </div>
-                        </button>
-                      );
-                    })}
+          {message.type === "POLL" && message.poll && (
+            <div className="min-w-[220px]">
+              <div className="flex items-center gap-2 mb-2">
+                <BarChart3 className="w-4 h-4 text-[#ffbc38]" />
+                <span className="text-xs font-medium opacity-70">POLL</span>
+              </div>
+              <p className="font-medium text-sm mb-3">{message.poll.question}</p>
+              <div className="space-y-2">
+                {message.poll.options.map((opt, i) => (
+                  <div
+                    key={i}
+                    className="rounded-lg px-3 py-2 text-sm"
+                    style={{ background: isOwnMessage ? "rgba(0,0,0,0.2)" : "rgba(0,0,0,0.05)" }}
+                  >
+                    {opt}
                   </div>
-                  <p className="text-[10px] opacity-50 mt-2">{totalVotes} vote{totalVotes !== 1 ? "s" : ""}</p>
-                </div>
-              );
-            } catch { return <p className="text-sm">{message.content}</p>; }
-          })()}
+                ))}
+              </div>
+            </div>
+          )}
 
-          {message.type === "CHAT" && message.content?.startsWith("__CONTACT__") && (() => {
-            try {
-              const c = JSON.parse(message.content!.slice(11));
-              return (
-                <div className="min-w-[200px]">
-                  <div className="flex items-center gap-2 mb-2">
-                    <Contact className="w-4 h-4 text-[#009de2]" />
-                    <span className="text-xs font-medium opacity-70">CONTACT</span>
+          {message.type === "CONTACT" && message.contact && (() => {
+            const c = message.contact!;
+            return (
+              <div className="min-w-[200px]">
+                <div className="flex items-center gap-2 mb-2">
+                  <Contact className="w-4 h-4 text-[#009de2]" />
+                  <span className="text-xs font-medium opacity-70">CONTACT</span>
+                </div>
+                <div className="flex items-center gap-3">
+                  <div className="w-10 h-10 rounded-full bg-[#009de2] flex items-center justify-center text-white font-bold text-lg">
+                    {c.name[0]?.toUpperCase()}
                   </div>
-                  <div className="flex items-center gap-3">
-                    <div className="w-10 h-10 rounded-full bg-[#009de2] flex items-center justify-center text-white font-bold text-lg">
-                      {c.name[0]?.toUpperCase()}
-                    </div>
-                    <div>
-                      <p className="font-medium text-sm">{c.name}</p>
-                      <p className="text-xs opacity-70">{c.phone}</p>
-                    </div>
+                  <div>
+                    <p className="font-medium text-sm">{c.name}</p>
+                    <p className="text-xs opacity-70">{c.phone}</p>
                   </div>
                 </div>
-              );
-            } catch { return <p className="text-sm">{message.content}</p>; }
+              </div>
+            );
           })()}
 
-          {message.type === "CHAT" && message.content?.startsWith("__EVENT__") && (() => {
-            try {
-              const ev = JSON.parse(message.content!.slice(9));
-              return (
-                <div className="min-w-[200px]">
-                  <div className="flex items-center gap-2 mb-2">
-                    <CalendarDays className="w-4 h-4 text-[#00a884]" />
-                    <span className="text-xs font-medium opacity-70">EVENT</span>
-                  </div>
-                  <p className="font-medium text-sm mb-1">{ev.title}</p>
-                  <div className="space-y-1 text-xs opacity-80">
-                    <p>{new Date(ev.date).toLocaleDateString("en-US", { weekday: "long", year: "numeric", month: "long", day: "numeric" })}{ev.time ? ` at ${ev.time}` : ""}</p>
-                    {ev.location && <p className="flex items-center gap-1"><MapPin className="w-3 h-3" />{ev.location}</p>}
-                  </div>
+          {message.type === "EVENT" && message.event && (() => {
+            const ev = message.event!;
+            return (
+              <div className="min-w-[200px]">
+                <div className="flex items-center gap-2 mb-2">
+                  <CalendarDays className="w-4 h-4 text-[#00a884]" />
+                  <span className="text-xs font-medium opacity-70">EVENT</span>
+                </div>
+                <p className="font-medium text-sm mb-1">{ev.title}</p>
+                <div className="space-y-1 text-xs opacity-80">
+                  <p>{new Date(ev.date).toLocaleDateString("en-US", { weekday: "long", year: "numeric", month: "long", day: "numeric" })}{ev.time ? ` at ${ev.time}` : ""}</p>
+                  {ev.location && <p className="flex items-center gap-1"><MapPin className="w-3 h-3" />{ev.location}</p>}
                 </div>
-              );
-            } catch { return <p className="text-sm">{message.content}</p>; }
+              </div>
+            );
           })()}
 
-          {message.type === "CHAT" && !message.content?.startsWith("__POLL__") && !message.content?.startsWith("__CONTACT__") && !message.content?.startsWith("__EVENT__") && (
+          {message.type === "CHAT" && (
             <p className="text-sm">{message.content}</p>
           )}
 
-          {message.type === "FILE" && message.fileContent && (
+          {message.type === "FILE" && (message.fileContent || message.attachmentId) && (
             message.fileType?.startsWith("image/") ? (
               <img
-                src={`data:${message.fileType};base64,${message.fileContent}`}
+                src={fileSrc(message)}
                 alt="Shared file"
                 className="max-w-full rounded-lg mt-2"
               />
             ) : message.fileType === "application/pdf" ? (
               <a
-                href={`data:${message.fileType};base64,${message.fileContent}`}
+                href={fileSrc(message)}
                 download="file.pdf"
                 className="flex items-center gap-2 bg-gray-100 dark:bg-gray-700 rounded-lg px-3 py-2 mt-2 hover:bg-gray-200 dark:hover:bg-gray-600 transition"
               >
@@ -532,13 +487,13 @@ export default function Chat() {
               </a>
             ) : message.fileType?.startsWith("video/") ? (
               <video
-                src={`data:${message.fileType};base64,${message.fileContent}`}
+                src={fileSrc(message)}
                 controls
                 className="max-w-full rounded-lg mt-2 max-h-72"
               />
             ) : (
               <a
-                href={`data:${message.fileType};base64,${message.fileContent}`}
+                href={fileSrc(message)}
                 download="file"
                 className="flex items-center gap-2 bg-gray-100 dark:bg-gray-700 rounded-lg px-3 py-2 mt-2 hover:bg-gray-200 dark:hover:bg-gray-600 transition"
               >
@@ -658,7 +613,7 @@ export default function Chat() {
           className="flex-1 overflow-y-auto px-4 py-6 space-y-2"
         >
           <ul>
-            {messages.filter(m => !m.content?.startsWith("__POLL_VOTE__")).map((msg, index) => renderMessage(msg, index))}
+            {messages.map((msg, index) => renderMessage(msg, index))}
           </ul>
         </div>
 
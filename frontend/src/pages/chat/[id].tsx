@@ -2,12 +2,14 @@ import { useState, useEffect, useRef, FormEvent } from "react";
 import { useRouter } from "next/router";
 import Head from "next/head";
 import { ArrowLeft, Paperclip, Smile, Send, Check, CheckCheck, Trash2, Reply, X, File, Image, Contact, BarChart3, CalendarDays, Plus, MapPin } from "lucide-react";
-import { wsService, type ChatMessage } from "@/services/websocket";
+import { wsService, applyPollVote, isDisplayable, type ChatMessage } from "@/services/websocket";
 import ProfileModal from "@/components/ProfileModal";
 import Loader from "@/components/Loader";
 import {
   getMessages,
   sendMessage as apiSendMessage,
+  sendTypedMessage as apiSendTypedMessage,
+  votePoll,
   sendFileMessage as apiSendFileMessage,
   deleteMessages,
   getConversation,
@@ -15,6 +17,7 @@ import {
 } from "@/services/api";
 import { getStoredUser } from "../index";
 import { getEmojiList } from "@/utils/emojis";
+import { fileSrc } from "@/utils/attachments";
 
 const EMOJI_LIST = getEmojiList();
 
@@ -228,6 +231,11 @@ export default function ConversationPage() {
 
       // Handle typing indicator
       if (message.type === "TYPING" && message.sender !== myMobile) {
+        if (message.content === "STOPPED") {
+          if (typingTimeoutRef.current) clearTimeout(typingTimeoutRef.current);
+          setIsTyping(false);
+          return;
+        }
         setIsTyping(true);
         if (typingTimeoutRef.current) clearTimeout(typingTimeoutRef.current);
         typingTimeoutRef.current = setTimeout(() => setIsTyping(false), 3000);
@@ -253,7 +261,11 @@ export default function ConversationPage() {
         );
         return;
       }
-      if (message.type === "CHAT" || message.type === "FILE") {
+      if (message.type === "POLL_VOTE" && message.vote) {
+        setMessages((prev) => applyPollVote(prev, message.vote!, myMobile));
+        return;
+      }
+      if (isDisplayable(message)) {
         setMessages((prev) => [...prev, message]);
         // If message from other, mark as read via WebSocket
         if (message.sender !== myMobile && connected) {
@@ -357,9 +369,8 @@ export default function ConversationPage() {
     const q = pollQuestion.trim();
     const opts = pollOptions.map(o => o.trim()).filter(Boolean);
     if (!q || opts.length < 2 || !convId || !myMobile || !connected) return;
-    const pollData = JSON.stringify({ question: q, options: opts, votes: {} });
     try {
-      await apiSendMessage(convId, myMobile, `__POLL__${pollData}`);
+      await apiSendTypedMessage(convId, myMobile, { type: "POLL", poll: { question: q, options: opts } });
     } catch { /* ignore */ }
     setShowPollModal(false);
     setPollQuestion("");
@@ -368,9 +379,9 @@ export default function ConversationPage() {
 
   const handleVotePoll = async (msgId: string, optionIndex: number) => {
     if (!convId || !myMobile || !connected) return;
-    const voteData = JSON.stringify({ pollMessageId: msgId, optionIndex, voter: myMobile });
     try {
-      await apiSendMessage(convId, myMobile, `__POLL_VOTE__${voteData}`);
+      const vote = await votePoll(convId, myMobile, msgId, optionIndex);
+      setMessages((prev) => applyPollVote(prev, vote, myMobile));
     } catch { /* ignore */ }
   };
 
@@ -378,9 +389,8 @@ export default function ConversationPage() {
     const name = contactName.trim();
     const phone = contactPhone.trim();
     if (!name || !phone || !convId || !myMobile || !connected) return;
-    const contactData = JSON.stringify({ name, phone });
     try {
-      await apiSendMessage(convId, myMobile, `__CONTACT__${contactData}`);
+      await apiSendTypedMessage(convId, myMobile, { type: "CONTACT", contact: { name, phone } });
     } catch { /* ignore */ }
     setShowContactModal(false);
     setContactName("");
@@ -390,9 +400,8 @@ export default function ConversationPage() {
   const handleSendEvent = async () => {
     const title = eventTitle.trim();
     if (!title || !eventDate || !convId || !myMobile || !connected) return;
-    const eventData = JSON.stringify({ title, date: eventDate, time: eventTime, location: eventLocation.trim() });
     try {
-      await apiSendMessage(convId, myMobile, `__EVENT__${eventData}`);
+      await apiSendTypedMessage(convId, myMobile, { type: "EVENT", event: { title, date: eventDate, time: eventTime, location: eventLocation.trim() } });
     } catch { /* ignore */ }
     setShowEventModal(false);
     setEventTitle("");
@@ -401,29 +410,6 @@ export default function ConversationPage() {
     setEventLocation("");
   };
 
-  // Helper: collect poll votes from messages
-  const getPollVotes = (pollMsgId: string): Record<number, string[]> => {
-    const votes: Record<number, string[]> = {};
-    messages.forEach(m => {
-      if (m.content?.startsWith("__POLL_VOTE__")) {
-        try {
-          const v = JSON.parse(m.content.slice(13));
-          if (v.pollMessageId === pollMsgId) {
-            if (!votes[v.optionIndex]) votes[v.optionIndex] = [];
-            // Only keep last vote per voter
-            Object.values(votes).forEach(arr => {
-              const idx = arr.indexOf(v.voter);
-              if (idx !== -1) arr.splice(idx, 1);
-            });
-            if (!votes[v.optionIndex]) votes[v.optionIndex] = [];
-            votes[v.optionIndex].push(v.voter);
-          }
-        } catch { /* ignore */ }
-      }
-    });
-    return votes;
-  };
-
   const formatTime = (ts?: number) => {
     if (!ts) return "";
     return new Date(ts).toLocaleTimeString([], {
@@ -547,7 +533,7 @@ export default function ConversationPage() {
               <p className="text-[#8696a0] text-sm">No messages yet. Say hello! 👋</p>
             </div>
           ) : (messages
-            .filter((m) => (m.type === "CHAT" || m.type === "FILE") && !m.content?.startsWith("__POLL_VOTE__"))
+            .filter(isDisplayable)
             .map((msg, index) => {
               const isOwn = msg.sender === myMobile;
               const isRead = msg.id && readMessageIds.has(msg.id);
@@ -581,99 +567,92 @@ export default function ConversationPage() {
                         <div className="truncate opacity-80">{msg.replyToContent || "Message"}</div>
                       </button>
                     )}
-                    {msg.type === "CHAT" && msg.content?.startsWith("__POLL__") && (() => {
-                      try {
-                        const poll = JSON.parse(msg.content!.slice(8));
-                        const votes = getPollVotes(msg.id!);
-                        const totalVotes = Object.values(votes).reduce((s, arr) => s + arr.length, 0);
-                        const myVoteOption = Object.entries(votes).find(([, voters]) => voters.includes(myMobile))?.[0];
-                        return (
-                          <div className="min-w-[220px]">
-                            <div className="flex items-center gap-2 mb-2">
-                              <BarChart3 className="w-4 h-4 text-[#ffbc38]" />
-                              <span className="text-xs font-medium opacity-70">POLL</span>
-                            </div>
-                            <p className="font-medium text-sm mb-3">{poll.question}</p>
-                            <div className="space-y-2">
-                              {poll.options.map((opt: string, i: number) => {
-                                const count = (votes[i] || []).length;
-                                const pct = totalVotes > 0 ? Math.round((count / totalVotes) * 100) : 0;
-                                const isMyVote = String(i) === myVoteOption;
-                                return (
-                                  <button
-                                    key={i}
-                                    type="button"
-                                    onClick={(e) => { e.stopPropagation(); handleVotePoll(msg.id!, i); }}
-                                    className={`w-full text-left rounded-lg px-3 py-2 text-sm relative overflow-hidden transition ${isMyVote ? "ring-2 ring-[#00a884]" : "hover:opacity-80"}`}
-                                    style={{ background: isOwn ? "rgba(0,0,0,0.2)" : "rgba(255,255,255,0.08)" }}
-                                  >
-                                    <div className="absolute inset-0 bg-[#00a884]/30 transition-all" style={{ width: `${pct}%` }} />
-                                    <div className="relative flex justify-between">
-                                      <span>{opt}</span>
-                                      {totalVotes > 0 && <span className="text-xs opacity-70">{pct}%</span>}
-                                    </div>
-                                  </button>
-                                );
-                              })}
-                            </div>
-                            <p className="text-[10px] opacity-50 mt-2">{totalVotes} vote{totalVotes !== 1 ? "s" : ""}</p>
+                    {msg.type === "POLL" && msg.poll && (() => {
+                      const poll = msg.poll!;
+                      const counts = poll.counts ?? [];
+                      const totalVotes = counts.reduce((s, n) => s + n, 0);
+                      return (
+                        <div className="min-w-[220px]">
+                          <div className="flex items-center gap-2 mb-2">
+                            <BarChart3 className="w-4 h-4 text-[#ffbc38]" />
+                            <span className="text-xs font-medium opacity-70">POLL</span>
+                          </div>
+                          <p className="font-medium text-sm mb-3">{poll.question}</p>
+                          <div className="space-y-2">
+                            {poll.options.map((opt: string, i: number) => {
+                              const count = counts[i] ?? 0;
+                              const pct = totalVotes > 0 ? Math.round((count / totalVotes) * 100) : 0;
+                              const isMyVote = poll.myVote === i;
+                              return (
+                                <button
+                                  key={i}
+                                  type="button"
+                                  onClick={(e) => { e.stopPropagation(); handleVotePoll(msg.id!, i); }}
+                                  className={`w-full text-left rounded-lg px-3 py-2 text-sm relative overflow-hidden transition ${isMyVote ? "ring-2 ring-[#00a884]" : "hover:opacity-80"}`}
+                                  style={{ background: isOwn ? "rgba(0,0,0,0.2)" : "rgba(255,255,255,0.08)" }}
+                                >
+                                  <div className="absolute inset-0 bg-[#00a884]/30 transition-all" style={{ width: `${pct}%` }} />
+                                  <div className="relative flex justify-between">
+                                    <span>{opt}</span>
+                                    {totalVotes > 0 && <span className="text-xs opacity-70">{pct}%</span>}
+                                  </div>
+                                </button>
+                              );
+                            })}
                           </div>
-                        );
-                      } catch { return <p className="text-[15px] break-words leading-relaxed">{msg.content}</p>; }
+                          <p className="text-[10px] opacity-50 mt-2">{totalVotes} vote{totalVotes !== 1 ? "s" : ""}</p>
+                        </div>
+                      );
                     })()}
-                    {msg.type === "CHAT" && msg.content?.startsWith("__CONTACT__") && (() => {
-                      try {
-                        const c = JSON.parse(msg.content!.slice(11));
-                        return (
-                          <div className="min-w-[200px]">
-                            <div className="flex items-center gap-2 mb-2">
-                              <Contact className="w-4 h-4 text-[#009de2]" />
-                              <span className="text-xs font-medium opacity-70">CONTACT</span>
+                    {msg.type === "CONTACT" && msg.contact && (() => {
+                      const c = msg.contact!;
+                      return (
+                        <div className="min-w-[200px]">
+                          <div className="flex items-center gap-2 mb-2">
+                            <Contact className="w-4 h-4 text-[#009de2]" />
+                            <span className="text-xs font-medium opacity-70">CONTACT</span>
+                          </div>
+                          <div className="flex items-center gap-3">
+                            <div className="w-10 h-10 rounded-full bg-[#009de2] flex items-center justify-center text-white font-bold text-lg">
+                              {c.name[0]?.toUpperCase()}
                             </div>
-                            <div className="flex items-center gap-3">
-                              <div className="w-10 h-10 rounded-full bg-[#009de2] flex items-center justify-center text-white font-bold text-lg">
-                                {c.name[0]?.toUpperCase()}
-                              </div>
-                              <div>
-                                <p className="font-medium text-sm">{c.name}</p>
-                                <p className="text-xs opacity-70">{c.phone}</p>
-                              </div>
+                            <div>
+                              <p className="font-medium text-sm">{c.name}</p>
+                              <p className="text-xs opacity-70">{c.phone}</p>
                             </div>
                           </div>
-                        );
-                      } catch { return <p className="text-[15px] break-words leading-relaxed">{msg.content}</p>; }
+                        </div>
+                      );
                     })()}
-                    {msg.type === "CHAT" && msg.content?.startsWith("__EVENT__") && (() => {
-                      try {
-                        const ev = JSON.parse(msg.content!.slice(9));
-                        return (
-                          <div className="min-w-[200px]">
-                            <div className="flex items-center gap-2 mb-2">
-                              <CalendarDays className="w-4 h-4 text-[#00a884]" />
-                              <span className="text-xs font-medium opacity-70">EVENT</span>
-                            </div>
-                            <p className="font-medium text-sm mb-1">{ev.title}</p>
-                            <div className="space-y-1 text-xs opacity-80">
-                              <p>{new Date(ev.date).toLocaleDateString("en-US", { weekday: "long", year: "numeric", month: "long", day: "numeric" })}{ev.time ? ` at ${ev.time}` : ""}</p>
-                              {ev.location && <p className="flex items-center gap-1"><MapPin className="w-3 h-3" />{ev.location}</p>}
-                            </div>
+                    {msg.type === "EVENT" && msg.event && (() => {
+                      const ev = msg.event!;
+                      return (
+                        <div className="min-w-[200px]">
+                          <div className="flex items-center gap-2 mb-2">
+                            <CalendarDays className="w-4 h-4 text-[#00a884]" />
+                            <span className="text-xs font-medium opacity-70">EVENT</span>
                           </div>
-                        );
-                      } catch { return <p className="text-[15px] break-words leading-relaxed">{msg.content}</p>; }
+                          <p className="font-medium text-sm mb-1">{ev.title}</p>
+                          <div className="space-y-1 text-xs opacity-80">
+                            <p>{new Date(ev.date).toLocaleDateString("en-US", { weekday: "long", year: "numeric", month: "long", day: "numeric" })}{ev.time ? ` at ${ev.time}` : ""}</p>
+                            {ev.location && <p className="flex items-center gap-1"><MapPin className="w-3 h-3" />{ev.location}</p>}
+                          </div>
+                        </div>
+                      );
                     })()}
-                    {msg.type === "CHAT" && !msg.content?.startsWith("__POLL__") && !msg.content?.startsWith("__CONTACT__") && !msg.content?.startsWith("__EVENT__") && (
+                    {msg.type === "CHAT" && (
                       <p className="text-[15px] break-words leading-relaxed">{msg.content}</p>
                     )}
-                    {msg.type === "FILE" && msg.fileContent && (
+                    {msg.type === "FILE" && (msg.fileContent || msg.attachmentId || msg.id) && (
                       msg.fileType?.startsWith("image/") ? (
                         <img
-                          src={`data:${msg.fileType};base64,${msg.fileContent}`}
+                          src={fileSrc(msg, myMobile)}
                           alt="Shared"
                           className="max-w-full rounded-xl max-h-72 object-contain"
                         />
                       ) : msg.fileType === "application/pdf" ? (
                         <a
-                          href={`data:${msg.fileType};base64,${msg.fileContent}`}
+                          href={fileSrc(msg, myMobile)}
                           download="file.pdf"
                           className="flex items-center gap-2 bg-[#1a2332] rounded-lg px-3 py-2 hover:bg-[#233040] transition"
                         >
@@ -685,13 +664,13 @@ export default function ConversationPage() {
                         </a>
                       ) : msg.fileType?.startsWith("video/") ? (
                         <video
-                          src={`data:${msg.fileType};base64,${msg.fileContent}`}
+                          src={fileSrc(msg, myMobile)}
                           controls
                           className="max-w-full rounded-xl max-h-72"
                         />
                       ) : (
                         <a
-                          href={`data:${msg.fileType};base64,${msg.fileContent}`}
+                          href={fileSrc(msg, myMobile)}
                           download="file"
                           className="flex items-center gap-2 bg-[#1a2332] rounded-lg px-3 py-2 hover:bg-[#233040] transition"
                         >
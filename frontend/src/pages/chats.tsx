@@ -104,7 +104,7 @@ export default function Chats() {
 
     unique.forEach((mobile) => {
       fetchedPicsRef.current.add(mobile); // Mark as in-flight immediately
-      getProfilePicture(mobile).then((pic) => {
+      getProfilePicture(mobile, 48).then((pic) => {
         if (pic) {
           setContactPics((prev) => ({ ...prev, [mobile]: pic }));
         }
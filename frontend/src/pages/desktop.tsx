@@ -11,15 +11,18 @@ import {
     deleteMessages,
     getMessages,
     sendMessage as apiSendMessage,
+    sendTypedMessage as apiSendTypedMessage,
+    votePoll,
     sendFileMessage as apiSendFileMessage,
     getConversation,
     updateDisplayName,
     updateProfilePicture,
     clearToken,
+    syncSince,
     User as UserProfile, ConversationSummary, updateBio, getBio, Group, getMyGroups
 } from "@/services/api";
 import { getStoredUser, setStoredUser } from "./index";
-import { wsService, type ChatMessage } from "@/services/websocket";
+import { wsService, applyPollVote, isDisplayable, messagePreview, type ChatMessage } from "@/services/websocket";
 import { getEmojiList } from "@/utils/emojis";
 import DesktopLayout from "@/components/DesktopLayout";
 import Loader from "@/components/Loader";
@@ -27,8 +30,12 @@ import BottomNav from "@/components/BottomNav";
 import ProfileModal from "@/components/ProfileModal";
 import CreateGroupModal from "@/components/CreateGroupModal";
 import { formatUserIdentifier, isGoogleUser } from "@/utils/userDisplay";
+import { fileSrc } from "@/utils/attachments";
 
 const EMOJI_LIST = getEmojiList();
+// Sync windows start this far before the last known point (clock skew, messages still being persisted)
+const SYNC_MARGIN_MS = 60_000;
+const SEEN_IDS_LIMIT = 5_000;
 
 export default function DesktopChats() {
     const router = useRouter();
@@ -106,6 +113,11 @@ export default function DesktopChats() {
     const connectedRef = useRef(false);
     const groupsRef = useRef<Group[]>([]);
     const selectedChatIdRef = useRef<string | null>(null);
+    // Delta sync on reconnect: server high-water mark, and ids already shown so
+    // the overlap between sync windows is not counted as unread twice
+    const syncMarkRef = useRef<number | null>(null);
+    const seenIdsRef = useRef<Set<string>>(new Set());
+    const hasConnectedRef = useRef(false);
 
     // Keep refs in sync with state
     useEffect(() => { messagesRef.current = messages; }, [messages]);
@@ -134,6 +146,8 @@ export default function DesktopChats() {
         }
         // Load both conversations and groups initially
         const loadData = async () => {
+            // Allow for clock skew between this device and the server
+            const mark = Date.now() - SYNC_MARGIN_MS;
             try {
                 const [convs, grps, onlineList] = await Promise.all([
                     getConversations(myMobile),
@@ -143,6 +157,7 @@ export default function DesktopChats() {
                 setConversations(convs);
                 setGroups(grps);
                 setOnlineMobiles(new Set(onlineList));
+                if (syncMarkRef.current === null) syncMarkRef.current = mark;
             } catch (error) {
                 console.error("Failed to load data:", error);
             } finally {
@@ -157,8 +172,16 @@ export default function DesktopChats() {
         getBio(myMobile).then((b) => {
             if (b) setBio(b);
         }).catch(() => { });
-        const t = setInterval(() => getOnlineMobiles().then((list) => setOnlineMobiles(new Set(list))), 10000);
-        return () => clearInterval(t);
+        // Contacts' presence changes are pushed over the WebSocket
+        wsService.onPresence((update) => {
+            setOnlineMobiles((prev) => {
+                const next = update.snapshot ? new Set<string>() : new Set(prev);
+                update.online.forEach((m) => next.add(m));
+                update.offline.forEach((m) => next.delete(m));
+                return next;
+            });
+        });
+        return () => wsService.onPresence(null);
     }, [router.isReady, myMobile]);
 
     const playNotificationSound = () => {
@@ -226,7 +249,7 @@ export default function DesktopChats() {
         if (unique.length === 0) return;
         unique.forEach((mobile) => {
             fetchedPicsRef.current.add(mobile); // Mark as in-flight immediately
-            getProfilePicture(mobile).then((pic) => {
+            getProfilePicture(mobile, 48).then((pic) => {
                 if (pic) setContactPics((prev) => ({ ...prev, [mobile]: pic }));
             }).catch(() => { });
         });
@@ -290,6 +313,66 @@ export default function DesktopChats() {
     useEffect(() => {
         if (!myMobile) return;
 
+        const catchUp = async () => {
+            const since = syncMarkRef.current;
+            if (since === null) return;
+            const delta = await syncSince(myMobile, since);
+            if (!delta) return;
+            syncMarkRef.current = delta.highWaterMark;
+            const chatId = selectedChatIdRef.current;
+
+            if (delta.fullResyncRequired) {
+                const [convs, grps] = await Promise.all([getConversations(myMobile), getMyGroups(myMobile)]);
+                setConversations(convs);
+                setGroups(grps);
+                if (chatId) getMessages(chatId, myMobile).then((list) => setMessages(list as ChatMessage[]));
+                return;
+            }
+
+            const fresh = (delta.messages as ChatMessage[]).filter((m) => m.id && !seenIdsRef.current.has(m.id) && isDisplayable(m));
+            fresh.forEach((m) => seenIdsRef.current.add(m.id!));
+            const unread = new Map<string, number>();
+            fresh.forEach((m) => {
+                if (m.conversationId && m.conversationId !== chatId && m.sender !== myMobile) {
+                    unread.set(m.conversationId, (unread.get(m.conversationId) || 0) + 1);
+                }
+            });
+
+            const deleted = new Set(delta.deletedMessageIds);
+            setMessages((prev) => {
+                let next = prev.filter((m) => !m.id || !deleted.has(m.id));
+                const shown = new Set(next.map((m) => m.id));
+                next = next.concat(fresh.filter((m) => m.conversationId === chatId && !shown.has(m.id)));
+                delta.pollTallies.forEach((vote) => { next = applyPollVote(next, vote, myMobile); });
+                return next;
+            });
+
+            const gone = new Set(delta.deletedConversationIds);
+            setConversations((prev) => {
+                const changed = new Map(delta.conversations.map((c) => [c.id, c]));
+                const merged = prev
+                    .filter((c) => !gone.has(c.id))
+                    .map((c) => changed.has(c.id)
+                        ? { ...c, ...changed.get(c.id), unreadCount: (c.unreadCount || 0) + (unread.get(c.id) || 0) }
+                        : c);
+                delta.conversations.forEach((c) => {
+                    if (!prev.some((p) => p.id === c.id)) merged.push({ ...c, unreadCount: unread.get(c.id) || 0 });
+                });
+                return merged.sort((a, b) => b.lastMessageAt - a.lastMessageAt);
+            });
+            setGroups((prev) => {
+                const changed = new Map(delta.groups.map((g) => [g.id, g]));
+                const merged = prev.map((g) => changed.has(g.id)
+                    ? { ...g, ...changed.get(g.id), unreadCount: (g.unreadCount || 0) + (unread.get(g.id) || 0) }
+                    : g);
+                delta.groups.forEach((g) => {
+                    if (!prev.some((p) => p.id === g.id)) merged.push({ ...g, unreadCount: unread.get(g.id) || 0 });
+                });
+                return merged.sort((a, b) => b.lastMessageAt - a.lastMessageAt);
+            });
+            if (seenIdsRef.current.size > SEEN_IDS_LIMIT) seenIdsRef.current = new Set(fresh.map((m) => m.id!));
+        };
+
         setConnecting(true);
         wsService.connect(
             myMobile,
@@ -298,6 +381,9 @@ export default function DesktopChats() {
                 setConnecting(false);
                 setConnectionError("");
                 if (selectedChatIdRef.current) wsService.sendReadReceipt(selectedChatIdRef.current);
+                // Anything sent while we were away only arrives through sync
+                if (hasConnectedRef.current) catchUp();
+                hasConnectedRef.current = true;
             },
             () => {
                 setConnecting(false);
@@ -307,15 +393,27 @@ export default function DesktopChats() {
 
         const handler = (message: ChatMessage) => {
             const currentChatId = selectedChatIdRef.current;
+            if (message.id && isDisplayable(message)) {
+                seenIdsRef.current.add(message.id);
+                // Live delivery covers everything up to here
+                if (message.timestamp && syncMarkRef.current !== null) {
+                    syncMarkRef.current = Math.max(syncMarkRef.current, message.timestamp - SYNC_MARGIN_MS);
+                }
+            }
 
             // 1. Play sound ONLY for new messages (not typing)
-            if (message.sender !== myMobile && (message.type === "CHAT" || message.type === "FILE")) {
+            if (message.sender !== myMobile && isDisplayable(message)) {
                 playNotificationSound();
             }
 
             // 2. Handle active chat messages
             if (message.conversationId === currentChatId) {
                 if (message.type === "TYPING" && message.sender !== myMobile) {
+                    if (message.content === "STOPPED") {
+                        if (typingTimeoutRef.current) clearTimeout(typingTimeoutRef.current);
+                        setIsTyping(false);
+                        return;
+                    }
                     setIsTyping(true);
                     if (typingTimeoutRef.current) clearTimeout(typingTimeoutRef.current);
                     typingTimeoutRef.current = setTimeout(() => setIsTyping(false), 3000);
@@ -331,7 +429,11 @@ export default function DesktopChats() {
                     });
                     return;
                 }
-                if (message.type === "CHAT" || message.type === "FILE") {
+                if (message.type === "POLL_VOTE" && message.vote) {
+                    setMessages((prev) => applyPollVote(prev, message.vote!, myMobile));
+                    return;
+                }
+                if (isDisplayable(message)) {
                     setMessages((prev) => [...prev, message]);
                     if (message.sender !== myMobile && connectedRef.current) {
                         wsService.sendReadReceipt(currentChatId);
@@ -340,9 +442,9 @@ export default function DesktopChats() {
             }
 
             // 3. Update Lists (Conversations & Groups) - Reorder & Unread count
-            if (message.type === "CHAT" || message.type === "FILE") {
+            if (isDisplayable(message)) {
                 const isGroup = groupsRef.current.some(g => g.id === message.conversationId);
-                const preview = message.type === 'FILE' ? (message.fileType?.startsWith('image/') ? '📷 Photo' : '📎 File') : (message.content || "");
+                const preview = message.type === 'FILE' ? (message.fileType?.startsWith('image/') ? '📷 Photo' : '📎 File') : messagePreview(message);
 
                 if (isGroup) {
                     setGroups(prev => {
@@ -504,9 +606,8 @@ export default function DesktopChats() {
         const q = pollQuestion.trim();
         const opts = pollOptions.map(o => o.trim()).filter(Boolean);
         if (!q || opts.length < 2 || !selectedChatId || !myMobile || !connected) return;
-        const pollData = JSON.stringify({ question: q, options: opts, votes: {} });
         try {
-            await apiSendMessage(selectedChatId, myMobile, `__POLL__${pollData}`);
+            await apiSendTypedMessage(selectedChatId, myMobile, { type: "POLL", poll: { question: q, options: opts } });
         } catch { /* ignore */ }
         setShowPollModal(false);
         setPollQuestion("");
@@ -515,9 +616,9 @@ export default function DesktopChats() {
 
     const handleVotePoll = async (msgId: string, optionIndex: number) => {
         if (!selectedChatId || !myMobile || !connected) return;
-        const voteData = JSON.stringify({ pollMessageId: msgId, optionIndex, voter: myMobile });
         try {
-            await apiSendMessage(selectedChatId, myMobile, `__POLL_VOTE__${voteData}`);
+            const vote = await votePoll(selectedChatId, myMobile, msgId, optionIndex);
+            setMessages((prev) => applyPollVote(prev, vote, myMobile));
         } catch { /* ignore */ }
     };
 
@@ -525,9 +626,8 @@ export default function DesktopChats() {
         const name = contactName.trim();
         const phone = contactPhone.trim();
         if (!name || !phone || !selectedChatId || !myMobile || !connected) return;
-        const contactData = JSON.stringify({ name, phone });
         try {
-            await apiSendMessage(selectedChatId, myMobile, `__CONTACT__${contactData}`);
+            await apiSendTypedMessage(selectedChatId, myMobile, { type: "CONTACT", contact: { name, phone } });
         } catch { /* ignore */ }
         setShowContactModal(false);
         setContactName("");
@@ -537,9 +637,8 @@ export default function DesktopChats() {
     const handleSendEvent = async () => {
         const title = eventTitle.trim();
         if (!title || !eventDate || !selectedChatId || !myMobile || !connected) return;
-        const eventData = JSON.stringify({ title, date: eventDate, time: eventTime, location: eventLocation.trim() });
         try {
-            await apiSendMessage(selectedChatId, myMobile, `__EVENT__${eventData}`);
+            await apiSendTypedMessage(selectedChatId, myMobile, { type: "EVENT", event: { title, date: eventDate, time: eventTime, location: eventLocation.trim() } });
         } catch { /* ignore */ }
         setShowEventModal(false);
         setEventTitle("");
@@ -548,29 +647,6 @@ export default function DesktopChats() {
         setEventLocation("");
     };
 
-    // Helper: collect poll votes from messages
-    const getPollVotes = (pollMsgId: string): Record<number, string[]> => {
-        const votes: Record<number, string[]> = {};
-        messages.forEach(m => {
-            if (m.content?.startsWith("__POLL_VOTE__")) {
-                try {
-                    const v = JSON.parse(m.content.slice(13));
-                    if (v.pollMessageId === pollMsgId) {
-                        if (!votes[v.optionIndex]) votes[v.optionIndex] = [];
-                        // Only keep last vote per voter
-                        Object.values(votes).forEach(arr => {
-                            const idx = arr.indexOf(v.voter);
-                            if (idx !== -1) arr.splice(idx, 1);
-                        });
-                        if (!votes[v.optionIndex]) votes[v.optionIndex] = [];
-                        votes[v.optionIndex].push(v.voter);
-                    }
-                } catch { /* ignore */ }
-            }
-        });
-        return votes;
-    };
-
     const handleInputChange = (value: string) => {
         setInputMessage(value);
         if (value.trim() && connected && !isTypingSentRef.current && selectedChatId) {
@@ -1071,7 +1147,7 @@ export default function DesktopChats() {
                         <p className="text-[#8696a0] text-sm">No messages yet. Start the conversation!</p>
                     </div>
                 ) : (messages
-                    .filter((m) => (m.type === "CHAT" || m.type === "FILE") && !m.content?.startsWith("__POLL_VOTE__"))
+                    .filter(isDisplayable)
                     .map((msg, index) => {
                         const isOwn = msg.sender === myMobile;
                         const isRead = msg.id && readMessageIds.has(msg.id);
@@ -1102,97 +1178,90 @@ export default function DesktopChats() {
                                             <div className="truncate opacity-80">{msg.replyToContent || "Message"}</div>
                                         </button>
                                     )}
-                                    {msg.type === "CHAT" && msg.content?.startsWith("__POLL__") && (() => {
-                                        try {
-                                            const poll = JSON.parse(msg.content!.slice(8));
-                                            const votes = getPollVotes(msg.id!);
-                                            const totalVotes = Object.values(votes).reduce((s, arr) => s + arr.length, 0);
-                                            const myVoteOption = Object.entries(votes).find(([, voters]) => voters.includes(myMobile))?.[0];
-                                            return (
-                                                <div className="min-w-[220px]">
-                                                    <div className="flex items-center gap-2 mb-2">
-                                                        <BarChart3 className="w-4 h-4 text-[#ffbc38]" />
-                                                        <span className="text-xs font-medium opacity-70">POLL</span>
-                                                    </div>
-                                                    <p className="font-medium text-sm mb-3">{poll.question}</p>
-                                                    <div className="space-y-2">
-                                                        {poll.options.map((opt: string, i: number) => {
-                                                            const count = (votes[i] || []).length;
-                                                            const pct = totalVotes > 0 ? Math.round((count / totalVotes) * 100) : 0;
-                                                            const isMyVote = String(i) === myVoteOption;
-                                                            return (
-                                                                <button
-                                                                    key={i}
-                                                                    type="button"
-                                                                    onClick={(e) => { e.stopPropagation(); handleVotePoll(msg.id!, i); }}
-                                                                    className={`w-full text-left rounded-lg px-3 py-2 text-sm relative overflow-hidden transition ${isMyVote ? "ring-2 ring-[#00a884]" : "hover:opacity-80"}`}
-                                                                    style={{ background: isOwn ? "rgba(0,0,0,0.2)" : "rgba(255,255,255,0.08)" }}
-                                                                >
-                                                                    <div className="absolute inset-0 bg-[#00a884]/30 transition-all" style={{ width: `${pct}%` }} />
-                                                                    <div className="relative flex justify-between">
-                                                                        <span>{opt}</span>
-                                                                        {totalVotes > 0 && <span className="text-xs opacity-70">{pct}%</span>}
-                                                                    </div>
-                                                                </button>
-                                                            );
-                                                        })}
-                                                    </div>
-                                                    <p className="text-[10px] opacity-50 mt-2">{totalVotes} vote{totalVotes !== 1 ? "s" : ""}</p>
+                                    {msg.type === "POLL" && msg.poll && (() => {
+                                        const poll = msg.poll!;
+                                        const counts = poll.counts ?? [];
+                                        const totalVotes = counts.reduce((s, n) => s + n, 0);
+                                        return (
+                                            <div className="min-w-[220px]">
+                                                <div className="flex items-center gap-2 mb-2">
+                                                    <BarChart3 className="w-4 h-4 text-[#ffbc38]" />
+                                                    <span className="text-xs font-medium opacity-70">POLL</span>
                                                 </div>
-                                            );
-                                        } catch { return <p className="text-sm leading-relaxed">{msg.content}</p>; }
+                                                <p className="font-medium text-sm mb-3">{poll.question}</p>
+                                                <div className="space-y-2">
+                                                    {poll.options.map((opt: string, i: number) => {
+                                                        const count = counts[i] ?? 0;
+                                                        const pct = totalVotes > 0 ? Math.round((count / totalVotes) * 100) : 0;
+                                                        const isMyVote = poll.myVote === i;
+                                                        return (
+                                                            <button
+                                                                key={i}
+                                                                type="button"
+                                                                onClick={(e) => { e.stopPropagation(); handleVotePoll(msg.id!, i); }}
+                                                                className={`w-full text-left rounded-lg px-3 py-2 text-sm relative overflow-hidden transition ${isMyVote ? "ring-2 ring-[#00a884]" : "hover:opacity-80"}`}
+                                                                style={{ background: isOwn ? "rgba(0,0,0,0.2)" : "rgba(255,255,255,0.08)" }}
+                                                            >
+                                                                <div className="absolute inset-0 bg-[#00a884]/30 transition-all" style={{ width: `${pct}%` }} />
+                                                                <div className="relative flex justify-between">
+                                                                    <span>{opt}</span>
+                                                                    {totalVotes > 0 && <span className="text-xs opacity-70">{pct}%</span>}
+                                                                </div>
+                                                            </button>
+                                                        );
+                                                    })}
+                                                </div>
+                                                <p className="text-[10px] opacity-50 mt-2">{totalVotes} vote{totalVotes !== 1 ? "s" : ""}</p>
+                                            </div>
+                                        );
                                     })()}
-                                    {msg.type === "CHAT" && msg.content?.startsWith("__CONTACT__") && (() => {
-                                        try {
-                                            const c = JSON.parse(msg.content!.slice(11));
-                                            return (
-                                                <div className="min-w-[200px]">
-                                                    <div className="flex items-center gap-2 mb-2">
-                                                        <Contact className="w-4 h-4 text-[#009de2]" />
-                                                        <span className="text-xs font-medium opacity-70">CONTACT</span>
+                                    {msg.type === "CONTACT" && msg.contact && (() => {
+                                        const c = msg.contact!;
+                                        return (
+                                            <div className="min-w-[200px]">
+                                                <div className="flex items-center gap-2 mb-2">
+                                                    <Contact className="w-4 h-4 text-[#009de2]" />
+                                                    <span className="text-xs font-medium opacity-70">CONTACT</span>
+                                                </div>
+                                                <div className="flex items-center gap-3">
+                                                    <div className="w-10 h-10 rounded-full bg-[#009de2] flex items-center justify-center text-white font-bold text-lg">
+                                                        {c.name[0]?.toUpperCase()}
                                                     </div>
-                                                    <div className="flex items-center gap-3">
-                                                        <div className="w-10 h-10 rounded-full bg-[#009de2] flex items-center justify-center text-white font-bold text-lg">
-                                                            {c.name[0]?.toUpperCase()}
-                                                        </div>
-                                                        <div>
-                                                            <p className="font-medium text-sm">{c.name}</p>
-                                                            <p className="text-xs opacity-70">{c.phone}</p>
-                                                        </div>
+                                                    <div>
+                                                        <p className="font-medium text-sm">{c.name}</p>
+                                                        <p className="text-xs opacity-70">{c.phone}</p>
                                                     </div>
                                                 </div>
-                                            );
-                                        } catch { return <p className="text-sm leading-relaxed">{msg.content}</p>; }
+                                            </div>
+                                        );
                                     })()}
-                                    {msg.type === "CHAT" && msg.content?.startsWith("__EVENT__") && (() => {
-                                        try {
-                                            const ev = JSON.parse(msg.content!.slice(9));
-                                            return (
-                                                <div className="min-w-[200px]">
-                                                    <div className="flex items-center gap-2 mb-2">
-                                                        <CalendarDays className="w-4 h-4 text-[#00a884]" />
-                                                        <span className="text-xs font-medium opacity-70">EVENT</span>
-                                                    </div>
-                                                    <p className="font-medium text-sm mb-1">{ev.title}</p>
-                                                    <div className="space-y-1 text-xs opacity-80">
-                                                        <p>{new Date(ev.date).toLocaleDateString("en-US", { weekday: "long", year: "numeric", month: "long", day: "numeric" })}{ev.time ? ` at ${ev.time}` : ""}</p>
-                                                        {ev.location && <p className="flex items-center gap-1"><MapPin className="w-3 h-3" />{ev.location}</p>}
-                                                    </div>
+                                    {msg.type === "EVENT" && msg.event && (() => {
+                                        const ev = msg.event!;
+                                        return (
+                                            <div className="min-w-[200px]">
+                                                <div className="flex items-center gap-2 mb-2">
+                                                    <CalendarDays className="w-4 h-4 text-[#00a884]" />
+                                                    <span className="text-xs font-medium opacity-70">EVENT</span>
                                                 </div>
-                                            );
-                                        } catch { return <p className="text-sm leading-relaxed">{msg.content}</p>; }
+                                                <p className="font-medium text-sm mb-1">{ev.title}</p>
+                                                <div className="space-y-1 text-xs opacity-80">
+                                                    <p>{new Date(ev.date).toLocaleDateString("en-US", { weekday: "long", year: "numeric", month: "long", day: "numeric" })}{ev.time ? ` at ${ev.time}` : ""}</p>
+                                                    {ev.location && <p className="flex items-center gap-1"><MapPin className="w-3 h-3" />{ev.location}</p>}
+                                                </div>
+                                            </div>
+                                        );
                                     })()}
-                                    {msg.type === "CHAT" && !msg.content?.startsWith("__POLL__") && !msg.content?.startsWith("__CONTACT__") && !msg.content?.startsWith("__EVENT__") && <p className="text-sm leading-relaxed">{msg.content}</p>}
-                                    {msg.type === "FILE" && msg.fileContent && (
+                                    {msg.type === "CHAT" && <p className="text-sm leading-relaxed">{msg.content}</p>}
+                                    {msg.type === "FILE" && (msg.fileContent || msg.attachmentId || msg.id) && (
                                         msg.fileType?.startsWith("image/") ? (
                                             <img
-                                                src={`data:${msg.fileType};base64,${msg.fileContent}`}
+                                                src={fileSrc(msg, myMobile)}
                                                 alt="Shared"
                                                 className="max-w-full rounded-xl max-h-60 object-contain"
                                             />
                                         ) : msg.fileType === "application/pdf" ? (
                                             <a
-                                                href={`data:${msg.fileType};base64,${msg.fileContent}`}
+                                                href={fileSrc(msg, myMobile)}
                                                 download="file.pdf"
                                                 className="flex items-center gap-2 bg-[#1a2332] rounded-lg px-3 py-2 hover:bg-[#233040] transition"
                                             >
@@ -1204,13 +1273,13 @@ export default function DesktopChats() {
                                             </a>
                                         ) : msg.fileType?.startsWith("video/") ? (
                                             <video
-                                                src={`data:${msg.fileType};base64,${msg.fileContent}`}
+                                                src={fileSrc(msg, myMobile)}
                                                 controls
                                                 className="max-w-full rounded-xl max-h-60"
                                             />
                                         ) : (
                                             <a
-                                                href={`data:${msg.fileType};base64,${msg.fileContent}`}
+                                                href={fileSrc(msg, myMobile)}
                                                 download="file"
                                                 className="flex items-center gap-2 bg-[#1a2332] rounded-lg px-3 py-2 hover:bg-[#233040] transition"
                                             >
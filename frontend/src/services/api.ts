@@ -1,3 +1,5 @@
+import type { ContactPayload, EventPayload, PollPayload, PollVotePayload } from "./websocket";
+
 const getBase = () =>
   process.env.NEXT_PUBLIC_API_URL || "http://localhost:8080";
 
@@ -230,11 +232,17 @@ export interface ChatMessage {
   timestamp?: number;
   fileContent?: string;
   fileType?: string;
+  attachmentId?: string;
+  fileSize?: number;
   messageIds?: string[];
   // Reply-to-message fields
   replyToId?: string;
   replyToContent?: string;
   replyToSender?: string;
+  poll?: PollPayload;
+  contact?: ContactPayload;
+  event?: EventPayload;
+  vote?: PollVotePayload;
 }
 
 export async function getMessages(
@@ -249,6 +257,43 @@ export async function getMessages(
   return res.json();
 }
 
+export interface SyncResult {
+  messages: ChatMessage[];
+  conversations: ConversationSummary[];
+  groups: Group[];
+  pollTallies: PollVotePayload[];
+  deletedMessageIds: string[];
+  deletedConversationIds: string[];
+  highWaterMark: number;
+  fullResyncRequired: boolean;
+}
+
+/**
+ * What changed since a high-water mark (GET /api/sync), following message
+ * pages until the backlog is drained. Pass highWaterMark back as `since` on
+ * the next call. Returns null if the server could not be reached.
+ */
+export async function syncSince(
+  mobile: string,
+  since: number,
+): Promise<SyncResult | null> {
+  const messages: ChatMessage[] = [];
+  let cursor: string | null = null;
+  for (;;) {
+    const params = new URLSearchParams({ mobile, since: String(since) });
+    if (cursor) params.set("cursor", cursor);
+    const res = await fetch(`${getBase()}/api/sync?${params}`);
+    if (!res.ok) return null;
+    const page = await res.json();
+    messages.push(...page.messages);
+    if (!page.hasMore) {
+      // Every page carries the metadata; the last one is the newest
+      return { ...page, messages };
+    }
+    cursor = page.cursor;
+  }
+}
+
 export async function deleteMessages(ids: string[]): Promise<boolean> {
   const res = await fetch(`${getBase()}/api/messages`, {
     method: "DELETE",
@@ -282,6 +327,43 @@ export async function sendMessage(
   return res.json();
 }
 
+/** Send a POLL, CONTACT or EVENT message; the body goes in the matching field. */
+export async function sendTypedMessage(
+  conversationId: string,
+  mobile: string,
+  body: { type: "POLL"; poll: PollPayload } | { type: "CONTACT"; contact: ContactPayload } | { type: "EVENT"; event: EventPayload },
+): Promise<ChatMessage> {
+  const res = await fetch(
+    `${getBase()}/api/conversations/${conversationId}/messages?mobile=${encodeURIComponent(mobile)}`,
+    {
+      method: "POST",
+      headers: { "Content-Type": "application/json" },
+      body: JSON.stringify(body),
+    },
+  );
+  if (!res.ok) throw new Error("Send failed");
+  return res.json();
+}
+
+/** Vote on a poll (replaces an earlier vote); returns the new counts. */
+export async function votePoll(
+  conversationId: string,
+  mobile: string,
+  pollId: string,
+  optionIndex: number,
+): Promise<PollVotePayload> {
+  const res = await fetch(
+    `${getBase()}/api/conversations/${conversationId}/polls/${pollId}/votes?mobile=${encodeURIComponent(mobile)}`,
+    {
+      method: "POST",
+      headers: { "Content-Type": "application/json" },
+      body: JSON.stringify({ optionIndex }),
+    },
+  );
+  if (!res.ok) throw new Error("Vote failed");
+  return res.json();
+}
+
 export async function sendFileMessage(
   conversationId: string,
   mobile: string,
@@ -320,7 +402,7 @@ export async function updateDisplayName(
 export async function updateProfilePicture(
   mobile: string,
   base64Image: string,
-): Promise<void> {
+): Promise<string | null> {
   const res = await fetch(
     `${getBase()}/api/users/profile/picture?mobile=${encodeURIComponent(mobile)}`,
     {
@@ -330,20 +412,26 @@ export async function updateProfilePicture(
     },
   );
   if (!res.ok) throw new Error("Failed to update profile picture");
+  const data = await res.json();
+  return pictureSrc(data.picture);
 }
 
+/**
+ * Picture URLs from the server are either paths on the API (stored
+ * thumbnails) or absolute URLs (OAuth provider pictures).
+ */
+export function pictureSrc(picture: string | null | undefined): string | null {
+  if (!picture) return null;
+  return picture.startsWith("/") ? `${getBase()}${picture}` : picture;
+}
+
+/** URL of a user's picture at the thumbnail size closest to `size` pixels. */
 export async function getProfilePicture(
   mobile: string,
+  size = 128,
 ): Promise<string | null> {
-  const res = await fetch(
-    `${getBase()}/api/users/profile/picture?mobile=${encodeURIComponent(mobile)}`,
-    {
-      headers: authHeaders(),
-    },
-  );
-  if (!res.ok) return null;
-  const data = await res.json();
-  return data.picture || null;
+  const profile = await getUserProfile(mobile, size);
+  return profile?.profilePicture || null;
 }
 
 export async function updateBio(mobile: string, bio: string): Promise<User> {
@@ -373,15 +461,17 @@ export async function getBio(mobile: string): Promise<string> {
 
 export async function getUserProfile(
   mobile: string,
+  pictureSize = 128,
 ): Promise<UserProfile | null> {
   const res = await fetch(
-    `${getBase()}/api/users/profile/${encodeURIComponent(mobile)}`,
+    `${getBase()}/api/users/profile/${encodeURIComponent(mobile)}?pictureSize=${pictureSize}`,
     {
       headers: authHeaders(),
     },
   );
   if (!res.ok) return null;
-  return res.json();
+  const profile: UserProfile = await res.json();
+  return { ...profile, profilePicture: pictureSrc(profile.profilePicture) || "" };
 }
 
 // Group API
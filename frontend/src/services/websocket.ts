@@ -1,20 +1,92 @@
 import { Client, IMessage } from "@stomp/stompjs";
 import SockJS from "sockjs-client";
 
+/** Poll body; counts and myVote are filled in by the server. */
+export interface PollPayload {
+  question: string;
+  options: string[];
+  counts?: number[];
+  myVote?: number | null;
+}
+
+export interface ContactPayload {
+  name: string;
+  phone: string;
+}
+
+export interface EventPayload {
+  title: string;
+  date: string;
+  time?: string;
+  location?: string;
+}
+
+/** New counts of a poll after a vote (POLL_VOTE messages and /api/sync). */
+export interface PollVotePayload {
+  pollMessageId: string;
+  voter?: string;
+  optionIndex?: number;
+  counts: number[];
+}
+
 export interface ChatMessage {
   id?: string;
-  type: "CHAT" | "JOIN" | "LEAVE" | "TYPING" | "FILE" | "DELETED" | "READ" | "DELIVERED";
+  type: "CHAT" | "JOIN" | "LEAVE" | "TYPING" | "FILE" | "DELETED" | "READ" | "DELIVERED"
+    | "POLL" | "POLL_VOTE" | "CONTACT" | "EVENT";
   content?: string;
   sender: string;
   conversationId?: string;
   fileContent?: string;
   fileType?: string;
+  attachmentId?: string;
+  fileSize?: number;
   timestamp?: number;
   messageIds?: string[];
   // Reply-to-message fields
   replyToId?: string;
   replyToContent?: string;
   replyToSender?: string;
+  // Typed bodies for POLL, CONTACT, EVENT and POLL_VOTE messages
+  poll?: PollPayload;
+  contact?: ContactPayload;
+  event?: EventPayload;
+  vote?: PollVotePayload;
+}
+
+/** Message types shown as bubbles in a conversation. */
+export function isDisplayable(message: ChatMessage): boolean {
+  return ["CHAT", "FILE", "POLL", "CONTACT", "EVENT"].includes(message.type);
+}
+
+/** List preview of a non-file message, matching the server's lastMessagePreview. */
+export function messagePreview(message: ChatMessage): string {
+  if (message.poll) return `Poll: ${message.poll.question}`;
+  if (message.contact) return `Contact: ${message.contact.name}`;
+  if (message.event) return `Event: ${message.event.title}`;
+  return message.content || "";
+}
+
+/** Apply a POLL_VOTE update to the poll it belongs to. */
+export function applyPollVote(messages: ChatMessage[], vote: PollVotePayload, myMobile: string): ChatMessage[] {
+  return messages.map((m) =>
+    m.id === vote.pollMessageId && m.poll
+      ? {
+        ...m,
+        poll: {
+          ...m.poll,
+          counts: vote.counts,
+          myVote: vote.voter === myMobile ? vote.optionIndex : m.poll.myVote,
+        },
+      }
+      : m
+  );
+}
+
+/** Online/offline changes of the user's contacts; the first one after subscribing is a snapshot. */
+export interface PresenceUpdate {
+  online: string[];
+  offline: string[];
+  snapshot: boolean;
 }
 
 export class WebSocketService {
@@ -24,6 +96,8 @@ export class WebSocketService {
   private messageCallback: ((message: ChatMessage) => void) | null = null;
   private connectionCallback: ((connected: boolean) => void) | null = null;
   private subscription: { unsubscribe: () => void } | null = null;
+  private presenceCallback: ((update: PresenceUpdate) => void) | null = null;
+  private presenceSubscription: { unsubscribe: () => void } | null = null;
 
   connect(
     mobile: string,
@@ -35,6 +109,7 @@ export class WebSocketService {
       try { this.stompClient.deactivate(); } catch { }
       this.stompClient = null;
       this.subscription = null;
+      this.presenceSubscription = null;
       this.connected = false;
     }
 
@@ -74,6 +149,7 @@ export class WebSocketService {
         const chatMessage = JSON.parse(message.body) as ChatMessage;
         this.messageCallback?.(chatMessage);
       }) ?? null;
+      this.subscribePresence();
       onConnected();
     };
 
@@ -103,6 +179,23 @@ export class WebSocketService {
     this.messageCallback = callback;
   }
 
+  /** Receive contacts' presence changes instead of polling /api/users/online. */
+  onPresence(callback: ((update: PresenceUpdate) => void) | null) {
+    this.presenceCallback = callback;
+    if (callback && this.connected) this.subscribePresence();
+  }
+
+  private subscribePresence() {
+    if (this.presenceSubscription) {
+      try { this.presenceSubscription.unsubscribe(); } catch { }
+      this.presenceSubscription = null;
+    }
+    if (!this.presenceCallback || !this.stompClient) return;
+    this.presenceSubscription = this.stompClient.subscribe("/user/queue/presence", (message: IMessage) => {
+      this.presenceCallback?.(JSON.parse(message.body) as PresenceUpdate);
+    });
+  }
+
   onConnectionChange(callback: (connected: boolean) => void) {
     this.connectionCallback = callback;
   }
@@ -127,6 +220,19 @@ export class WebSocketService {
     });
   }
 
+  /** Send a POLL, CONTACT or EVENT message to the public chat. */
+  sendTypedMessage(type: "POLL" | "CONTACT" | "EVENT", body: Pick<ChatMessage, "poll" | "contact" | "event">) {
+    if (!this.connected || !this.stompClient) return;
+    this.stompClient.publish({
+      destination: "/app/chat.sendMessage",
+      body: JSON.stringify({
+        type,
+        sender: this.mobile,
+        ...body,
+      }),
+    });
+  }
+
   sendTyping() {
     if (!this.connected || !this.stompClient) return;
     this.stompClient.publish({
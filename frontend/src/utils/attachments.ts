@@ -0,0 +1,19 @@
+/**
+ * Resolve the URL to render a FILE message's content.
+ * New messages reference the attachment store by id. Older ones carry inline
+ * base64 when received live, but history pages omit it; those are fetched from
+ * the per-message media endpoint instead.
+ */
+export function fileSrc(
+  msg: { id?: string; conversationId?: string; fileContent?: string; fileType?: string; attachmentId?: string },
+  mobile?: string
+): string {
+  const base = process.env.NEXT_PUBLIC_API_URL || "http://localhost:8080";
+  if (msg.attachmentId) {
+    return `${base}/api/attachments/${msg.attachmentId}?mobile=${encodeURIComponent(mobile ?? "")}`;
+  }
+  if (msg.fileContent) {
+    return `data:${msg.fileType};base64,${msg.fileContent}`;
+  }
+  return `${base}/api/conversations/${msg.conversationId}/messages/${msg.id}/media?mobile=${encodeURIComponent(mobile ?? "")}`;
+}
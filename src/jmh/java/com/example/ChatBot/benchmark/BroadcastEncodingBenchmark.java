@@ -0,0 +1,87 @@
+package com.example.ChatBot.benchmark;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.websocket.EncodedMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sending one chat message to N users: convertAndSendToUser per recipient
+ * (Jackson runs N times) against {@link EncodedMessage} (Jackson runs once).
+ * The broker channel is a sink, so only the template's own cost is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastEncodingBenchmark {
+
+    private static final String DESTINATION = "/queue/messages";
+
+    @Param({ "2", "50", "1000" })
+    public int recipients;
+
+    private SimpMessagingTemplate template;
+    private ChatMessageResponse message;
+    private List<String> users;
+    private Message<?> lastSent;
+
+    @Setup
+    public void setUp() {
+        MessageChannel channel = (msg, timeout) -> {
+            lastSent = msg;
+            return true;
+        };
+        template = new SimpMessagingTemplate(channel);
+        // Same converter the broker template gets in the application
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+
+        message = ChatMessageResponse.builder()
+                .id("65f0c0ffee0000000000abcd")
+                .type(MessageType.CHAT)
+                .sender("9876543210")
+                .conversationId("65f0c0ffee0000000000dcba")
+                .content("Are we still on for lunch tomorrow? I can book the usual place for 1pm.")
+                .timestamp(1_700_000_000_000L)
+                .build();
+
+        users = new ArrayList<>(recipients);
+        for (int i = 0; i < recipients; i++) {
+            users.add(String.valueOf(9_000_000_000L + i));
+        }
+    }
+
+    @Benchmark
+    public Message<?> convertPerRecipient() {
+        for (String user : users) {
+            template.convertAndSendToUser(user, DESTINATION, message);
+        }
+        return lastSent;
+    }
+
+    @Benchmark
+    public Message<?> encodeOnce() {
+        EncodedMessage.of(template, message).sendToUsers(template, users, DESTINATION);
+        return lastSent;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ChatBot.benchmark;
+
+import com.example.ChatBot.config.UserHandshakeHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Principal resolution from the ?mobile= query parameter, done on every
+ * WebSocket handshake.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandshakeBenchmark {
+
+    /** Exposes the protected hook for measurement. */
+    private static final class Handler extends UserHandshakeHandler {
+        private Principal resolve(ServerHttpRequest request, Map<String, Object> attributes) {
+            return determineUser(request, null, attributes);
+        }
+    }
+
+    @Param({ "mobile", "google", "anonymous" })
+    public String kind;
+
+    private Handler handler;
+    private ServerHttpRequest request;
+    private Map<String, Object> attributes;
+
+    @Setup
+    public void setUp() {
+        handler = new Handler();
+        attributes = new HashMap<>();
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/ws/123/abcdefgh/websocket");
+        switch (kind) {
+            case "mobile":
+                servletRequest.setQueryString("t=1700000000000&mobile=%2B91%2098765%2043210");
+                break;
+            case "google":
+                servletRequest.setQueryString("mobile=google_someone%40example.com");
+                break;
+            default:
+                servletRequest.setQueryString("t=1700000000000");
+        }
+        request = new ServletServerHttpRequest(servletRequest);
+    }
+
+    @Benchmark
+    public Principal determineUser() {
+        return handler.resolve(request, attributes);
+    }
+}
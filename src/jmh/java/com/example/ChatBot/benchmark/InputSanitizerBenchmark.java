@@ -0,0 +1,80 @@
+package com.example.ChatBot.benchmark;
+
+import com.example.ChatBot.util.InputSanitizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InputSanitizer#sanitize} runs on every chat send. {@code chainedReplace}
+ * is the previous implementation (six String.replace calls), kept as a
+ * baseline; {@code sanitizeStreaming} is the Reader/Writer form used for
+ * large content. Run with -prof gc to see allocation per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputSanitizerBenchmark {
+
+    @Param({ "plain", "markup", "long" })
+    public String kind;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        switch (kind) {
+            case "plain":
+                input = "Are we still on for lunch tomorrow? I can book the usual place for 1pm";
+                break;
+            case "markup":
+                input = "<b>Look</b> at \"this\": https://example.com/a?b=1&c='2'";
+                break;
+            default:
+                StringBuilder sb = new StringBuilder();
+                while (sb.length() < 4096) {
+                    sb.append("A long message with the odd <tag> & \"quote\" in it. ");
+                }
+                input = sb.toString();
+        }
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return InputSanitizer.sanitize(input);
+    }
+
+    @Benchmark
+    public String sanitizeStreaming() throws IOException {
+        StringWriter out = new StringWriter(input.length() + 64);
+        InputSanitizer.sanitize(new StringReader(input), out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public String chainedReplace() {
+        return input
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&#x27;")
+                .replace("/", "&#x2F;");
+    }
+}
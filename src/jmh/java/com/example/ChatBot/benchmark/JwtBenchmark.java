@@ -0,0 +1,58 @@
+package com.example.ChatBot.benchmark;
+
+import com.example.ChatBot.service.JwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token validation, done for every authenticated request: a repeated token
+ * served from the verified-token cache vs. a full signature check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+
+    private JwtService jwtService;
+    private JwtService uncachedJwtService;
+    private String validToken;
+    private String tamperedToken;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(SECRET, 3_600_000L, 10_000, 300);
+        uncachedJwtService = new JwtService(SECRET, 3_600_000L, 0, 300);
+        validToken = jwtService.generate("9876543210");
+        tamperedToken = validToken.substring(0, validToken.length() - 2) + "xx";
+    }
+
+    @Benchmark
+    public String validateAndGetMobile() {
+        return jwtService.validateAndGetMobile(validToken);
+    }
+
+    @Benchmark
+    public String validateAndGetMobileUncached() {
+        return uncachedJwtService.validateAndGetMobile(validToken);
+    }
+
+    @Benchmark
+    public String rejectTampered() {
+        return jwtService.validateAndGetMobile(tamperedToken);
+    }
+}
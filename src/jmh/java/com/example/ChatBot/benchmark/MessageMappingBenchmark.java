@@ -0,0 +1,69 @@
+package com.example.ChatBot.benchmark;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.MessageType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message conversions: DTO to document and back, and the JSON encoding
+ * done for every WebSocket push.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageMappingBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ChatMessageResponse response;
+    private ChatMessageDocument document;
+
+    @Setup
+    public void setUp() {
+        // Same defaults as the application's mapper
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        response = ChatMessageResponse.builder()
+                .id("65f0c0ffee0000000000abcd")
+                .type(MessageType.CHAT)
+                .sender("9876543210")
+                .conversationId("65f0c0ffee0000000000dcba")
+                .content("Are we still on for lunch tomorrow? I can book the usual place for 1pm.")
+                .timestamp(1_700_000_000_000L)
+                .replyToId("65f0c0ffee0000000000abca")
+                .replyToContent("Lunch tomorrow?")
+                .replyToSender("1234567890")
+                .build();
+        document = ChatMessageDocument.fromResponse(response);
+    }
+
+    @Benchmark
+    public ChatMessageDocument fromResponse() {
+        return ChatMessageDocument.fromResponse(response);
+    }
+
+    @Benchmark
+    public ChatMessageResponse toResponse() {
+        return document.toResponse();
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.ChatBot.dto.attachment;
+
+import com.example.ChatBot.storage.StoredAttachment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Response DTO for an uploaded attachment.
+ * Clients send the returned id as {@code attachmentId} in a FILE message.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentResponse implements Serializable {
+
+    private String id;
+    private String contentType;
+    private long size;
+
+    public static AttachmentResponse from(StoredAttachment attachment) {
+        return new AttachmentResponse(attachment.getId(), attachment.getContentType(), attachment.getSize());
+    }
+}
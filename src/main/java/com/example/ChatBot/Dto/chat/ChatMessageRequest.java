@@ -3,6 +3,7 @@ package com.example.ChatBot.dto.chat;
 import com.example.ChatBot.model.MessageType;
 import lombok.Data;
 
+import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -32,4 +33,12 @@ public class ChatMessageRequest implements Serializable {
     private String replyToId;
     private String replyToContent;
     private String replyToSender;
+
+    /** Body for the POLL, CONTACT and EVENT types. */
+    @Valid
+    private PollPayload poll;
+    @Valid
+    private ContactPayload contact;
+    @Valid
+    private EventPayload event;
 }
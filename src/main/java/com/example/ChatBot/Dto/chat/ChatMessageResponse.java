@@ -19,7 +19,7 @@ import java.io.Serializable;
 @AllArgsConstructor
 public class ChatMessageResponse implements Serializable {
 
-    /** Server-assigned message id (only for persisted CHAT/FILE messages). */
+    /** Server-assigned message id (only for persisted messages). */
     private String id;
 
     private MessageType type;
@@ -32,8 +32,20 @@ public class ChatMessageResponse implements Serializable {
     private String fileContent;
     private String fileType;
 
+    /** Attachment store reference for FILE messages; replaces inline fileContent. */
+    private String attachmentId;
+    private Long fileSize;
+
     /** Reply-to fields (only present when replying to a message). */
     private String replyToId;
     private String replyToContent;
     private String replyToSender;
+
+    /** Typed bodies for POLL, CONTACT and EVENT messages. */
+    private PollPayload poll;
+    private ContactPayload contact;
+    private EventPayload event;
+
+    /** Updated counts (only present for POLL_VOTE type). */
+    private PollVotePayload vote;
 }
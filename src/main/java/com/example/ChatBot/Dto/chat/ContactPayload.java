@@ -0,0 +1,28 @@
+package com.example.ChatBot.dto.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+
+/**
+ * Body of a CONTACT message.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactPayload implements Serializable {
+
+    @NotBlank(message = "Contact name is required")
+    @Size(max = 100, message = "Contact name must not exceed 100 characters")
+    private String name;
+
+    @NotBlank(message = "Contact phone is required")
+    @Size(max = 30, message = "Contact phone must not exceed 30 characters")
+    private String phone;
+}
@@ -0,0 +1,35 @@
+package com.example.ChatBot.dto.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+
+/**
+ * Body of an EVENT message. Date and time are kept as the client entered them
+ * (yyyy-MM-dd and HH:mm).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventPayload implements Serializable {
+
+    @NotBlank(message = "Event title is required")
+    @Size(max = 200, message = "Event title must not exceed 200 characters")
+    private String title;
+
+    @NotBlank(message = "Event date is required")
+    @Size(max = 20)
+    private String date;
+
+    @Size(max = 20)
+    private String time;
+
+    @Size(max = 200, message = "Event location must not exceed 200 characters")
+    private String location;
+}
@@ -28,6 +28,10 @@ public class FileMessageRequest implements Serializable {
     @Size(max = 100, message = "File type must not exceed 100 characters")
     private String fileType;
 
+    /** Id returned by POST /api/attachments; preferred over inline fileContent. */
+    @Size(max = 64, message = "Attachment id must not exceed 64 characters")
+    private String attachmentId;
+
     /** Conversation id for 1:1 or group chats. */
     private String conversationId;
 }
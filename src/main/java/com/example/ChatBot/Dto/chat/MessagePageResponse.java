@@ -0,0 +1,32 @@
+package com.example.ChatBot.dto.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of conversation history (oldest first) with opaque continuation
+ * tokens. Pass {@code before} back to scroll further into the past and
+ * {@code after} to fetch messages newer than this page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageResponse implements Serializable {
+
+    private List<ChatMessageResponse> messages;
+
+    /** Cursor of the oldest message in the page, or null if the page is empty. */
+    private String before;
+
+    /** Cursor of the newest message in the page, or null if the page is empty. */
+    private String after;
+
+    /** Whether more messages exist beyond this page in the requested direction. */
+    private boolean hasMore;
+}
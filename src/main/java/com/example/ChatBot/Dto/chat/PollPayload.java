@@ -0,0 +1,42 @@
+package com.example.ChatBot.dto.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Body of a POLL message. Question and options are what the sender wrote;
+ * counts and myVote are filled in by the server when the poll is read.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PollPayload implements Serializable {
+
+    @NotBlank(message = "Poll question is required")
+    @Size(max = 300, message = "Poll question must not exceed 300 characters")
+    private String question;
+
+    @NotNull(message = "Poll options are required")
+    @Size(min = 2, max = 12, message = "A poll needs between 2 and 12 options")
+    private List<@NotBlank @Size(max = 100) String> options;
+
+    /** Votes per option, same order as options. */
+    private List<Long> counts;
+
+    /** Option the requesting user voted for, or null. */
+    private Integer myVote;
+
+    /** Copy holding only what is stored with the message. */
+    public PollPayload withoutTally() {
+        return PollPayload.builder().question(question).options(options).build();
+    }
+}
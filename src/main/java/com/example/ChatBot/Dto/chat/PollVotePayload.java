@@ -0,0 +1,27 @@
+package com.example.ChatBot.dto.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Result of a vote, pushed to the conversation as a POLL_VOTE message so
+ * clients can update the poll in place.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PollVotePayload implements Serializable {
+
+    private String pollMessageId;
+    private String voter;
+    private int optionIndex;
+
+    /** Votes per option after this vote. */
+    private List<Long> counts;
+}
@@ -0,0 +1,18 @@
+package com.example.ChatBot.dto.chat;
+
+import lombok.Data;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * REST request DTO for POST /api/conversations/:id/polls/:pollId/votes.
+ */
+@Data
+public class PollVoteRequest implements Serializable {
+
+    @NotNull(message = "Option index is required")
+    @Min(value = 0, message = "Option index must not be negative")
+    private Integer optionIndex;
+}
@@ -1,7 +1,9 @@
 package com.example.ChatBot.dto.chat;
 
+import com.example.ChatBot.model.MessageType;
 import lombok.Data;
 
+import javax.validation.Valid;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
 
@@ -13,6 +15,9 @@ import java.io.Serializable;
 @Data
 public class SendMessageRequest implements Serializable {
 
+    /** CHAT (default), POLL, CONTACT or EVENT; FILE is inferred from the file fields. */
+    private MessageType type;
+
     @Size(max = 2000, message = "Content must not exceed 2000 characters")
     private String content;
 
@@ -22,8 +27,20 @@ public class SendMessageRequest implements Serializable {
     @Size(max = 100, message = "File type must not exceed 100 characters")
     private String fileType;
 
+    /** Id returned by POST /api/attachments; preferred over inline fileContent. */
+    @Size(max = 64, message = "Attachment id must not exceed 64 characters")
+    private String attachmentId;
+
     /** For reply-to-message feature */
     private String replyToId;
     private String replyToContent;
     private String replyToSender;
+
+    /** Body for the POLL, CONTACT and EVENT types. */
+    @Valid
+    private PollPayload poll;
+    @Valid
+    private ContactPayload contact;
+    @Valid
+    private EventPayload event;
 }
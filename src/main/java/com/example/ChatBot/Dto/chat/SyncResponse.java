@@ -0,0 +1,48 @@
+package com.example.ChatBot.dto.chat;
+
+import com.example.ChatBot.model.GroupDocument;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Changes since a client's high-water mark, returned by GET /api/sync.
+ * Windows overlap slightly, so clients de-duplicate messages by id.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncResponse implements Serializable {
+
+    /** New messages (oldest first); file payloads are omitted as in history pages. */
+    private List<ChatMessageResponse> messages;
+
+    /** Conversations whose preview, timestamps or read state changed. */
+    private List<ConversationResponse> conversations;
+
+    /** Groups with new activity. */
+    private List<GroupDocument> groups;
+
+    /** Current counts of polls that received votes. */
+    private List<PollVotePayload> pollTallies;
+
+    private List<String> deletedMessageIds;
+    private List<String> deletedConversationIds;
+
+    /** Pass back as {@code since} on the next sync. */
+    private long highWaterMark;
+
+    /** More messages are pending; sync again right away with the same mark and {@link #cursor}. */
+    private boolean hasMore;
+
+    /** Where the next page of messages starts; set only when {@link #hasMore}. */
+    private String cursor;
+
+    /** The mark is older than tombstone retention; reload lists from scratch. */
+    private boolean fullResyncRequired;
+}
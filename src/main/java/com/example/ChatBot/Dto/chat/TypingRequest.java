@@ -19,4 +19,7 @@ public class TypingRequest implements Serializable {
 
     /** Conversation id — if null, falls back to broadcast. */
     private String conversationId;
+
+    /** False when the user stopped typing; null or true while typing. */
+    private Boolean typing;
 }
@@ -0,0 +1,20 @@
+package com.example.ChatBot.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Response DTO for a user's presence.
+ */
+@Data
+@AllArgsConstructor
+public class PresenceResponse implements Serializable {
+
+    private String mobile;
+    private boolean online;
+
+    /** Epoch millis; null if the user has never connected. */
+    private Long lastSeenAt;
+}
@@ -0,0 +1,28 @@
+package com.example.ChatBot.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Presence changes of a user's contacts, pushed to /user/queue/presence.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceUpdate implements Serializable {
+
+    /** Contacts that came online (for a snapshot: every contact that is online). */
+    private List<String> online;
+
+    /** Contacts that went offline; empty in a snapshot. */
+    private List<String> offline;
+
+    /** True for the first message after subscribing: replace, don't merge. */
+    private boolean snapshot;
+}
@@ -1,6 +1,7 @@
 package com.example.ChatBot.dto.user;
 
-import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.service.ProfilePictureService;
+import com.example.ChatBot.service.UserDirectory.UserSummary;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -16,14 +17,16 @@ public class UserProfileResponse implements Serializable {
     private String mobile;
     private String displayName;
     private String bio;
+    /** Picture URL at the requested thumbnail size, or "" when there is none. */
     private String profilePicture;
 
-    public static UserProfileResponse from(UserDocument user) {
+    public static UserProfileResponse from(UserSummary user, int pictureSize) {
         UserProfileResponse dto = new UserProfileResponse();
         dto.setMobile(user.getMobile());
-        dto.setDisplayName(user.getDisplayName() != null ? user.getDisplayName() : user.getMobile());
+        dto.setDisplayName(user.getDisplayNameOrMobile());
         dto.setBio(user.getBio() != null ? user.getBio() : "");
-        dto.setProfilePicture(user.getProfilePicture() != null ? user.getProfilePicture() : "");
+        String picture = ProfilePictureService.pictureUrl(user, pictureSize);
+        dto.setProfilePicture(picture != null ? picture : "");
         return dto;
     }
 }
@@ -1,6 +1,8 @@
 package com.example.ChatBot.dto.user;
 
 import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.service.ProfilePictureService;
+import com.example.ChatBot.service.UserDirectory.UserSummary;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -17,6 +19,7 @@ public class UserResponse implements Serializable {
     private String displayName;
     private long createdAt;
     private String bio;
+    /** Picture URL at the default thumbnail size, or null. */
     private String profilePicture;
 
     public static UserResponse from(UserDocument user) {
@@ -26,7 +29,18 @@ public class UserResponse implements Serializable {
         dto.setDisplayName(user.getDisplayName());
         dto.setCreatedAt(user.getCreatedAt());
         dto.setBio(user.getBio());
-        dto.setProfilePicture(user.getProfilePicture());
+        dto.setProfilePicture(ProfilePictureService.pictureUrl(user, ProfilePictureService.DEFAULT_SIZE));
+        return dto;
+    }
+
+    public static UserResponse from(UserSummary user) {
+        UserResponse dto = new UserResponse();
+        dto.setId(user.getId());
+        dto.setMobile(user.getMobile());
+        dto.setDisplayName(user.getDisplayName());
+        dto.setCreatedAt(user.getCreatedAt());
+        dto.setBio(user.getBio());
+        dto.setProfilePicture(ProfilePictureService.pictureUrl(user, ProfilePictureService.DEFAULT_SIZE));
         return dto;
     }
 }
@@ -0,0 +1,18 @@
+package com.example.ChatBot.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Pub/sub transport between application nodes. Implementations deliver every
+ * published message to the listeners of all other nodes, asynchronously and
+ * at most once; receivers filter with {@link ClusterMessage#isFor(String)}.
+ */
+public interface ClusterBus {
+
+    /** Identifier of this node, unique within the cluster. */
+    String getNodeId();
+
+    void publish(ClusterMessage message);
+
+    void subscribe(Consumer<ClusterMessage> listener);
+}
@@ -0,0 +1,100 @@
+package com.example.ChatBot.cluster;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Envelope exchanged between nodes over a {@link ClusterBus}: a broker frame
+ * to deliver to local sessions, a user-registry update, or keys to drop from a
+ * node-local cache.
+ */
+public final class ClusterMessage {
+
+    public enum Type {
+        /** A message for a /topic or /user destination. */
+        FRAME,
+        /** Full list of users connected to the origin node. */
+        USERS_SNAPSHOT,
+        USER_ONLINE,
+        USER_OFFLINE,
+        /** Keys (in users) to drop from the node-local cache named by the destination. */
+        INVALIDATE
+    }
+
+    private final Type type;
+    private final String origin;
+    private final String target;
+    private final String destination;
+    private final String contentType;
+    private final Map<String, String> headers;
+    private final byte[] payload;
+    private final Set<String> users;
+
+    public ClusterMessage(Type type, String origin, String target, String destination, String contentType,
+            Map<String, String> headers, byte[] payload, Set<String> users) {
+        this.type = type;
+        this.origin = origin;
+        this.target = target;
+        this.destination = destination;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.payload = payload;
+        this.users = users;
+    }
+
+    /**
+     * @param target  node to deliver to, or null for every node
+     * @param headers native STOMP headers of the frame, or null
+     */
+    public static ClusterMessage frame(String origin, String target, String destination, String contentType,
+            Map<String, String> headers, byte[] payload) {
+        return new ClusterMessage(Type.FRAME, origin, target, destination, contentType, headers, payload, null);
+    }
+
+    public static ClusterMessage users(Type type, String origin, Set<String> users) {
+        return new ClusterMessage(type, origin, null, null, null, null, null, users);
+    }
+
+    public static ClusterMessage invalidate(String origin, String cache, Set<String> keys) {
+        return new ClusterMessage(Type.INVALIDATE, origin, null, cache, null, null, null, keys);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    /** Node the message is addressed to; null means every node. */
+    public String getTarget() {
+        return target;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** Native STOMP headers of a frame (first value of each); null if it had none. */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public Set<String> getUsers() {
+        return users;
+    }
+
+    /** Whether a node should act on this message. */
+    public boolean isFor(String nodeId) {
+        return !nodeId.equals(origin) && (target == null || target.equals(nodeId));
+    }
+}
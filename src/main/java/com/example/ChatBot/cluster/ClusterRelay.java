@@ -0,0 +1,132 @@
+package com.example.ChatBot.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.util.MimeType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Broker-channel interceptor that carries messages across nodes.
+ * Messages sent on this node to /topic destinations are broadcast to every
+ * other node; messages to /user/{name}/... go only to the nodes the
+ * {@link ClusterUserRegistry} lists for that user. Each node then delivers
+ * them through its own broker to its local sessions.
+ */
+@Slf4j
+public class ClusterRelay implements ChannelInterceptor {
+
+    /** Marks messages that arrived from another node so they are not relayed again. */
+    public static final String ORIGIN_HEADER = "clusterOrigin";
+
+    private static final String USER_PREFIX = "/user/";
+    private static final String TOPIC_PREFIX = "/topic/";
+
+    private final ClusterBus bus;
+    private final ClusterUserRegistry registry;
+    private final Supplier<SimpMessageSendingOperations> localBroker;
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    /**
+     * @param localBroker template sending to this node's broker channel; looked
+     *                    up lazily because it is created after the interceptor
+     */
+    public ClusterRelay(ClusterBus bus, ClusterUserRegistry registry,
+            Supplier<SimpMessageSendingOperations> localBroker) {
+        this.bus = bus;
+        this.registry = registry;
+        this.localBroker = localBroker;
+        bus.subscribe(this::onClusterMessage);
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (headers.containsKey(ORIGIN_HEADER) || !(message.getPayload() instanceof byte[])
+                || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE)
+            return message;
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null)
+            return message;
+
+        byte[] payload = (byte[]) message.getPayload();
+        MimeType contentType = headers.get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        String type = contentType != null ? contentType.toString() : null;
+        Map<String, String> nativeHeaders = nativeHeadersOf(headers);
+        String origin = bus.getNodeId();
+
+        if (destination.startsWith(USER_PREFIX)) {
+            int end = destination.indexOf('/', USER_PREFIX.length());
+            if (end < 0)
+                return message;
+            String user = destination.substring(USER_PREFIX.length(), end);
+            for (String node : registry.remoteNodesFor(user)) {
+                bus.publish(ClusterMessage.frame(origin, node, destination, type, nativeHeaders, payload));
+                relayed.increment();
+            }
+        } else if (destination.startsWith(TOPIC_PREFIX) && registry.hasRemoteNodes()) {
+            bus.publish(ClusterMessage.frame(origin, null, destination, type, nativeHeaders, payload));
+            relayed.increment();
+        }
+        return message;
+    }
+
+    public long getRelayedCount() {
+        return relayed.sum();
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    private void onClusterMessage(ClusterMessage message) {
+        if (message.getType() != ClusterMessage.Type.FRAME || !message.isFor(bus.getNodeId()))
+            return;
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        if (message.getContentType() != null) {
+            accessor.setContentType(MimeType.valueOf(message.getContentType()));
+        }
+        if (message.getHeaders() != null) {
+            message.getHeaders().forEach(accessor::setNativeHeader);
+        }
+        accessor.setHeader(ORIGIN_HEADER, message.getOrigin());
+        accessor.setLeaveMutable(true);
+        try {
+            localBroker.get().send(message.getDestination(),
+                    MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders()));
+            received.increment();
+        } catch (RuntimeException e) {
+            log.warn("Failed to deliver relayed message to {}", message.getDestination(), e);
+        }
+    }
+
+    /** First value of each native header, so frame markers such as the typing/read ones survive the hop. */
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> nativeHeadersOf(MessageHeaders headers) {
+        Map<String, List<String>> nativeHeaders = (Map<String, List<String>>) headers
+                .get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        if (nativeHeaders == null || nativeHeaders.isEmpty())
+            return null;
+        Map<String, String> first = new HashMap<>();
+        nativeHeaders.forEach((name, values) -> {
+            if (values != null && !values.isEmpty()) {
+                first.put(name, values.get(0));
+            }
+        });
+        return first;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.ChatBot.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Which node holds sessions for which user. Local sessions are counted from
+ * connect/disconnect events and announced to other nodes as deltas; a full
+ * snapshot is broadcast periodically to repair lost deltas, and a node that
+ * stops broadcasting is forgotten after three intervals.
+ */
+@Slf4j
+public class ClusterUserRegistry {
+
+    private static final class RemoteNode {
+        private final Set<String> users = ConcurrentHashMap.newKeySet();
+        private volatile long seenAt;
+    }
+
+    private final ClusterBus bus;
+    private final long snapshotIntervalMs;
+    private final Map<String, Integer> localSessions = new ConcurrentHashMap<>();
+    private final Map<String, RemoteNode> remoteNodes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public ClusterUserRegistry(ClusterBus bus, long snapshotIntervalMs) {
+        this.bus = bus;
+        this.snapshotIntervalMs = Math.max(100, snapshotIntervalMs);
+        bus.subscribe(this::onClusterMessage);
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cluster-registry");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::broadcastSnapshot, 0, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        // Let the other nodes drop us right away instead of waiting for expiry
+        bus.publish(ClusterMessage.users(ClusterMessage.Type.USERS_SNAPSHOT, bus.getNodeId(), Set.of()));
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String user = userOf(StompHeaderAccessor.wrap(event.getMessage()).getUser());
+        if (user != null) {
+            sessionOpened(user);
+        }
+    }
+
+    @EventListener
+    public void onDisconnected(SessionDisconnectEvent event) {
+        String user = userOf(StompHeaderAccessor.wrap(event.getMessage()).getUser());
+        if (user != null) {
+            sessionClosed(user);
+        }
+    }
+
+    void sessionOpened(String user) {
+        if (localSessions.merge(user, 1, Integer::sum) == 1) {
+            bus.publish(ClusterMessage.users(ClusterMessage.Type.USER_ONLINE, bus.getNodeId(), Set.of(user)));
+        }
+    }
+
+    void sessionClosed(String user) {
+        if (localSessions.computeIfPresent(user, (u, count) -> count > 1 ? count - 1 : null) == null) {
+            bus.publish(ClusterMessage.users(ClusterMessage.Type.USER_OFFLINE, bus.getNodeId(), Set.of(user)));
+        }
+    }
+
+    /** Other nodes that currently hold at least one session for the user. */
+    public List<String> remoteNodesFor(String user) {
+        long cutoff = System.currentTimeMillis() - 3 * snapshotIntervalMs;
+        List<String> nodes = new ArrayList<>(1);
+        for (Map.Entry<String, RemoteNode> entry : remoteNodes.entrySet()) {
+            RemoteNode node = entry.getValue();
+            if (node.seenAt >= cutoff && node.users.contains(user)) {
+                nodes.add(entry.getKey());
+            }
+        }
+        return nodes;
+    }
+
+    public boolean hasRemoteNodes() {
+        long cutoff = System.currentTimeMillis() - 3 * snapshotIntervalMs;
+        for (RemoteNode node : remoteNodes.values()) {
+            if (node.seenAt >= cutoff)
+                return true;
+        }
+        return false;
+    }
+
+    public boolean isLocal(String user) {
+        return localSessions.containsKey(user);
+    }
+
+    private void broadcastSnapshot() {
+        try {
+            bus.publish(ClusterMessage.users(ClusterMessage.Type.USERS_SNAPSHOT, bus.getNodeId(),
+                    Set.copyOf(localSessions.keySet())));
+            long cutoff = System.currentTimeMillis() - 3 * snapshotIntervalMs;
+            remoteNodes.values().removeIf(node -> node.seenAt < cutoff);
+        } catch (RuntimeException e) {
+            log.warn("Registry snapshot failed", e);
+        }
+    }
+
+    private void onClusterMessage(ClusterMessage message) {
+        if (message.getType() == ClusterMessage.Type.FRAME || message.getType() == ClusterMessage.Type.INVALIDATE
+                || !message.isFor(bus.getNodeId()))
+            return;
+        RemoteNode node = remoteNodes.computeIfAbsent(message.getOrigin(), id -> new RemoteNode());
+        node.seenAt = System.currentTimeMillis();
+        switch (message.getType()) {
+            case USERS_SNAPSHOT:
+                node.users.retainAll(message.getUsers());
+                node.users.addAll(message.getUsers());
+                if (message.getUsers().isEmpty()) {
+                    remoteNodes.remove(message.getOrigin());
+                }
+                break;
+            case USER_ONLINE:
+                node.users.addAll(message.getUsers());
+                break;
+            case USER_OFFLINE:
+                node.users.removeAll(message.getUsers());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String userOf(Principal principal) {
+        if (principal == null || "anonymous".equals(principal.getName()))
+            return null;
+        return principal.getName();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.ChatBot.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM bus. Nodes sharing a {@link Hub} see each other's messages, which
+ * lets tests run several nodes in one process; a node with its own hub is a
+ * single-node cluster. Each node delivers on its own thread, like a network
+ * transport would.
+ */
+@Slf4j
+public class LocalClusterBus implements ClusterBus {
+
+    /** The set of nodes that can reach each other. */
+    public static final class Hub {
+        private final List<LocalClusterBus> nodes = new CopyOnWriteArrayList<>();
+    }
+
+    private final String nodeId;
+    private final Hub hub;
+    private final List<Consumer<ClusterMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService delivery;
+
+    public LocalClusterBus(String nodeId) {
+        this(nodeId, new Hub());
+    }
+
+    public LocalClusterBus(String nodeId, Hub hub) {
+        this.nodeId = nodeId;
+        this.hub = hub;
+        this.delivery = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "cluster-bus-" + nodeId);
+            t.setDaemon(true);
+            return t;
+        });
+        hub.nodes.add(this);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(ClusterMessage message) {
+        for (LocalClusterBus node : hub.nodes) {
+            if (node != this) {
+                node.enqueue(message);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterMessage> listener) {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        hub.nodes.remove(this);
+        delivery.shutdownNow();
+    }
+
+    private void enqueue(ClusterMessage message) {
+        try {
+            delivery.execute(() -> {
+                for (Consumer<ClusterMessage> listener : listeners) {
+                    try {
+                        listener.accept(message);
+                    } catch (RuntimeException e) {
+                        log.warn("Cluster listener failed on node {}", nodeId, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Node is shutting down
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.ChatBot.cluster;
+
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Bus over a capped Mongo collection: nodes insert messages and follow the
+ * collection with a tailable cursor. Needs nothing beyond the MongoDB the app
+ * already uses (no replica set, no extra broker); every cross-node frame costs
+ * one insert, so a dedicated broker is the better fit at high fan-out.
+ */
+@Slf4j
+public class MongoClusterBus implements ClusterBus {
+
+    /** Tolerated clock skew between nodes when resuming the cursor. */
+    private static final long RESUME_SKEW_MS = 5000;
+    private static final int RECENT_IDS = 10_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final String collectionName;
+    private final long cappedBytes;
+    private final String nodeId;
+    private final List<Consumer<ClusterMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService publisher;
+    private final Map<ObjectId, Boolean> recentIds = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ObjectId, Boolean> eldest) {
+            return size() > RECENT_IDS;
+        }
+    };
+
+    private volatile boolean running;
+    private volatile MongoCursor<Document> cursor;
+    private Thread reader;
+    private long resumeFrom;
+
+    public MongoClusterBus(MongoTemplate mongoTemplate, String collectionName, long cappedBytes, String nodeId) {
+        this.mongoTemplate = mongoTemplate;
+        this.collectionName = collectionName;
+        this.cappedBytes = cappedBytes;
+        this.nodeId = nodeId;
+        this.publisher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "cluster-bus-publisher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    void start() {
+        if (!mongoTemplate.collectionExists(collectionName)) {
+            try {
+                mongoTemplate.createCollection(collectionName, CollectionOptions.empty().capped().size(cappedBytes));
+            } catch (DataAccessException e) {
+                log.debug("Cluster bus collection {} created concurrently", collectionName);
+            }
+        }
+        // A tailable cursor on an empty capped collection is closed immediately
+        mongoTemplate.getCollection(collectionName)
+                .insertOne(new Document("t", "MARKER").append("o", nodeId).append("ts", System.currentTimeMillis()));
+        resumeFrom = System.currentTimeMillis() - RESUME_SKEW_MS;
+        running = true;
+        reader = new Thread(this::follow, "cluster-bus-reader");
+        reader.setDaemon(true);
+        reader.start();
+        log.info("Cluster bus started on node {} (collection {})", nodeId, collectionName);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        publisher.shutdown();
+        MongoCursor<Document> current = cursor;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (RuntimeException ignored) {
+                // Reader is exiting anyway
+            }
+        }
+        if (reader != null) {
+            reader.interrupt();
+        }
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /** Inserts on a single publisher thread, so callers never wait on Mongo and order is kept. */
+    @Override
+    public void publish(ClusterMessage message) {
+        Document doc = toDocument(message);
+        try {
+            publisher.execute(() -> {
+                try {
+                    mongoTemplate.getCollection(collectionName).insertOne(doc);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to publish {} to cluster bus", message.getType(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterMessage> listener) {
+        listeners.add(listener);
+    }
+
+    private void follow() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(collectionName);
+        while (running) {
+            try (MongoCursor<Document> tail = collection.find(Filters.gte("ts", resumeFrom))
+                    .cursorType(CursorType.TailableAwait)
+                    .noCursorTimeout(true)
+                    .iterator()) {
+                cursor = tail;
+                while (running && tail.hasNext()) {
+                    Document doc = tail.next();
+                    resumeFrom = Math.max(resumeFrom, doc.getLong("ts") - RESUME_SKEW_MS);
+                    // Resuming overlaps the previous cursor; skip what was already seen
+                    if (recentIds.put(doc.getObjectId("_id"), Boolean.TRUE) != null || nodeId.equals(doc.getString("o")))
+                        continue;
+                    ClusterMessage message = fromDocument(doc);
+                    if (message != null) {
+                        dispatch(message);
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (running) {
+                    log.warn("Cluster bus cursor failed, reopening", e);
+                    sleepQuietly();
+                }
+            }
+        }
+    }
+
+    private void dispatch(ClusterMessage message) {
+        for (Consumer<ClusterMessage> listener : listeners) {
+            try {
+                listener.accept(message);
+            } catch (RuntimeException e) {
+                log.warn("Cluster listener failed", e);
+            }
+        }
+    }
+
+    private static Document toDocument(ClusterMessage message) {
+        Document doc = new Document("t", message.getType().name())
+                .append("o", message.getOrigin())
+                .append("ts", System.currentTimeMillis());
+        if (message.getTarget() != null)
+            doc.append("n", message.getTarget());
+        if (message.getDestination() != null)
+            doc.append("d", message.getDestination());
+        if (message.getContentType() != null)
+            doc.append("c", message.getContentType());
+        if (message.getHeaders() != null)
+            doc.append("h", new Document(new LinkedHashMap<String, Object>(message.getHeaders())));
+        if (message.getPayload() != null)
+            doc.append("p", new Binary(message.getPayload()));
+        if (message.getUsers() != null)
+            doc.append("u", List.copyOf(message.getUsers()));
+        return doc;
+    }
+
+    private static ClusterMessage fromDocument(Document doc) {
+        ClusterMessage.Type type;
+        try {
+            type = ClusterMessage.Type.valueOf(doc.getString("t"));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+        Binary payload = doc.get("p", Binary.class);
+        List<String> users = doc.getList("u", String.class);
+        Document headerDoc = doc.get("h", Document.class);
+        Map<String, String> headers = null;
+        if (headerDoc != null) {
+            headers = new HashMap<>();
+            for (Map.Entry<String, Object> header : headerDoc.entrySet()) {
+                headers.put(header.getKey(), String.valueOf(header.getValue()));
+            }
+        }
+        return new ClusterMessage(type, doc.getString("o"), doc.getString("n"), doc.getString("d"),
+                doc.getString("c"), headers, payload != null ? payload.getData() : null,
+                users != null ? new HashSet<>(users) : null);
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
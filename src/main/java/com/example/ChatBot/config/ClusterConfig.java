@@ -0,0 +1,58 @@
+package com.example.ChatBot.config;
+
+import com.example.ChatBot.cluster.ClusterBus;
+import com.example.ChatBot.cluster.ClusterRelay;
+import com.example.ChatBot.cluster.ClusterUserRegistry;
+import com.example.ChatBot.cluster.LocalClusterBus;
+import com.example.ChatBot.cluster.MongoClusterBus;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.UUID;
+
+/**
+ * Cross-node delivery, enabled with chat.broker.mode=cluster. Each node keeps
+ * its in-memory broker for its own sessions; {@link ClusterRelay} forwards
+ * messages to the nodes holding the recipients over a {@link ClusterBus}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "cluster")
+public class ClusterConfig {
+
+    private final String nodeId;
+
+    public ClusterConfig(@Value("${chat.cluster.node-id:${HOSTNAME:}}") String nodeId) {
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.cluster.bus", havingValue = "mongo", matchIfMissing = true)
+    public ClusterBus mongoClusterBus(MongoTemplate mongoTemplate,
+            @Value("${chat.cluster.mongo.collection:cluster_bus}") String collection,
+            @Value("${chat.cluster.mongo.capped-bytes:67108864}") long cappedBytes) {
+        return new MongoClusterBus(mongoTemplate, collection, cappedBytes, nodeId);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.cluster.bus", havingValue = "local")
+    public ClusterBus localClusterBus() {
+        return new LocalClusterBus(nodeId);
+    }
+
+    @Bean
+    public ClusterUserRegistry clusterUserRegistry(ClusterBus bus,
+            @Value("${chat.cluster.registry-interval-ms:5000}") long intervalMs) {
+        return new ClusterUserRegistry(bus, intervalMs);
+    }
+
+    @Bean
+    public ClusterRelay clusterRelay(ClusterBus bus, ClusterUserRegistry registry,
+            ObjectProvider<SimpMessagingTemplate> messagingTemplate) {
+        return new ClusterRelay(bus, registry, messagingTemplate::getObject);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.ChatBot.config;
+
+import com.example.ChatBot.cluster.ClusterRelay;
+import com.example.ChatBot.service.GroupFanoutService;
+import com.example.ChatBot.service.MessageWriteBehindQueue;
+import com.example.ChatBot.service.PresenceNotifier;
+import com.example.ChatBot.service.PresenceService;
+import com.example.ChatBot.service.TypingAggregator;
+import com.example.ChatBot.websocket.OutboundQueuePolicy;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer view of the chat pipeline. The components keep their own
+ * counters; this publishes them, together with the STOMP channel executors'
+ * queue depths, as meters. Per-operation timers are recorded where the work
+ * happens (ChatService, ConversationController), and Mongo latencies come from
+ * the actuator's driver command and repository invocation metrics.
+ * <p>
+ * Meters are bound once all singletons exist rather than through MeterBinder
+ * beans: the registry applies binders while it is being created, and these
+ * components depend (through the Mongo client and its pool metrics) on the
+ * registry.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public SmartInitializingSingleton chatPipelineMetrics(MeterRegistry registry,
+            MessageWriteBehindQueue writeBehind, TypingAggregator typing, OutboundQueuePolicy outbound,
+            GroupFanoutService fanout, PresenceService presence, PresenceNotifier presenceNotifier,
+            ObjectProvider<ClusterRelay> clusterRelay) {
+        return () -> {
+            counter(registry, "chat.persistence.persisted", writeBehind, MessageWriteBehindQueue::getPersistedCount,
+                    "Messages written to Mongo by the write-behind queue");
+            counter(registry, "chat.persistence.failed", writeBehind, MessageWriteBehindQueue::getFailedCount,
+                    "Messages the write-behind queue failed to write");
+            counter(registry, "chat.persistence.caller.runs", writeBehind, MessageWriteBehindQueue::getCallerRunsCount,
+                    "Messages written on the sender's thread because the buffer was full");
+            gauge(registry, "chat.persistence.pending", writeBehind, MessageWriteBehindQueue::getPendingCount,
+                    "Messages waiting in the write-behind buffer");
+
+            counter(registry, "chat.typing.forwarded", typing, TypingAggregator::getForwardedCount,
+                    "Typing events forwarded to recipients");
+            counter(registry, "chat.typing.coalesced", typing, TypingAggregator::getCoalescedCount,
+                    "Typing events suppressed by the per-conversation window");
+            counter(registry, "chat.typing.stop.unmatched", typing, TypingAggregator::getUnmatchedStopCount,
+                    "Typing stops ignored because the sender was not typing");
+            counter(registry, "chat.typing.undeliverable", typing, TypingAggregator::getUndeliverableCount,
+                    "Typing events without a recipient in the conversation");
+            counter(registry, "chat.typing.expired", typing, TypingAggregator::getExpiredCount,
+                    "Typing indicators cleared by the idle timeout");
+            gauge(registry, "chat.typing.active", typing, TypingAggregator::getActiveCount,
+                    "Senders currently typing");
+
+            counter(registry, "chat.ws.outbound.delivered", outbound, OutboundQueuePolicy::getDeliveredCount,
+                    "Frames written to client sockets");
+            counter(registry, "chat.ws.outbound.coalesced", outbound, OutboundQueuePolicy::getCoalescedCount,
+                    "TYPING/READ frames merged into a newer frame while queued");
+            counter(registry, "chat.ws.outbound.dropped", outbound, OutboundQueuePolicy::getDroppedEphemeralCount,
+                    "TYPING/READ frames shed because a session's queue was full");
+            counter(registry, "chat.ws.outbound.disconnected", outbound, OutboundQueuePolicy::getDisconnectedCount,
+                    "Sessions closed because they could not keep up");
+            gauge(registry, "chat.ws.outbound.queued", outbound, OutboundQueuePolicy::getQueuedCount,
+                    "Frames waiting across all session queues");
+
+            counter(registry, "chat.group.fanout.delivered", fanout, GroupFanoutService::getDeliveredCount,
+                    "Group messages pushed to online members");
+            counter(registry, "chat.group.fanout.skipped.offline", fanout, GroupFanoutService::getSkippedOfflineCount,
+                    "Group message pushes skipped because the member was offline");
+            counter(registry, "chat.group.fanout.batches", fanout, GroupFanoutService::getBatchCount,
+                    "Fan-out batches handed to the fan-out pool");
+
+            gauge(registry, "chat.presence.local.sessions", presence, PresenceService::getLocalSessionCount,
+                    "Signed-in sessions on this node");
+            counter(registry, "chat.presence.push.deltas", presenceNotifier, PresenceNotifier::getDeltasSentCount,
+                    "Presence changes pushed to contacts");
+            counter(registry, "chat.presence.push.snapshots", presenceNotifier,
+                    PresenceNotifier::getSnapshotsSentCount, "Presence snapshots pushed to new subscribers");
+
+            clusterRelay.ifAvailable(relay -> {
+                counter(registry, "chat.cluster.relayed", relay, ClusterRelay::getRelayedCount,
+                        "Messages forwarded to other nodes");
+                counter(registry, "chat.cluster.received", relay, ClusterRelay::getReceivedCount,
+                        "Messages received from other nodes");
+            });
+        };
+    }
+
+    /**
+     * Queue depth, active threads and completed tasks of the STOMP channels:
+     * inbound (client frames to controllers), outbound (broker to sessions) and
+     * broker.
+     */
+    @Bean
+    public SmartInitializingSingleton stompChannelMetrics(MeterRegistry registry,
+            @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inbound,
+            @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outbound,
+            @Qualifier("brokerChannelExecutor") ThreadPoolTaskExecutor broker) {
+        return () -> {
+            new ExecutorServiceMetrics(inbound.getThreadPoolExecutor(), "stomp.inbound", Tags.empty())
+                    .bindTo(registry);
+            new ExecutorServiceMetrics(outbound.getThreadPoolExecutor(), "stomp.outbound", Tags.empty())
+                    .bindTo(registry);
+            new ExecutorServiceMetrics(broker.getThreadPoolExecutor(), "stomp.broker", Tags.empty())
+                    .bindTo(registry);
+        };
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, T source, ToDoubleFunction<T> count,
+            String description) {
+        FunctionCounter.builder(name, source, count).description(description).register(registry);
+    }
+
+    private static <T> void gauge(MeterRegistry registry, String name, T source, ToDoubleFunction<T> value,
+            String description) {
+        Gauge.builder(name, source, value).description(description).register(registry);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.ChatBot.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} and
+ * {@code @CompoundIndex} on the documents. Spring Boot 2.7 leaves
+ * {@code spring.data.mongodb.auto-index-creation} off, so without this the
+ * annotations are documentation only: history pages sort in memory, and the
+ * TTL indexes that expire tombstones and dead presence sessions never exist.
+ * Runs before the server accepts requests; creating an index that already
+ * exists is a no-op. An index that cannot be built (say, a unique index over
+ * duplicate data) is logged and skipped rather than failing startup.
+ */
+@Slf4j
+@Configuration
+public class MongoIndexConfig {
+
+    @Bean
+    public SmartInitializingSingleton mongoIndexes(MongoTemplate mongoTemplate, MongoMappingContext mappingContext) {
+        return () -> {
+            IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+            // Copy: resolving indexes may register further (embedded) entities
+            List<MongoPersistentEntity<?>> entities = new ArrayList<>(mappingContext.getPersistentEntities());
+            for (MongoPersistentEntity<?> entity : entities) {
+                if (!entity.isAnnotationPresent(Document.class))
+                    continue;
+                IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+                for (IndexDefinition index : resolver.resolveIndexFor(entity.getTypeInformation())) {
+                    try {
+                        indexOps.ensureIndex(index);
+                    } catch (RuntimeException e) {
+                        log.warn("Could not create index {} on {}: {}", index.getIndexKeys(),
+                                entity.getCollection(), e.getMessage());
+                    }
+                }
+            }
+        };
+    }
+}
@@ -1,6 +1,9 @@
 // Java
 package com.example.ChatBot.config;
 
+import com.example.ChatBot.cluster.ClusterRelay;
+import com.example.ChatBot.websocket.OutboundQueuePolicy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
@@ -12,6 +15,14 @@ import org.springframework.context.annotation.Bean;
 @EnableWebSocketMessageBroker
 public class WebSocket implements WebSocketMessageBrokerConfigurer {
 
+    private final OutboundQueuePolicy outboundQueuePolicy;
+    private final ObjectProvider<ClusterRelay> clusterRelay;
+
+    public WebSocket(OutboundQueuePolicy outboundQueuePolicy, ObjectProvider<ClusterRelay> clusterRelay) {
+        this.outboundQueuePolicy = outboundQueuePolicy;
+        this.clusterRelay = clusterRelay;
+    }
+
     @Bean
     public ServletServerContainerFactoryBean createWebSocketContainer() {
         ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
@@ -43,12 +54,17 @@ public class WebSocket implements WebSocketMessageBrokerConfigurer {
         registry.setApplicationDestinationPrefixes("/app");
         registry.enableSimpleBroker("/topic", "/queue");
         registry.setUserDestinationPrefix("/user");
+        // chat.broker.mode=cluster: also forward to sessions held by other nodes
+        clusterRelay.ifAvailable(relay -> registry.configureBrokerChannel().interceptors(relay));
     }
 
     @Override
     public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
         registration.setMessageSizeLimit(10 * 1024 * 1024); // 10MB (to support 5MB files + base64 encoding)
+        // Outbound frames are queued per session by OutboundQueuePolicy, which enforces
+        // its own limits, so Spring's send buffer only ever holds the frame being written
         registration.setSendBufferSizeLimit(10 * 1024 * 1024); // 10MB
         registration.setSendTimeLimit(30 * 1000); // 30 seconds
+        registration.addDecoratorFactory(outboundQueuePolicy);
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.example.ChatBot.controller;
+
+import com.example.ChatBot.dto.attachment.AttachmentResponse;
+import com.example.ChatBot.service.AttachmentService;
+import com.example.ChatBot.service.ChatService;
+import com.example.ChatBot.service.MediaCacheService;
+import com.example.ChatBot.storage.StoredAttachment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/attachments")
+public class AttachmentController {
+
+    private final AttachmentService attachmentService;
+    private final MediaCacheService mediaCacheService;
+    private final ChatService chatService;
+
+    public AttachmentController(AttachmentService attachmentService, MediaCacheService mediaCacheService,
+            ChatService chatService) {
+        this.attachmentService = attachmentService;
+        this.mediaCacheService = mediaCacheService;
+        this.chatService = chatService;
+    }
+
+    /**
+     * POST /api/attachments?mobile=xxx (multipart, field "file")
+     * Streams the upload into the attachment store and returns its id, which is
+     * then sent as attachmentId in a FILE message.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> upload(@RequestParam String mobile, @RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+        }
+        try (InputStream in = file.getInputStream()) {
+            StoredAttachment stored = attachmentService.upload(in, file.getContentType());
+            log.debug("Attachment {} ({} bytes) uploaded by {}", stored.getId(), stored.getSize(), mobile);
+            return ResponseEntity.ok(AttachmentResponse.from(stored));
+        } catch (IOException e) {
+            log.error("Failed to store attachment from {}", mobile, e);
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to store attachment"));
+        }
+    }
+
+    /**
+     * GET /api/attachments/:id?mobile=xxx
+     * Serves the attachment from the local media cache with Range support, to
+     * participants of a conversation or group where it was sent. Content is
+     * addressed by its hash, so it can be cached forever, but only by the
+     * caller's browser.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Resource> download(@PathVariable String id, @RequestParam String mobile) {
+        if (!chatService.canAccessAttachment(id, mobile)) {
+            return ResponseEntity.notFound().build();
+        }
+        return mediaCacheService.forAttachment(id)
+                .map(media -> MediaResponses.of(media,
+                        CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -8,16 +8,28 @@ import com.example.ChatBot.model.UserDocument;
 import com.example.ChatBot.service.GoogleOAuthService;
 import com.example.ChatBot.service.JwtService;
 import com.example.ChatBot.service.UserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Signup and login return futures: the request thread is released while the
+ * password is hashed on the {@link com.example.ChatBot.service.PasswordHasher}
+ * pool, and a full pool answers 503 with Retry-After instead of queueing.
+ */
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
+    private static final String RETRY_AFTER_SECONDS = "2";
+
     private final UserService userService;
     private final JwtService jwtService;
     private final GoogleOAuthService googleOAuthService;
@@ -34,21 +46,15 @@ public class AuthController {
      * "secret123" }
      */
     @PostMapping("/signup")
-    public ResponseEntity<?> signup(@Valid @RequestBody SignupRequestDto signupRequestDto) {
-
+    public CompletableFuture<ResponseEntity<?>> signup(@Valid @RequestBody SignupRequestDto signupRequestDto) {
+        CompletableFuture<UserDocument> signedUp;
         try {
-            UserDocument user = userService.signup(signupRequestDto.getMobile(), signupRequestDto.getDisplayName(),
+            signedUp = userService.signup(signupRequestDto.getMobile(), signupRequestDto.getDisplayName(),
                     signupRequestDto.getPassword());
-
-            String token = jwtService.generate(user.getMobile());
-
-            AuthResponseDto authResponseDto = new AuthResponseDto();
-            authResponseDto.setToken(token);
-            authResponseDto.setUser(user);
-            return ResponseEntity.ok(authResponseDto);
         } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error", e.getMessage())));
         }
+        return signedUp.<ResponseEntity<?>>thenApply(this::authenticated).exceptionally(AuthController::busy);
     }
 
     /**
@@ -56,16 +62,13 @@ public class AuthController {
      * Body: { "mobile": "9876543210", "password": "secret123" }
      */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@Valid @RequestBody LoginDto loginDto) {
-        UserDocument user = userService.login(loginDto.getMobile(), loginDto.getPassword());
-        if (user == null) {
-            return ResponseEntity.status(401).body(Map.of("error", "Invalid mobile or password"));
-        }
-        String token = jwtService.generate(user.getMobile());
-        AuthResponseDto authResponseDto = new AuthResponseDto();
-        authResponseDto.setToken(token);
-        authResponseDto.setUser(user);
-        return ResponseEntity.ok(authResponseDto);
+    public CompletableFuture<ResponseEntity<?>> login(@Valid @RequestBody LoginDto loginDto) {
+        return userService.login(loginDto.getMobile(), loginDto.getPassword()).<ResponseEntity<?>>thenApply(user -> {
+            if (user == null) {
+                return ResponseEntity.status(401).body(Map.of("error", "Invalid mobile or password"));
+            }
+            return authenticated(user);
+        }).exceptionally(AuthController::busy);
     }
 
 
@@ -85,7 +88,10 @@ public class AuthController {
 
         UserDocument user = userService.findOrCreateGoogleUser(
                 info.getEmail(), info.getName(), info.getPictureUrl());
+        return authenticated(user);
+    }
 
+    private ResponseEntity<?> authenticated(UserDocument user) {
         String token = jwtService.generate(user.getMobile());
         AuthResponseDto authResponseDto = new AuthResponseDto();
         authResponseDto.setToken(token);
@@ -93,4 +99,24 @@ public class AuthController {
         return ResponseEntity.ok(authResponseDto);
     }
 
+    /**
+     * 503 when the hashing pool turned the request away, 400 when signup lost
+     * a race for the same number; any other failure propagates.
+     */
+    private static ResponseEntity<?> busy(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (cause instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(Map.of("error", cause.getMessage()));
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body(Map.of("error", "Too many sign-ins right now, please try again"));
+        }
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        throw new CompletionException(cause);
+    }
+
 }
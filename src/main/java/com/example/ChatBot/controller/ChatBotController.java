@@ -7,9 +7,12 @@ import com.example.ChatBot.dto.chat.ReadReceiptRequest;
 import com.example.ChatBot.dto.chat.TypingRequest;
 import com.example.ChatBot.dto.chat.UserJoinRequest;
 import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.service.AttachmentService;
 import com.example.ChatBot.service.ChatService;
 import com.example.ChatBot.service.ConversationService;
+import com.example.ChatBot.service.TypingAggregator;
 import com.example.ChatBot.util.InputSanitizer;
+import com.example.ChatBot.websocket.EphemeralHeaders;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -27,12 +30,17 @@ public class ChatBotController {
     private final ChatService chatService;
     private final ConversationService conversationService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final TypingAggregator typingAggregator;
+    private final AttachmentService attachmentService;
 
     public ChatBotController(ChatService chatService, ConversationService conversationService,
-            SimpMessagingTemplate messagingTemplate) {
+            SimpMessagingTemplate messagingTemplate, TypingAggregator typingAggregator,
+            AttachmentService attachmentService) {
         this.chatService = chatService;
         this.conversationService = conversationService;
         this.messagingTemplate = messagingTemplate;
+        this.typingAggregator = typingAggregator;
+        this.attachmentService = attachmentService;
     }
 
     @MessageMapping("/chat.sendMessage")
@@ -40,16 +48,24 @@ public class ChatBotController {
     public ChatMessageResponse sendMessage(@Payload @Valid ChatMessageRequest request) {
         log.info("Received message from {}: {}", request.getSender(), request.getContent());
 
+        MessageType type = request.getType();
         ChatMessageResponse response = ChatMessageResponse.builder()
-                .type(request.getType())
-                .content(request.getContent() != null && (request.getContent().startsWith("__POLL__") || request.getContent().startsWith("__POLL_VOTE__") || request.getContent().startsWith("__CONTACT__") || request.getContent().startsWith("__EVENT__")) ? request.getContent() : InputSanitizer.sanitize(request.getContent()))
+                .type(type)
+                .content(type == MessageType.CHAT ? InputSanitizer.sanitize(request.getContent()) : null)
                 .sender(request.getSender())
                 .conversationId(request.getConversationId())
                 .timestamp(System.currentTimeMillis())
                 .replyToId(request.getReplyToId())
                 .replyToContent(request.getReplyToContent())
                 .replyToSender(request.getReplyToSender())
+                .poll(type == MessageType.POLL ? request.getPoll() : null)
+                .contact(type == MessageType.CONTACT ? request.getContact() : null)
+                .event(type == MessageType.EVENT ? request.getEvent() : null)
                 .build();
+        if (!ChatService.hasRequiredPayload(response)) {
+            log.debug("Dropping {} message without its payload from {}", type, request.getSender());
+            return null;
+        }
 
         String savedId = chatService.saveIfPersistable(response);
         if (savedId != null) {
@@ -79,28 +95,8 @@ public class ChatBotController {
     @MessageMapping("/chat.typing")
     public void handleTyping(@Payload @Valid TypingRequest request) {
         log.debug("User typing: {} in conversation: {}", request.getSender(), request.getConversationId());
-
-        ChatMessageResponse response = ChatMessageResponse.builder()
-                .type(MessageType.TYPING)
-                .sender(request.getSender())
-                .conversationId(request.getConversationId())
-                .timestamp(System.currentTimeMillis())
-                .build();
-
-        if (request.getConversationId() != null) {
-            String convId = request.getConversationId();
-            String sender = request.getSender();
-
-            conversationService.listForUser(sender).stream()
-                    .filter(c -> c.getId().equals(convId))
-                    .findFirst()
-                    .ifPresent(conv -> {
-                        String otherMobile = conv.getOtherParticipant(sender);
-                        messagingTemplate.convertAndSendToUser(otherMobile, "/queue/messages", response);
-                    });
-        } else {
-            messagingTemplate.convertAndSend("/topic/public", response);
-        }
+        typingAggregator.onTyping(request.getSender(), request.getConversationId(),
+                !Boolean.FALSE.equals(request.getTyping()));
     }
 
     @MessageMapping("/chat.read")
@@ -122,7 +118,8 @@ public class ChatBotController {
                     .conversationId(convId)
                     .timestamp(System.currentTimeMillis())
                     .build();
-            messagingTemplate.convertAndSendToUser(otherMobile, "/queue/messages", response);
+            messagingTemplate.convertAndSendToUser(otherMobile, "/queue/messages", response,
+                    EphemeralHeaders.of(MessageType.READ, sender, convId));
         }
     }
 
@@ -137,8 +134,14 @@ public class ChatBotController {
                 .conversationId(request.getConversationId())
                 .fileContent(request.getFileContent())
                 .fileType(request.getFileType())
+                .attachmentId(request.getAttachmentId())
                 .timestamp(System.currentTimeMillis())
                 .build();
+        // Public-room files are neither stored nor tied to a conversation that
+        // could authorize a download, so they stay inline
+        if (response.getConversationId() != null) {
+            attachmentService.externalize(response);
+        }
 
         String savedId = chatService.saveIfPersistable(response);
         if (savedId != null) {
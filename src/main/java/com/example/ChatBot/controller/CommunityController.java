@@ -4,8 +4,8 @@ import com.example.ChatBot.dto.community.AddCommentRequest;
 import com.example.ChatBot.dto.community.CommunityPostResponse;
 import com.example.ChatBot.dto.community.CreatePostRequest;
 import com.example.ChatBot.model.CommunityPostDocument;
-import com.example.ChatBot.model.UserDocument;
 import com.example.ChatBot.repository.CommunityPostRepository;
+import com.example.ChatBot.service.UserDirectory;
 import com.example.ChatBot.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -41,7 +41,7 @@ public class CommunityController {
             return ResponseEntity.badRequest().build();
         }
 
-        UserDocument user = userService.findByMobile(mobile);
+        UserDirectory.UserSummary user = userService.findSummary(mobile);
         String userName = user != null && user.getDisplayName() != null ? user.getDisplayName() : mobile;
 
         CommunityPostDocument post = new CommunityPostDocument(mobile, userName, request.getContent());
@@ -102,7 +102,7 @@ public class CommunityController {
             return ResponseEntity.notFound().build();
         }
 
-        UserDocument user = userService.findByMobile(mobile);
+        UserDirectory.UserSummary user = userService.findSummary(mobile);
         String userName = user != null && user.getDisplayName() != null ? user.getDisplayName() : mobile;
 
         CommunityPostDocument post = opt.get();
@@ -3,16 +3,29 @@ package com.example.ChatBot.controller;
 import com.example.ChatBot.dto.chat.ChatMessageResponse;
 import com.example.ChatBot.dto.chat.ConversationResponse;
 import com.example.ChatBot.dto.chat.CreateConversationRequest;
+import com.example.ChatBot.dto.chat.MessagePageResponse;
+import com.example.ChatBot.dto.chat.PollVotePayload;
+import com.example.ChatBot.dto.chat.PollVoteRequest;
 import com.example.ChatBot.dto.chat.SendMessageRequest;
+import com.example.ChatBot.model.ChatMessageDocument;
 import com.example.ChatBot.model.ConversationDocument;
-import com.example.ChatBot.model.GroupDocument;
 import com.example.ChatBot.model.MessageType;
 import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.service.AttachmentService;
 import com.example.ChatBot.service.ChatService;
 import com.example.ChatBot.service.ConversationService;
+import com.example.ChatBot.service.GroupFanoutService;
 import com.example.ChatBot.service.GroupService;
+import com.example.ChatBot.service.MediaCacheService;
+import com.example.ChatBot.service.PollService;
+import com.example.ChatBot.service.UserDirectory;
 import com.example.ChatBot.service.UserService;
 import com.example.ChatBot.util.InputSanitizer;
+import com.example.ChatBot.websocket.EncodedMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
@@ -20,6 +33,8 @@ import org.springframework.web.bind.annotation.*;
 import javax.validation.Valid;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/conversations")
@@ -30,14 +45,35 @@ public class ConversationController {
     private final ChatService chatService;
     private final SimpMessagingTemplate messagingTemplate;
     private final GroupService groupService;
+    private final AttachmentService attachmentService;
+    private final MediaCacheService mediaCacheService;
+    private final GroupFanoutService groupFanoutService;
+    private final PollService pollService;
+    private final Timer groupDeliveryTimer;
+    private final Timer directDeliveryTimer;
 
     public ConversationController(ConversationService conversationService, UserService userService,
-            ChatService chatService, SimpMessagingTemplate messagingTemplate, GroupService groupService) {
+            ChatService chatService, SimpMessagingTemplate messagingTemplate, GroupService groupService,
+            AttachmentService attachmentService, MediaCacheService mediaCacheService,
+            GroupFanoutService groupFanoutService, PollService pollService, MeterRegistry meterRegistry) {
         this.conversationService = conversationService;
         this.userService = userService;
         this.chatService = chatService;
         this.messagingTemplate = messagingTemplate;
         this.groupService = groupService;
+        this.attachmentService = attachmentService;
+        this.mediaCacheService = mediaCacheService;
+        this.groupFanoutService = groupFanoutService;
+        this.pollService = pollService;
+        this.groupDeliveryTimer = deliveryTimer(meterRegistry, "group");
+        this.directDeliveryTimer = deliveryTimer(meterRegistry, "direct");
+    }
+
+    private static Timer deliveryTimer(MeterRegistry registry, String target) {
+        return Timer.builder("chat.messages.fanout")
+                .description("Time to push a sent message to its recipients (large groups continue in the background)")
+                .tag("target", target)
+                .register(registry);
     }
 
     /**
@@ -82,7 +118,7 @@ public class ConversationController {
             @RequestBody @Valid CreateConversationRequest request) {
         String other = request.getOtherUserMobile();
 
-        UserDocument otherUser = userService.findByMobile(other);
+        UserDirectory.UserSummary otherUser = userService.findSummary(other);
         if (otherUser == null) {
             return ResponseEntity.status(404)
                     .body(Map.of("error", "User not found with mobile number: " + other));
@@ -111,26 +147,28 @@ public class ConversationController {
      */
     @GetMapping("/{id}")
     public ResponseEntity<ConversationResponse> get(@PathVariable String id, @RequestParam String mobile) {
-        return conversationService.listForUser(mobile).stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst()
-                .map(conv -> {
-                    String otherMobile = conv.getOtherParticipant(mobile);
-                    UserDocument other = userService.findByMobile(otherMobile);
-
-                    ConversationResponse response = ConversationResponse.builder()
-                            .id(conv.getId())
-                            .otherParticipantMobile(otherMobile)
-                            .otherParticipantName(
-                                    other != null ? other.getDisplayName() : otherMobile)
-                            .lastMessageAt(conv.getLastMessageAt())
-                            .lastMessagePreview(conv.getLastMessagePreview())
-                            .otherLastReadAt(conv.getLastReadBy(otherMobile))
-                            .build();
-
-                    return ResponseEntity.ok(response);
-                })
-                .orElse(ResponseEntity.notFound().build());
+        if (!conversationService.isUserParticipant(id, mobile)) {
+            return ResponseEntity.notFound().build();
+        }
+        ConversationDocument conv = conversationService.getById(id);
+        if (conv == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String otherMobile = conv.getOtherParticipant(mobile);
+        UserDirectory.UserSummary other = userService.findSummary(otherMobile);
+
+        ConversationResponse response = ConversationResponse.builder()
+                .id(conv.getId())
+                .otherParticipantMobile(otherMobile)
+                .otherParticipantName(
+                        other != null ? other.getDisplayName() : otherMobile)
+                .lastMessageAt(conv.getLastMessageAt())
+                .lastMessagePreview(conv.getLastMessagePreview())
+                .otherLastReadAt(conv.getLastReadBy(otherMobile))
+                .build();
+
+        return ResponseEntity.ok(response);
     }
 
     /**
@@ -151,73 +189,208 @@ public class ConversationController {
         }
 
         List<ChatMessageResponse> messages = chatService.getMessagesByConversationId(id, limit);
+        pollService.attachTallies(messages, mobile);
         return ResponseEntity.ok(messages);
     }
 
+    /**
+     * GET /api/conversations/:id/messages/page?mobile=xxx&before=...&after=...&limit=50
+     * Cursor-paginated history (oldest first). Without a cursor returns the
+     * newest page; pass the returned "before" token to scroll back and "after"
+     * to catch up on newer messages.
+     */
+    @GetMapping("/{id}/messages/page")
+    public ResponseEntity<MessagePageResponse> getMessagePage(@PathVariable String id,
+            @RequestParam String mobile,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (limit > 100)
+            limit = 100;
+
+        if (!conversationService.isUserParticipant(id, mobile) && !groupService.isUserMember(id, mobile)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            MessagePageResponse page = chatService.getMessagePage(id, before, after, limit);
+            pollService.attachTallies(page.getMessages(), mobile);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * GET /api/conversations/:id/messages/:messageId?mobile=xxx
+     * A single message including its file payload, which history pages omit.
+     */
+    @GetMapping("/{id}/messages/{messageId}")
+    public ResponseEntity<ChatMessageResponse> getMessage(@PathVariable String id, @PathVariable String messageId,
+            @RequestParam String mobile) {
+        if (!conversationService.isUserParticipant(id, mobile) && !groupService.isUserMember(id, mobile)) {
+            return ResponseEntity.notFound().build();
+        }
+        ChatMessageDocument doc = chatService.findMessage(id, messageId);
+        if (doc == null) {
+            return ResponseEntity.notFound().build();
+        }
+        ChatMessageResponse message = doc.toResponse();
+        pollService.attachTallies(List.of(message), mobile);
+        return ResponseEntity.ok(message);
+    }
+
+    /**
+     * GET /api/conversations/:id/messages/:messageId/media?mobile=xxx
+     * Raw bytes of a FILE message, served from the local media cache with Range
+     * support, a strong ETag (If-None-Match gives 304) and long-lived caching.
+     */
+    @GetMapping("/{id}/messages/{messageId}/media")
+    public ResponseEntity<Resource> getMessageMedia(@PathVariable String id, @PathVariable String messageId,
+            @RequestParam String mobile) {
+        if (!conversationService.isUserParticipant(id, mobile) && !groupService.isUserMember(id, mobile)) {
+            return ResponseEntity.notFound().build();
+        }
+        ChatMessageDocument doc = chatService.findMessage(id, messageId);
+        if (doc == null || doc.getType() != MessageType.FILE) {
+            return ResponseEntity.notFound().build();
+        }
+        return mediaCacheService.forMessage(doc)
+                .map(media -> MediaResponses.of(media,
+                        CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * POST /api/conversations/:id/messages
      * Sends message and pushes to both participants via WebSocket.
+     * {@code type} selects POLL, CONTACT or EVENT, whose body goes in the
+     * matching payload field; without it the message is CHAT (or FILE).
      */
     @PostMapping("/{id}/messages")
     public ResponseEntity<ChatMessageResponse> sendMessage(@PathVariable String id,
             @RequestParam String mobile, @RequestBody @Valid SendMessageRequest request) {
 
-        GroupDocument group = groupService.getGroup(id);
-        ConversationDocument conv = null;
+        Set<String> groupMembers = groupService.getMembers(id);
+        String otherMobile = null;
 
-        if (group != null) {
-            if (!group.getMembers().contains(mobile)) {
+        if (groupMembers != null) {
+            if (!groupMembers.contains(mobile)) {
                 return ResponseEntity.notFound().build();
             }
         } else {
-            List<ConversationDocument> myConvs = conversationService.listForUser(mobile);
-            conv = myConvs.stream().filter(c -> c.getId().equals(id)).findFirst().orElse(null);
-            if (conv == null) {
+            otherMobile = conversationService.findOtherParticipant(id, mobile);
+            if (otherMobile == null) {
                 return ResponseEntity.notFound().build();
             }
         }
 
         // Build the response message from the typed request DTO
-        boolean isFile = request.getFileContent() != null && !request.getFileContent().isBlank()
-                && request.getFileType() != null && !request.getFileType().isBlank();
+        boolean hasAttachment = request.getAttachmentId() != null && !request.getAttachmentId().isBlank();
+        boolean isFile = hasAttachment || (request.getFileContent() != null && !request.getFileContent().isBlank()
+                && request.getFileType() != null && !request.getFileType().isBlank());
+
+        MessageType type = isFile ? MessageType.FILE
+                : request.getType() != null ? request.getType() : MessageType.CHAT;
 
         ChatMessageResponse message = ChatMessageResponse.builder()
                 .sender(mobile)
                 .conversationId(id)
                 .timestamp(System.currentTimeMillis())
-                .type(isFile ? MessageType.FILE : MessageType.CHAT)
-                .content(isFile ? "" : (request.getContent() != null && (request.getContent().startsWith("__POLL__") || request.getContent().startsWith("__POLL_VOTE__") || request.getContent().startsWith("__CONTACT__") || request.getContent().startsWith("__EVENT__")) ? request.getContent() : InputSanitizer.sanitize(request.getContent())))
-                .fileContent(isFile ? request.getFileContent() : null)
+                .type(type)
+                .content(isFile ? "" : type == MessageType.CHAT ? InputSanitizer.sanitize(request.getContent()) : null)
+                .fileContent(isFile && !hasAttachment ? request.getFileContent() : null)
                 .fileType(isFile ? request.getFileType() : null)
+                .attachmentId(hasAttachment ? request.getAttachmentId() : null)
                 .replyToId(request.getReplyToId())
                 .replyToContent(request.getReplyToContent())
                 .replyToSender(request.getReplyToSender())
+                .poll(type == MessageType.POLL ? request.getPoll() : null)
+                .contact(type == MessageType.CONTACT ? request.getContact() : null)
+                .event(type == MessageType.EVENT ? request.getEvent() : null)
                 .build();
 
+        if (!ChatService.hasRequiredPayload(message)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (isFile) {
+            try {
+                attachmentService.externalize(message);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
         String savedId = chatService.saveIfPersistable(message);
         if (savedId != null) {
             message.setId(savedId);
         }
+        if (type == MessageType.POLL) {
+            message.getPoll().setCounts(pollService.open(savedId, id, message.getPoll().getOptions().size()));
+        }
 
         // Send message to appropriate recipients
-        if (group != null) {
-            for (String memberMobile : group.getMembers()) {
-                messagingTemplate.convertAndSendToUser(memberMobile, "/queue/messages", message);
+        deliver(message, mobile, otherMobile, groupMembers);
+        if (groupMembers != null) {
+            String preview = type == MessageType.FILE ? "[File]" : ChatService.previewOf(message);
+            String senderName = userService.findDisplayNamesByMobiles(List.of(mobile)).getOrDefault(
+                    UserDocument.normalizeMobile(mobile), mobile);
+            groupService.advanceLastMessage(id, preview, senderName, message.getTimestamp());
+        }
+
+        return ResponseEntity.ok(message);
+    }
+
+    /**
+     * POST /api/conversations/:id/polls/:pollId/votes?mobile=xxx
+     * Body: {"optionIndex": 1}. Records the user's vote (replacing an earlier
+     * one) and pushes the new counts to the conversation as a POLL_VOTE message.
+     */
+    @PostMapping("/{id}/polls/{pollId}/votes")
+    public ResponseEntity<PollVotePayload> vote(@PathVariable String id, @PathVariable String pollId,
+            @RequestParam String mobile, @RequestBody @Valid PollVoteRequest request) {
+        Set<String> groupMembers = groupService.getMembers(id);
+        String otherMobile = null;
+
+        if (groupMembers != null) {
+            if (!groupMembers.contains(mobile)) {
+                return ResponseEntity.notFound().build();
             }
-            group.setLastMessageAt(message.getTimestamp());
-            group.setLastMessagePreview(message.getContent() != null && !message.getContent().isEmpty()
-                    ? message.getContent()
-                    : "[File]");
-            UserDocument sender = userService.findByMobile(mobile);
-            group.setLastMessageSenderName(sender != null ? sender.getDisplayName() : mobile);
-            groupService.save(group);
         } else {
-            String otherMobile = conv.getOtherParticipant(mobile);
-            messagingTemplate.convertAndSendToUser(mobile, "/queue/messages", message);
-            messagingTemplate.convertAndSendToUser(otherMobile, "/queue/messages", message);
+            otherMobile = conversationService.findOtherParticipant(id, mobile);
+            if (otherMobile == null) {
+                return ResponseEntity.notFound().build();
+            }
         }
 
-        return ResponseEntity.ok(message);
+        PollVotePayload vote = pollService.vote(id, pollId, mobile, request.getOptionIndex());
+        if (vote == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        ChatMessageResponse update = ChatMessageResponse.builder()
+                .type(MessageType.POLL_VOTE)
+                .sender(mobile)
+                .conversationId(id)
+                .timestamp(System.currentTimeMillis())
+                .vote(vote)
+                .build();
+        deliver(update, mobile, otherMobile, groupMembers);
+        return ResponseEntity.ok(vote);
+    }
+
+    /** Push to the group's members, or to both participants of a 1:1 conversation. */
+    private void deliver(ChatMessageResponse message, String mobile, String otherMobile, Set<String> groupMembers) {
+        if (groupMembers != null) {
+            groupDeliveryTimer.record(() -> groupFanoutService.dispatch(message, groupMembers));
+        } else {
+            directDeliveryTimer.record(() -> {
+                EncodedMessage encoded = EncodedMessage.of(messagingTemplate, message);
+                encoded.sendToUser(messagingTemplate, mobile, "/queue/messages");
+                encoded.sendToUser(messagingTemplate, otherMobile, "/queue/messages");
+            });
+        }
     }
 
     /**
@@ -226,7 +399,12 @@ public class ConversationController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteConversation(@PathVariable String id, @RequestParam String mobile) {
+        // Pending write-behind inserts would otherwise resurrect messages after the delete
+        chatService.flushPendingWrites();
         boolean deleted = conversationService.deleteConversation(id, mobile);
+        if (deleted) {
+            pollService.deleteForConversation(id);
+        }
         return deleted ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
 }
@@ -0,0 +1,39 @@
+package com.example.ChatBot.controller;
+
+import com.example.ChatBot.service.MediaCacheService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Builds download responses for cached media files.
+ * The body is a file-backed {@link Resource}, so Spring MVC answers Range
+ * requests with 206 partial content and If-None-Match with 304 on its own.
+ */
+final class MediaResponses {
+
+    private MediaResponses() {
+        // utility class — no instantiation
+    }
+
+    static ResponseEntity<Resource> of(MediaCacheService.CachedMedia media, CacheControl cacheControl) {
+        return ResponseEntity.ok()
+                .contentType(mediaTypeOf(media.getContentType()))
+                .eTag(media.getEtag())
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .body(new FileSystemResource(media.getPath()));
+    }
+
+    private static MediaType mediaTypeOf(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+}
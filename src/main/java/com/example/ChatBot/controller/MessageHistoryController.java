@@ -3,6 +3,8 @@ package com.example.ChatBot.controller;
 import com.example.ChatBot.dto.chat.ChatMessageResponse;
 import com.example.ChatBot.model.MessagesDeletedEvent;
 import com.example.ChatBot.service.ChatService;
+import com.example.ChatBot.service.PollService;
+import com.example.ChatBot.websocket.EncodedMessage;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -20,15 +22,18 @@ public class MessageHistoryController {
 
     private final ChatService chatService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final PollService pollService;
 
-    public MessageHistoryController(ChatService chatService, SimpMessagingTemplate messagingTemplate) {
+    public MessageHistoryController(ChatService chatService, SimpMessagingTemplate messagingTemplate,
+            PollService pollService) {
         this.chatService = chatService;
         this.messagingTemplate = messagingTemplate;
+        this.pollService = pollService;
     }
 
     /**
      * GET /api/messages?limit=50
-     * Returns recent chat message history (CHAT and FILE messages only).
+     * Returns recent chat message history (persisted messages only).
      * Default limit is 50. Max 100.
      */
     @GetMapping("/messages")
@@ -52,7 +57,8 @@ public class MessageHistoryController {
             return ResponseEntity.badRequest().build();
         }
         chatService.deleteByIds(ids);
-        messagingTemplate.convertAndSend("/topic/public", new MessagesDeletedEvent(ids));
+        pollService.deletePolls(ids);
+        EncodedMessage.of(messagingTemplate, new MessagesDeletedEvent(ids)).send(messagingTemplate, "/topic/public");
         return ResponseEntity.noContent().build();
     }
 }
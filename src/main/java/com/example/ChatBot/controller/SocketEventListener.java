@@ -1,6 +1,8 @@
 package com.example.ChatBot.controller;
 
 import com.example.ChatBot.service.PresenceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.event.EventListener;
@@ -10,6 +12,8 @@ import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import java.security.Principal;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class SocketEventListener {
@@ -18,16 +22,25 @@ public class SocketEventListener {
 
     private final PresenceService presenceService;
 
-    public SocketEventListener(PresenceService presenceService) {
+    // STOMP sessions connected to this node, anonymous ones included
+    private final Set<String> activeSessions = ConcurrentHashMap.newKeySet();
+
+    public SocketEventListener(PresenceService presenceService, MeterRegistry meterRegistry) {
         this.presenceService = presenceService;
+        Gauge.builder("chat.websocket.sessions", activeSessions, Set::size)
+                .description("STOMP sessions connected to this node")
+                .register(meterRegistry);
     }
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() != null) {
+            activeSessions.add(accessor.getSessionId());
+        }
         Principal principal = accessor.getUser();
         if (principal != null && !"anonymous".equals(principal.getName())) {
-            presenceService.setOnline(principal.getName());
+            presenceService.sessionConnected(principal.getName(), accessor.getSessionId());
             logger.info("User connected: {}", principal.getName());
         }
     }
@@ -35,9 +48,10 @@ public class SocketEventListener {
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
         StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        activeSessions.remove(event.getSessionId());
         Principal principal = accessor.getUser();
         if (principal != null) {
-            presenceService.setOffline(principal.getName());
+            presenceService.sessionDisconnected(principal.getName(), event.getSessionId());
             logger.info("User disconnected: {}", principal.getName());
         }
     }
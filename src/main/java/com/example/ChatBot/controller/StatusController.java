@@ -4,8 +4,8 @@ import com.example.ChatBot.dto.status.CreateStatusRequest;
 import com.example.ChatBot.dto.status.StatusResponse;
 import com.example.ChatBot.dto.status.UserStatusesResponse;
 import com.example.ChatBot.model.StatusDocument;
-import com.example.ChatBot.model.UserDocument;
 import com.example.ChatBot.repository.StatusRepository;
+import com.example.ChatBot.service.UserDirectory;
 import com.example.ChatBot.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -40,7 +40,7 @@ public class StatusController {
             return ResponseEntity.badRequest().build();
         }
 
-        UserDocument user = userService.findByMobile(mobile);
+        UserDirectory.UserSummary user = userService.findSummary(mobile);
         String userName = user != null && user.getDisplayName() != null ? user.getDisplayName() : mobile;
 
         StatusDocument status = new StatusDocument(mobile, userName, request.getContent());
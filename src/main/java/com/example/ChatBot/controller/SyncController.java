@@ -0,0 +1,40 @@
+package com.example.ChatBot.controller;
+
+import com.example.ChatBot.dto.chat.SyncResponse;
+import com.example.ChatBot.service.SyncService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/sync")
+public class SyncController {
+
+    private final SyncService syncService;
+
+    public SyncController(SyncService syncService) {
+        this.syncService = syncService;
+    }
+
+    /**
+     * GET /api/sync?mobile=xxx&since=1700000000000&cursor=...&limit=200
+     * Returns only what changed since the client's high-water mark: new
+     * messages, deletions, and conversation/group metadata. Use on reconnect
+     * instead of reloading conversation lists and message history. While
+     * hasMore is true, call again with the same since and the returned cursor.
+     */
+    @GetMapping
+    public ResponseEntity<SyncResponse> sync(@RequestParam String mobile, @RequestParam long since,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "200") int limit) {
+        if (limit > 500)
+            limit = 500;
+        try {
+            return ResponseEntity.ok(syncService.sync(mobile, since, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -3,13 +3,21 @@ package com.example.ChatBot.controller;
 import com.example.ChatBot.dto.user.*;
 import com.example.ChatBot.model.UserDocument;
 import com.example.ChatBot.service.JwtService;
+import com.example.ChatBot.service.MediaCacheService;
 import com.example.ChatBot.service.PresenceService;
+import com.example.ChatBot.service.ProfilePictureService;
+import com.example.ChatBot.service.UserDirectory;
 import com.example.ChatBot.service.UserService;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -19,11 +27,14 @@ public class UserController {
     private final UserService userService;
     private final PresenceService presenceService;
     private final JwtService jwtService;
+    private final MediaCacheService mediaCacheService;
 
-    public UserController(UserService userService, PresenceService presenceService, JwtService jwtService) {
+    public UserController(UserService userService, PresenceService presenceService, JwtService jwtService,
+            MediaCacheService mediaCacheService) {
         this.userService = userService;
         this.presenceService = presenceService;
         this.jwtService = jwtService;
+        this.mediaCacheService = mediaCacheService;
     }
 
     /**
@@ -43,7 +54,7 @@ public class UserController {
             resolvedMobile = mobile;
         if (resolvedMobile == null)
             return ResponseEntity.status(401).build();
-        UserDocument user = userService.findByMobile(resolvedMobile);
+        UserDirectory.UserSummary user = userService.findSummary(resolvedMobile);
         return user != null ? ResponseEntity.ok(UserResponse.from(user)) : ResponseEntity.notFound().build();
     }
 
@@ -56,6 +67,17 @@ public class UserController {
         return ResponseEntity.ok(presenceService.getOnlineMobiles().stream().collect(Collectors.toList()));
     }
 
+    /**
+     * GET /api/users/presence/{mobile}
+     * Returns whether the user is online on any node and when they were last seen.
+     */
+    @GetMapping("/presence/{mobile}")
+    public ResponseEntity<PresenceResponse> presence(@PathVariable String mobile) {
+        String m = UserDocument.normalizeMobile(mobile);
+        boolean online = presenceService.isOnline(m);
+        return ResponseEntity.ok(new PresenceResponse(m, online, presenceService.getLastSeen(m)));
+    }
+
     /**
      * GET /api/users/count
      * Returns total number of users in the database. Public, no auth required.
@@ -83,28 +105,54 @@ public class UserController {
 
     /**
      * PUT /api/users/profile/picture
-     * Update user's profile picture.
+     * Update user's profile picture (base64 image). Returns the URL of the new
+     * picture at the default size.
      */
     @PutMapping("/profile/picture")
-    public ResponseEntity<Void> updateProfilePicture(
+    public ResponseEntity<ProfilePictureResponse> updateProfilePicture(
             @RequestParam String mobile,
             @Valid @RequestBody UpdateProfilePictureRequest request) {
         try {
-            userService.updateProfilePicture(mobile, request.getPicture());
-            return ResponseEntity.ok().build();
+            UserDocument user = userService.updateProfilePicture(mobile, request.getPicture());
+            return ResponseEntity.ok(new ProfilePictureResponse(
+                    ProfilePictureService.pictureUrl(user, ProfilePictureService.DEFAULT_SIZE)));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     /**
-     * GET /api/users/profile/picture
-     * Get user's profile picture.
+     * GET /api/users/profile/picture?mobile=xxx&size=128
+     * The user's picture as an image, at the stored thumbnail size closest to
+     * {@code size}. With the {@code v} parameter from a picture URL the
+     * response is cacheable forever; without it, for a few minutes, and
+     * revalidated through the ETag. Pictures hosted by an OAuth provider are a
+     * redirect.
      */
     @GetMapping("/profile/picture")
-    public ResponseEntity<ProfilePictureResponse> getProfilePicture(@RequestParam String mobile) {
-        String picture = userService.getProfilePicture(mobile);
-        return ResponseEntity.ok(new ProfilePictureResponse(picture != null ? picture : ""));
+    public ResponseEntity<Resource> getProfilePicture(@RequestParam String mobile,
+            @RequestParam(defaultValue = "" + ProfilePictureService.DEFAULT_SIZE) int size,
+            @RequestParam(required = false) String v) {
+        UserDocument user = userService.findPicture(mobile);
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String blobId = ProfilePictureService.variantFor(user.getPictureVariants(), size);
+        if (blobId == null) {
+            if (ProfilePictureService.isExternalUrl(user.getProfilePicture())) {
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .header(HttpHeaders.LOCATION, user.getProfilePicture())
+                        .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic())
+                        .build();
+            }
+            return ResponseEntity.notFound().build();
+        }
+        CacheControl cacheControl = v != null && v.equals(ProfilePictureService.versionOf(blobId))
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic()
+                : CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic();
+        return mediaCacheService.forAttachment(blobId)
+                .map(media -> MediaResponses.of(media, cacheControl))
+                .orElse(ResponseEntity.notFound().build());
     }
 
     /**
@@ -134,15 +182,16 @@ public class UserController {
     }
 
     /**
-     * GET /api/users/profile/{mobile}
-     * Get any user's public profile (name, bio, picture).
+     * GET /api/users/profile/{mobile}?pictureSize=128
+     * Get any user's public profile (name, bio, picture URL for the size).
      */
     @GetMapping("/profile/{mobile}")
-    public ResponseEntity<UserProfileResponse> getPublicProfile(@PathVariable String mobile) {
-        UserDocument user = userService.findByMobile(mobile);
+    public ResponseEntity<UserProfileResponse> getPublicProfile(@PathVariable String mobile,
+            @RequestParam(defaultValue = "" + ProfilePictureService.DEFAULT_SIZE) int pictureSize) {
+        UserDirectory.UserSummary user = userService.findSummary(mobile);
         if (user == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(UserProfileResponse.from(user));
+        return ResponseEntity.ok(UserProfileResponse.from(user, pictureSize));
     }
 }
@@ -2,6 +2,8 @@ package com.example.ChatBot.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.validation.BindException;
@@ -64,6 +66,21 @@ public class GlobalExceptionHandler {
         return error;
     }
 
+    /**
+     * A send whose durability could not be confirmed: 503, so the client shows
+     * the message as failed and may retry.
+     */
+    @ExceptionHandler(MessageNotPersistedException.class)
+    public ResponseEntity<Map<String, Object>> handleNotPersisted(MessageNotPersistedException ex) {
+        logger.warn("Message not persisted: {}", ex.getMessage());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("error", "Message could not be saved");
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+
     /**
      * Handle REST validation errors (if REST endpoints are added)
      */
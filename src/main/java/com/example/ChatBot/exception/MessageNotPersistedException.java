@@ -0,0 +1,12 @@
+package com.example.ChatBot.exception;
+
+/**
+ * A message could not be confirmed as saved, so the sender must not be told
+ * it was. Thrown only when the persistence ack mode promises durability.
+ */
+public class MessageNotPersistedException extends RuntimeException {
+
+    public MessageNotPersistedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,21 +1,25 @@
 package com.example.ChatBot.model;
 
 import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.dto.chat.ContactPayload;
+import com.example.ChatBot.dto.chat.EventPayload;
+import com.example.ChatBot.dto.chat.PollPayload;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 /**
- * MongoDB document for persisting chat messages (CHAT and FILE types).
- * JOIN, LEAVE, TYPING are ephemeral and not stored.
+ * MongoDB document for persisting chat messages (CHAT, FILE, POLL, CONTACT and
+ * EVENT types). JOIN, LEAVE, TYPING are ephemeral and not stored.
  */
 @Document(collection = "messages")
+@CompoundIndex(name = "conversation_timestamp_id", def = "{'conversationId': 1, 'timestamp': -1, '_id': -1}")
 public class ChatMessageDocument {
 
     @Id
     private String id;
 
-    @Indexed
     private String conversationId;
 
     private MessageType type;
@@ -23,6 +27,9 @@ public class ChatMessageDocument {
     private String sender;
     private String fileContent;
     private String fileType;
+    @Indexed(sparse = true) // Only file messages have one; checked before a shared blob is deleted
+    private String attachmentId;
+    private Long fileSize;
     private long timestamp;
 
     // Reply-to-message fields
@@ -30,6 +37,11 @@ public class ChatMessageDocument {
     private String replyToContent;
     private String replyToSender;
 
+    // Typed bodies; poll holds question and options only, votes live in poll_tallies
+    private PollPayload poll;
+    private ContactPayload contact;
+    private EventPayload event;
+
     public ChatMessageDocument() {
     }
 
@@ -56,9 +68,14 @@ public class ChatMessageDocument {
                 response.getFileContent(),
                 response.getFileType(),
                 response.getTimestamp());
+        doc.setAttachmentId(response.getAttachmentId());
+        doc.setFileSize(response.getFileSize());
         doc.setReplyToId(response.getReplyToId());
         doc.setReplyToContent(response.getReplyToContent());
         doc.setReplyToSender(response.getReplyToSender());
+        doc.setPoll(response.getPoll() != null ? response.getPoll().withoutTally() : null);
+        doc.setContact(response.getContact());
+        doc.setEvent(response.getEvent());
         return doc;
     }
 
@@ -74,10 +91,15 @@ public class ChatMessageDocument {
                 .sender(sender)
                 .fileContent(fileContent)
                 .fileType(fileType)
+                .attachmentId(attachmentId)
+                .fileSize(fileSize)
                 .timestamp(timestamp)
                 .replyToId(replyToId)
                 .replyToContent(replyToContent)
                 .replyToSender(replyToSender)
+                .poll(poll != null ? poll.withoutTally() : null)
+                .contact(contact)
+                .event(event)
                 .build();
     }
 
@@ -131,6 +153,22 @@ public class ChatMessageDocument {
         this.fileType = fileType;
     }
 
+    public String getAttachmentId() {
+        return attachmentId;
+    }
+
+    public void setAttachmentId(String attachmentId) {
+        this.attachmentId = attachmentId;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
@@ -170,4 +208,28 @@ public class ChatMessageDocument {
     public void setReplyToSender(String replyToSender) {
         this.replyToSender = replyToSender;
     }
+
+    public PollPayload getPoll() {
+        return poll;
+    }
+
+    public void setPoll(PollPayload poll) {
+        this.poll = poll;
+    }
+
+    public ContactPayload getContact() {
+        return contact;
+    }
+
+    public void setContact(ContactPayload contact) {
+        this.contact = contact;
+    }
+
+    public EventPayload getEvent() {
+        return event;
+    }
+
+    public void setEvent(EventPayload event) {
+        this.event = event;
+    }
 }
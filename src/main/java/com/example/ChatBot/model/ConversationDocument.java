@@ -23,6 +23,9 @@ public class ConversationDocument {
     private long lastMessageAt;
     private String lastMessagePreview;
 
+    // Last time any field changed (message, read receipt); drives delta sync
+    private long updatedAt;
+
     // Track when each participant last read the conversation (for persistent read
     // receipts)
     private long lastReadByParticipant1;
@@ -39,6 +42,7 @@ public class ConversationDocument {
         this.lastMessagePreview = null;
         this.lastReadByParticipant1 = 0;
         this.lastReadByParticipant2 = 0;
+        this.updatedAt = this.createdAt;
     }
 
     public String getId() {
@@ -89,6 +93,14 @@ public class ConversationDocument {
         this.lastMessagePreview = lastMessagePreview;
     }
 
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     /** Returns the other participant's mobile given current user's mobile. */
     public String getOtherParticipant(String myMobile) {
         String m = myMobile != null ? UserDocument.normalizeMobile(myMobile) : null;
@@ -138,5 +150,8 @@ public class ConversationDocument {
             this.lastReadByParticipant1 = timestamp;
         else if (m.equals(participant2))
             this.lastReadByParticipant2 = timestamp;
+        else
+            return;
+        this.updatedAt = Math.max(this.updatedAt, timestamp);
     }
 }
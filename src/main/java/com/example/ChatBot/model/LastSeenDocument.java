@@ -0,0 +1,35 @@
+package com.example.ChatBot.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * When a user's last session ended, keyed by mobile.
+ */
+@Document(collection = "presence_last_seen")
+public class LastSeenDocument {
+
+    @Id
+    private String mobile;
+
+    private long lastSeenAt;
+
+    public LastSeenDocument() {
+    }
+
+    public String getMobile() {
+        return mobile;
+    }
+
+    public void setMobile(String mobile) {
+        this.mobile = mobile;
+    }
+
+    public long getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    public void setLastSeenAt(long lastSeenAt) {
+        this.lastSeenAt = lastSeenAt;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.ChatBot.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Record of a deletion, kept so reconnecting clients can learn about messages or
+ * conversations removed while they were offline. Expires after
+ * {@link #RETENTION_SECONDS}; clients whose high-water mark is older must do a
+ * full refresh.
+ */
+@Document(collection = "message_tombstones")
+@CompoundIndex(name = "conversation_deletedAt", def = "{'conversationId': 1, 'deletedAt': 1}")
+@CompoundIndex(name = "participants_deletedAt", def = "{'participants': 1, 'deletedAt': 1}")
+public class MessageTombstoneDocument {
+
+    public static final int RETENTION_SECONDS = 30 * 24 * 60 * 60;
+
+    @Id
+    private String id;
+
+    private String conversationId;
+
+    /** Deleted message ids; null when the whole conversation was deleted. */
+    private List<String> messageIds;
+
+    /** Participants of a deleted conversation (their list no longer contains it). */
+    private List<String> participants;
+
+    private boolean conversationDeleted;
+    private long deletedAt;
+
+    @Indexed(expireAfterSeconds = RETENTION_SECONDS)
+    private Date expiresFrom;
+
+    public MessageTombstoneDocument() {
+    }
+
+    public static MessageTombstoneDocument forMessages(String conversationId, List<String> messageIds) {
+        MessageTombstoneDocument doc = new MessageTombstoneDocument();
+        doc.conversationId = conversationId;
+        doc.messageIds = messageIds;
+        doc.deletedAt = System.currentTimeMillis();
+        doc.expiresFrom = new Date(doc.deletedAt);
+        return doc;
+    }
+
+    public static MessageTombstoneDocument forConversation(String conversationId, List<String> participants) {
+        MessageTombstoneDocument doc = new MessageTombstoneDocument();
+        doc.conversationId = conversationId;
+        doc.participants = participants;
+        doc.conversationDeleted = true;
+        doc.deletedAt = System.currentTimeMillis();
+        doc.expiresFrom = new Date(doc.deletedAt);
+        return doc;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public List<String> getMessageIds() {
+        return messageIds;
+    }
+
+    public void setMessageIds(List<String> messageIds) {
+        this.messageIds = messageIds;
+    }
+
+    public List<String> getParticipants() {
+        return participants;
+    }
+
+    public void setParticipants(List<String> participants) {
+        this.participants = participants;
+    }
+
+    public boolean isConversationDeleted() {
+        return conversationDeleted;
+    }
+
+    public void setConversationDeleted(boolean conversationDeleted) {
+        this.conversationDeleted = conversationDeleted;
+    }
+
+    public long getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(long deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    public Date getExpiresFrom() {
+        return expiresFrom;
+    }
+
+    public void setExpiresFrom(Date expiresFrom) {
+        this.expiresFrom = expiresFrom;
+    }
+}
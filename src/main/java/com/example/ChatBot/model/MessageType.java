@@ -11,5 +11,13 @@ public enum MessageType {
     TYPING,
     FILE,
     READ,
-    DELIVERED
+    DELIVERED,
+    /** Poll; question and options in {@code poll}, votes tallied server-side. */
+    POLL,
+    /** New counts for a poll after a vote, in {@code vote}. Pushed only, never stored. */
+    POLL_VOTE,
+    /** Shared contact card, in {@code contact}. */
+    CONTACT,
+    /** Event invitation, in {@code event}. */
+    EVENT
 }
@@ -0,0 +1,72 @@
+package com.example.ChatBot.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * Vote counts of one poll, keyed by the poll message id. Votes move counts
+ * with $inc so reading a poll never has to look at individual votes.
+ */
+@Document(collection = "poll_tallies")
+@CompoundIndex(name = "conversation_updatedAt", def = "{'conversationId': 1, 'updatedAt': 1}")
+public class PollTallyDocument {
+
+    @Id
+    private String id;
+
+    private String conversationId;
+
+    private int optionCount;
+
+    /** Votes per option. */
+    private List<Long> counts;
+
+    /** Time of the last vote, so /api/sync can return tallies that moved. */
+    private long updatedAt;
+
+    public PollTallyDocument() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public int getOptionCount() {
+        return optionCount;
+    }
+
+    public void setOptionCount(int optionCount) {
+        this.optionCount = optionCount;
+    }
+
+    public List<Long> getCounts() {
+        return counts;
+    }
+
+    public void setCounts(List<Long> counts) {
+        this.counts = counts;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.ChatBot.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A user's current vote on a poll. The id combines poll and voter, so each
+ * user has at most one vote per poll and changing it replaces this document.
+ */
+@Document(collection = "poll_votes")
+public class PollVoteDocument {
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String pollId;
+
+    @Indexed
+    private String conversationId;
+
+    private String voter;
+    private int option;
+    private long votedAt;
+
+    public PollVoteDocument() {
+    }
+
+    public static String idFor(String pollId, String voter) {
+        return pollId + ":" + voter;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPollId() {
+        return pollId;
+    }
+
+    public void setPollId(String pollId) {
+        this.pollId = pollId;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public String getVoter() {
+        return voter;
+    }
+
+    public void setVoter(String voter) {
+        this.voter = voter;
+    }
+
+    public int getOption() {
+        return option;
+    }
+
+    public void setOption(int option) {
+        this.option = option;
+    }
+
+    public long getVotedAt() {
+        return votedAt;
+    }
+
+    public void setVotedAt(long votedAt) {
+        this.votedAt = votedAt;
+    }
+}
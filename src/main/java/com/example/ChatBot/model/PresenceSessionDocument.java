@@ -0,0 +1,75 @@
+package com.example.ChatBot.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * One live WebSocket session, refreshed by its node's heartbeat. Sessions of
+ * a node that dies stop being refreshed and are removed by the TTL index;
+ * readers also ignore entries whose heartbeat is older than the configured
+ * timeout, since the TTL monitor only runs about once a minute.
+ * A closed session is kept as a tombstone with {@code endedAt} set until the
+ * TTL index removes it, so a heartbeat already in flight cannot recreate it.
+ */
+@Document(collection = "presence_sessions")
+public class PresenceSessionDocument {
+
+    /** Upper bound for garbage collection; liveness is decided by the presence timeout. */
+    public static final int EXPIRE_SECONDS = 300;
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String mobile;
+
+    @Indexed(expireAfterSeconds = EXPIRE_SECONDS)
+    private Date heartbeatAt;
+
+    /** Set when the session closed; such sessions are never online. */
+    private Date endedAt;
+
+    public PresenceSessionDocument() {
+    }
+
+    public PresenceSessionDocument(String id, String mobile, Date heartbeatAt) {
+        this.id = id;
+        this.mobile = mobile;
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getMobile() {
+        return mobile;
+    }
+
+    public void setMobile(String mobile) {
+        this.mobile = mobile;
+    }
+
+    public Date getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(Date heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    public Date getEndedAt() {
+        return endedAt;
+    }
+
+    public void setEndedAt(Date endedAt) {
+        this.endedAt = endedAt;
+    }
+}
@@ -2,14 +2,21 @@ package com.example.ChatBot.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.Map;
+
 /**
  * User identified by mobile number (WhatsApp-style).
  * Password is stored hashed; never serialized to JSON.
  */
 @Document(collection = "users")
+// Finds other users of a thumbnail before it is deleted (blobs are shared by content)
+@CompoundIndex(name = "picture_48", def = "{'pictureVariants.48': 1}", sparse = true)
+@CompoundIndex(name = "picture_128", def = "{'pictureVariants.128': 1}", sparse = true)
+@CompoundIndex(name = "picture_512", def = "{'pictureVariants.512': 1}", sparse = true)
 public class UserDocument {
 
     @Id
@@ -21,7 +28,8 @@ public class UserDocument {
     private String displayName;
     @JsonIgnore
     private String hashedPassword;
-    private String profilePicture; // Base64 encoded profile picture
+    private String profilePicture; // External picture URL (Google); older documents may hold base64
+    private Map<String, String> pictureVariants; // Thumbnail size -> blob id in the attachment store
     private String bio; // User bio, max 150 chars
     private long createdAt;
 
@@ -93,11 +101,24 @@ public class UserDocument {
         this.profilePicture = profilePicture;
     }
 
+    public Map<String, String> getPictureVariants() {
+        return pictureVariants;
+    }
+
+    public void setPictureVariants(Map<String, String> pictureVariants) {
+        this.pictureVariants = pictureVariants;
+    }
+
     public String getBio() {
         return bio;
     }
 
     public void setBio(String bio) {
-        this.bio = bio != null && bio.length() > 150 ? bio.substring(0, 150) : bio;
+        this.bio = truncateBio(bio);
+    }
+
+    /** Bios are capped at 150 characters. */
+    public static String truncateBio(String bio) {
+        return bio != null && bio.length() > 150 ? bio.substring(0, 150) : bio;
     }
 }
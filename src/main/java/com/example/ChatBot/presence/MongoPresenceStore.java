@@ -0,0 +1,105 @@
+package com.example.ChatBot.presence;
+
+import com.example.ChatBot.model.LastSeenDocument;
+import com.example.ChatBot.model.PresenceSessionDocument;
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link PresenceStore} on a Mongo TTL collection, one document per session.
+ * Ended sessions stay behind as tombstones until the TTL index removes them:
+ * heartbeats only match sessions that have not ended, so the upsert that
+ * recreates a lost session fails on the tombstone's id instead of reviving a
+ * session that was closed while the heartbeat was in flight.
+ */
+@Component
+public class MongoPresenceStore implements PresenceStore {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoPresenceStore(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void sessionStarted(String sessionId, String mobile, long now) {
+        mongoTemplate.save(new PresenceSessionDocument(sessionId, mobile, new Date(now)));
+    }
+
+    @Override
+    public void sessionEnded(String sessionId, String mobile, long now) {
+        Date endedAt = new Date(now);
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(sessionId)), new Update()
+                .set("mobile", mobile)
+                .set("heartbeatAt", endedAt)
+                .set("endedAt", endedAt), PresenceSessionDocument.class);
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(mobile)), new Update().max("lastSeenAt", now),
+                LastSeenDocument.class);
+    }
+
+    @Override
+    public void heartbeat(Map<String, String> sessions, long now) {
+        if (sessions.isEmpty())
+            return;
+        Date heartbeatAt = new Date(now);
+        UpdateResult result = mongoTemplate.updateMulti(
+                new Query(Criteria.where("_id").in(sessions.keySet()).and("endedAt").exists(false)),
+                Update.update("heartbeatAt", heartbeatAt), PresenceSessionDocument.class);
+        if (result.getMatchedCount() < sessions.size()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    PresenceSessionDocument.class);
+            sessions.forEach((id, mobile) -> bulk.upsert(
+                    new Query(Criteria.where("_id").is(id).and("endedAt").exists(false)),
+                    new Update().set("mobile", mobile).set("heartbeatAt", heartbeatAt)));
+            try {
+                bulk.execute();
+            } catch (BulkOperationException e) {
+                // A duplicate id is a session that ended meanwhile: leave its tombstone alone
+                if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY))
+                    throw e;
+            }
+        }
+    }
+
+    @Override
+    public Set<String> findOnline(long aliveSince) {
+        Query query = new Query(Criteria.where("heartbeatAt").gte(new Date(aliveSince)).and("endedAt").exists(false));
+        return new HashSet<>(mongoTemplate.findDistinct(query, "mobile", PresenceSessionDocument.class, String.class));
+    }
+
+    @Override
+    public Set<String> findOnline(Collection<String> mobiles, long aliveSince) {
+        if (mobiles.isEmpty())
+            return new HashSet<>();
+        Query query = new Query(Criteria.where("mobile").in(mobiles).and("heartbeatAt").gte(new Date(aliveSince))
+                .and("endedAt").exists(false));
+        return new HashSet<>(mongoTemplate.findDistinct(query, "mobile", PresenceSessionDocument.class, String.class));
+    }
+
+    @Override
+    public Map<String, Long> findLastSeen(Collection<String> mobiles) {
+        Map<String, Long> result = new HashMap<>();
+        if (mobiles.isEmpty())
+            return result;
+        for (LastSeenDocument doc : mongoTemplate.find(new Query(Criteria.where("_id").in(mobiles)),
+                LastSeenDocument.class)) {
+            result.put(doc.getMobile(), doc.getLastSeenAt());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.ChatBot.presence;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shared record of live sessions across all nodes. Session ids must be unique
+ * cluster-wide; a session counts as live while its heartbeat is recent.
+ */
+public interface PresenceStore {
+
+    void sessionStarted(String sessionId, String mobile, long now);
+
+    /**
+     * End the session for good and record {@code now} as the user's last-seen
+     * time. A heartbeat racing with this call must not bring the session back.
+     */
+    void sessionEnded(String sessionId, String mobile, long now);
+
+    /**
+     * Refresh the heartbeat of the given sessions (id to mobile), recreating any
+     * that expired while this node was unreachable.
+     */
+    void heartbeat(Map<String, String> sessions, long now);
+
+    /** Users with at least one session whose heartbeat is at or after {@code aliveSince}. */
+    Set<String> findOnline(long aliveSince);
+
+    /** Those of the given users with a session whose heartbeat is at or after {@code aliveSince}. */
+    Set<String> findOnline(Collection<String> mobiles, long aliveSince);
+
+    /** Last-seen times for those of the given users that have one. */
+    Map<String, Long> findLastSeen(Collection<String> mobiles);
+}
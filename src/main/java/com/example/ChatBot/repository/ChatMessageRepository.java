@@ -3,6 +3,7 @@ package com.example.ChatBot.repository;
 import com.example.ChatBot.model.ChatMessageDocument;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,9 +11,23 @@ import java.util.List;
 @Repository
 public interface ChatMessageRepository extends MongoRepository<ChatMessageDocument, String> {
 
-    List<ChatMessageDocument> findByOrderByTimestampDesc(Pageable pageable);
-
     List<ChatMessageDocument> findByConversationIdOrderByTimestampDesc(String conversationId, Pageable pageable);
 
+    /**
+     * Lightweight history page - same as findByConversationIdOrderByTimestampDesc
+     * but excludes the inline base64 fileContent of legacy file messages. Fetch
+     * the payload separately by id when it is actually needed.
+     */
+    @Query(value = "{ 'conversationId' : ?0 }", fields = "{ 'fileContent' : 0 }", sort = "{ 'timestamp' : -1, '_id' : -1 }")
+    List<ChatMessageDocument> findHistoryByConversationId(String conversationId, Pageable pageable);
+
+    /** Newest messages across all conversations, without inline fileContent. */
+    @Query(value = "{}", fields = "{ 'fileContent' : 0 }", sort = "{ 'timestamp' : -1, '_id' : -1 }")
+    List<ChatMessageDocument> findRecentHistory(Pageable pageable);
+
+    /** Only the conversationId of each message, for bookkeeping before a delete. */
+    @Query(value = "{ '_id' : { $in : ?0 } }", fields = "{ 'conversationId' : 1 }")
+    List<ChatMessageDocument> findConversationIdsByIdIn(List<String> ids);
+
     void deleteByConversationId(String conversationId);
 }
@@ -9,6 +9,9 @@ public interface GroupRepository extends MongoRepository<GroupDocument, String>
     // Find groups where the member list contains the given mobile
     List<GroupDocument> findByMembers(String mobile);
 
+    // Groups of a member with activity at or after a point in time (delta sync)
+    List<GroupDocument> findByMembersAndLastMessageAtGreaterThanEqual(String mobile, long since);
+
     // Fast membership check - returns true if user is a member of the group
     boolean existsByIdAndMembers(String groupId, String mobile);
 }
@@ -0,0 +1,18 @@
+package com.example.ChatBot.repository;
+
+import com.example.ChatBot.model.MessageTombstoneDocument;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MessageTombstoneRepository extends MongoRepository<MessageTombstoneDocument, String> {
+
+    /** Message deletions in the given conversations since a point in time. */
+    List<MessageTombstoneDocument> findByConversationIdInAndDeletedAtGreaterThanEqual(Collection<String> conversationIds,
+            long since);
+
+    /** Conversation deletions affecting a user since a point in time. */
+    List<MessageTombstoneDocument> findByParticipantsAndConversationDeletedTrueAndDeletedAtGreaterThanEqual(
+            String mobile, long since);
+}
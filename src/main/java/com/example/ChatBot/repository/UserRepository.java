@@ -13,14 +13,34 @@ public interface UserRepository extends MongoRepository<UserDocument, String> {
 
     Optional<UserDocument> findByMobile(String mobile);
 
+    boolean existsByMobile(String mobile);
+
+    /**
+     * Single user without hashedPassword - for profile reads.
+     */
+    @Query(value = "{ 'mobile' : ?0 }", fields = "{ 'hashedPassword' : 0 }")
+    Optional<UserDocument> findProfileByMobile(String mobile);
+
+    /**
+     * Bio lookup - returns only mobile and bio.
+     */
+    @Query(value = "{ 'mobile' : ?0 }", fields = "{ 'mobile' : 1, 'bio' : 1 }")
+    Optional<UserDocument> findBioByMobile(String mobile);
+
     // Batch lookup - fetch multiple users in a single query
     List<UserDocument> findByMobileIn(List<String> mobiles);
 
     /**
-     * Lightweight batch lookup - returns only mobile and displayName (excludes
-     * profilePicture, hashedPassword, bio). Use for conversation list to avoid
-     * loading large base64 images.
+     * Public details for the user directory cache - everything except
+     * hashedPassword.
+     */
+    @Query(value = "{ 'mobile' : { $in : ?0 } }", fields = "{ 'hashedPassword' : 0 }")
+    List<UserDocument> findSummaryByMobileIn(List<String> mobiles);
+
+    /**
+     * Picture lookup - returns only mobile, the external picture URL and the
+     * thumbnail blob ids.
      */
-    @Query(value = "{ 'mobile' : { $in : ?0 } }", fields = "{ 'mobile' : 1, 'displayName' : 1 }")
-    List<UserDocument> findDisplayInfoByMobileIn(List<String> mobiles);
+    @Query(value = "{ 'mobile' : ?0 }", fields = "{ 'mobile' : 1, 'profilePicture' : 1, 'pictureVariants' : 1 }")
+    Optional<UserDocument> findPictureByMobile(String mobile);
 }
@@ -0,0 +1,85 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.storage.AttachmentStore;
+import com.example.ChatBot.storage.StoredAttachment;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Moves file payloads out of chat messages and into the {@link AttachmentStore}.
+ */
+@Service
+public class AttachmentService {
+
+    private final AttachmentStore store;
+
+    public AttachmentService(AttachmentStore store) {
+        this.store = store;
+    }
+
+    public StoredAttachment upload(InputStream content, String contentType) throws IOException {
+        return store.store(content, contentType);
+    }
+
+    public Optional<StoredAttachment> find(String id) {
+        return store.find(id);
+    }
+
+    public Optional<InputStream> open(String id) throws IOException {
+        return store.open(id);
+    }
+
+    /**
+     * Make a FILE message reference its blob by id only.
+     * Legacy clients still send base64 {@code fileContent}; it is decoded and
+     * stored here, and the message keeps just id, size and MIME type. For
+     * messages that already carry an {@code attachmentId}, size and type are
+     * taken from the store.
+     *
+     * @throws IllegalArgumentException if the content is not valid base64 or the
+     *                                  attachment id is unknown
+     */
+    public void externalize(ChatMessageResponse message) {
+        String fileContent = message.getFileContent();
+        if (fileContent != null && !fileContent.isBlank()) {
+            StoredAttachment stored = storeBase64(fileContent, message.getFileType());
+            message.setAttachmentId(stored.getId());
+            message.setFileSize(stored.getSize());
+            message.setFileContent(null);
+            return;
+        }
+        if (message.getAttachmentId() != null) {
+            StoredAttachment stored = store.find(message.getAttachmentId())
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown attachment"));
+            message.setFileType(stored.getContentType());
+            message.setFileSize(stored.getSize());
+        }
+    }
+
+    private StoredAttachment storeBase64(String fileContent, String fileType) {
+        String data = fileContent;
+        // Accept data URLs as well as bare base64
+        if (data.startsWith("data:")) {
+            int comma = data.indexOf(',');
+            data = comma >= 0 ? data.substring(comma + 1) : "";
+        }
+        byte[] decoded;
+        try {
+            decoded = Base64.getMimeDecoder().decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("File content is not valid base64", e);
+        }
+        try {
+            return store.store(new ByteArrayInputStream(decoded), fileType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
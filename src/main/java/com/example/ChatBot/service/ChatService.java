@@ -1,15 +1,29 @@
 package com.example.ChatBot.service;
 
 import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.dto.chat.MessagePageResponse;
 import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.MessageTombstoneDocument;
 import com.example.ChatBot.model.MessageType;
 import com.example.ChatBot.repository.ChatMessageRepository;
+import com.example.ChatBot.repository.MessageTombstoneRepository;
+import com.example.ChatBot.util.MessageCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,39 +31,117 @@ public class ChatService {
 
     private static final int DEFAULT_HISTORY_LIMIT = 50;
 
+    private static final Set<MessageType> PERSISTED_TYPES = EnumSet.of(MessageType.CHAT, MessageType.FILE,
+            MessageType.POLL, MessageType.CONTACT, MessageType.EVENT);
+
     private final ChatMessageRepository repository;
     private final ConversationService conversationService;
+    private final GroupService groupService;
+    private final MessageWriteBehindQueue writeBehind;
+    private final MongoTemplate mongoTemplate;
+    private final MessageTombstoneRepository tombstoneRepository;
+    private final MeterRegistry meterRegistry;
+    private final Map<MessageType, Timer> saveTimers = new EnumMap<>(MessageType.class);
+    private final Timer deleteTimer;
 
-    public ChatService(ChatMessageRepository repository, ConversationService conversationService) {
+    public ChatService(ChatMessageRepository repository, ConversationService conversationService,
+            GroupService groupService, MessageWriteBehindQueue writeBehind, MongoTemplate mongoTemplate,
+            MessageTombstoneRepository tombstoneRepository, MeterRegistry meterRegistry) {
         this.repository = repository;
         this.conversationService = conversationService;
+        this.groupService = groupService;
+        this.writeBehind = writeBehind;
+        this.mongoTemplate = mongoTemplate;
+        this.tombstoneRepository = tombstoneRepository;
+        this.meterRegistry = meterRegistry;
+        for (MessageType type : PERSISTED_TYPES) {
+            saveTimers.put(type, Timer.builder("chat.messages.save")
+                    .description("Time to hand a message to persistence (includes the wait in DURABLE/SYNC ack modes)")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        this.deleteTimer = Timer.builder("chat.messages.delete")
+                .description("Time to delete a batch of messages and repair conversation previews")
+                .register(meterRegistry);
     }
 
     /**
-     * Persist a chat message if it's a CHAT or FILE type (with conversationId).
+     * Persist a chat message if it's a CHAT, FILE, POLL, CONTACT or EVENT type
+     * (with conversationId).
+     * The id is assigned here and the write itself goes through the write-behind
+     * queue, so callers can push the message to recipients right away.
      *
-     * @return the saved document's id, or null if not persisted
+     * @return the message's id, or null if not persisted
      */
     public String saveIfPersistable(ChatMessageResponse message) {
         if (message == null)
             return null;
-        if (message.getType() != MessageType.CHAT && message.getType() != MessageType.FILE) {
+        if (!PERSISTED_TYPES.contains(message.getType())) {
             return null;
         }
         if (message.getConversationId() == null)
             return null;
 
+        Timer.Sample sample = Timer.start(meterRegistry);
         ChatMessageDocument doc = ChatMessageDocument.fromResponse(message);
-        ChatMessageDocument saved = repository.save(doc);
+        doc.setId(new ObjectId().toHexString());
+
+        // A group's preview carries the sender's name and is recorded by the caller
+        boolean group = groupService.getMembers(message.getConversationId()) != null;
+        writeBehind.submit(doc, group ? null : previewOf(message));
+        sample.stop(saveTimers.get(message.getType()));
+        return doc.getId();
+    }
+
+    /**
+     * Whether a message carries the body its type needs: content or nothing for
+     * CHAT, the matching payload for POLL, CONTACT and EVENT. Other types are
+     * not sent by clients.
+     */
+    public static boolean hasRequiredPayload(ChatMessageResponse message) {
+        switch (message.getType()) {
+            case CHAT:
+            case FILE:
+                return true;
+            case POLL:
+                return message.getPoll() != null;
+            case CONTACT:
+                return message.getContact() != null;
+            case EVENT:
+                return message.getEvent() != null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Conversation-list preview of a message.
+     */
+    public static String previewOf(ChatMessageResponse message) {
+        switch (message.getType()) {
+            case FILE:
+                return "Photo";
+            case POLL:
+                return message.getPoll() != null ? "Poll: " + message.getPoll().getQuestion() : "Poll";
+            case CONTACT:
+                return message.getContact() != null ? "Contact: " + message.getContact().getName() : "Contact";
+            case EVENT:
+                return message.getEvent() != null ? "Event: " + message.getEvent().getTitle() : "Event";
+            default:
+                return message.getContent() != null ? message.getContent() : "";
+        }
+    }
 
-        String preview = message.getType() == MessageType.FILE ? "Photo"
-                : (message.getContent() != null ? message.getContent() : "");
-        conversationService.updateLastMessage(message.getConversationId(), preview);
-        return saved.getId();
+    /**
+     * Make sure every message handed to {@link #saveIfPersistable} so far is in
+     * Mongo. Called before reads and deletes so users always see their own sends.
+     */
+    public void flushPendingWrites() {
+        writeBehind.flush();
     }
 
     /**
-     * Delete messages by id. Only persisted (CHAT/FILE) messages have ids.
+     * Delete messages by id. Only persisted messages have ids.
      * Ignores non-existent ids.
      * After deletion, updates the conversation's lastMessagePreview to reflect the
      * new latest message.
@@ -57,44 +149,55 @@ public class ChatService {
     public void deleteByIds(List<String> ids) {
         if (ids == null || ids.isEmpty())
             return;
+        deleteTimer.record(() -> delete(ids));
+    }
+
+    private void delete(List<String> ids) {
+        writeBehind.flush();
 
         // Find the affected conversation IDs before deleting
-        java.util.Set<String> affectedConversationIds = new java.util.HashSet<>();
-        repository.findAllById(ids).forEach(doc -> {
+        java.util.Map<String, List<String>> idsByConversation = new java.util.HashMap<>();
+        repository.findConversationIdsByIdIn(ids).forEach(doc -> {
             if (doc.getConversationId() != null) {
-                affectedConversationIds.add(doc.getConversationId());
+                idsByConversation.computeIfAbsent(doc.getConversationId(), k -> new java.util.ArrayList<>())
+                        .add(doc.getId());
             }
         });
+        java.util.Set<String> affectedConversationIds = idsByConversation.keySet();
 
         // Delete the messages
         repository.deleteAllById(ids);
 
+        // Leave tombstones so clients that were offline drop them on their next sync
+        idsByConversation.forEach((convId, deleted) -> tombstoneRepository
+                .save(MessageTombstoneDocument.forMessages(convId, deleted)));
+
         // Update lastMessagePreview for each affected conversation
         for (String convId : affectedConversationIds) {
-            var pageable = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "timestamp"));
-            List<ChatMessageDocument> remaining = repository.findByConversationIdOrderByTimestampDesc(convId, pageable);
+            List<ChatMessageDocument> remaining = repository.findHistoryByConversationId(convId, PageRequest.of(0, 1));
             if (remaining.isEmpty()) {
                 conversationService.updateLastMessage(convId, null);
             } else {
                 ChatMessageDocument latest = remaining.get(0);
-                String preview = latest.getType() == MessageType.FILE ? "Photo"
-                        : (latest.getContent() != null ? latest.getContent() : "");
-                conversationService.updateLastMessageWithTimestamp(convId, preview, latest.getTimestamp());
+                conversationService.updateLastMessageWithTimestamp(convId, previewOf(latest.toResponse()),
+                        latest.getTimestamp());
             }
         }
     }
 
     /**
      * Get recent message history for a conversation (oldest first for display).
+     * Inline file payloads are left out; see {@link #findMessage}.
      */
     public List<ChatMessageResponse> getMessagesByConversationId(String conversationId, int limit) {
         if (conversationId == null)
             return List.of();
         if (limit <= 0)
             limit = DEFAULT_HISTORY_LIMIT;
+        writeBehind.flush();
 
-        var pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "timestamp"));
-        List<ChatMessageDocument> docs = repository.findByConversationIdOrderByTimestampDesc(conversationId, pageable);
+        List<ChatMessageDocument> docs = repository.findHistoryByConversationId(conversationId,
+                PageRequest.of(0, limit));
 
         List<ChatMessageResponse> messages = docs.stream()
                 .map(ChatMessageDocument::toResponse)
@@ -103,15 +206,113 @@ public class ChatService {
         return messages;
     }
 
+    /**
+     * Keyset-paginated history for a conversation, served by the
+     * {conversationId, timestamp, _id} index without offset scans.
+     * With no cursor returns the newest page; {@code before} pages into the past,
+     * {@code after} returns messages newer than the cursor. Messages are always
+     * oldest first.
+     *
+     * @throws IllegalArgumentException if both cursors are given or a cursor is invalid
+     */
+    public MessagePageResponse getMessagePage(String conversationId, String before, String after, int limit) {
+        if (before != null && after != null)
+            throw new IllegalArgumentException("Use either before or after, not both");
+        if (limit <= 0)
+            limit = DEFAULT_HISTORY_LIMIT;
+        writeBehind.flush();
+
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        Sort.Direction direction = Sort.Direction.DESC;
+        if (before != null) {
+            MessageCursor cursor = MessageCursor.decode(before);
+            criteria = criteria.orOperator(
+                    Criteria.where("timestamp").lt(cursor.getTimestamp()),
+                    Criteria.where("timestamp").is(cursor.getTimestamp()).and("_id").lt(cursor.getId()));
+        } else if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            criteria = criteria.orOperator(
+                    Criteria.where("timestamp").gt(cursor.getTimestamp()),
+                    Criteria.where("timestamp").is(cursor.getTimestamp()).and("_id").gt(cursor.getId()));
+            direction = Sort.Direction.ASC;
+        }
+
+        // Fetch one extra document to learn whether another page exists
+        Query query = new Query(criteria)
+                .with(Sort.by(direction, "timestamp").and(Sort.by(direction, "_id")))
+                .limit(limit + 1);
+        query.fields().exclude("fileContent");
+        List<ChatMessageDocument> docs = mongoTemplate.find(query, ChatMessageDocument.class);
+        boolean hasMore = docs.size() > limit;
+        if (hasMore) {
+            docs = docs.subList(0, limit);
+        }
+
+        List<ChatMessageResponse> messages = docs.stream()
+                .map(ChatMessageDocument::toResponse)
+                .collect(Collectors.toList());
+        if (direction == Sort.Direction.DESC) {
+            Collections.reverse(messages);
+        }
+
+        MessagePageResponse.MessagePageResponseBuilder page = MessagePageResponse.builder()
+                .messages(messages)
+                .hasMore(hasMore);
+        if (!messages.isEmpty()) {
+            ChatMessageResponse oldest = messages.get(0);
+            ChatMessageResponse newest = messages.get(messages.size() - 1);
+            page.before(MessageCursor.of(oldest.getTimestamp(), oldest.getId()).encode());
+            page.after(MessageCursor.of(newest.getTimestamp(), newest.getId()).encode());
+        }
+        return page.build();
+    }
+
+    /**
+     * Load a single persisted message including its file payload, or null if it
+     * does not belong to the conversation.
+     */
+    public ChatMessageDocument findMessage(String conversationId, String messageId) {
+        if (conversationId == null || messageId == null)
+            return null;
+        writeBehind.flush();
+        return repository.findById(messageId)
+                .filter(doc -> conversationId.equals(doc.getConversationId()))
+                .orElse(null);
+    }
+
+    /**
+     * Whether the user is a participant of some conversation or group with a
+     * message referencing the attachment. A message still in the write-behind
+     * queue is only looked for after a flush, so downloads of older blobs do
+     * not wait on it.
+     */
+    public boolean canAccessAttachment(String attachmentId, String mobile) {
+        if (attachmentId == null || mobile == null)
+            return false;
+        if (hasAttachmentInConversationOf(attachmentId, mobile))
+            return true;
+        writeBehind.flush();
+        return hasAttachmentInConversationOf(attachmentId, mobile);
+    }
+
+    private boolean hasAttachmentInConversationOf(String attachmentId, String mobile) {
+        List<String> conversationIds = mongoTemplate.findDistinct(
+                new Query(Criteria.where("attachmentId").is(attachmentId)), "conversationId",
+                ChatMessageDocument.class, String.class);
+        return conversationIds.stream().anyMatch(id -> conversationService.isUserParticipant(id, mobile)
+                || groupService.isUserMember(id, mobile));
+    }
+
     /**
      * Legacy: get recent messages without conversation (old public room).
+     * Inline file payloads are left out, as in {@link #getMessagePage}.
      */
     public List<ChatMessageResponse> getRecentMessages(int limit) {
         if (limit <= 0)
             limit = DEFAULT_HISTORY_LIMIT;
+        writeBehind.flush();
 
-        var pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "timestamp"));
-        List<ChatMessageDocument> docs = repository.findByOrderByTimestampDesc(pageable);
+        List<ChatMessageDocument> docs = repository.findRecentHistory(PageRequest.of(0, limit));
 
         List<ChatMessageResponse> messages = docs.stream()
                 .map(ChatMessageDocument::toResponse)
@@ -126,6 +327,7 @@ public class ChatService {
     public void deleteMessagesByConversationId(String conversationId) {
         if (conversationId == null)
             return;
+        writeBehind.flush();
         repository.deleteByConversationId(conversationId);
     }
 }
@@ -1,24 +1,101 @@
 package com.example.ChatBot.service;
 
+import com.example.ChatBot.cluster.ClusterBus;
+import com.example.ChatBot.cluster.ClusterMessage;
 import com.example.ChatBot.model.ConversationDocument;
+import com.example.ChatBot.model.MessageTombstoneDocument;
 import com.example.ChatBot.model.UserDocument;
 import com.example.ChatBot.repository.ConversationRepository;
 import com.example.ChatBot.repository.ChatMessageRepository;
+import com.example.ChatBot.repository.MessageTombstoneRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class ConversationService {
 
+    /**
+     * The two participants of a 1:1 conversation. Participants never change after
+     * creation, which is what makes them safe to cache.
+     */
+    public static final class Participants {
+        static final Participants NONE = new Participants(null, null);
+
+        private final String participant1;
+        private final String participant2;
+
+        Participants(String participant1, String participant2) {
+            this.participant1 = participant1;
+            this.participant2 = participant2;
+        }
+
+        public String getParticipant1() {
+            return participant1;
+        }
+
+        public String getParticipant2() {
+            return participant2;
+        }
+
+        public boolean contains(String mobile) {
+            return mobile != null && (mobile.equals(participant1) || mobile.equals(participant2));
+        }
+
+        /** Returns the other participant's mobile, or null if mobile is not a participant. */
+        public String other(String mobile) {
+            if (mobile == null)
+                return null;
+            if (mobile.equals(participant1))
+                return participant2;
+            if (mobile.equals(participant2))
+                return participant1;
+            return null;
+        }
+    }
+
     private final ConversationRepository conversationRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final MongoTemplate mongoTemplate;
+    private final MessageTombstoneRepository tombstoneRepository;
+    private final ObjectProvider<ClusterBus> clusterBus;
+
+    private static final String PARTICIPANT_CACHE = "conversation-participants";
+
+    // conversationId -> participants (NONE for ids that are not 1:1 conversations, e.g. groups)
+    private final Cache<String, Participants> participantCache;
 
     public ConversationService(ConversationRepository conversationRepository,
-            ChatMessageRepository chatMessageRepository) {
+            ChatMessageRepository chatMessageRepository, MongoTemplate mongoTemplate,
+            MessageTombstoneRepository tombstoneRepository, ObjectProvider<ClusterBus> clusterBus,
+            @Value("${chat.participant-cache.max-size:100000}") long participantCacheMaxSize,
+            @Value("${chat.participant-cache.ttl-seconds:600}") long participantCacheTtlSeconds,
+            MeterRegistry meterRegistry) {
         this.conversationRepository = conversationRepository;
         this.chatMessageRepository = chatMessageRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.tombstoneRepository = tombstoneRepository;
+        this.clusterBus = clusterBus;
+        this.participantCache = Caffeine.newBuilder()
+                .maximumSize(participantCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(participantCacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, participantCache, PARTICIPANT_CACHE);
+        clusterBus.ifAvailable(bus -> bus.subscribe(this::onClusterMessage));
     }
 
     /**
@@ -32,8 +109,47 @@ public class ConversationService {
         }
         String p1 = m1.compareTo(m2) < 0 ? m1 : m2;
         String p2 = m1.compareTo(m2) < 0 ? m2 : m1;
-        return conversationRepository.findByParticipant1AndParticipant2(p1, p2)
+        ConversationDocument conv = conversationRepository.findByParticipant1AndParticipant2(p1, p2)
                 .orElseGet(() -> conversationRepository.save(new ConversationDocument(p1, p2)));
+        participantCache.put(conv.getId(), new Participants(conv.getParticipant1(), conv.getParticipant2()));
+        return conv;
+    }
+
+    /**
+     * Participants of a 1:1 conversation, served from an in-memory cache after the
+     * first lookup. Returns null if the id is not a 1:1 conversation.
+     */
+    public Participants getParticipants(String conversationId) {
+        if (conversationId == null)
+            return null;
+        Participants participants = participantCache.get(conversationId, id -> conversationRepository.findById(id)
+                .map(conv -> new Participants(conv.getParticipant1(), conv.getParticipant2()))
+                .orElse(Participants.NONE));
+        return participants == Participants.NONE ? null : participants;
+    }
+
+    /**
+     * Other participant of a 1:1 conversation, or null if the conversation does not
+     * exist or the user is not part of it. Replaces scanning listForUser() on hot
+     * paths such as typing and sending.
+     */
+    public String findOtherParticipant(String conversationId, String mobile) {
+        Participants participants = getParticipants(conversationId);
+        return participants != null ? participants.other(UserDocument.normalizeMobile(mobile)) : null;
+    }
+
+    /**
+     * Conversations of a user whose metadata changed at or after a point in time.
+     */
+    public List<ConversationDocument> listChangedForUser(String mobile, long since) {
+        String m = UserDocument.normalizeMobile(mobile);
+        if (m == null)
+            return List.of();
+        Query query = new Query(new Criteria().andOperator(
+                new Criteria().orOperator(Criteria.where("participant1").is(m), Criteria.where("participant2").is(m)),
+                new Criteria().orOperator(Criteria.where("updatedAt").gte(since),
+                        Criteria.where("lastMessageAt").gte(since))));
+        return mongoTemplate.find(query, ConversationDocument.class);
     }
 
     /**
@@ -48,24 +164,46 @@ public class ConversationService {
     }
 
     public void updateLastMessage(String conversationId, String preview) {
-        conversationRepository.findById(conversationId).ifPresent(conv -> {
-            conv.setLastMessageAt(System.currentTimeMillis());
-            conv.setLastMessagePreview(preview != null && preview.length() > 100 ? preview.substring(0, 100) : preview);
-            conversationRepository.save(conv);
-        });
+        advanceLastMessage(conversationId, preview, System.currentTimeMillis());
+    }
+
+    /**
+     * Set the last message preview in a single update, but only if the message is
+     * not older than the one already recorded. Concurrent senders can therefore
+     * never move the preview backwards.
+     *
+     * @return true if the conversation was updated
+     */
+    public boolean advanceLastMessage(String conversationId, String preview, long timestamp) {
+        if (conversationId == null)
+            return false;
+        Query query = new Query(Criteria.where("_id").is(conversationId).and("lastMessageAt").lte(timestamp));
+        Update update = new Update()
+                .set("lastMessageAt", timestamp)
+                .set("lastMessagePreview", truncatePreview(preview))
+                .max("updatedAt", System.currentTimeMillis());
+        return mongoTemplate.updateFirst(query, update, ConversationDocument.class).getModifiedCount() > 0;
     }
 
     /**
      * Update last message preview with a specific timestamp (used after message
      * deletion
      * to set the timestamp to the actual latest remaining message's time).
+     * Unconditional, since deletion may legitimately move the timestamp back.
      */
     public void updateLastMessageWithTimestamp(String conversationId, String preview, long timestamp) {
-        conversationRepository.findById(conversationId).ifPresent(conv -> {
-            conv.setLastMessageAt(timestamp);
-            conv.setLastMessagePreview(preview != null && preview.length() > 100 ? preview.substring(0, 100) : preview);
-            conversationRepository.save(conv);
-        });
+        if (conversationId == null)
+            return;
+        Query query = new Query(Criteria.where("_id").is(conversationId));
+        Update update = new Update()
+                .set("lastMessageAt", timestamp)
+                .set("lastMessagePreview", truncatePreview(preview))
+                .max("updatedAt", System.currentTimeMillis());
+        mongoTemplate.updateFirst(query, update, ConversationDocument.class);
+    }
+
+    private static String truncatePreview(String preview) {
+        return preview != null && preview.length() > 100 ? preview.substring(0, 100) : preview;
     }
 
     /**
@@ -82,6 +220,9 @@ public class ConversationService {
                 .map(conv -> {
                     chatMessageRepository.deleteByConversationId(conversationId);
                     conversationRepository.delete(conv);
+                    invalidateParticipants(conversationId);
+                    tombstoneRepository.save(MessageTombstoneDocument.forConversation(conversationId,
+                            List.of(conv.getParticipant1(), conv.getParticipant2())));
                     return true;
                 })
                 .orElse(false);
@@ -89,14 +230,14 @@ public class ConversationService {
 
     /**
      * Fast check if a user is a participant in a conversation without loading all
-     * conversations.
+     * conversations. Served from the participant cache.
      */
     public boolean isUserParticipant(String conversationId, String mobile) {
         String m = UserDocument.normalizeMobile(mobile);
         if (m == null || conversationId == null)
             return false;
-        return conversationRepository.existsByIdAndParticipant1(conversationId, m)
-                || conversationRepository.existsByIdAndParticipant2(conversationId, m);
+        Participants participants = getParticipants(conversationId);
+        return participants != null && participants.contains(m);
     }
 
     /**
@@ -124,4 +265,21 @@ public class ConversationService {
                 })
                 .orElse(null);
     }
+
+    /** Drop a conversation from this node's participant cache and every other node's. */
+    private void invalidateParticipants(String conversationId) {
+        participantCache.invalidate(conversationId);
+        clusterBus.ifAvailable(bus -> bus.publish(
+                ClusterMessage.invalidate(bus.getNodeId(), PARTICIPANT_CACHE, Set.of(conversationId))));
+    }
+
+    private void onClusterMessage(ClusterMessage message) {
+        ClusterBus bus = clusterBus.getIfAvailable();
+        if (bus == null || message.getType() != ClusterMessage.Type.INVALIDATE
+                || !PARTICIPANT_CACHE.equals(message.getDestination()) || !message.isFor(bus.getNodeId()))
+            return;
+        if (message.getUsers() != null) {
+            participantCache.invalidateAll(message.getUsers());
+        }
+    }
 }
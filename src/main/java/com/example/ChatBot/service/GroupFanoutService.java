@@ -0,0 +1,124 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.websocket.EncodedMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers a group message to its members. The payload is converted to JSON
+ * once and the same bytes are sent to every recipient. Only online members
+ * get a push; offline members pick the message up through /api/sync when they
+ * reconnect. Presence comes from the cached online set, refreshed when it is
+ * older than a short bound, so sending costs no store query per message.
+ * Small groups are sent on the caller's thread; larger ones are
+ * split into batches sent in parallel by a dedicated pool, so the request
+ * returns without waiting for the whole fan-out.
+ */
+@Slf4j
+@Service
+public class GroupFanoutService {
+
+    private static final String DESTINATION = "/queue/messages";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceService presenceService;
+    private final int batchSize;
+    private final long presenceMaxAgeMs;
+    private final ExecutorService pool;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder skippedOffline = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public GroupFanoutService(SimpMessagingTemplate messagingTemplate, PresenceService presenceService,
+            @Value("${chat.group.fanout-batch-size:200}") int batchSize,
+            @Value("${chat.group.presence-max-age-ms:1000}") long presenceMaxAgeMs,
+            @Value("${chat.group.fanout-threads:4}") int threads,
+            @Value("${chat.group.fanout-queue-capacity:1000}") int queueCapacity) {
+        this.messagingTemplate = messagingTemplate;
+        this.presenceService = presenceService;
+        this.batchSize = Math.max(1, batchSize);
+        this.presenceMaxAgeMs = presenceMaxAgeMs;
+        AtomicInteger counter = new AtomicInteger();
+        // Bounded queue; when it is full the caller sends the batch itself
+        this.pool = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread t = new Thread(r, "group-fanout-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdown();
+    }
+
+    /**
+     * Push a message to the online members of a group.
+     *
+     * @return number of members the message was pushed to
+     */
+    public int dispatch(ChatMessageResponse message, Collection<String> members) {
+        List<String> online = new ArrayList<>(presenceService.findOnline(members, presenceMaxAgeMs));
+        skippedOffline.add(members.size() - online.size());
+        if (online.isEmpty())
+            return 0;
+
+        EncodedMessage encoded = EncodedMessage.of(messagingTemplate, message);
+        if (online.size() <= batchSize) {
+            sendBatch(encoded, online);
+            return online.size();
+        }
+        for (int from = 0; from < online.size(); from += batchSize) {
+            List<String> batch = online.subList(from, Math.min(from + batchSize, online.size()));
+            try {
+                pool.execute(() -> sendBatch(encoded, batch));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                sendBatch(encoded, batch);
+            }
+        }
+        return online.size();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /** Members not pushed to because they were offline (they catch up via sync). */
+    public long getSkippedOfflineCount() {
+        return skippedOffline.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    private void sendBatch(EncodedMessage encoded, List<String> recipients) {
+        batches.increment();
+        for (String recipient : recipients) {
+            try {
+                encoded.sendToUser(messagingTemplate, recipient, DESTINATION);
+                delivered.increment();
+            } catch (RuntimeException e) {
+                log.warn("Failed to push group message to {}", recipient, e);
+            }
+        }
+    }
+}
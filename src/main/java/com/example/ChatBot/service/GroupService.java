@@ -1,10 +1,25 @@
 package com.example.ChatBot.service;
 
+import com.example.ChatBot.cluster.ClusterBus;
+import com.example.ChatBot.cluster.ClusterMessage;
 import com.example.ChatBot.model.GroupDocument;
 import com.example.ChatBot.repository.GroupRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -14,6 +29,30 @@ public class GroupService {
     @Autowired
     private GroupRepository groupRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private static final String MEMBER_CACHE = "group-members";
+
+    private static final Set<String> NOT_A_GROUP = Collections.unmodifiableSet(new HashSet<>());
+
+    // groupId -> member mobiles (NOT_A_GROUP for ids that are not groups, e.g. 1:1 conversations)
+    private final Cache<String, Set<String>> memberCache;
+    private final ObjectProvider<ClusterBus> clusterBus;
+
+    public GroupService(@Value("${chat.participant-cache.max-size:100000}") long memberCacheMaxSize,
+            @Value("${chat.participant-cache.ttl-seconds:600}") long memberCacheTtlSeconds,
+            MeterRegistry meterRegistry, ObjectProvider<ClusterBus> clusterBus) {
+        this.clusterBus = clusterBus;
+        this.memberCache = Caffeine.newBuilder()
+                .maximumSize(memberCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(memberCacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memberCache, MEMBER_CACHE);
+        clusterBus.ifAvailable(bus -> bus.subscribe(this::onClusterMessage));
+    }
+
     public GroupDocument createGroup(String name, String description, String adminMobile, Set<String> members) {
         // Ensure admin is in members (handled by constructor but good to be explicit
         // here mostly for safety)
@@ -22,26 +61,79 @@ public class GroupService {
         GroupDocument group = new GroupDocument(name, adminMobile, members);
         group.setDescription(description);
 
-        return groupRepository.save(group);
+        GroupDocument saved = groupRepository.save(group);
+        memberCache.put(saved.getId(), Set.copyOf(saved.getMembers()));
+        return saved;
     }
 
     public List<GroupDocument> getMyGroups(String mobile) {
         return groupRepository.findByMembers(mobile);
     }
 
+    public List<GroupDocument> getMyGroupsChangedSince(String mobile, long since) {
+        return groupRepository.findByMembersAndLastMessageAtGreaterThanEqual(mobile, since);
+    }
+
     public GroupDocument getGroup(String id) {
         return groupRepository.findById(id).orElse(null);
     }
 
     public GroupDocument save(GroupDocument group) {
-        return groupRepository.save(group);
+        GroupDocument saved = groupRepository.save(group);
+        // Members may have changed; other nodes must not keep serving the old list
+        memberCache.invalidate(saved.getId());
+        clusterBus.ifAvailable(bus -> bus.publish(
+                ClusterMessage.invalidate(bus.getNodeId(), MEMBER_CACHE, Set.of(saved.getId()))));
+        return saved;
+    }
+
+    /**
+     * Member mobiles of a group, served from an in-memory cache after the first
+     * lookup. Returns null if the id is not a group.
+     */
+    public Set<String> getMembers(String groupId) {
+        if (groupId == null)
+            return null;
+        Set<String> members = memberCache.get(groupId, id -> groupRepository.findById(id)
+                .map(group -> group.getMembers() != null ? Set.copyOf(group.getMembers()) : Set.<String>of())
+                .orElse(NOT_A_GROUP));
+        return members == NOT_A_GROUP ? null : members;
     }
 
     /**
      * Fast check if a user is a member of a group without loading the full
-     * document.
+     * document. Served from the member cache.
      */
     public boolean isUserMember(String groupId, String mobile) {
-        return groupRepository.existsByIdAndMembers(groupId, mobile);
+        Set<String> members = getMembers(groupId);
+        return members != null && mobile != null && members.contains(mobile);
+    }
+
+    /**
+     * Record the group's latest message in a single update. Only applies if the
+     * message is not older than the current one, so concurrent sends never
+     * regress the preview.
+     *
+     * @return true if the group was updated
+     */
+    public boolean advanceLastMessage(String groupId, String preview, String senderName, long timestamp) {
+        if (groupId == null)
+            return false;
+        Query query = new Query(Criteria.where("_id").is(groupId).and("lastMessageAt").lte(timestamp));
+        Update update = new Update()
+                .set("lastMessageAt", timestamp)
+                .set("lastMessagePreview", preview)
+                .set("lastMessageSenderName", senderName);
+        return mongoTemplate.updateFirst(query, update, GroupDocument.class).getModifiedCount() > 0;
+    }
+
+    private void onClusterMessage(ClusterMessage message) {
+        ClusterBus bus = clusterBus.getIfAvailable();
+        if (bus == null || message.getType() != ClusterMessage.Type.INVALIDATE
+                || !MEMBER_CACHE.equals(message.getDestination()) || !message.isFor(bus.getNodeId()))
+            return;
+        if (message.getUsers() != null) {
+            memberCache.invalidateAll(message.getUsers());
+        }
     }
 }
@@ -1,6 +1,10 @@
 package com.example.ChatBot.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,19 +12,68 @@ import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Issues and checks the bearer tokens. The parser is built once, and tokens
+ * that verified recently are remembered (by SHA-256 digest, so the tokens
+ * themselves are not kept) until the cache TTL or the token's own expiry,
+ * whichever comes first, so a client repeating its token skips the signature
+ * check and JSON parsing. Only valid tokens are cached.
+ */
 @Service
 public class JwtService {
 
+    /** A verified token: its subject and when it stops being valid. */
+    private static final class Verified {
+        final String mobile;
+        final long expiresAtMillis;
+
+        Verified(String mobile, long expiresAtMillis) {
+            this.mobile = mobile;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
     private final SecretKey key;
     private final long expirationMs;
+    private final JwtParser parser;
+    /** Null when caching is turned off. */
+    private final Cache<String, Verified> verified;
 
     public JwtService(
             @Value("${jwt.secret}") String secret,
-            @Value("${jwt.expiration-ms:604800000}") long expirationMs) {
+            @Value("${jwt.expiration-ms:604800000}") long expirationMs,
+            @Value("${jwt.cache.max-size:10000}") long cacheMaxSize,
+            @Value("${jwt.cache.ttl-seconds:300}") long cacheTtlSeconds) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         this.expirationMs = expirationMs;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        long ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, cacheTtlSeconds));
+        this.verified = cacheMaxSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override
+                    public long expireAfterCreate(String token, Verified v, long currentTime) {
+                        long untilExpiry = TimeUnit.MILLISECONDS.toNanos(v.expiresAtMillis - System.currentTimeMillis());
+                        return Math.max(0, Math.min(ttlNanos, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Verified v, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, v, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Verified v, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     public String generate(String mobile) {
@@ -34,15 +87,37 @@ public class JwtService {
 
     public String validateAndGetMobile(String token) {
         if (token == null || token.isBlank()) return null;
+        String trimmed = token.trim();
+        String digest = verified != null ? digest(trimmed) : null;
+        if (digest != null) {
+            Verified hit = verified.getIfPresent(digest);
+            // Expiry is also checked here: the cache may not have evicted yet
+            if (hit != null && hit.expiresAtMillis > System.currentTimeMillis()) {
+                return hit.mobile;
+            }
+        }
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token.trim())
-                    .getBody();
+            Claims claims = parser.parseClaimsJws(trimmed).getBody();
+            if (digest != null) {
+                Date expiration = claims.getExpiration();
+                long expiresAt = expiration != null ? expiration.getTime() : Long.MAX_VALUE;
+                if (claims.getSubject() != null) {
+                    verified.put(digest, new Verified(claims.getSubject(), expiresAt));
+                }
+            }
             return claims.getSubject();
         } catch (Exception e) {
             return null;
         }
     }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
 }
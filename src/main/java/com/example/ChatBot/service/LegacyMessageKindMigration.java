@@ -0,0 +1,134 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ContactPayload;
+import com.example.ChatBot.dto.chat.EventPayload;
+import com.example.ChatBot.dto.chat.PollPayload;
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.MessageType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts messages stored before polls, contacts and events had their own
+ * types: CHAT messages whose content was "__POLL__", "__CONTACT__" or
+ * "__EVENT__" followed by JSON become typed messages, and "__POLL_VOTE__"
+ * messages are replayed into the poll tallies and removed. Votes that cannot
+ * be replayed (unreadable, or for a poll that no longer exists) are removed
+ * too, so no vote is found again on the next start. Messages are rewritten in
+ * place, so running it again (or on several nodes) only finds what is left.
+ */
+@Slf4j
+@Component
+public class LegacyMessageKindMigration {
+
+    private static final String POLL = "__POLL__";
+    private static final String POLL_VOTE = "__POLL_VOTE__";
+    private static final String CONTACT = "__CONTACT__";
+    private static final String EVENT = "__EVENT__";
+
+    private final MongoTemplate mongoTemplate;
+    private final PollService pollService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+
+    public LegacyMessageKindMigration(MongoTemplate mongoTemplate, PollService pollService, ObjectMapper objectMapper,
+            @Value("${chat.messages.migrate-legacy-kinds:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.pollService = pollService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled)
+            return;
+        // Oldest first, so a poll is converted before the votes cast on it
+        Query query = new Query(Criteria.where("type").is(MessageType.CHAT)
+                .and("content").regex("^__(POLL|POLL_VOTE|CONTACT|EVENT)__"))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp").and(Sort.by(Sort.Direction.ASC, "_id")));
+        query.fields().include("conversationId").include("sender").include("content");
+
+        int converted = 0;
+        int replayed = 0;
+        List<String> votes = new ArrayList<>();
+        try (CloseableIterator<ChatMessageDocument> legacy = mongoTemplate.stream(query, ChatMessageDocument.class)) {
+            while (legacy.hasNext()) {
+                ChatMessageDocument doc = legacy.next();
+                if (doc.getContent().startsWith(POLL_VOTE)) {
+                    // Removed whether or not it applies; a vote is never shown as a message
+                    votes.add(doc.getId());
+                    if (replayVote(doc))
+                        replayed++;
+                    continue;
+                }
+                try {
+                    if (convert(doc))
+                        converted++;
+                } catch (Exception e) {
+                    log.debug("Leaving message {} as text: {}", doc.getId(), e.getMessage());
+                }
+            }
+        }
+        if (!votes.isEmpty()) {
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(votes)), ChatMessageDocument.class);
+        }
+        if (converted > 0 || !votes.isEmpty()) {
+            log.info("Converted {} legacy poll/contact/event messages, replayed {} of {} votes", converted, replayed,
+                    votes.size());
+        }
+    }
+
+    private boolean replayVote(ChatMessageDocument doc) {
+        try {
+            JsonNode vote = objectMapper.readTree(doc.getContent().substring(POLL_VOTE.length()));
+            // The sender is who actually voted; the JSON's voter field was client-supplied
+            return pollService.vote(doc.getConversationId(), vote.path("pollMessageId").asText(null),
+                    doc.getSender(), vote.path("optionIndex").asInt(-1)) != null;
+        } catch (Exception e) {
+            log.debug("Dropping unreadable vote {}: {}", doc.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean convert(ChatMessageDocument doc) throws Exception {
+        String content = doc.getContent();
+        if (content.startsWith(POLL)) {
+            PollPayload poll = objectMapper.readValue(content.substring(POLL.length()), PollPayload.class)
+                    .withoutTally();
+            if (poll.getOptions() == null || poll.getOptions().isEmpty())
+                return false;
+            pollService.open(doc.getId(), doc.getConversationId(), poll.getOptions().size());
+            return retype(doc, MessageType.POLL, "poll", poll);
+        }
+        if (content.startsWith(CONTACT)) {
+            return retype(doc, MessageType.CONTACT, "contact",
+                    objectMapper.readValue(content.substring(CONTACT.length()), ContactPayload.class));
+        }
+        if (content.startsWith(EVENT)) {
+            return retype(doc, MessageType.EVENT, "event",
+                    objectMapper.readValue(content.substring(EVENT.length()), EventPayload.class));
+        }
+        return false;
+    }
+
+    private boolean retype(ChatMessageDocument doc, MessageType type, String field, Object payload) {
+        Query query = new Query(Criteria.where("_id").is(doc.getId()).and("type").is(MessageType.CHAT));
+        Update update = new Update().set("type", type).set(field, payload).unset("content");
+        return mongoTemplate.updateFirst(query, update, ChatMessageDocument.class).getModifiedCount() > 0;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.storage.StoredAttachment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Local disk cache of decoded media, so downloads can be served as plain files
+ * (range requests, zero-copy transfer) instead of re-reading GridFS or
+ * re-decoding base64 on every request. Entries are immutable: attachments are
+ * keyed by content hash and legacy inline files by message id.
+ * Every hit refreshes the file's modification time, and eviction skips files
+ * touched within the grace period, so a file handed out to be served is not
+ * deleted before the response has opened it.
+ */
+@Slf4j
+@Service
+public class MediaCacheService {
+
+    /**
+     * A media file on local disk together with what is needed to serve it.
+     */
+    public static final class CachedMedia {
+        private final Path path;
+        private final String contentType;
+        private final String etag;
+
+        CachedMedia(Path path, String contentType, String etag) {
+            this.path = path;
+            this.contentType = contentType;
+            this.etag = etag;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /** Strong ETag value (quoted). */
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private final AttachmentService attachmentService;
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final long evictGraceMs;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public MediaCacheService(AttachmentService attachmentService,
+            @Value("${chat.media.cache-dir:${java.io.tmpdir}/chatterbox-media}") String cacheDir,
+            @Value("${chat.media.cache-max-bytes:1073741824}") long maxBytes,
+            @Value("${chat.media.evict-grace-ms:60000}") long evictGraceMs) {
+        this.attachmentService = attachmentService;
+        this.cacheDir = Paths.get(cacheDir);
+        this.maxBytes = maxBytes;
+        this.evictGraceMs = evictGraceMs;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(cacheDir);
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            totalBytes.set(files.filter(Files::isRegularFile).mapToLong(MediaCacheService::sizeOf).sum());
+        }
+    }
+
+    /**
+     * Media for a stored attachment, copied to local disk on first access.
+     */
+    public Optional<CachedMedia> forAttachment(String attachmentId) {
+        Optional<StoredAttachment> attachment = attachmentService.find(attachmentId);
+        if (attachment.isEmpty()) {
+            return Optional.empty();
+        }
+        StoredAttachment meta = attachment.get();
+        Path path = cacheDir.resolve(meta.getId());
+        if (!touch(path)) {
+            try {
+                Optional<InputStream> content = attachmentService.open(meta.getId());
+                if (content.isEmpty()) {
+                    return Optional.empty();
+                }
+                try (InputStream in = content.get()) {
+                    populate(path, in);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return Optional.of(new CachedMedia(path, meta.getContentType(), "\"" + meta.getId() + "\""));
+    }
+
+    /**
+     * Media for a FILE message: its attachment, or its legacy inline base64
+     * content decoded once and kept on disk.
+     */
+    public Optional<CachedMedia> forMessage(ChatMessageDocument message) {
+        if (message.getAttachmentId() != null) {
+            return forAttachment(message.getAttachmentId());
+        }
+        if (message.getFileContent() == null || message.getFileContent().isBlank()) {
+            return Optional.empty();
+        }
+        String key = "msg-" + message.getId();
+        Path path = cacheDir.resolve(key);
+        if (!touch(path)) {
+            String data = message.getFileContent();
+            if (data.startsWith("data:")) {
+                data = data.substring(data.indexOf(',') + 1);
+            }
+            try (InputStream in = Base64.getMimeDecoder().wrap(
+                    new ByteArrayInputStream(data.getBytes(StandardCharsets.ISO_8859_1)))) {
+                populate(path, in);
+            } catch (IOException e) {
+                log.warn("Message {} has undecodable file content", message.getId(), e);
+                return Optional.empty();
+            }
+        }
+        String contentType = message.getFileType() != null ? message.getFileType() : "application/octet-stream";
+        return Optional.of(new CachedMedia(path, contentType, "\"" + key + "\""));
+    }
+
+    private void populate(Path path, InputStream content) throws IOException {
+        Path tmp = Files.createTempFile(cacheDir, ".fill-", ".tmp");
+        try {
+            long size = Files.copy(content, tmp, StandardCopyOption.REPLACE_EXISTING);
+            if (Files.exists(path)) {
+                // Another request filled it meanwhile; entries are immutable so either copy will do
+                return;
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (totalBytes.addAndGet(size) > maxBytes) {
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Mark a cached file as in use. Serialized with the check-and-delete in
+     * {@link #evict()}, so a file is either gone before this returns false or
+     * kept for at least the grace period.
+     *
+     * @return false if the file is not (or no longer) cached
+     */
+    private synchronized boolean touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            log.debug("Could not touch {}", path, e);
+            return Files.exists(path);
+        }
+    }
+
+    /**
+     * Drop least recently used files until the cache is back under 90% of its
+     * budget, skipping files used within the grace period.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true))
+            return;
+        try {
+            if (totalBytes.get() <= maxBytes)
+                return;
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> listing = Files.list(cacheDir)) {
+                listing.filter(p -> Files.isRegularFile(p) && !p.getFileName().toString().startsWith(".fill-"))
+                        .forEach(files::add);
+            } catch (IOException e) {
+                log.warn("Failed to list media cache {}", cacheDir, e);
+                return;
+            }
+            files.sort(Comparator.comparing(MediaCacheService::modifiedTime));
+            long target = maxBytes * 9 / 10;
+            for (Path file : files) {
+                if (totalBytes.get() <= target)
+                    break;
+                deleteIfIdle(file);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private synchronized void deleteIfIdle(Path file) {
+        // Re-read: the file may have been served since the listing was sorted
+        if (System.currentTimeMillis() - modifiedTime(file).toMillis() < evictGraceMs)
+            return;
+        long size = sizeOf(file);
+        try {
+            if (Files.deleteIfExists(file)) {
+                totalBytes.addAndGet(-size);
+            }
+        } catch (IOException e) {
+            log.debug("Could not evict {}", file, e);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime modifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
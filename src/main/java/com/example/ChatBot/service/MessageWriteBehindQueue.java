@@ -0,0 +1,309 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.exception.MessageNotPersistedException;
+import com.example.ChatBot.model.ChatMessageDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind stage for chat messages.
+ * Messages arrive with their id already assigned and are buffered in a bounded
+ * queue; a single background writer drains it in batches (by size or time) with
+ * one unordered bulk insert, then applies one last-message update per
+ * conversation. The send path therefore does not wait on Mongo unless the
+ * deployment asks for it via {@link AckMode}.
+ */
+@Slf4j
+@Component
+public class MessageWriteBehindQueue {
+
+    /**
+     * How long a sender waits for its message to be persisted.
+     */
+    public enum AckMode {
+        /** Return immediately; the message is persisted by the background writer. */
+        ASYNC,
+        /** Wait until the batch containing the message has been written (group commit). */
+        DURABLE,
+        /** Persist on the caller's thread, bypassing the buffer (previous behaviour). */
+        SYNC
+    }
+
+    private static final class PendingWrite {
+        private final ChatMessageDocument doc;
+        private final String preview;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private PendingWrite(ChatMessageDocument doc, String preview) {
+            this.doc = doc;
+            this.preview = preview;
+        }
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationService conversationService;
+    private final BlockingQueue<PendingWrite> buffer;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final long durableAckTimeoutMs;
+    private final AckMode ackMode;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object wakeup = new Object();
+    private final AtomicLong persistedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong callerRunsCount = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public MessageWriteBehindQueue(MongoTemplate mongoTemplate, ConversationService conversationService,
+            @Value("${chat.persistence.ack-mode:ASYNC}") AckMode ackMode,
+            @Value("${chat.persistence.buffer-capacity:10000}") int bufferCapacity,
+            @Value("${chat.persistence.batch-size:200}") int batchSize,
+            @Value("${chat.persistence.flush-interval-ms:25}") long flushIntervalMs,
+            @Value("${chat.persistence.offer-timeout-ms:10}") long offerTimeoutMs,
+            @Value("${chat.persistence.durable-ack-timeout-ms:2000}") long durableAckTimeoutMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.conversationService = conversationService;
+        this.ackMode = ackMode;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.offerTimeoutMs = Math.max(0, offerTimeoutMs);
+        this.durableAckTimeoutMs = durableAckTimeoutMs;
+    }
+
+    @PostConstruct
+    void start() {
+        if (ackMode == AckMode.SYNC)
+            return;
+        running = true;
+        writer = new Thread(this::runWriter, "chat-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Message write-behind started (ackMode={}, batchSize={}, flushIntervalMs={})",
+                ackMode, batchSize, flushIntervalMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (writer != null) {
+            synchronized (wakeup) {
+                wakeup.notifyAll();
+            }
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Whatever is still buffered gets written before the Mongo client shuts down
+        flush();
+    }
+
+    /**
+     * Queue a message for persistence. The document must already carry its id.
+     * When the buffer stays full for longer than the offer timeout, the message
+     * is written on the caller's thread, which throttles producers to the rate
+     * Mongo can sustain instead of dropping messages.
+     *
+     * In DURABLE and SYNC modes this returns only once the message is written;
+     * otherwise it throws, so the sender is never told a message is saved when
+     * it is not.
+     *
+     * @param preview last-message preview for the message's conversation, or
+     *                null to leave the conversation's preview alone (group
+     *                messages, whose preview the caller records on the group)
+     * @throws MessageNotPersistedException in DURABLE or SYNC mode, if the write
+     *                                      failed or was not acknowledged in time
+     */
+    public void submit(ChatMessageDocument doc, String preview) {
+        PendingWrite write = new PendingWrite(doc, preview);
+        if (ackMode == AckMode.SYNC || !running) {
+            writeBatch(List.of(write));
+            acknowledge(write);
+            return;
+        }
+
+        boolean queued;
+        try {
+            queued = buffer.offer(write, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            callerRunsCount.incrementAndGet();
+            flushLock.lock();
+            try {
+                writeBatch(List.of(write));
+            } finally {
+                flushLock.unlock();
+            }
+            acknowledge(write);
+            return;
+        }
+
+        if (buffer.size() >= batchSize) {
+            synchronized (wakeup) {
+                wakeup.notify();
+            }
+        }
+        acknowledge(write);
+    }
+
+    /**
+     * Persist everything buffered so far. Callers that read or delete messages
+     * use this to see their own writes; it returns immediately when nothing is
+     * pending.
+     */
+    public void flush() {
+        if (buffer.isEmpty() && !flushLock.isLocked())
+            return;
+        flushLock.lock();
+        try {
+            List<PendingWrite> batch = new ArrayList<>(batchSize);
+            while (buffer.drainTo(batch, batchSize) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    public long getPersistedCount() {
+        return persistedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /** Number of messages written on the sender's thread because the buffer was full. */
+    public long getCallerRunsCount() {
+        return callerRunsCount.get();
+    }
+
+    public AckMode getAckMode() {
+        return ackMode;
+    }
+
+    private void runWriter() {
+        while (running) {
+            try {
+                synchronized (wakeup) {
+                    if (running && buffer.size() < batchSize) {
+                        wakeup.wait(flushIntervalMs);
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Write-behind flush failed", e);
+            }
+        }
+    }
+
+    /** Outside ASYNC mode, wait for the write and fail the send unless it landed. */
+    private void acknowledge(PendingWrite write) {
+        if (ackMode == AckMode.ASYNC)
+            return;
+        String id = write.doc.getId();
+        try {
+            write.written.get(durableAckTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Still queued: it may be written later, but the sender cannot count on it
+            throw new MessageNotPersistedException(
+                    "Message " + id + " not written within " + durableAckTimeoutMs + " ms", e);
+        } catch (ExecutionException e) {
+            throw new MessageNotPersistedException("Failed to persist message " + id, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageNotPersistedException("Interrupted before message " + id + " was written", e);
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        List<ChatMessageDocument> docs = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            docs.add(write.doc);
+        }
+
+        Map<String, RuntimeException> failures = new HashMap<>();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessageDocument.class)
+                    .insert(docs)
+                    .execute();
+        } catch (DataAccessException e) {
+            log.warn("Bulk insert of {} messages failed, retrying one by one", docs.size(), e);
+            // Ids are assigned up front, so save() is an idempotent upsert for the ones that did land
+            for (ChatMessageDocument doc : docs) {
+                try {
+                    mongoTemplate.save(doc);
+                } catch (RuntimeException retryFailure) {
+                    failedCount.incrementAndGet();
+                    failures.put(doc.getId(), retryFailure);
+                    log.error("Dropping message {} for conversation {}", doc.getId(), doc.getConversationId(),
+                            retryFailure);
+                }
+            }
+        }
+        persistedCount.addAndGet(docs.size() - failures.size());
+
+        // One last-message update per conversation, using the newest message in the batch
+        Map<String, PendingWrite> latestByConversation = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            if (write.preview == null || failures.containsKey(write.doc.getId()))
+                continue;
+            latestByConversation.merge(write.doc.getConversationId(), write,
+                    (a, b) -> b.doc.getTimestamp() >= a.doc.getTimestamp() ? b : a);
+        }
+        for (PendingWrite latest : latestByConversation.values()) {
+            try {
+                conversationService.advanceLastMessage(latest.doc.getConversationId(), latest.preview,
+                        latest.doc.getTimestamp());
+            } catch (RuntimeException e) {
+                log.warn("Failed to update last message for conversation {}", latest.doc.getConversationId(), e);
+            }
+        }
+
+        for (PendingWrite write : batch) {
+            RuntimeException failure = failures.get(write.doc.getId());
+            if (failure != null) {
+                write.written.completeExceptionally(failure);
+            } else {
+                write.written.complete(null);
+            }
+        }
+    }
+}
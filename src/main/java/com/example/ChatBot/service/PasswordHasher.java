@@ -0,0 +1,127 @@
+package com.example.ChatBot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt on its own small pool instead of on request threads. A hash
+ * takes tens of milliseconds of CPU, so a burst of logins (everyone
+ * reconnecting after an outage) would otherwise occupy the Tomcat threads that
+ * also serve WebSocket handshakes and the REST API. The queue is bounded and
+ * full means no: callers get a {@link RejectedExecutionException} right away,
+ * as they do for a request that waited longer than {@code max-wait-ms} (its
+ * client has most likely given up).
+ */
+@Service
+public class PasswordHasher {
+
+    private static final String WAIT = "Time hash requests waited for a thread";
+    private static final String TIME = "Time spent in BCrypt";
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor pool;
+    private final long maxWaitNanos;
+
+    private final Timer encodeWait;
+    private final Timer encodeTime;
+    private final Timer matchWait;
+    private final Timer matchTime;
+    private final Counter rejected;
+    private final Counter expired;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder, MeterRegistry registry,
+            @Value("${chat.auth.hash-threads:0}") int threads,
+            @Value("${chat.auth.hash-queue-capacity:64}") int queueCapacity,
+            @Value("${chat.auth.hash-max-wait-ms:5000}") long maxWaitMs) {
+        this.passwordEncoder = passwordEncoder;
+        // Leave most cores to message delivery
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxWaitMs));
+
+        this.encodeWait = timer(registry, "chat.auth.hash.wait", "encode", WAIT);
+        this.encodeTime = timer(registry, "chat.auth.hash.time", "encode", TIME);
+        this.matchWait = timer(registry, "chat.auth.hash.wait", "match", WAIT);
+        this.matchTime = timer(registry, "chat.auth.hash.time", "match", TIME);
+        this.rejected = Counter.builder("chat.auth.hash.rejected")
+                .description("Hash requests refused because the queue was full")
+                .register(registry);
+        this.expired = Counter.builder("chat.auth.hash.expired")
+                .description("Hash requests dropped after waiting longer than max-wait-ms")
+                .register(registry);
+        Gauge.builder("chat.auth.hash.queued", pool, p -> p.getQueue().size())
+                .description("Hash requests waiting for a thread")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdown();
+    }
+
+    /** BCrypt hash of {@code rawPassword}, computed on the hashing pool. */
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword), encodeWait, encodeTime);
+    }
+
+    /** Whether {@code rawPassword} matches {@code hashedPassword}, checked on the hashing pool. */
+    public CompletableFuture<Boolean> matches(String rawPassword, String hashedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, hashedPassword), matchWait, matchTime);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> hash, Timer wait, Timer time) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                wait.record(waited, TimeUnit.NANOSECONDS);
+                if (waited > maxWaitNanos) {
+                    expired.increment();
+                    result.completeExceptionally(new RejectedExecutionException("Waited too long for a hash thread"));
+                    return;
+                }
+                long start = System.nanoTime();
+                T value;
+                try {
+                    value = hash.get();
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                } finally {
+                    // Before completing: dependent stages run on this thread
+                    time.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                result.complete(value);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static Timer timer(MeterRegistry registry, String name, String operation, String description) {
+        return Timer.builder(name).tag("operation", operation).description(description).register(registry);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.dto.chat.PollPayload;
+import com.example.ChatBot.dto.chat.PollVotePayload;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.model.PollTallyDocument;
+import com.example.ChatBot.model.PollVoteDocument;
+import com.example.ChatBot.model.UserDocument;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Server-side poll tallies. Each poll has one counter document updated with
+ * $inc, plus one document per voter holding their current choice, so a vote
+ * costs two single-document writes and reading a poll never replays votes.
+ */
+@Service
+public class PollService {
+
+    private final MongoTemplate mongoTemplate;
+
+    public PollService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Create the zeroed tally for a new poll message. Safe to call again for
+     * the same poll; an existing tally is left as is.
+     *
+     * @return the initial counts
+     */
+    public List<Long> open(String pollId, String conversationId, int optionCount) {
+        List<Long> zeros = Collections.nCopies(optionCount, 0L);
+        Update update = new Update()
+                .setOnInsert("conversationId", conversationId)
+                .setOnInsert("optionCount", optionCount)
+                .setOnInsert("counts", zeros)
+                .setOnInsert("updatedAt", System.currentTimeMillis());
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(pollId)), update, PollTallyDocument.class);
+        return zeros;
+    }
+
+    /**
+     * Record a user's vote, replacing any earlier vote of theirs on the same
+     * poll.
+     *
+     * @return the counts after the vote, or null if the poll does not exist in
+     *         this conversation or has no such option
+     */
+    public PollVotePayload vote(String conversationId, String pollId, String voter, int optionIndex) {
+        String v = UserDocument.normalizeMobile(voter);
+        if (v == null || pollId == null || optionIndex < 0)
+            return null;
+        Query poll = new Query(Criteria.where("_id").is(pollId)
+                .and("conversationId").is(conversationId)
+                .and("optionCount").gt(optionIndex));
+        if (!mongoTemplate.exists(poll, PollTallyDocument.class))
+            return null;
+
+        long now = System.currentTimeMillis();
+        PollVoteDocument previous = recordVote(conversationId, pollId, v, optionIndex, now);
+
+        PollTallyDocument tally;
+        if (previous != null && previous.getOption() == optionIndex) {
+            tally = mongoTemplate.findById(pollId, PollTallyDocument.class);
+        } else {
+            // Moving a vote is one update: +1 on the new option, -1 on the old one
+            Update update = new Update().inc("counts." + optionIndex, 1).set("updatedAt", now);
+            if (previous != null) {
+                update.inc("counts." + previous.getOption(), -1);
+            }
+            tally = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(pollId)), update,
+                    FindAndModifyOptions.options().returnNew(true), PollTallyDocument.class);
+        }
+        if (tally == null)
+            return null;
+        return PollVotePayload.builder()
+                .pollMessageId(pollId)
+                .voter(v)
+                .optionIndex(optionIndex)
+                .counts(tally.getCounts())
+                .build();
+    }
+
+    /** Upsert the voter's choice and return what it was before (null for a first vote). */
+    private PollVoteDocument recordVote(String conversationId, String pollId, String voter, int optionIndex,
+            long now) {
+        Query query = new Query(Criteria.where("_id").is(PollVoteDocument.idFor(pollId, voter)));
+        Update update = new Update()
+                .set("pollId", pollId)
+                .set("conversationId", conversationId)
+                .set("voter", voter)
+                .set("option", optionIndex)
+                .set("votedAt", now);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(false);
+        try {
+            return mongoTemplate.findAndModify(query, update, options, PollVoteDocument.class);
+        } catch (DuplicateKeyException e) {
+            // Two first votes raced on the upsert; the loser now updates the winner's document
+            return mongoTemplate.findAndModify(query, update, options, PollVoteDocument.class);
+        }
+    }
+
+    /**
+     * Fill in counts and the viewer's own vote on every POLL in
+     * {@code messages}: two queries per page, however many polls it holds.
+     */
+    public void attachTallies(Collection<ChatMessageResponse> messages, String viewer) {
+        List<ChatMessageResponse> polls = messages.stream()
+                .filter(msg -> msg.getType() == MessageType.POLL && msg.getPoll() != null && msg.getId() != null)
+                .collect(Collectors.toList());
+        if (polls.isEmpty())
+            return;
+        List<String> pollIds = polls.stream().map(ChatMessageResponse::getId).collect(Collectors.toList());
+
+        Map<String, List<Long>> counts = new HashMap<>();
+        mongoTemplate.find(new Query(Criteria.where("_id").in(pollIds)), PollTallyDocument.class)
+                .forEach(tally -> counts.put(tally.getId(), tally.getCounts()));
+
+        Map<String, Integer> myVotes = new HashMap<>();
+        String v = UserDocument.normalizeMobile(viewer);
+        if (v != null) {
+            List<String> voteIds = pollIds.stream().map(id -> PollVoteDocument.idFor(id, v))
+                    .collect(Collectors.toList());
+            mongoTemplate.find(new Query(Criteria.where("_id").in(voteIds)), PollVoteDocument.class)
+                    .forEach(vote -> myVotes.put(vote.getPollId(), vote.getOption()));
+        }
+
+        for (ChatMessageResponse msg : polls) {
+            PollPayload poll = msg.getPoll();
+            int optionCount = poll.getOptions() != null ? poll.getOptions().size() : 0;
+            poll.setCounts(counts.getOrDefault(msg.getId(), Collections.nCopies(optionCount, 0L)));
+            poll.setMyVote(myVotes.get(msg.getId()));
+        }
+    }
+
+    /**
+     * Tallies in the given conversations that received votes at or after
+     * {@code since}, for clients catching up through /api/sync.
+     */
+    public List<PollVotePayload> findChangedSince(Collection<String> conversationIds, long since) {
+        if (conversationIds.isEmpty())
+            return List.of();
+        Query query = new Query(Criteria.where("conversationId").in(conversationIds).and("updatedAt").gte(since));
+        return mongoTemplate.find(query, PollTallyDocument.class).stream()
+                .map(tally -> PollVotePayload.builder()
+                        .pollMessageId(tally.getId())
+                        .counts(tally.getCounts())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /** Drop tallies and votes of deleted poll messages. */
+    public void deletePolls(Collection<String> messageIds) {
+        if (messageIds == null || messageIds.isEmpty())
+            return;
+        mongoTemplate.remove(new Query(Criteria.where("_id").in(messageIds)), PollTallyDocument.class);
+        mongoTemplate.remove(new Query(Criteria.where("pollId").in(messageIds)), PollVoteDocument.class);
+    }
+
+    /** Drop every tally and vote of a deleted conversation. */
+    public void deleteForConversation(String conversationId) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId));
+        mongoTemplate.remove(query, PollTallyDocument.class);
+        mongoTemplate.remove(query, PollVoteDocument.class);
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.cluster.ClusterRelay;
+import com.example.ChatBot.dto.user.PresenceUpdate;
+import com.example.ChatBot.model.ConversationDocument;
+import com.example.ChatBot.model.GroupDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes online/offline changes of a user's contacts (people they share a
+ * conversation or group with) to subscribers of /user/queue/presence.
+ * Once per batch window the node diffs the online set against the previous
+ * one, so someone who drops and reconnects within the window produces no
+ * event at all, and the cost is one diff per node rather than a full online
+ * list per client poll. Each node only serves subscribers connected to it.
+ */
+@Slf4j
+@Service
+public class PresenceNotifier {
+
+    public static final String DESTINATION = "/queue/presence";
+
+    private static final String SUBSCRIBE_DESTINATION = "/user" + DESTINATION;
+
+    private static final class Contacts {
+        private final Set<String> mobiles;
+        private final long loadedAt;
+
+        private Contacts(Set<String> mobiles, long loadedAt) {
+            this.mobiles = mobiles;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final PresenceService presenceService;
+    private final ConversationService conversationService;
+    private final GroupService groupService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long batchMs;
+    private final long contactsTtlMs;
+
+    /** Session id to (subscription id to subscriber mobile). */
+    private final Map<String, Map<String, String>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<String> pendingSnapshots = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this; written on subscribe/unsubscribe and by the batch thread
+    private final Map<String, Integer> subscriberSessions = new HashMap<>();
+    private final Map<String, Contacts> contactsBySubscriber = new HashMap<>();
+    private final Map<String, Set<String>> subscribersByContact = new HashMap<>();
+
+    // Only touched by the batch thread
+    private Set<String> lastOnline;
+
+    private final LongAdder deltasSent = new LongAdder();
+    private final LongAdder snapshotsSent = new LongAdder();
+    private ScheduledExecutorService batcher;
+
+    public PresenceNotifier(PresenceService presenceService, ConversationService conversationService,
+            GroupService groupService, SimpMessagingTemplate messagingTemplate,
+            @Value("${chat.presence.push.batch-ms:1000}") long batchMs,
+            @Value("${chat.presence.push.contacts-ttl-ms:300000}") long contactsTtlMs) {
+        this.presenceService = presenceService;
+        this.conversationService = conversationService;
+        this.groupService = groupService;
+        this.messagingTemplate = messagingTemplate;
+        this.batchMs = Math.max(100, batchMs);
+        this.contactsTtlMs = contactsTtlMs;
+    }
+
+    @PostConstruct
+    void start() {
+        batcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "presence-notifier");
+            t.setDaemon(true);
+            return t;
+        });
+        batcher.scheduleWithFixedDelay(this::flush, batchMs, batchMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (batcher != null) {
+            batcher.shutdownNow();
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String mobile = userOf(accessor.getUser());
+        if (mobile == null || !SUBSCRIBE_DESTINATION.equals(accessor.getDestination())
+                || accessor.getSessionId() == null || accessor.getSubscriptionId() == null)
+            return;
+        subscriptions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), mobile);
+        synchronized (this) {
+            subscriberSessions.merge(mobile, 1, Integer::sum);
+        }
+        // Sent by the batch thread, after the broker has registered the subscription
+        pendingSnapshots.add(mobile);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> bySubscription = subscriptions.get(accessor.getSessionId());
+        if (bySubscription == null || accessor.getSubscriptionId() == null)
+            return;
+        String mobile = bySubscription.remove(accessor.getSubscriptionId());
+        if (mobile != null) {
+            release(mobile);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> bySubscription = subscriptions.remove(event.getSessionId());
+        if (bySubscription != null) {
+            bySubscription.values().forEach(this::release);
+        }
+    }
+
+    public long getDeltasSentCount() {
+        return deltasSent.sum();
+    }
+
+    public long getSnapshotsSentCount() {
+        return snapshotsSent.sum();
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscriberSessions.size();
+    }
+
+    void flush() {
+        try {
+            long now = System.currentTimeMillis();
+            Set<String> online = new HashSet<>(presenceService.getOnlineMobiles());
+            refreshContacts(now);
+            sendSnapshots(online);
+            sendDeltas(online);
+        } catch (RuntimeException e) {
+            log.warn("Presence push failed", e);
+        }
+    }
+
+    private void sendDeltas(Set<String> online) {
+        Set<String> previous = lastOnline;
+        lastOnline = online;
+        if (previous == null)
+            return;
+
+        Map<String, PresenceUpdate> updates = new HashMap<>();
+        synchronized (this) {
+            for (String mobile : online) {
+                if (!previous.contains(mobile)) {
+                    collect(updates, mobile, true);
+                }
+            }
+            for (String mobile : previous) {
+                if (!online.contains(mobile)) {
+                    collect(updates, mobile, false);
+                }
+            }
+        }
+        updates.forEach(this::send);
+        deltasSent.add(updates.size());
+    }
+
+    private void collect(Map<String, PresenceUpdate> updates, String contact, boolean cameOnline) {
+        Set<String> subscribers = subscribersByContact.get(contact);
+        if (subscribers == null)
+            return;
+        for (String subscriber : subscribers) {
+            PresenceUpdate update = updates.computeIfAbsent(subscriber, s -> PresenceUpdate.builder()
+                    .online(new ArrayList<>())
+                    .offline(new ArrayList<>())
+                    .build());
+            (cameOnline ? update.getOnline() : update.getOffline()).add(contact);
+        }
+    }
+
+    private void sendSnapshots(Set<String> online) {
+        for (Iterator<String> it = pendingSnapshots.iterator(); it.hasNext();) {
+            String subscriber = it.next();
+            List<String> onlineContacts = new ArrayList<>();
+            synchronized (this) {
+                Contacts contacts = contactsBySubscriber.get(subscriber);
+                if (contacts == null) {
+                    // Subscribed after this batch loaded contacts: keep it for the next one
+                    if (!subscriberSessions.containsKey(subscriber)) {
+                        it.remove();
+                    }
+                    continue;
+                }
+                it.remove();
+                for (String contact : contacts.mobiles) {
+                    if (online.contains(contact)) {
+                        onlineContacts.add(contact);
+                    }
+                }
+            }
+            send(subscriber, PresenceUpdate.builder()
+                    .online(onlineContacts)
+                    .offline(List.of())
+                    .snapshot(true)
+                    .build());
+            snapshotsSent.increment();
+        }
+    }
+
+    /** Load contacts for new subscribers and reload ones older than the TTL. */
+    private void refreshContacts(long now) {
+        List<String> stale = new ArrayList<>();
+        synchronized (this) {
+            for (String subscriber : subscriberSessions.keySet()) {
+                Contacts contacts = contactsBySubscriber.get(subscriber);
+                if (contacts == null || now - contacts.loadedAt >= contactsTtlMs) {
+                    stale.add(subscriber);
+                }
+            }
+        }
+        for (String subscriber : stale) {
+            Set<String> mobiles = loadContacts(subscriber);
+            synchronized (this) {
+                if (!subscriberSessions.containsKey(subscriber))
+                    continue;
+                unindex(subscriber);
+                contactsBySubscriber.put(subscriber, new Contacts(mobiles, now));
+                for (String contact : mobiles) {
+                    subscribersByContact.computeIfAbsent(contact, c -> new HashSet<>()).add(subscriber);
+                }
+            }
+        }
+    }
+
+    private Set<String> loadContacts(String mobile) {
+        Set<String> contacts = new HashSet<>();
+        for (ConversationDocument conv : conversationService.listForUser(mobile)) {
+            String other = conv.getOtherParticipant(mobile);
+            if (other != null) {
+                contacts.add(other);
+            }
+        }
+        for (GroupDocument group : groupService.getMyGroups(mobile)) {
+            if (group.getMembers() != null) {
+                contacts.addAll(group.getMembers());
+            }
+        }
+        contacts.remove(mobile);
+        return contacts;
+    }
+
+    private synchronized void release(String mobile) {
+        Integer remaining = subscriberSessions.computeIfPresent(mobile, (m, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null) {
+            unindex(mobile);
+            contactsBySubscriber.remove(mobile);
+        }
+    }
+
+    private void unindex(String subscriber) {
+        Contacts contacts = contactsBySubscriber.get(subscriber);
+        if (contacts == null)
+            return;
+        for (String contact : contacts.mobiles) {
+            Set<String> subscribers = subscribersByContact.get(contact);
+            if (subscribers != null && subscribers.remove(subscriber) && subscribers.isEmpty()) {
+                subscribersByContact.remove(contact);
+            }
+        }
+    }
+
+    private void send(String subscriber, PresenceUpdate update) {
+        // Every node computes the same changes for its own sessions, so never relay these
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setHeader(ClusterRelay.ORIGIN_HEADER, "local");
+        headers.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(subscriber, DESTINATION, update, headers.getMessageHeaders());
+    }
+
+    private static String userOf(Principal principal) {
+        if (principal == null || "anonymous".equals(principal.getName()))
+            return null;
+        return principal.getName();
+    }
+}
@@ -1,36 +1,198 @@
 package com.example.ChatBot.service;
 
+import com.example.ChatBot.presence.PresenceStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Tracks which users (by mobile) are currently connected via WebSocket.
+ * Tracks which users (by mobile) are currently connected via WebSocket, across
+ * all nodes and devices. Each session is counted separately, so a user stays
+ * online until their last tab disconnects. Sessions are recorded in a shared
+ * {@link PresenceStore} and kept alive by a periodic heartbeat; a crashed
+ * node's sessions fall out after the timeout. Reads are served from local
+ * sessions plus a briefly cached copy of the cluster-wide online set.
  */
+@Slf4j
 @Service
 public class PresenceService {
 
-    private final Set<String> onlineMobiles = ConcurrentHashMap.newKeySet();
+    private final PresenceStore store;
+    private final long heartbeatMs;
+    private final long timeoutMs;
+    private final long cacheTtlMs;
 
-    public void setOnline(String mobile) {
-        if (mobile != null && !mobile.equals("anonymous")) {
-            onlineMobiles.add(mobile);
+    /** Prefix making this node's session ids unique in the shared store. */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /** Store session id to mobile, for sessions on this node. */
+    private final Map<String, String> localSessions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> localCounts = new ConcurrentHashMap<>();
+
+    private final Object refreshLock = new Object();
+    private volatile Set<String> clusterOnline = Set.of();
+    private volatile long clusterOnlineAt;
+    private ScheduledExecutorService heartbeat;
+
+    public PresenceService(PresenceStore store,
+            @Value("${chat.presence.heartbeat-ms:15000}") long heartbeatMs,
+            @Value("${chat.presence.timeout-ms:45000}") long timeoutMs,
+            @Value("${chat.presence.cache-ttl-ms:2000}") long cacheTtlMs) {
+        this.store = store;
+        this.heartbeatMs = Math.max(1000, heartbeatMs);
+        this.timeoutMs = Math.max(this.heartbeatMs * 2, timeoutMs);
+        this.cacheTtlMs = cacheTtlMs;
+    }
+
+    @PostConstruct
+    void start() {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "presence-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
         }
+        long now = System.currentTimeMillis();
+        localSessions.forEach((id, mobile) -> {
+            try {
+                store.sessionEnded(id, mobile, now);
+            } catch (RuntimeException e) {
+                log.debug("Could not end presence session {} on shutdown", id, e);
+            }
+        });
     }
 
-    public void setOffline(String mobile) {
-        if (mobile != null) {
-            onlineMobiles.remove(mobile);
+    public void sessionConnected(String mobile, String sessionId) {
+        if (mobile == null || mobile.equals("anonymous") || sessionId == null)
+            return;
+        String id = instanceId + ':' + sessionId;
+        if (localSessions.putIfAbsent(id, mobile) != null)
+            return;
+        localCounts.merge(mobile, 1, Integer::sum);
+        try {
+            store.sessionStarted(id, mobile, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            // The next heartbeat recreates it
+            log.warn("Failed to record presence for {}", mobile, e);
+        }
+    }
+
+    public void sessionDisconnected(String mobile, String sessionId) {
+        if (sessionId == null)
+            return;
+        String id = instanceId + ':' + sessionId;
+        String owner = localSessions.remove(id);
+        if (owner == null)
+            return;
+        localCounts.computeIfPresent(owner, (m, count) -> count > 1 ? count - 1 : null);
+        try {
+            store.sessionEnded(id, owner, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.warn("Failed to clear presence for {}", owner, e);
         }
     }
 
     public boolean isOnline(String mobile) {
-        return mobile != null && onlineMobiles.contains(mobile);
+        return mobile != null && (localCounts.containsKey(mobile) || clusterOnline().contains(mobile));
     }
 
     public Set<String> getOnlineMobiles() {
-        return Collections.unmodifiableSet(onlineMobiles);
+        Set<String> cluster = clusterOnline();
+        if (cluster.containsAll(localCounts.keySet()))
+            return cluster;
+        Set<String> online = new HashSet<>(cluster);
+        online.addAll(localCounts.keySet());
+        return Collections.unmodifiableSet(online);
+    }
+
+    /**
+     * Those of the given users that are online, from local sessions and a copy
+     * of the cluster-wide set no older than {@code maxAgeMs} (or the cache TTL
+     * if that is shorter). Someone who connected on another node within that
+     * window may be missing. The store is read at most once per window, however
+     * many lookups are made.
+     */
+    public Set<String> findOnline(Collection<String> mobiles, long maxAgeMs) {
+        Set<String> online = new HashSet<>();
+        if (mobiles.isEmpty())
+            return online;
+        Set<String> cluster = clusterOnline(Math.min(cacheTtlMs, maxAgeMs));
+        for (String mobile : mobiles) {
+            if (mobile != null && (localCounts.containsKey(mobile) || cluster.contains(mobile))) {
+                online.add(mobile);
+            }
+        }
+        return online;
+    }
+
+    /**
+     * When the user was last connected: now if they are online, the end of
+     * their last session otherwise, or null if never seen.
+     */
+    public Long getLastSeen(String mobile) {
+        if (isOnline(mobile))
+            return System.currentTimeMillis();
+        try {
+            return store.findLastSeen(Set.of(mobile)).get(mobile);
+        } catch (RuntimeException e) {
+            log.warn("Failed to read last seen for {}", mobile, e);
+            return null;
+        }
+    }
+
+    /** Sessions on this node (a user with two tabs counts twice). */
+    public int getLocalSessionCount() {
+        return localSessions.size();
+    }
+
+    private Set<String> clusterOnline() {
+        return clusterOnline(cacheTtlMs);
+    }
+
+    private Set<String> clusterOnline(long maxAgeMs) {
+        long now = System.currentTimeMillis();
+        if (now - clusterOnlineAt < maxAgeMs)
+            return clusterOnline;
+        // One reader refreshes; the rest keep using the previous copy
+        synchronized (refreshLock) {
+            if (now - clusterOnlineAt >= maxAgeMs) {
+                try {
+                    clusterOnline = Collections.unmodifiableSet(store.findOnline(now - timeoutMs));
+                } catch (RuntimeException e) {
+                    log.warn("Failed to read cluster presence, using cached copy", e);
+                }
+                clusterOnlineAt = now;
+            }
+        }
+        return clusterOnline;
+    }
+
+    private void sendHeartbeat() {
+        try {
+            store.heartbeat(new HashMap<>(localSessions), System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.warn("Presence heartbeat failed", e);
+        }
     }
 }
@@ -0,0 +1,73 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.model.UserDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Moves profile pictures stored inline on users (base64 in
+ * {@code profilePicture}) into the attachment store as thumbnails. Users are
+ * rewritten one at a time and only while they still hold an inline picture,
+ * so running it again (or on several nodes) only finds what is left. Pictures
+ * that cannot be decoded are left in place.
+ */
+@Slf4j
+@Component
+public class ProfilePictureMigration {
+
+    private final MongoTemplate mongoTemplate;
+    private final ProfilePictureService profilePictureService;
+    private final UserDirectory userDirectory;
+    private final boolean enabled;
+
+    public ProfilePictureMigration(MongoTemplate mongoTemplate, ProfilePictureService profilePictureService,
+            UserDirectory userDirectory, @Value("${chat.users.migrate-inline-pictures:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.profilePictureService = profilePictureService;
+        this.userDirectory = userDirectory;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled)
+            return;
+        Query query = new Query(Criteria.where("profilePicture").exists(true).not().regex("^https?://"));
+        query.fields().include("mobile").include("profilePicture");
+
+        int migrated = 0;
+        int skipped = 0;
+        try (CloseableIterator<UserDocument> users = mongoTemplate.stream(query, UserDocument.class)) {
+            while (users.hasNext()) {
+                UserDocument user = users.next();
+                Map<String, String> variants;
+                try {
+                    variants = profilePictureService.storeBase64(user.getProfilePicture());
+                } catch (IllegalArgumentException e) {
+                    log.debug("Leaving picture of user {} inline: {}", user.getMobile(), e.getMessage());
+                    skipped++;
+                    continue;
+                }
+                Query current = new Query(Criteria.where("_id").is(user.getId()).and("profilePicture").exists(true));
+                Update update = new Update().set("pictureVariants", variants).unset("profilePicture");
+                if (mongoTemplate.updateFirst(current, update, UserDocument.class).getModifiedCount() > 0) {
+                    userDirectory.invalidate(user.getMobile());
+                    migrated++;
+                }
+            }
+        }
+        if (migrated > 0 || skipped > 0) {
+            log.info("Moved {} inline profile pictures to the attachment store ({} left inline)", migrated, skipped);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.storage.AttachmentStore;
+import com.example.ChatBot.storage.StoredAttachment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Profile pictures live in the {@link AttachmentStore}, not on the user.
+ * An upload is decoded once and rendered as square thumbnails of
+ * {@link #SIZES} pixels; the user document keeps only the blob id of each
+ * size, so user lookups stay a few hundred bytes.
+ */
+@Service
+public class ProfilePictureService {
+
+    /** Thumbnail edge lengths in pixels, smallest first. */
+    public static final int[] SIZES = { 48, 128, 512 };
+    public static final int DEFAULT_SIZE = 128;
+
+    /** Refuse images whose decoded pixels would not fit comfortably in memory. */
+    private static final long MAX_PIXELS = 40_000_000L;
+    private static final float JPEG_QUALITY = 0.85f;
+    /** Length of the blob id prefix used as the version in picture URLs. */
+    private static final int VERSION_LENGTH = 12;
+
+    private final AttachmentStore store;
+    private final long maxBytes;
+
+    public ProfilePictureService(AttachmentStore store,
+            @Value("${chat.profile-picture.max-bytes:5242880}") long maxBytes) {
+        this.store = store;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Decode a base64 image (bare or as a data URL), render every thumbnail
+     * size and store them.
+     *
+     * @return blob id per size, keyed by the size as a string
+     * @throws IllegalArgumentException if the data is not a readable image
+     */
+    public Map<String, String> storeBase64(String base64Picture) {
+        String data = base64Picture != null ? base64Picture : "";
+        if (data.startsWith("data:")) {
+            int comma = data.indexOf(',');
+            data = comma >= 0 ? data.substring(comma + 1) : "";
+        }
+        byte[] decoded;
+        try {
+            decoded = Base64.getMimeDecoder().decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Picture is not valid base64", e);
+        }
+        if (decoded.length == 0 || decoded.length > maxBytes) {
+            throw new IllegalArgumentException("Picture must be between 1 byte and " + maxBytes + " bytes");
+        }
+        return storeImage(decoded);
+    }
+
+    /**
+     * Render and store the thumbnails of an encoded image (JPEG, PNG, GIF, BMP).
+     */
+    public Map<String, String> storeImage(byte[] encoded) {
+        BufferedImage source = crop(read(encoded));
+        Map<String, String> variants = new LinkedHashMap<>();
+        // Largest first, each size scaled from the previous one: stepwise
+        // downscaling keeps small thumbnails sharp with bilinear filtering
+        BufferedImage current = source;
+        for (int i = SIZES.length - 1; i >= 0; i--) {
+            int size = Math.min(SIZES[i], current.getWidth());
+            current = scale(current, size);
+            variants.put(String.valueOf(SIZES[i]), write(current));
+        }
+        return variants;
+    }
+
+    /** Delete a stored thumbnail that no user or message refers to any more. */
+    public void delete(String blobId) {
+        store.delete(blobId);
+    }
+
+    /**
+     * Blob id of the stored size closest to {@code size}: the smallest that is
+     * at least as large, or the largest there is.
+     */
+    public static String variantFor(Map<String, String> variants, int size) {
+        if (variants == null || variants.isEmpty())
+            return null;
+        String largest = null;
+        for (int s : SIZES) {
+            String id = variants.get(String.valueOf(s));
+            if (id == null)
+                continue;
+            if (s >= size)
+                return id;
+            largest = id;
+        }
+        return largest;
+    }
+
+    /**
+     * What clients put in an {@code <img src>} for this user at this size: a
+     * versioned path to {@code GET /api/users/profile/picture} for stored
+     * pictures, the provider's URL for OAuth pictures, or null.
+     */
+    public static String pictureUrl(UserDocument user, int size) {
+        return pictureUrl(user.getMobile(), user.getPictureVariants(), user.getProfilePicture(), size);
+    }
+
+    public static String pictureUrl(UserDirectory.UserSummary user, int size) {
+        return pictureUrl(user.getMobile(), user.getPictureVariants(), user.getPictureUrl(), size);
+    }
+
+    private static String pictureUrl(String mobile, Map<String, String> variants, String picture, int size) {
+        String id = variantFor(variants, size);
+        if (id != null) {
+            return "/api/users/profile/picture?mobile=" + URLEncoder.encode(mobile, StandardCharsets.UTF_8)
+                    + "&size=" + size + "&v=" + versionOf(id);
+        }
+        return isExternalUrl(picture) ? picture : null;
+    }
+
+    public static String versionOf(String blobId) {
+        return blobId.length() > VERSION_LENGTH ? blobId.substring(0, VERSION_LENGTH) : blobId;
+    }
+
+    public static boolean isExternalUrl(String picture) {
+        return picture != null && (picture.startsWith("https://") || picture.startsWith("http://"));
+    }
+
+    private static BufferedImage read(byte[] encoded) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Picture is not a supported image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // Check dimensions from the header before allocating the pixels
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels <= 0 || pixels > MAX_PIXELS) {
+                    throw new IllegalArgumentException("Picture dimensions are too large");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Picture could not be decoded", e);
+        }
+    }
+
+    /** Centre square of the image, as avatars are shown in squares and circles. */
+    private static BufferedImage crop(BufferedImage image) {
+        int side = Math.min(image.getWidth(), image.getHeight());
+        return image.getSubimage((image.getWidth() - side) / 2, (image.getHeight() - side) / 2, side, side);
+    }
+
+    private static BufferedImage scale(BufferedImage image, int size) {
+        boolean alpha = image.getColorModel().hasAlpha();
+        BufferedImage scaled = new BufferedImage(size, size,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, size, size, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /** Store one thumbnail: JPEG when opaque, PNG when it has transparency. */
+    private String write(BufferedImage image) {
+        boolean alpha = image.getColorModel().hasAlpha();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (alpha) {
+                ImageIO.write(image, "png", out);
+            } else {
+                writeJpeg(image, out);
+            }
+            StoredAttachment stored = store.store(new ByteArrayInputStream(out.toByteArray()),
+                    alpha ? "image/png" : "image/jpeg");
+            return stored.getId();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeJpeg(BufferedImage image, ByteArrayOutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.dto.chat.ConversationResponse;
+import com.example.ChatBot.dto.chat.SyncResponse;
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.ConversationDocument;
+import com.example.ChatBot.model.GroupDocument;
+import com.example.ChatBot.model.MessageTombstoneDocument;
+import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.repository.MessageTombstoneRepository;
+import com.example.ChatBot.util.MessageCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Incremental catch-up for reconnecting clients: everything that changed for a
+ * user since their high-water mark, instead of refetching whole lists.
+ */
+@Service
+public class SyncService {
+
+    private static final int DEFAULT_LIMIT = 200;
+
+    private final ConversationService conversationService;
+    private final GroupService groupService;
+    private final UserService userService;
+    private final MessageWriteBehindQueue writeBehind;
+    private final MessageTombstoneRepository tombstoneRepository;
+    private final MongoTemplate mongoTemplate;
+    private final PollService pollService;
+    private final long safetyLagMs;
+
+    public SyncService(ConversationService conversationService, GroupService groupService, UserService userService,
+            MessageWriteBehindQueue writeBehind, MessageTombstoneRepository tombstoneRepository,
+            MongoTemplate mongoTemplate, PollService pollService,
+            @Value("${chat.sync.safety-lag-ms:5000}") long safetyLagMs) {
+        this.conversationService = conversationService;
+        this.groupService = groupService;
+        this.userService = userService;
+        this.writeBehind = writeBehind;
+        this.tombstoneRepository = tombstoneRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.pollService = pollService;
+        this.safetyLagMs = safetyLagMs;
+    }
+
+    /**
+     * Collect changes for a user at or after {@code since}.
+     * The returned high-water mark trails the clock by the safety lag, since
+     * messages are timestamped before they are persisted (write-behind, other
+     * nodes); the resulting overlap is absorbed by clients de-duplicating by id.
+     * <p>
+     * Messages are paged by (timestamp, id): when more than {@code limit} are
+     * pending the response carries a {@code cursor} and keeps the mark at
+     * {@code since}, and the client repeats the call with both until
+     * {@code hasMore} is false. A timestamp alone cannot resume a page that
+     * ends inside a run of messages sent in the same millisecond.
+     *
+     * @param cursor token from the previous page, or null for the first page
+     * @throws IllegalArgumentException if the cursor is not a valid token
+     */
+    public SyncResponse sync(String mobile, long since, String cursor, int limit) {
+        String m = UserDocument.normalizeMobile(mobile);
+        if (limit <= 0)
+            limit = DEFAULT_LIMIT;
+        MessageCursor after = cursor != null ? MessageCursor.decode(cursor) : null;
+        long now = System.currentTimeMillis();
+        long nextMark = Math.max(since, now - safetyLagMs);
+        boolean fullResync = since < now - TimeUnit.SECONDS.toMillis(MessageTombstoneDocument.RETENTION_SECONDS);
+
+        writeBehind.flush();
+
+        // Ids of every conversation and group the user is in
+        Set<String> scope = new LinkedHashSet<>();
+        conversationService.listForUser(m).forEach(conv -> scope.add(conv.getId()));
+        groupService.getMyGroups(m).forEach(group -> scope.add(group.getId()));
+
+        List<ChatMessageResponse> messages = List.of();
+        boolean hasMore = false;
+        String nextCursor = null;
+        if (!scope.isEmpty()) {
+            Criteria criteria = Criteria.where("conversationId").in(scope);
+            if (after != null) {
+                criteria = criteria.orOperator(
+                        Criteria.where("timestamp").gt(after.getTimestamp()),
+                        Criteria.where("timestamp").is(after.getTimestamp()).and("_id").gt(after.getId()));
+            } else {
+                criteria = criteria.and("timestamp").gte(since);
+            }
+            Query query = new Query(criteria)
+                    .with(Sort.by(Sort.Direction.ASC, "timestamp").and(Sort.by(Sort.Direction.ASC, "_id")))
+                    .limit(limit + 1);
+            query.fields().exclude("fileContent");
+            List<ChatMessageDocument> docs = mongoTemplate.find(query, ChatMessageDocument.class);
+            if (docs.size() > limit) {
+                hasMore = true;
+                docs = docs.subList(0, limit);
+                ChatMessageDocument last = docs.get(docs.size() - 1);
+                nextCursor = MessageCursor.of(last.getTimestamp(), last.getId()).encode();
+                // The window is not done until the last page; keep the caller's mark
+                nextMark = since;
+            }
+            messages = docs.stream().map(ChatMessageDocument::toResponse).collect(Collectors.toList());
+            pollService.attachTallies(messages, m);
+        }
+
+        List<String> deletedMessageIds = new ArrayList<>();
+        List<String> deletedConversationIds = new ArrayList<>();
+        if (!scope.isEmpty()) {
+            tombstoneRepository.findByConversationIdInAndDeletedAtGreaterThanEqual(scope, since)
+                    .forEach(t -> {
+                        if (t.getMessageIds() != null)
+                            deletedMessageIds.addAll(t.getMessageIds());
+                    });
+        }
+        tombstoneRepository.findByParticipantsAndConversationDeletedTrueAndDeletedAtGreaterThanEqual(m, since)
+                .forEach(t -> deletedConversationIds.add(t.getConversationId()));
+
+        List<GroupDocument> groups = groupService.getMyGroupsChangedSince(m, since);
+
+        return SyncResponse.builder()
+                .messages(messages)
+                .conversations(toResponses(conversationService.listChangedForUser(m, since), m))
+                .groups(groups)
+                .pollTallies(pollService.findChangedSince(scope, since))
+                .deletedMessageIds(deletedMessageIds)
+                .deletedConversationIds(deletedConversationIds)
+                .highWaterMark(nextMark)
+                .hasMore(hasMore)
+                .cursor(nextCursor)
+                .fullResyncRequired(fullResync)
+                .build();
+    }
+
+    private List<ConversationResponse> toResponses(List<ConversationDocument> conversations, String mobile) {
+        if (conversations.isEmpty())
+            return List.of();
+        List<String> otherMobiles = conversations.stream()
+                .map(conv -> conv.getOtherParticipant(mobile))
+                .distinct()
+                .toList();
+        Map<String, String> displayNameMap = userService.findDisplayNamesByMobiles(otherMobiles);
+
+        return conversations.stream().map(conv -> {
+            String otherMobile = conv.getOtherParticipant(mobile);
+            return ConversationResponse.builder()
+                    .id(conv.getId())
+                    .participant1(conv.getParticipant1())
+                    .participant2(conv.getParticipant2())
+                    .lastMessageAt(conv.getLastMessageAt())
+                    .lastMessagePreview(conv.getLastMessagePreview())
+                    .otherParticipantMobile(otherMobile)
+                    .otherParticipantName(displayNameMap.getOrDefault(otherMobile, otherMobile))
+                    .otherLastReadAt(conv.getLastReadBy(otherMobile))
+                    .build();
+        }).toList();
+    }
+}
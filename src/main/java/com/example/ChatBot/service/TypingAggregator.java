@@ -0,0 +1,201 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.websocket.EphemeralHeaders;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces typing indicators per (sender, conversation).
+ * The first keystroke emits a TYPING event; further keystrokes inside the
+ * window are absorbed and only refresh the state. An explicit stop, or no
+ * keystrokes for the idle timeout, emits a single TYPING event with
+ * {@link #STOPPED} as content. Typing traffic therefore scales with the window,
+ * not with how fast people type.
+ */
+@Slf4j
+@Service
+public class TypingAggregator {
+
+    /** Content of a TYPING event that clears the indicator. */
+    public static final String STOPPED = "STOPPED";
+
+    private static final class TypingState {
+        private final String sender;
+        private final String conversationId;
+        private long lastForwardedAt;
+        private volatile long lastSeenAt;
+
+        private TypingState(String sender, String conversationId) {
+            this.sender = sender;
+            this.conversationId = conversationId;
+        }
+    }
+
+    private final ConversationService conversationService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long windowMs;
+    private final long idleTimeoutMs;
+
+    private final Map<String, TypingState> states = new ConcurrentHashMap<>();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder unmatchedStops = new LongAdder();
+    private final LongAdder undeliverable = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private ScheduledExecutorService sweeper;
+
+    public TypingAggregator(ConversationService conversationService, SimpMessagingTemplate messagingTemplate,
+            @Value("${chat.typing.window-ms:2000}") long windowMs,
+            @Value("${chat.typing.idle-timeout-ms:5000}") long idleTimeoutMs) {
+        this.conversationService = conversationService;
+        this.messagingTemplate = messagingTemplate;
+        this.windowMs = windowMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    @PostConstruct
+    void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "typing-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(100, idleTimeoutMs / 2);
+        sweeper.scheduleAtFixedRate(this::expireIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Record a typing event from a client.
+     *
+     * @param conversationId 1:1 conversation id, or null for the public room
+     * @param typing         false when the client reports that typing stopped
+     */
+    public void onTyping(String sender, String conversationId, boolean typing) {
+        long now = System.currentTimeMillis();
+        String key = key(sender, conversationId);
+
+        if (!typing) {
+            TypingState state = states.remove(key);
+            if (state != null) {
+                deliver(sender, conversationId, false, now);
+            } else {
+                // Already cleared by the idle timeout, or a repeated stop
+                unmatchedStops.increment();
+            }
+            return;
+        }
+
+        boolean[] forward = new boolean[1];
+        states.compute(key, (k, state) -> {
+            if (state == null) {
+                state = new TypingState(sender, conversationId);
+                forward[0] = true;
+            } else if (now - state.lastForwardedAt >= windowMs) {
+                forward[0] = true;
+            }
+            if (forward[0]) {
+                state.lastForwardedAt = now;
+            }
+            state.lastSeenAt = now;
+            return state;
+        });
+
+        if (forward[0]) {
+            deliver(sender, conversationId, true, now);
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    public long getForwardedCount() {
+        return forwarded.sum();
+    }
+
+    /** Keystrokes absorbed by the window of an indicator that is already showing. */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /** Stops for a sender that was not typing, e.g. after the idle timeout cleared it. */
+    public long getUnmatchedStopCount() {
+        return unmatchedStops.sum();
+    }
+
+    /** Events not sent because the conversation has no other participant for the sender. */
+    public long getUndeliverableCount() {
+        return undeliverable.sum();
+    }
+
+    /** Number of indicators cleared by the idle timeout rather than an explicit stop. */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public int getActiveCount() {
+        return states.size();
+    }
+
+    private void expireIdle() {
+        long now = System.currentTimeMillis();
+        try {
+            for (Map.Entry<String, TypingState> entry : states.entrySet()) {
+                TypingState state = entry.getValue();
+                if (now - state.lastSeenAt >= idleTimeoutMs && states.remove(entry.getKey(), state)) {
+                    expired.increment();
+                    deliver(state.sender, state.conversationId, false, now);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Typing sweep failed", e);
+        }
+    }
+
+    private void deliver(String sender, String conversationId, boolean typing, long now) {
+        ChatMessageResponse response = ChatMessageResponse.builder()
+                .type(MessageType.TYPING)
+                .sender(sender)
+                .conversationId(conversationId)
+                .content(typing ? null : STOPPED)
+                .timestamp(now)
+                .build();
+
+        MessageHeaders headers = EphemeralHeaders.of(MessageType.TYPING, sender, conversationId);
+        if (conversationId == null) {
+            messagingTemplate.convertAndSend("/topic/public", response, headers);
+            forwarded.increment();
+            return;
+        }
+        String otherMobile = conversationService.findOtherParticipant(conversationId, sender);
+        if (otherMobile != null) {
+            messagingTemplate.convertAndSendToUser(otherMobile, "/queue/messages", response, headers);
+            forwarded.increment();
+        } else {
+            undeliverable.increment();
+        }
+    }
+
+    private static String key(String sender, String conversationId) {
+        return conversationId != null ? sender + '|' + conversationId : sender;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.cluster.ClusterBus;
+import com.example.ChatBot.cluster.ClusterMessage;
+import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Read-through cache of public user details (name, bio, picture ids) keyed by
+ * normalized mobile, so conversation lists, posts and group sends rarely touch
+ * the users collection. Bounded by an estimate of the bytes held; unknown
+ * mobiles are cached too. {@link UserService} invalidates entries after every
+ * write, and in cluster mode the invalidation is broadcast to the other nodes.
+ * The TTL bounds staleness if a broadcast is lost.
+ */
+@Service
+public class UserDirectory {
+
+    static final String CACHE_NAME = "users";
+
+    /**
+     * Public details of a user. Never carries the password hash or an inline
+     * picture.
+     */
+    public static final class UserSummary {
+        private static final UserSummary NONE = new UserSummary(null, null, null, null, null, null, 0);
+
+        private final String id;
+        private final String mobile;
+        private final String displayName;
+        private final String bio;
+        private final String pictureUrl;
+        private final Map<String, String> pictureVariants;
+        private final long createdAt;
+
+        private UserSummary(String id, String mobile, String displayName, String bio, String pictureUrl,
+                Map<String, String> pictureVariants, long createdAt) {
+            this.id = id;
+            this.mobile = mobile;
+            this.displayName = displayName;
+            this.bio = bio;
+            this.pictureUrl = pictureUrl;
+            this.pictureVariants = pictureVariants;
+            this.createdAt = createdAt;
+        }
+
+        static UserSummary of(UserDocument user) {
+            String picture = ProfilePictureService.isExternalUrl(user.getProfilePicture())
+                    ? user.getProfilePicture()
+                    : null;
+            Map<String, String> variants = user.getPictureVariants() != null
+                    ? Map.copyOf(user.getPictureVariants())
+                    : null;
+            return new UserSummary(user.getId(), user.getMobile(), user.getDisplayName(), user.getBio(), picture,
+                    variants, user.getCreatedAt());
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getMobile() {
+            return mobile;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /** Display name, falling back to the mobile number. */
+        public String getDisplayNameOrMobile() {
+            return displayName != null ? displayName : mobile;
+        }
+
+        public String getBio() {
+            return bio;
+        }
+
+        /** Picture hosted elsewhere (OAuth provider), or null. */
+        public String getPictureUrl() {
+            return pictureUrl;
+        }
+
+        public Map<String, String> getPictureVariants() {
+            return pictureVariants;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /** Approximate heap footprint in bytes. */
+        int weight() {
+            int chars = length(id) + length(mobile) + length(displayName) + length(bio) + length(pictureUrl);
+            int variants = pictureVariants != null ? pictureVariants.size() * 200 : 0;
+            return 96 + 2 * chars + variants;
+        }
+
+        private static int length(String s) {
+            return s != null ? s.length() + 24 : 0;
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final ObjectProvider<ClusterBus> clusterBus;
+    private final Cache<String, UserSummary> cache;
+
+    public UserDirectory(UserRepository userRepository, ObjectProvider<ClusterBus> clusterBus,
+            @Value("${chat.user-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${chat.user-cache.ttl-seconds:600}") long ttlSeconds,
+            MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.clusterBus = clusterBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String mobile, UserSummary summary) -> summary.weight())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user-directory");
+        clusterBus.ifAvailable(bus -> bus.subscribe(this::onClusterMessage));
+    }
+
+    /**
+     * Summary of the user with this mobile, or null if there is none.
+     */
+    public UserSummary find(String mobile) {
+        String normalized = UserDocument.normalizeMobile(mobile);
+        if (normalized == null)
+            return null;
+        UserSummary summary = cache.get(normalized, key -> load(List.of(key)).getOrDefault(key, UserSummary.NONE));
+        return summary == UserSummary.NONE ? null : summary;
+    }
+
+    /**
+     * Summaries of the known users among these mobiles, keyed by normalized
+     * mobile. Misses are loaded with a single query.
+     */
+    public Map<String, UserSummary> findAll(Collection<String> mobiles) {
+        List<String> normalized = mobiles.stream()
+                .map(UserDocument::normalizeMobile)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<String, UserSummary> found = cache.getAll(normalized, missing -> {
+            List<String> keys = new ArrayList<>();
+            missing.forEach(keys::add);
+            Map<String, UserSummary> loaded = load(keys);
+            for (String mobile : keys) {
+                loaded.putIfAbsent(mobile, UserSummary.NONE);
+            }
+            return loaded;
+        });
+        Map<String, UserSummary> result = new LinkedHashMap<>();
+        found.forEach((mobile, summary) -> {
+            if (summary != UserSummary.NONE)
+                result.put(mobile, summary);
+        });
+        return result;
+    }
+
+    /**
+     * Drop a user from this node's cache and every other node's. Call after
+     * the user document has been written.
+     */
+    public void invalidate(String mobile) {
+        String normalized = UserDocument.normalizeMobile(mobile);
+        if (normalized == null)
+            return;
+        cache.invalidate(normalized);
+        clusterBus.ifAvailable(bus -> bus.publish(
+                ClusterMessage.invalidate(bus.getNodeId(), CACHE_NAME, Set.of(normalized))));
+    }
+
+    private Map<String, UserSummary> load(List<String> mobiles) {
+        Map<String, UserSummary> loaded = new HashMap<>();
+        for (UserDocument user : userRepository.findSummaryByMobileIn(mobiles)) {
+            loaded.putIfAbsent(user.getMobile(), UserSummary.of(user));
+        }
+        return loaded;
+    }
+
+    private void onClusterMessage(ClusterMessage message) {
+        ClusterBus bus = clusterBus.getIfAvailable();
+        if (bus == null || message.getType() != ClusterMessage.Type.INVALIDATE
+                || !CACHE_NAME.equals(message.getDestination()) || !message.isFor(bus.getNodeId()))
+            return;
+        if (message.getUsers() != null) {
+            cache.invalidateAll(message.getUsers());
+        }
+    }
+}
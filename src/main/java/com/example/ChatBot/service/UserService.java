@@ -1,25 +1,84 @@
 package com.example.ChatBot.service;
 
+import com.example.ChatBot.model.ChatMessageDocument;
 import com.example.ChatBot.model.UserDocument;
 import com.example.ChatBot.repository.UserRepository;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Users and their profiles. Reads fetch only the fields they return (never the
+ * password hash outside login), and profile updates are single {@code $set}
+ * round trips that return the updated user. Passwords are hashed and checked
+ * on the {@link PasswordHasher} pool, so signup and login complete
+ * asynchronously.
+ */
+
+@Slf4j
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final MongoTemplate mongoTemplate;
+    private final PasswordHasher passwordHasher;
+    private final ProfilePictureService profilePictureService;
+    private final UserDirectory userDirectory;
+    private final ExecutorService signupWriter;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, MongoTemplate mongoTemplate, PasswordHasher passwordHasher,
+            ProfilePictureService profilePictureService, UserDirectory userDirectory,
+            @Value("${chat.auth.signup-write-threads:2}") int writeThreads,
+            @Value("${chat.auth.hash-queue-capacity:64}") int queueCapacity) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.mongoTemplate = mongoTemplate;
+        this.passwordHasher = passwordHasher;
+        this.profilePictureService = profilePictureService;
+        this.userDirectory = userDirectory;
+        AtomicInteger counter = new AtomicInteger();
+        // Saves new users off the hashing pool, so a slow insert never holds a BCrypt thread;
+        // full means 503, as for the hashing pool
+        this.signupWriter = new ThreadPoolExecutor(Math.max(1, writeThreads), Math.max(1, writeThreads), 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread t = new Thread(r, "signup-write-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void stop() {
+        signupWriter.shutdown();
     }
 
     /**
      * Sign up: create user with mobile, displayName, and hashed password.
+     * Invalid input and taken numbers are refused before anything is hashed;
+     * a number taken by a concurrent signup fails the future with the same
+     * IllegalArgumentException.
+     *
+     * @throws IllegalArgumentException if the input is invalid or the mobile is taken
      */
-    public UserDocument signup(String mobile, String displayName, String password) {
+    public CompletableFuture<UserDocument> signup(String mobile, String displayName, String password) {
         String normalized = UserDocument.normalizeMobile(mobile);
         if (normalized == null || normalized.length() < 5) {
             throw new IllegalArgumentException("Invalid mobile number");
@@ -27,24 +86,31 @@ public class UserService {
         if (password == null || password.length() < 6) {
             throw new IllegalArgumentException("Password must be at least 6 characters");
         }
-        if (userRepository.findByMobile(normalized).isPresent()) {
+        if (userRepository.existsByMobile(normalized)) {
             throw new IllegalArgumentException("Mobile number already registered");
         }
-        UserDocument user = new UserDocument(mobile, displayName);
-        user.setHashedPassword(passwordEncoder.encode(password));
-        return userRepository.save(user);
+        return passwordHasher.encode(password).thenApplyAsync(hash -> {
+            UserDocument user = new UserDocument(mobile, displayName);
+            user.setHashedPassword(hash);
+            try {
+                return saved(userRepository.save(user));
+            } catch (DuplicateKeyException e) {
+                throw new IllegalArgumentException("Mobile number already registered");
+            }
+        }, signupWriter);
     }
 
     /**
-     * Login: verify password and return user, or null if invalid.
+     * Login: verify password and complete with the user, or with null if invalid.
      */
-    public UserDocument login(String mobile, String password) {
+    public CompletableFuture<UserDocument> login(String mobile, String password) {
         String normalized = UserDocument.normalizeMobile(mobile);
         if (normalized == null || password == null)
-            return null;
-        return userRepository.findByMobile(normalized)
-                .filter(u -> u.getHashedPassword() != null && passwordEncoder.matches(password, u.getHashedPassword()))
-                .orElse(null);
+            return CompletableFuture.completedFuture(null);
+        UserDocument user = userRepository.findByMobile(normalized).orElse(null);
+        if (user == null || user.getHashedPassword() == null)
+            return CompletableFuture.completedFuture(null);
+        return passwordHasher.matches(password, user.getHashedPassword()).thenApply(ok -> ok ? user : null);
     }
 
     /**
@@ -55,20 +121,32 @@ public class UserService {
         if (normalized == null || normalized.length() < 5) {
             throw new IllegalArgumentException("Invalid mobile number");
         }
-        return userRepository.findByMobile(normalized)
-                .map(existing -> {
-                    if (displayName != null && !displayName.isBlank()) {
-                        existing.setDisplayName(displayName.trim());
-                        return userRepository.save(existing);
-                    }
-                    return existing;
-                })
-                .orElseGet(() -> userRepository.save(new UserDocument(mobile, displayName)));
+        if (displayName != null && !displayName.isBlank()) {
+            UserDocument updated = set(normalized, new Update().set("displayName", displayName.trim()));
+            if (updated != null)
+                return updated;
+        } else {
+            UserDocument existing = userRepository.findProfileByMobile(normalized).orElse(null);
+            if (existing != null)
+                return existing;
+        }
+        return saved(userRepository.save(new UserDocument(mobile, displayName)));
     }
 
+    /**
+     * User by mobile without the password hash, or null if there is none.
+     */
     public UserDocument findByMobile(String mobile) {
         String normalized = UserDocument.normalizeMobile(mobile);
-        return userRepository.findByMobile(normalized).orElse(null);
+        return userRepository.findProfileByMobile(normalized).orElse(null);
+    }
+
+    /**
+     * Public details of a user (no password hash), served from the user
+     * directory cache. Returns null if the user does not exist.
+     */
+    public UserDirectory.UserSummary findSummary(String mobile) {
+        return userDirectory.find(mobile);
     }
 
     /**
@@ -79,21 +157,22 @@ public class UserService {
         // Use email as a unique identifier in the mobile field
         String googleMobile = "google_" + email.toLowerCase().trim();
 
-        return userRepository.findByMobile(googleMobile)
+        return userRepository.findProfileByMobile(googleMobile)
                 .map(existing -> {
                     // Update display name and picture if changed
-                    boolean changed = false;
+                    Update update = new Update();
                     if (displayName != null && !displayName.isBlank()
-                            && !displayName.equals(existing.getDisplayName())) {
-                        existing.setDisplayName(displayName.trim());
-                        changed = true;
+                            && !displayName.trim().equals(existing.getDisplayName())) {
+                        update.set("displayName", displayName.trim());
                     }
                     if (pictureUrl != null && !pictureUrl.isBlank()
                             && !pictureUrl.equals(existing.getProfilePicture())) {
-                        existing.setProfilePicture(pictureUrl);
-                        changed = true;
+                        update.set("profilePicture", pictureUrl);
                     }
-                    return changed ? userRepository.save(existing) : existing;
+                    if (update.getUpdateObject().isEmpty())
+                        return existing;
+                    UserDocument updated = set(googleMobile, update);
+                    return updated != null ? updated : existing;
                 })
                 .orElseGet(() -> {
                     UserDocument user = new UserDocument();
@@ -106,7 +185,7 @@ public class UserService {
                         user.setProfilePicture(pictureUrl);
                     }
                     // No password for OAuth users
-                    return userRepository.save(user);
+                    return saved(userRepository.save(user));
                 });
     }
 
@@ -130,7 +209,7 @@ public class UserService {
                 .filter(m -> m != null)
                 .distinct()
                 .toList();
-        java.util.List<UserDocument> users = userRepository.findByMobileIn(normalized);
+        java.util.List<UserDocument> users = userRepository.findSummaryByMobileIn(normalized);
         return users.stream()
                 .collect(java.util.stream.Collectors.toMap(
                         UserDocument::getMobile,
@@ -140,63 +219,91 @@ public class UserService {
     }
 
     /**
-     * Lightweight batch lookup - only mobile and displayName (no profilePicture,
-     * hashedPassword, bio). Use for conversation list to avoid loading large
-     * base64 images.
+     * Display names by mobile, served from the user directory cache. Unknown
+     * mobiles are left out.
      */
     public java.util.Map<String, String> findDisplayNamesByMobiles(java.util.List<String> mobiles) {
         if (mobiles == null || mobiles.isEmpty()) {
             return java.util.Collections.emptyMap();
         }
-        java.util.List<String> normalized = mobiles.stream()
-                .map(UserDocument::normalizeMobile)
-                .filter(m -> m != null)
-                .distinct()
-                .toList();
-        java.util.List<UserDocument> users = userRepository.findDisplayInfoByMobileIn(normalized);
-        return users.stream()
+        return userDirectory.findAll(mobiles).entrySet().stream()
                 .collect(java.util.stream.Collectors.toMap(
-                        UserDocument::getMobile,
-                        u -> u.getDisplayName() != null ? u.getDisplayName() : u.getMobile(),
-                        (a, b) -> a));
+                        java.util.Map.Entry::getKey,
+                        e -> e.getValue().getDisplayNameOrMobile()));
     }
 
     /**
-     * Update user's display name.
+     * Update user's display name. A blank name leaves it unchanged.
      */
     public UserDocument updateDisplayName(String mobile, String newDisplayName) {
         String normalized = UserDocument.normalizeMobile(mobile);
-        UserDocument user = userRepository.findByMobile(normalized).orElse(null);
+        UserDocument user = newDisplayName != null && !newDisplayName.isBlank()
+                ? set(normalized, new Update().set("displayName", newDisplayName.trim()))
+                : userRepository.findProfileByMobile(normalized).orElse(null);
         if (user == null) {
             throw new IllegalArgumentException("User not found");
         }
-        if (newDisplayName != null && !newDisplayName.isBlank()) {
-            user.setDisplayName(newDisplayName.trim());
-            return userRepository.save(user);
-        }
         return user;
     }
 
     /**
-     * Update user's profile picture (base64 encoded).
+     * Update user's profile picture (base64 encoded). The image is stored as
+     * thumbnails in the attachment store; the user keeps only their ids.
+     *
+     * @throws IllegalArgumentException if the user is unknown or the data is not an image
      */
     public UserDocument updateProfilePicture(String mobile, String base64Picture) {
         String normalized = UserDocument.normalizeMobile(mobile);
-        UserDocument user = userRepository.findByMobile(normalized).orElse(null);
+        UserDocument current = userRepository.findPictureByMobile(normalized).orElse(null);
+        if (current == null) {
+            throw new IllegalArgumentException("User not found");
+        }
+        Map<String, String> variants = profilePictureService.storeBase64(base64Picture);
+        Update update = new Update().set("pictureVariants", variants);
+        if (current.getProfilePicture() != null && !ProfilePictureService.isExternalUrl(current.getProfilePicture())) {
+            // Drop an inline picture left from before pictures were stored separately
+            update.unset("profilePicture");
+        }
+        UserDocument user = set(normalized, update);
         if (user == null) {
             throw new IllegalArgumentException("User not found");
         }
-        user.setProfilePicture(base64Picture);
-        return userRepository.save(user);
+        if (current.getPictureVariants() != null) {
+            Set<String> replaced = new HashSet<>(current.getPictureVariants().values());
+            replaced.removeAll(variants.values());
+            replaced.forEach(this::deletePictureIfUnused);
+        }
+        return user;
+    }
+
+    /**
+     * Delete a replaced thumbnail unless another user's picture or a file
+     * message still points at it: blobs are content-addressed, so identical
+     * images share one. A blob that cannot be deleted only wastes space.
+     */
+    private void deletePictureIfUnused(String blobId) {
+        List<Criteria> variantIs = new ArrayList<>();
+        for (int size : ProfilePictureService.SIZES) {
+            variantIs.add(Criteria.where("pictureVariants." + size).is(blobId));
+        }
+        try {
+            if (mongoTemplate.exists(new Query(new Criteria().orOperator(variantIs)), UserDocument.class)
+                    || mongoTemplate.exists(new Query(Criteria.where("attachmentId").is(blobId)),
+                            ChatMessageDocument.class))
+                return;
+            profilePictureService.delete(blobId);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete replaced profile picture {}", blobId, e);
+        }
     }
 
     /**
-     * Get user's profile picture.
+     * Get the picture fields of a user (mobile, external URL and thumbnail ids
+     * only), or null if the user is unknown.
      */
-    public String getProfilePicture(String mobile) {
+    public UserDocument findPicture(String mobile) {
         String normalized = UserDocument.normalizeMobile(mobile);
-        UserDocument user = userRepository.findByMobile(normalized).orElse(null);
-        return user != null ? user.getProfilePicture() : null;
+        return userRepository.findPictureByMobile(normalized).orElse(null);
     }
 
     /**
@@ -204,12 +311,13 @@ public class UserService {
      */
     public UserDocument updateBio(String mobile, String bio) {
         String normalized = UserDocument.normalizeMobile(mobile);
-        UserDocument user = userRepository.findByMobile(normalized).orElse(null);
+        String truncated = UserDocument.truncateBio(bio);
+        Update update = truncated != null ? new Update().set("bio", truncated) : new Update().unset("bio");
+        UserDocument user = set(normalized, update);
         if (user == null) {
             throw new IllegalArgumentException("User not found");
         }
-        user.setBio(bio);
-        return userRepository.save(user);
+        return user;
     }
 
     /**
@@ -217,7 +325,27 @@ public class UserService {
      */
     public String getBio(String mobile) {
         String normalized = UserDocument.normalizeMobile(mobile);
-        UserDocument user = userRepository.findByMobile(normalized).orElse(null);
-        return user != null ? user.getBio() : null;
+        return userRepository.findBioByMobile(normalized).map(UserDocument::getBio).orElse(null);
+    }
+
+    /**
+     * Apply an update to the user with this (normalized) mobile in one round
+     * trip and return the updated user without its password hash, or null if
+     * there is no such user.
+     */
+    private UserDocument set(String normalizedMobile, Update update) {
+        if (normalizedMobile == null)
+            return null;
+        Query query = new Query(Criteria.where("mobile").is(normalizedMobile));
+        query.fields().exclude("hashedPassword");
+        UserDocument user = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), UserDocument.class);
+        return user != null ? saved(user) : null;
+    }
+
+    /** Drop a written user from the directory cache on every node. */
+    private UserDocument saved(UserDocument user) {
+        userDirectory.invalidate(user.getMobile());
+        return user;
     }
 }
@@ -0,0 +1,32 @@
+package com.example.ChatBot.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Content-addressed binary storage for file messages.
+ * Messages only carry the returned id, size and MIME type; the bytes live here.
+ */
+public interface AttachmentStore {
+
+    /**
+     * Store the content of the stream. The stream is consumed but not closed.
+     *
+     * @return metadata whose id is the hex SHA-256 of the content
+     */
+    StoredAttachment store(InputStream content, String contentType) throws IOException;
+
+    Optional<StoredAttachment> find(String id);
+
+    /**
+     * Open the content of a stored blob. The caller closes the stream.
+     */
+    Optional<InputStream> open(String id) throws IOException;
+
+    /**
+     * Remove a stored blob; unknown ids are ignored. Blobs are shared by
+     * content, so the caller must first make sure nothing refers to it.
+     */
+    void delete(String id);
+}
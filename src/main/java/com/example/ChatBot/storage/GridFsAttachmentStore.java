@@ -0,0 +1,109 @@
+package com.example.ChatBot.storage;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * {@link AttachmentStore} backed by MongoDB GridFS, so every replica sees the
+ * same blobs. Uploads are spooled to a temp file while hashing, then written to
+ * GridFS only if no blob with that hash exists yet.
+ */
+@Component
+public class GridFsAttachmentStore implements AttachmentStore {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final String CONTENT_TYPE_KEY = "_contentType";
+
+    private final GridFsTemplate gridFsTemplate;
+
+    public GridFsAttachmentStore(GridFsTemplate gridFsTemplate) {
+        this.gridFsTemplate = gridFsTemplate;
+    }
+
+    @Override
+    public StoredAttachment store(InputStream content, String contentType) throws IOException {
+        String type = contentType != null && !contentType.isBlank() ? contentType : "application/octet-stream";
+        Path spool = Files.createTempFile("attachment-", ".bin");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (DigestInputStream in = new DigestInputStream(content, digest)) {
+                size = Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String id = HexFormat.of().formatHex(digest.digest());
+
+            Optional<StoredAttachment> existing = find(id);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            Document metadata = new Document("sha256", id).append("size", size);
+            try (InputStream in = Files.newInputStream(spool)) {
+                gridFsTemplate.store(in, id, type, metadata);
+            }
+            return new StoredAttachment(id, type, size);
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    @Override
+    public Optional<StoredAttachment> find(String id) {
+        return findFile(id).map(file -> new StoredAttachment(file.getFilename(), contentTypeOf(file),
+                file.getLength()));
+    }
+
+    @Override
+    public Optional<InputStream> open(String id) throws IOException {
+        Optional<GridFSFile> file = findFile(id);
+        if (file.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(gridFsTemplate.getResource(file.get()).getInputStream());
+    }
+
+    @Override
+    public void delete(String id) {
+        if (id == null || !SHA256_HEX.matcher(id).matches())
+            return;
+        // Also removes duplicates left by concurrent uploads of the same bytes
+        gridFsTemplate.delete(new Query(Criteria.where("filename").is(id)));
+    }
+
+    private Optional<GridFSFile> findFile(String id) {
+        if (id == null || !SHA256_HEX.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        // find().first() rather than findOne(): two concurrent uploads of the same bytes may both land
+        return Optional.ofNullable(gridFsTemplate.find(new Query(Criteria.where("filename").is(id))).first());
+    }
+
+    private static String contentTypeOf(GridFSFile file) {
+        Document metadata = file.getMetadata();
+        String type = metadata != null ? metadata.getString(CONTENT_TYPE_KEY) : null;
+        return type != null ? type : "application/octet-stream";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
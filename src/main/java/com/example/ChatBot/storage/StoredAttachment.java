@@ -0,0 +1,30 @@
+package com.example.ChatBot.storage;
+
+/**
+ * Metadata of a blob held by an {@link AttachmentStore}.
+ * The id is the SHA-256 of the content, so identical uploads share one blob.
+ */
+public final class StoredAttachment {
+
+    private final String id;
+    private final String contentType;
+    private final long size;
+
+    public StoredAttachment(String id, String contentType, long size) {
+        this.id = id;
+        this.contentType = contentType;
+        this.size = size;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
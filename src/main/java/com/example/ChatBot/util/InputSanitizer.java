@@ -1,17 +1,37 @@
 package com.example.ChatBot.util;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
 /**
  * Centralized input sanitizer for XSS prevention.
  * Replaces duplicated sanitize methods across controllers.
  */
 public final class InputSanitizer {
 
+    /** Replacement for each escaped ASCII character; null means copy as is. */
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        ESCAPES['&'] = "&amp;";
+        ESCAPES['<'] = "&lt;";
+        ESCAPES['>'] = "&gt;";
+        ESCAPES['"'] = "&quot;";
+        ESCAPES['\''] = "&#x27;";
+        ESCAPES['/'] = "&#x2F;";
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
     private InputSanitizer() {
         // utility class — no instantiation
     }
 
     /**
      * Escapes HTML special characters to prevent XSS attacks.
+     * Returns the input itself when nothing needs escaping; otherwise builds
+     * the result in one pass into a buffer sized exactly once.
      *
      * @param input raw user input
      * @return sanitized string safe for rendering, or null if input is null
@@ -19,12 +39,52 @@ public final class InputSanitizer {
     public static String sanitize(String input) {
         if (input == null)
             return null;
-        return input
-                .replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&#x27;")
-                .replace("/", "&#x2F;");
+        int length = input.length();
+        int extra = 0;
+        for (int i = 0; i < length; i++) {
+            String escape = escapeOf(input.charAt(i));
+            if (escape != null) {
+                extra += escape.length() - 1;
+            }
+        }
+        if (extra == 0)
+            return input;
+
+        StringBuilder out = new StringBuilder(length + extra);
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            String escape = escapeOf(input.charAt(i));
+            if (escape != null) {
+                out.append(input, start, i).append(escape);
+                start = i + 1;
+            }
+        }
+        return out.append(input, start, length).toString();
+    }
+
+    /**
+     * Streaming form of {@link #sanitize(String)} for large content: escapes
+     * everything read from {@code in} into {@code out} through a fixed buffer.
+     * Neither stream is closed.
+     */
+    public static void sanitize(Reader in, Writer out) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                String escape = escapeOf(buffer[i]);
+                if (escape != null) {
+                    out.write(buffer, start, i - start);
+                    out.write(escape);
+                    start = i + 1;
+                }
+            }
+            out.write(buffer, start, read - start);
+        }
+    }
+
+    private static String escapeOf(char c) {
+        return c < 128 ? ESCAPES[c] : null;
     }
 }
@@ -0,0 +1,52 @@
+package com.example.ChatBot.util;
+
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor into a conversation's message history.
+ * Encodes (timestamp, id) of a boundary message; ids break ties between
+ * messages sent in the same millisecond.
+ */
+public final class MessageCursor {
+
+    private final long timestamp;
+    private final ObjectId id;
+
+    public MessageCursor(long timestamp, ObjectId id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = timestamp + ":" + id.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static MessageCursor of(long timestamp, String id) {
+        return new MessageCursor(timestamp, new ObjectId(id));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static MessageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+            return new MessageCursor(Long.parseLong(raw.substring(0, sep)), new ObjectId(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
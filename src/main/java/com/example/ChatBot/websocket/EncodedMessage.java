@@ -0,0 +1,54 @@
+package com.example.ChatBot.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.Collection;
+
+/**
+ * A payload converted to its wire form once, for sending the same content to
+ * several destinations. {@code convertAndSend*} runs the Jackson conversion on
+ * every call; sending an EncodedMessage only copies the headers per
+ * destination and shares the payload bytes.
+ */
+public final class EncodedMessage {
+
+    private final Message<?> message;
+
+    private EncodedMessage(Message<?> message) {
+        this.message = message;
+    }
+
+    /** Convert with the template's converter, exactly as convertAndSend would. */
+    public static EncodedMessage of(SimpMessagingTemplate template, Object payload) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setLeaveMutable(true);
+        Message<?> converted = template.getMessageConverter().toMessage(payload, headers.getMessageHeaders());
+        if (converted == null)
+            throw new IllegalStateException("No converter for " + payload.getClass().getName());
+        // Immutable, so each send copies the headers instead of mutating the shared message
+        headers.setImmutable();
+        return new EncodedMessage(converted);
+    }
+
+    public void send(SimpMessagingTemplate template, String destination) {
+        template.send(destination, message);
+    }
+
+    /** Same destination as {@code convertAndSendToUser}, including its escaping of "/" in user names. */
+    public void sendToUser(SimpMessagingTemplate template, String user, String destination) {
+        template.send(template.getUserDestinationPrefix() + user.replace("/", "%2F") + destination, message);
+    }
+
+    public void sendToUsers(SimpMessagingTemplate template, Collection<String> users, String destination) {
+        for (String user : users) {
+            sendToUser(template, user, destination);
+        }
+    }
+
+    public Message<?> getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.ChatBot.websocket;
+
+import com.example.ChatBot.model.MessageType;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+
+/**
+ * Native STOMP headers that mark a TYPING/READ frame, set where the frame is
+ * produced. {@link OutboundSessionQueue} sheds and coalesces frames by these
+ * headers alone and never looks at the payload, so message content cannot
+ * make a frame look ephemeral.
+ */
+public final class EphemeralHeaders {
+
+    public static final String TYPE = "x-ephemeral-type";
+    public static final String SENDER = "x-ephemeral-sender";
+    public static final String CONVERSATION = "x-ephemeral-conversation";
+
+    private EphemeralHeaders() {
+        // utility class — no instantiation
+    }
+
+    /** Headers for {@code convertAndSend*}; a null conversation is the public room. */
+    public static MessageHeaders of(MessageType type, String sender, String conversationId) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setNativeHeader(TYPE, type.name());
+        headers.setNativeHeader(SENDER, sender != null ? sender : "");
+        headers.setNativeHeader(CONVERSATION, conversationId != null ? conversationId : "");
+        headers.setLeaveMutable(true);
+        return headers.getMessageHeaders();
+    }
+}
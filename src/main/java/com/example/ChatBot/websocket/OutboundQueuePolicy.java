@@ -0,0 +1,127 @@
+package com.example.ChatBot.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Puts an {@link OutboundSessionQueue} in front of every WebSocket session and
+ * owns the shared sender pool and the per-action counters.
+ * Limits apply per session: a client that falls behind loses typing/read
+ * indicators first and is disconnected if it still cannot keep up, without
+ * holding broker threads or large buffers.
+ */
+@Slf4j
+@Component
+public class OutboundQueuePolicy implements WebSocketHandlerDecoratorFactory {
+
+    final int maxMessages;
+    final long maxBytes;
+    final long maxAgeMs;
+
+    final LongAdder delivered = new LongAdder();
+    final LongAdder coalesced = new LongAdder();
+    final LongAdder droppedEphemeral = new LongAdder();
+    final LongAdder disconnected = new LongAdder();
+
+    private final ExecutorService senders;
+    private final Map<String, OutboundSessionQueue> sessions = new ConcurrentHashMap<>();
+
+    public OutboundQueuePolicy(@Value("${chat.ws.outbound.max-messages:1000}") int maxMessages,
+            @Value("${chat.ws.outbound.max-bytes:1048576}") long maxBytes,
+            @Value("${chat.ws.outbound.max-age-ms:10000}") long maxAgeMs,
+            @Value("${chat.ws.outbound.sender-threads:0}") int senderThreads) {
+        this.maxMessages = Math.max(1, maxMessages);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.maxAgeMs = Math.max(1, maxAgeMs);
+        int threads = senderThreads > 0 ? senderThreads : Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ws-sender-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        senders.shutdownNow();
+    }
+
+    @Override
+    @NonNull
+    public WebSocketHandler decorate(@NonNull WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(sessions.computeIfAbsent(session.getId(), id -> wrap(session)));
+            }
+
+            @Override
+            public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus closeStatus)
+                    throws Exception {
+                OutboundSessionQueue queue = sessions.remove(session.getId());
+                super.afterConnectionClosed(queue != null ? queue : session, closeStatus);
+            }
+        };
+    }
+
+    OutboundSessionQueue wrap(WebSocketSession session) {
+        return new OutboundSessionQueue(session, this);
+    }
+
+    void executeSend(Runnable task) {
+        try {
+            senders.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Sender pool shut down, dropping outbound task");
+        }
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /** TYPING/READ frames merged into a newer frame while still queued. */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /** TYPING/READ frames shed because a session's queue was full. */
+    public long getDroppedEphemeralCount() {
+        return droppedEphemeral.sum();
+    }
+
+    /** Sessions closed because they could not keep up. */
+    public long getDisconnectedCount() {
+        return disconnected.sum();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /** Frames waiting across all sessions. */
+    public long getQueuedCount() {
+        long total = 0;
+        for (OutboundSessionQueue queue : sessions.values()) {
+            total += queue.getQueuedCount();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.ChatBot.websocket;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Bounded outbound queue in front of one WebSocket session.
+ * {@link #sendMessage} only enqueues, so broker threads never block on a slow
+ * client; frames are written by a shared sender pool. When the queue is over
+ * its limits, queued TYPING/READ frames are dropped first, and if that does not
+ * free enough room the session is closed so the client reconnects and catches
+ * up via sync. TYPING/READ frames for the same (type, sender, conversation)
+ * that are still waiting in the queue are coalesced to the newest one. Frames
+ * are recognised by their {@link EphemeralHeaders}, never by their body.
+ */
+final class OutboundSessionQueue extends WebSocketSessionDecorator {
+
+    private static final class Frame {
+        private WebSocketMessage<?> message;
+        private int size;
+        private final String coalesceKey;
+        private final long enqueuedAt;
+
+        private Frame(WebSocketMessage<?> message, String coalesceKey, long enqueuedAt) {
+            this.message = message;
+            this.size = message.getPayloadLength();
+            this.coalesceKey = coalesceKey;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        private boolean isEphemeral() {
+            return coalesceKey != null;
+        }
+    }
+
+    private final OutboundQueuePolicy policy;
+    private final Deque<Frame> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean draining;
+    private volatile boolean closed;
+
+    OutboundSessionQueue(WebSocketSession delegate, OutboundQueuePolicy policy) {
+        super(delegate);
+        this.policy = policy;
+    }
+
+    @Override
+    public void sendMessage(@NonNull WebSocketMessage<?> message) throws IOException {
+        if (closed)
+            return;
+        Frame frame = new Frame(message, coalesceKey(message), System.currentTimeMillis());
+        boolean schedule = false;
+        boolean overflow = false;
+        synchronized (this) {
+            if (coalesce(frame)) {
+                policy.coalesced.increment();
+                return;
+            }
+            if (!makeRoom(frame)) {
+                if (frame.isEphemeral()) {
+                    policy.droppedEphemeral.increment();
+                    return;
+                }
+                overflow = true;
+            } else {
+                queue.addLast(frame);
+                queuedBytes += frame.size;
+                if (!draining) {
+                    draining = true;
+                    schedule = true;
+                }
+            }
+        }
+        if (overflow) {
+            disconnect();
+        } else if (schedule) {
+            policy.executeSend(this::drain);
+        }
+    }
+
+    int getQueuedCount() {
+        synchronized (this) {
+            return queue.size();
+        }
+    }
+
+    long getQueuedBytes() {
+        synchronized (this) {
+            return queuedBytes;
+        }
+    }
+
+    boolean isDisconnected() {
+        return closed;
+    }
+
+    /** Replace a still-queued ephemeral frame with the same key by the newer one. */
+    private boolean coalesce(Frame frame) {
+        if (!frame.isEphemeral() || queue.isEmpty())
+            return false;
+        for (Frame queued : queue) {
+            if (frame.coalesceKey.equals(queued.coalesceKey)) {
+                queuedBytes += frame.size - queued.size;
+                queued.message = frame.message;
+                queued.size = frame.size;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the frame fits, dropping queued ephemeral frames if needed. An
+     * empty queue always accepts one frame so large payloads still go through.
+     */
+    private boolean makeRoom(Frame frame) {
+        if (queue.isEmpty())
+            return true;
+        if (frame.enqueuedAt - queue.peekFirst().enqueuedAt > policy.maxAgeMs) {
+            // Client has not read anything for too long; shedding will not help
+            return false;
+        }
+        if (fits(frame))
+            return true;
+        if (frame.isEphemeral())
+            return false;
+        Iterator<Frame> it = queue.iterator();
+        while (it.hasNext() && !fits(frame)) {
+            Frame queued = it.next();
+            if (queued.isEphemeral()) {
+                it.remove();
+                queuedBytes -= queued.size;
+                policy.droppedEphemeral.increment();
+            }
+        }
+        return fits(frame);
+    }
+
+    private boolean fits(Frame frame) {
+        return queue.size() < policy.maxMessages && queuedBytes + frame.size <= policy.maxBytes;
+    }
+
+    private void drain() {
+        while (true) {
+            Frame frame;
+            synchronized (this) {
+                frame = closed ? null : queue.pollFirst();
+                if (frame == null) {
+                    draining = false;
+                    return;
+                }
+                queuedBytes -= frame.size;
+            }
+            try {
+                getDelegate().sendMessage(frame.message);
+                policy.delivered.increment();
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    draining = false;
+                }
+                disconnect();
+                return;
+            }
+        }
+    }
+
+    private void disconnect() {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+        }
+        policy.disconnected.increment();
+        policy.executeSend(() -> {
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException | RuntimeException ignored) {
+                // Already gone
+            }
+        });
+    }
+
+    /**
+     * Key for TYPING/READ frames: at most one of each per sender and
+     * conversation is worth delivering. Null for everything else. Only the
+     * STOMP header block is read; it ends at the first empty line.
+     */
+    static String coalesceKey(WebSocketMessage<?> message) {
+        if (!(message instanceof TextMessage))
+            return null;
+        String frame = ((TextMessage) message).getPayload();
+        String type = null;
+        String sender = "";
+        String conversation = "";
+        int line = frame.indexOf('\n') + 1; // Skip the command
+        while (line > 0 && line < frame.length()) {
+            int end = frame.indexOf('\n', line);
+            if (end < 0 || end == line)
+                break;
+            if (isHeader(frame, line, EphemeralHeaders.TYPE)) {
+                type = frame.substring(line + EphemeralHeaders.TYPE.length() + 1, end);
+            } else if (isHeader(frame, line, EphemeralHeaders.SENDER)) {
+                sender = frame.substring(line + EphemeralHeaders.SENDER.length() + 1, end);
+            } else if (isHeader(frame, line, EphemeralHeaders.CONVERSATION)) {
+                conversation = frame.substring(line + EphemeralHeaders.CONVERSATION.length() + 1, end);
+            }
+            line = end + 1;
+        }
+        return type != null ? type + '|' + sender + '|' + conversation : null;
+    }
+
+    private static boolean isHeader(String frame, int line, String name) {
+        return frame.startsWith(name, line) && frame.length() > line + name.length()
+                && frame.charAt(line + name.length()) == ':';
+    }
+}
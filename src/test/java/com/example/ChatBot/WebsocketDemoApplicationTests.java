@@ -130,7 +130,11 @@ public class WebsocketDemoApplicationTests {
 		assertNotNull(MessageType.FILE);
 		assertNotNull(MessageType.READ);
 		assertNotNull(MessageType.DELIVERED);
+		assertNotNull(MessageType.POLL);
+		assertNotNull(MessageType.POLL_VOTE);
+		assertNotNull(MessageType.CONTACT);
+		assertNotNull(MessageType.EVENT);
 
-		assertEquals(7, MessageType.values().length);
+		assertEquals(11, MessageType.values().length);
 	}
 }
@@ -0,0 +1,138 @@
+package com.example.ChatBot.cluster;
+
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.websocket.EphemeralHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes on an in-process bus: messages must reach users connected to the
+ * other node, and must not be relayed when the recipient is local.
+ */
+public class ClusterRelayTest {
+
+    private Node a;
+    private Node b;
+
+    private static final class Node {
+        private final LocalClusterBus bus;
+        private final ClusterUserRegistry registry;
+        private final ClusterRelay relay;
+        private final SimpMessagingTemplate template;
+        private final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+
+        private Node(String id, LocalClusterBus.Hub hub) {
+            bus = new LocalClusterBus(id, hub);
+            registry = new ClusterUserRegistry(bus, 200);
+            ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+            brokerChannel.subscribe(delivered::add);
+            template = new SimpMessagingTemplate(brokerChannel);
+            // Serialize payloads to bytes, as the application's template does
+            template.setMessageConverter(new StringMessageConverter());
+            relay = new ClusterRelay(bus, registry, () -> template);
+            brokerChannel.addInterceptor(relay);
+            registry.start();
+        }
+
+        private void stop() {
+            registry.stop();
+            bus.close();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        LocalClusterBus.Hub hub = new LocalClusterBus.Hub();
+        a = new Node("node-a", hub);
+        b = new Node("node-b", hub);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        a.stop();
+        b.stop();
+    }
+
+    @Test
+    public void userMessageReachesTheNodeHoldingTheSession() throws Exception {
+        b.registry.sessionOpened("22222");
+        await(() -> a.registry.remoteNodesFor("22222").contains("node-b"));
+
+        a.template.convertAndSendToUser("22222", "/queue/messages", "hello");
+
+        await(() -> !b.delivered.isEmpty());
+        Message<?> received = b.delivered.get(0);
+        assertEquals("/user/22222/queue/messages", SimpMessageHeaderAccessor.getDestination(received.getHeaders()));
+        assertEquals("hello", new String((byte[]) received.getPayload(), StandardCharsets.UTF_8));
+        assertEquals("node-a", received.getHeaders().get(ClusterRelay.ORIGIN_HEADER));
+        assertEquals(1, a.relay.getRelayedCount());
+        // Arrived from the bus, so node B must not send it back out
+        assertEquals(0, b.relay.getRelayedCount());
+    }
+
+    @Test
+    public void localOrDisconnectedUsersAreNotRelayed() throws Exception {
+        a.registry.sessionOpened("11111");
+        b.registry.sessionOpened("22222");
+        b.registry.sessionOpened("22222");
+        await(() -> a.registry.remoteNodesFor("22222").contains("node-b"));
+
+        a.template.convertAndSendToUser("11111", "/queue/messages", "local");
+        assertEquals(0, a.relay.getRelayedCount());
+
+        // One of two tabs closing keeps the user routable
+        b.registry.sessionClosed("22222");
+        b.registry.sessionClosed("22222");
+        await(() -> a.registry.remoteNodesFor("22222").isEmpty());
+        a.template.convertAndSendToUser("22222", "/queue/messages", "gone");
+        assertEquals(0, a.relay.getRelayedCount());
+    }
+
+    @Test
+    public void topicMessagesAreBroadcast() throws Exception {
+        // Nodes without sessions are not counted, as they have nobody to deliver to
+        b.registry.sessionOpened("22222");
+        await(() -> a.registry.hasRemoteNodes());
+
+        a.template.convertAndSend("/topic/public", "to everyone");
+
+        await(() -> !b.delivered.isEmpty());
+        assertEquals("/topic/public", SimpMessageHeaderAccessor.getDestination(b.delivered.get(0).getHeaders()));
+    }
+
+    @Test
+    public void nativeHeadersSurviveTheHop() throws Exception {
+        b.registry.sessionOpened("22222");
+        await(() -> a.registry.remoteNodesFor("22222").contains("node-b"));
+
+        a.template.convertAndSendToUser("22222", "/queue/messages", "typing",
+                EphemeralHeaders.of(MessageType.TYPING, "11111", "conv-1"));
+
+        await(() -> !b.delivered.isEmpty());
+        SimpMessageHeaderAccessor received = SimpMessageHeaderAccessor.wrap(b.delivered.get(0));
+        assertEquals("TYPING", received.getFirstNativeHeader(EphemeralHeaders.TYPE));
+        assertEquals("11111", received.getFirstNativeHeader(EphemeralHeaders.SENDER));
+        assertEquals("conv-1", received.getFirstNativeHeader(EphemeralHeaders.CONVERSATION));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5s");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.ChatBot.controller;
+
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.service.AttachmentService;
+import com.example.ChatBot.service.ConversationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GET /api/attachments/{id} only serves blobs sent in a conversation the
+ * caller takes part in, and never lets shared caches keep them.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class AttachmentAccessTest {
+
+    private static final String ANN = "5550001";
+    private static final String BOB = "5550002";
+    private static final String EVE = "5550666";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private AttachmentService attachmentService;
+
+    private String attachmentId;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        mongoTemplate.remove(new Query(), ChatMessageDocument.class);
+        String conversationId = conversationService.getOrCreate(ANN, BOB).getId();
+        attachmentId = upload("shared with bob");
+
+        ChatMessageDocument doc = new ChatMessageDocument(conversationId, MessageType.FILE, null, ANN, null,
+                "text/plain", 1000);
+        doc.setAttachmentId(attachmentId);
+        mongoTemplate.insert(doc);
+    }
+
+    private String upload(String content) throws Exception {
+        return attachmentService.upload(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                "text/plain").getId();
+    }
+
+    private ResponseEntity<String> download(String id, String mobile) {
+        return restTemplate.getForEntity("/api/attachments/" + id + "?mobile=" + mobile, String.class);
+    }
+
+    @Test
+    public void participantsCanDownload() {
+        for (String mobile : new String[] { ANN, BOB }) {
+            ResponseEntity<String> response = download(attachmentId, mobile);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals("shared with bob", response.getBody());
+            String cacheControl = response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL);
+            assertNotNull(cacheControl);
+            assertTrue(cacheControl.contains("private"), cacheControl);
+            assertFalse(cacheControl.contains("public"), cacheControl);
+        }
+    }
+
+    @Test
+    public void othersGetNotFound() {
+        assertEquals(HttpStatus.NOT_FOUND, download(attachmentId, EVE).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                restTemplate.getForEntity("/api/attachments/" + attachmentId, String.class).getStatusCode());
+    }
+
+    @Test
+    public void unsentBlobsAreNotServed() throws Exception {
+        String unsent = upload("never sent");
+        assertEquals(HttpStatus.NOT_FOUND, download(unsent, ANN).getStatusCode());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.ChatBot.controller;
+
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.service.ConversationService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset pages of GET /api/conversations/{id}/messages/page must cover the
+ * history exactly once, also when many messages share a timestamp, and the
+ * index they rely on must exist. History lists never carry inline file bodies.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class MessagePageTest {
+
+    private static final String ANN = "5550001";
+    private static final String BOB = "5550002";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String conversationId;
+    private final List<String> sent = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate.remove(new Query(), ChatMessageDocument.class);
+        conversationId = conversationService.getOrCreate(ANN, BOB).getId();
+        // Seven messages in the same millisecond between two earlier ones
+        long[] timestamps = { 1000, 2000, 2000, 2000, 2000, 2000, 2000, 2000, 3000 };
+        for (int i = 0; i < timestamps.length; i++) {
+            ChatMessageDocument doc = new ChatMessageDocument(conversationId, MessageType.CHAT, "m" + i, ANN,
+                    null, null, timestamps[i]);
+            sent.add(mongoTemplate.insert(doc).getId());
+        }
+    }
+
+    private ResponseEntity<String> get(String mobile, String query) {
+        return restTemplate.getForEntity("/api/conversations/" + conversationId + "/messages/page?mobile=" + mobile
+                + query, String.class);
+    }
+
+    private JsonNode page(String query) throws Exception {
+        ResponseEntity<String> response = get(ANN, "&limit=3" + query);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return objectMapper.readTree(response.getBody());
+    }
+
+    private static List<String> ids(JsonNode page) {
+        List<String> ids = new ArrayList<>();
+        page.get("messages").forEach(m -> ids.add(m.get("id").asText()));
+        return ids;
+    }
+
+    @Test
+    public void scrollingBackVisitsEveryMessageOnce() throws Exception {
+        List<String> seen = new ArrayList<>();
+        JsonNode page = page("");
+        seen.addAll(0, ids(page));
+        while (page.get("hasMore").asBoolean()) {
+            page = page("&before=" + page.get("before").asText());
+            seen.addAll(0, ids(page));
+        }
+        assertEquals(sent, seen);
+    }
+
+    @Test
+    public void catchingUpVisitsEveryNewerMessageOnce() throws Exception {
+        JsonNode oldest = page("&before=" + page("").get("before").asText());
+        List<String> seen = new ArrayList<>(ids(oldest));
+        JsonNode page = oldest;
+        do {
+            page = page("&after=" + page.get("after").asText());
+            seen.addAll(ids(page));
+        } while (page.get("hasMore").asBoolean());
+        assertEquals(sent.subList(3, sent.size()), seen);
+    }
+
+    @Test
+    public void refusesOutsidersAndForeignCursors() {
+        assertEquals(HttpStatus.NOT_FOUND, get("5550009", "").getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, get(ANN, "&before=nonsense").getStatusCode());
+    }
+
+    @Test
+    public void historyListsLeaveOutInlineFiles() throws Exception {
+        ChatMessageDocument file = new ChatMessageDocument(conversationId, MessageType.FILE, null, ANN,
+                "aGVsbG8=", "text/plain", 4000);
+        String fileId = mongoTemplate.insert(file).getId();
+
+        JsonNode recent = objectMapper.readTree(restTemplate.getForObject("/api/messages?limit=3", String.class));
+        JsonNode newest = recent.get(recent.size() - 1);
+        assertEquals(fileId, newest.get("id").asText());
+        assertTrue(newest.path("fileContent").isMissingNode() || newest.get("fileContent").isNull());
+
+        JsonNode last = page("").get("messages").get(2);
+        assertEquals(fileId, last.get("id").asText());
+        assertTrue(last.path("fileContent").isMissingNode() || last.get("fileContent").isNull());
+    }
+
+    @Test
+    public void historyIndexExists() {
+        assertTrue(mongoTemplate.indexOps(ChatMessageDocument.class).getIndexInfo().stream()
+                .anyMatch(index -> index.getName().equals("conversation_timestamp_id")));
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.ChatBot.controller;
+
+import com.example.ChatBot.dto.chat.PollVotePayload;
+import com.example.ChatBot.model.PollTallyDocument;
+import com.example.ChatBot.model.PollVoteDocument;
+import com.example.ChatBot.service.ConversationService;
+import com.example.ChatBot.service.PollService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * POST /api/conversations/{id}/polls/{pollId}/votes counts one vote per
+ * participant and refuses outsiders, unknown options and polls of another
+ * conversation without touching the tally.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class PollVoteTest {
+
+    private static final String ANN = "5550001";
+    private static final String BOB = "5550002";
+    private static final String EVE = "5550666";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private PollService pollService;
+
+    private String conversationId;
+    private String otherConversationId;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate.remove(new Query(), PollTallyDocument.class);
+        mongoTemplate.remove(new Query(), PollVoteDocument.class);
+        conversationId = conversationService.getOrCreate(ANN, BOB).getId();
+        otherConversationId = conversationService.getOrCreate(ANN, EVE).getId();
+        pollService.open("poll-1", conversationId, 2);
+        pollService.open("poll-2", otherConversationId, 2);
+    }
+
+    private ResponseEntity<PollVotePayload> vote(String id, String pollId, String mobile, int optionIndex) {
+        return restTemplate.postForEntity("/api/conversations/" + id + "/polls/" + pollId + "/votes?mobile=" + mobile,
+                Map.of("optionIndex", optionIndex), PollVotePayload.class);
+    }
+
+    @Test
+    public void participantsVoteAndChangeTheirVote() {
+        ResponseEntity<PollVotePayload> first = vote(conversationId, "poll-1", ANN, 0);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(List.of(1L, 0L), first.getBody().getCounts());
+        assertEquals(ANN, first.getBody().getVoter());
+
+        assertEquals(List.of(1L, 1L), vote(conversationId, "poll-1", BOB, 1).getBody().getCounts());
+        assertEquals(List.of(1L, 1L), vote(conversationId, "poll-1", BOB, 1).getBody().getCounts());
+        assertEquals(List.of(2L, 0L), vote(conversationId, "poll-1", BOB, 0).getBody().getCounts());
+    }
+
+    @Test
+    public void refusesWhatItCannotCount() {
+        // Not a participant
+        assertEquals(HttpStatus.NOT_FOUND, vote(conversationId, "poll-1", EVE, 0).getStatusCode());
+        // No such option
+        assertEquals(HttpStatus.NOT_FOUND, vote(conversationId, "poll-1", ANN, 2).getStatusCode());
+        // Rejected by request validation before it reaches the tally
+        assertNull(vote(conversationId, "poll-1", ANN, -1).getBody().getCounts());
+        // The poll belongs to ANN's conversation with EVE, not the one the vote names
+        assertEquals(HttpStatus.NOT_FOUND, vote(conversationId, "poll-2", ANN, 0).getStatusCode());
+
+        assertEquals(List.of(0L, 0L), mongoTemplate.findById("poll-1", PollTallyDocument.class).getCounts());
+        assertEquals(List.of(0L, 0L), mongoTemplate.findById("poll-2", PollTallyDocument.class).getCounts());
+        assertEquals(0, mongoTemplate.count(new Query(), PollVoteDocument.class));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.ChatBot.controller;
+
+import com.example.ChatBot.model.UserDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent signups for one number: one account is created and every other
+ * request gets the 400 a taken number always gets.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class SignupTest {
+
+    private static final String MOBILE = "5550007770";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate.remove(new Query(Criteria.where("mobile").is(MOBILE)), UserDocument.class);
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void concurrentSignupsCreateOneAccount() throws Exception {
+        Map<String, String> body = Map.of("mobile", MOBILE, "displayName", "Ann", "password", "secret123");
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<ResponseEntity<Map>> responses = new ArrayList<>();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<ResponseEntity<Map>>> signups = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                signups.add(pool.submit(() -> {
+                    start.await();
+                    return restTemplate.postForEntity("/api/auth/signup", body, Map.class);
+                }));
+            }
+            start.countDown();
+            for (Future<ResponseEntity<Map>> signup : signups) {
+                responses.add(signup.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, responses.stream().filter(r -> r.getStatusCode() == HttpStatus.OK).count());
+        responses.stream().filter(r -> r.getStatusCode() != HttpStatus.OK).forEach(r -> {
+            assertEquals(HttpStatus.BAD_REQUEST, r.getStatusCode());
+            assertEquals("Mobile number already registered", r.getBody().get("error"));
+        });
+        assertEquals(1, mongoTemplate.count(new Query(Criteria.where("mobile").is(MOBILE)), UserDocument.class));
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.ChatBot.load;
+
+import com.example.ChatBot.model.ConversationDocument;
+import com.example.ChatBot.model.GroupDocument;
+import com.example.ChatBot.service.ConversationService;
+import com.example.ChatBot.service.GroupService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load generator: N SockJS/STOMP sessions against the app started
+ * on a random port with embedded Mongo. Messages are sent over REST as the
+ * clients do and timed until they arrive on the recipients' sockets, so the
+ * latency covers the full send path (validation, persistence hand-off,
+ * broker, outbound queue). Skipped unless -Dloadtest=true:
+ *
+ * <pre>
+ * ./mvnw test -Dtest=StompLoadGenerator -Dloadtest=true \
+ *     -Dloadtest.sessions=500 -Dloadtest.rate=2000 -Dloadtest.group-ratio=0.2
+ * </pre>
+ *
+ * Options (system properties, defaults in brackets): loadtest.sessions [200],
+ * loadtest.duration-seconds [30], loadtest.warmup-seconds [5],
+ * loadtest.rate messages/s [500], loadtest.group-ratio [0.2],
+ * loadtest.group-size [20], loadtest.file-ratio [0.05],
+ * loadtest.file-bytes [65536].
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class StompLoadGenerator {
+
+    private static final String TAG = "lt:";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private GroupService groupService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder sendErrors = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private volatile boolean recording;
+
+    @Test
+    public void run() throws Exception {
+        int sessions = Integer.getInteger("loadtest.sessions", 200);
+        int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+        int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 5);
+        int rate = Integer.getInteger("loadtest.rate", 500);
+        double groupRatio = Double.parseDouble(System.getProperty("loadtest.group-ratio", "0.2"));
+        int groupSize = Integer.getInteger("loadtest.group-size", 20);
+        double fileRatio = Double.parseDouble(System.getProperty("loadtest.file-ratio", "0.05"));
+        int fileBytes = Integer.getInteger("loadtest.file-bytes", 65536);
+
+        List<String> mobiles = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            mobiles.add(String.valueOf(7_000_000_000L + i));
+        }
+
+        // Pairs (0,1), (2,3)... for 1:1 traffic; consecutive blocks for groups
+        Map<String, String> pairConversation = new HashMap<>();
+        for (int i = 0; i + 1 < sessions; i += 2) {
+            ConversationDocument conv = conversationService.getOrCreate(mobiles.get(i), mobiles.get(i + 1));
+            pairConversation.put(mobiles.get(i), conv.getId());
+            pairConversation.put(mobiles.get(i + 1), conv.getId());
+        }
+        Map<String, String> memberGroup = new HashMap<>();
+        for (int from = 0; from + 1 < sessions; from += groupSize) {
+            Set<String> members = new HashSet<>(mobiles.subList(from, Math.min(from + groupSize, sessions)));
+            GroupDocument group = groupService.createGroup("load-" + from, null, mobiles.get(from), members);
+            members.forEach(m -> memberGroup.put(m, group.getId()));
+        }
+
+        List<StompSession> stompSessions = connect(mobiles);
+        String filePayload = Base64.getEncoder().encodeToString(randomBytes(fileBytes));
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        double perTick = rate / 1000.0;
+        double[] credit = new double[1];
+        ticker.scheduleAtFixedRate(() -> {
+            credit[0] += perTick;
+            while (credit[0] >= 1) {
+                credit[0] -= 1;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                String sender = mobiles.get(random.nextInt(sessions));
+                boolean group = random.nextDouble() < groupRatio && memberGroup.containsKey(sender);
+                String target = group ? memberGroup.get(sender) : pairConversation.get(sender);
+                if (target != null) {
+                    send(http, target, sender, random.nextDouble() < fileRatio ? filePayload : null);
+                }
+            }
+        }, 0, 1, TimeUnit.MILLISECONDS);
+
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        latency.reset();
+        long sentBefore = sent.sum();
+        long receivedBefore = received.sum();
+        recording = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        recording = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        ticker.shutdownNow();
+
+        report(sessions, rate, groupRatio, groupSize, fileRatio, fileBytes, elapsed,
+                sent.sum() - sentBefore, received.sum() - receivedBefore);
+
+        for (StompSession session : stompSessions) {
+            session.disconnect();
+        }
+        assertTrue(latency.getTotalCount() > 0, "no messages were delivered");
+    }
+
+    private List<StompSession> connect(List<String> mobiles) throws Exception {
+        ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+        heartbeats.setPoolSize(2);
+        heartbeats.initialize();
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new ByteArrayMessageConverter());
+        client.setTaskScheduler(heartbeats);
+        client.setInboundMessageSizeLimit(16 * 1024 * 1024);
+
+        List<CompletableFuture<StompSession>> pending = new ArrayList<>();
+        for (String mobile : mobiles) {
+            String url = "http://localhost:" + port + "/ws?mobile=" + mobile;
+            pending.add(client.connect(url, new StompSessionHandlerAdapter() {
+            }).completable());
+        }
+        List<StompSession> sessions = new ArrayList<>();
+        for (CompletableFuture<StompSession> future : pending) {
+            StompSession session = future.get(30, TimeUnit.SECONDS);
+            session.subscribe("/user/queue/messages", new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return byte[].class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    onFrame((byte[]) payload);
+                }
+            });
+            sessions.add(session);
+        }
+        // Give the broker time to register all subscriptions
+        TimeUnit.SECONDS.sleep(1);
+        return sessions;
+    }
+
+    private void send(HttpClient http, String conversationId, String sender, String fileContent) {
+        Map<String, String> body = new HashMap<>();
+        body.put("replyToId", TAG + System.nanoTime());
+        if (fileContent != null) {
+            body.put("fileContent", fileContent);
+            body.put("fileType", "application/octet-stream");
+        } else {
+            body.put("content", "load test message from " + sender);
+        }
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/conversations/"
+                    + conversationId + "/messages?mobile=" + sender))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (Exception e) {
+            sendErrors.increment();
+            return;
+        }
+        sent.increment();
+        http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (error != null || response.statusCode() != 200) {
+                sendErrors.increment();
+            }
+        });
+    }
+
+    private void onFrame(byte[] payload) {
+        long now = System.nanoTime();
+        try {
+            JsonNode node = objectMapper.readTree(payload);
+            String tag = node.path("replyToId").asText("");
+            if (!tag.startsWith(TAG))
+                return;
+            received.increment();
+            if (recording) {
+                latency.recordValue(Math.max(0, now - Long.parseLong(tag.substring(TAG.length()))));
+            }
+        } catch (Exception ignored) {
+            // Not a load-test message
+        }
+    }
+
+    private void report(int sessions, int rate, double groupRatio, int groupSize, double fileRatio, int fileBytes,
+            double elapsed, long sentCount, long receivedCount) {
+        System.out.printf("%n=== STOMP load: %d sessions, %d msg/s target, group %.0f%% (size %d), "
+                + "files %.0f%% (%d bytes) ===%n", sessions, rate, groupRatio * 100, groupSize, fileRatio * 100,
+                fileBytes);
+        System.out.printf("sent       %,d (%.1f msg/s), send errors %,d%n", sentCount, sentCount / elapsed,
+                sendErrors.sum());
+        System.out.printf("delivered  %,d (%.1f deliveries/s)%n", receivedCount, receivedCount / elapsed);
+        System.out.printf("latency ms p50 %.2f  p99 %.2f  p999 %.2f  max %.2f  (n=%,d)%n",
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                latency.getValueAtPercentile(99.9) / 1e6, latency.getMaxValue() / 1e6, latency.getTotalCount());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return bytes;
+    }
+}
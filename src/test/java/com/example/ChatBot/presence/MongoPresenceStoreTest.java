@@ -0,0 +1,95 @@
+package com.example.ChatBot.presence;
+
+import com.example.ChatBot.config.MongoIndexConfig;
+import com.example.ChatBot.model.PresenceSessionDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sessions of a node that stops heartbeating must stop counting as online,
+ * and the collection must carry the TTL index that eventually removes them.
+ */
+@DataMongoTest
+@Import({ MongoPresenceStore.class, MongoIndexConfig.class })
+public class MongoPresenceStoreTest {
+
+    @Autowired
+    private MongoPresenceStore store;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate.remove(new Query(), PresenceSessionDocument.class);
+    }
+
+    @Test
+    public void staleSessionsAreNotOnline() {
+        long now = System.currentTimeMillis();
+        store.sessionStarted("s1", "5550001", now - 60_000);
+        store.sessionStarted("s2", "5550002", now);
+
+        assertEquals(Set.of("5550002"), store.findOnline(now - 45_000));
+
+        store.heartbeat(Map.of("s1", "5550001"), now);
+        assertEquals(Set.of("5550001", "5550002"), store.findOnline(now - 45_000));
+    }
+
+    @Test
+    public void looksUpOnlyTheGivenUsers() {
+        long now = System.currentTimeMillis();
+        store.sessionStarted("s1", "5550001", now);
+        store.sessionStarted("s2", "5550002", now - 60_000);
+        store.sessionStarted("s4", "5550004", now);
+
+        assertEquals(Set.of("5550001"), store.findOnline(List.of("5550001", "5550002", "5550003"), now - 45_000));
+        assertTrue(store.findOnline(List.of(), now - 45_000).isEmpty());
+    }
+
+    @Test
+    public void heartbeatRecreatesLostSessions() {
+        long now = System.currentTimeMillis();
+        store.heartbeat(Map.of("s3", "5550003"), now);
+        assertEquals(Set.of("5550003"), store.findOnline(now - 1_000));
+
+        store.sessionEnded("s3", "5550003", now);
+        assertTrue(store.findOnline(now - 1_000).isEmpty());
+        assertEquals(now, store.findLastSeen(Set.of("5550003")).get("5550003"));
+    }
+
+    @Test
+    public void heartbeatInFlightDoesNotReviveAnEndedSession() {
+        long now = System.currentTimeMillis();
+        store.sessionStarted("s5", "5550005", now);
+        store.sessionStarted("s6", "5550006", now);
+        // The heartbeat snapshot still lists s5, but it disconnects before the write
+        store.sessionEnded("s5", "5550005", now);
+        store.heartbeat(Map.of("s5", "5550005", "s6", "5550006", "s7", "5550007"), now + 1);
+
+        assertEquals(Set.of("5550006", "5550007"), store.findOnline(now - 1_000));
+        assertEquals(Set.of("5550007"), store.findOnline(List.of("5550005", "5550007"), now - 1_000));
+        PresenceSessionDocument ended = mongoTemplate.findById("s5", PresenceSessionDocument.class);
+        assertNotNull(ended.getEndedAt());
+        assertEquals(now, ended.getHeartbeatAt().getTime());
+    }
+
+    @Test
+    public void sessionsExpireThroughATtlIndex() {
+        assertTrue(mongoTemplate.indexOps(PresenceSessionDocument.class).getIndexInfo().stream()
+                .anyMatch(index -> index.isIndexForFields(Set.of("heartbeatAt")) && index.getExpireAfter()
+                        .map(ttl -> ttl.getSeconds() == PresenceSessionDocument.EXPIRE_SECONDS)
+                        .orElse(false)));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.ChatBot.repository;
+
+import com.example.ChatBot.config.PasswordEncoderConfig;
+import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.service.PasswordHasher;
+import com.example.ChatBot.service.ProfilePictureService;
+import com.example.ChatBot.service.UserDirectory;
+import com.example.ChatBot.service.UserService;
+import com.example.ChatBot.storage.GridFsAttachmentStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The projected user lookups must return exactly the fields they promise, and
+ * the {@code $set} profile updates in {@link UserService} must change only
+ * their own field.
+ */
+@DataMongoTest
+@Import({ UserService.class, UserDirectory.class, ProfilePictureService.class, GridFsAttachmentStore.class,
+        PasswordHasher.class, PasswordEncoderConfig.class, UserRepositoryTest.Metrics.class })
+public class UserRepositoryTest {
+
+    private static final String MOBILE = "5550001";
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private GridFsAttachmentStore attachmentStore;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository.deleteAll();
+        UserDocument user = new UserDocument(MOBILE, "Ann");
+        user.setHashedPassword("hash");
+        user.setBio("Hello");
+        user.setProfilePicture("https://example.com/ann.png");
+        user.setPictureVariants(Map.of("48", "a", "128", "b", "512", "c"));
+        userRepository.save(user);
+    }
+
+    @Test
+    public void bioLookupFetchesOnlyTheBio() {
+        UserDocument user = userRepository.findBioByMobile(MOBILE).orElseThrow();
+        assertEquals(MOBILE, user.getMobile());
+        assertEquals("Hello", user.getBio());
+        assertNull(user.getDisplayName());
+        assertNull(user.getHashedPassword());
+        assertNull(user.getProfilePicture());
+        assertNull(user.getPictureVariants());
+        assertEquals(0, user.getCreatedAt());
+    }
+
+    @Test
+    public void pictureLookupFetchesOnlyPictureFields() {
+        UserDocument user = userRepository.findPictureByMobile(MOBILE).orElseThrow();
+        assertEquals("https://example.com/ann.png", user.getProfilePicture());
+        assertEquals("b", user.getPictureVariants().get("128"));
+        assertNull(user.getDisplayName());
+        assertNull(user.getBio());
+        assertNull(user.getHashedPassword());
+    }
+
+    @Test
+    public void profileLookupsLeaveOutThePasswordHash() {
+        UserDocument profile = userRepository.findProfileByMobile(MOBILE).orElseThrow();
+        assertEquals("Ann", profile.getDisplayName());
+        assertEquals("Hello", profile.getBio());
+        assertNull(profile.getHashedPassword());
+
+        List<UserDocument> summaries = userRepository.findSummaryByMobileIn(List.of(MOBILE, "5550009"));
+        assertEquals(1, summaries.size());
+        assertEquals("Ann", summaries.get(0).getDisplayName());
+        assertNull(summaries.get(0).getHashedPassword());
+
+        assertTrue(userRepository.existsByMobile(MOBILE));
+        assertFalse(userRepository.existsByMobile("5550009"));
+    }
+
+    @Test
+    public void updatesChangeOnlyTheirField() {
+        UserDocument renamed = userService.updateDisplayName(MOBILE, "  Anna ");
+        assertEquals("Anna", renamed.getDisplayName());
+        assertNull(renamed.getHashedPassword());
+
+        UserDocument withBio = userService.updateBio(MOBILE, "x".repeat(200));
+        assertEquals(150, withBio.getBio().length());
+        assertEquals("Anna", withBio.getDisplayName());
+
+        UserDocument stored = userRepository.findByMobile(MOBILE).orElseThrow();
+        assertEquals("Anna", stored.getDisplayName());
+        assertEquals(150, stored.getBio().length());
+        assertEquals("hash", stored.getHashedPassword());
+        assertEquals("https://example.com/ann.png", stored.getProfilePicture());
+        assertEquals(3, stored.getPictureVariants().size());
+
+        userService.updateBio(MOBILE, null);
+        assertNull(userService.getBio(MOBILE));
+    }
+
+    @Test
+    public void replacedPicturesAreDeletedOnceUnused() throws IOException {
+        userRepository.save(new UserDocument("5550002", "Bob"));
+        String red = picture(Color.RED);
+
+        Map<String, String> first = userService.updateProfilePicture(MOBILE, red).getPictureVariants();
+        userService.updateProfilePicture("5550002", red);
+        userService.updateProfilePicture(MOBILE, picture(Color.BLUE));
+        // Bob still shows the same thumbnails
+        first.values().forEach(id -> assertTrue(attachmentStore.find(id).isPresent()));
+
+        userService.updateProfilePicture("5550002", picture(Color.GREEN));
+        first.values().forEach(id -> assertTrue(attachmentStore.find(id).isEmpty()));
+        userRepository.findByMobile(MOBILE).orElseThrow().getPictureVariants().values()
+                .forEach(id -> assertTrue(attachmentStore.find(id).isPresent()));
+    }
+
+    private static String picture(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 64, 64);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    @Test
+    public void updatesOfUnknownUsersFail() {
+        assertThrows(IllegalArgumentException.class, () -> userService.updateDisplayName("5550009", "Bob"));
+        assertThrows(IllegalArgumentException.class, () -> userService.updateBio("5550009", "Hi"));
+        assertFalse(userRepository.existsByMobile("5550009"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.presence.PresenceStore;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class GroupFanoutServiceTest {
+
+    private static final Set<String> MEMBERS = Set.of("5550001", "5550002", "5550003");
+
+    private static Set<String> recipients(MessageChannel channel) {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(channel, atLeast(0)).send(sent.capture());
+        return sent.getAllValues().stream()
+                .map(message -> SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    void readsPresenceAtMostOncePerStalenessWindow() throws InterruptedException {
+        PresenceStore store = mock(PresenceStore.class);
+        when(store.findOnline(anyLong())).thenReturn(new HashSet<>());
+        // A long cache TTL: only the fan-out's own bound triggers refreshes
+        PresenceService presenceService = new PresenceService(store, 15_000, 45_000, 600_000);
+        presenceService.sessionConnected("5550001", "local-session");
+
+        MessageChannel channel = mock(MessageChannel.class);
+        when(channel.send(any())).thenReturn(true);
+        SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        GroupFanoutService fanout = new GroupFanoutService(template, presenceService, 200, 200, 1, 10);
+        try {
+            ChatMessageResponse message = ChatMessageResponse.builder()
+                    .type(MessageType.CHAT)
+                    .content("hi")
+                    .sender("5550001")
+                    .conversationId("group-1")
+                    .build();
+            assertEquals(1, fanout.dispatch(message, MEMBERS));
+            // 5550002 connects on another node; a burst of messages keeps using the cached set
+            when(store.findOnline(anyLong())).thenReturn(new HashSet<>(Set.of("5550002")));
+            for (int i = 0; i < 10; i++) {
+                fanout.dispatch(message, MEMBERS);
+            }
+            assertEquals(Set.of("/user/5550001/queue/messages"), recipients(channel));
+            verify(store, times(1)).findOnline(anyLong());
+
+            // Past the bound the set is read again and the new member is pushed to
+            Thread.sleep(250);
+            assertEquals(2, fanout.dispatch(message, MEMBERS));
+            assertEquals(Set.of("/user/5550001/queue/messages", "/user/5550002/queue/messages"),
+                    recipients(channel));
+            verify(store, times(2)).findOnline(anyLong());
+            verify(store, never()).findOnline(anyCollection(), anyLong());
+            assertEquals(12 * 2 - 1, fanout.getSkippedOfflineCount());
+        } finally {
+            fanout.stop();
+        }
+    }
+
+    @Test
+    void emptyGroupsNeedNoLookup() {
+        PresenceStore store = mock(PresenceStore.class);
+        PresenceService presenceService = new PresenceService(store, 15_000, 45_000, 2_000);
+        assertTrue(presenceService.findOnline(List.of(), 0).isEmpty());
+        verifyNoInteractions(store);
+    }
+}
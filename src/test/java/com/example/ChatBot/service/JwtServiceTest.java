@@ -0,0 +1,36 @@
+package com.example.ChatBot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtServiceTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-0123456789";
+
+    @Test
+    void acceptsRepeatedTokensAndRejectsTamperedOnes() {
+        JwtService jwtService = new JwtService(SECRET, 3_600_000L, 100, 300);
+        String token = jwtService.generate("9876543210");
+
+        assertEquals("9876543210", jwtService.validateAndGetMobile(token));
+        assertEquals("9876543210", jwtService.validateAndGetMobile(" " + token + " "));
+
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+        assertNull(jwtService.validateAndGetMobile(tampered));
+        assertNull(jwtService.validateAndGetMobile(new JwtService(SECRET.replace('t', 'x'), 3_600_000L, 100, 300)
+                .generate("9876543210")));
+        assertNull(jwtService.validateAndGetMobile(" "));
+    }
+
+    @Test
+    void cachedTokensStillExpire() throws InterruptedException {
+        JwtService jwtService = new JwtService(SECRET, 1_500L, 100, 300);
+        String token = jwtService.generate("9876543210");
+        assertEquals("9876543210", jwtService.validateAndGetMobile(token));
+
+        // exp has one-second resolution, so the token expires within 1.5s
+        Thread.sleep(1_600);
+        assertNull(jwtService.validateAndGetMobile(token));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.model.ConversationDocument;
+import com.example.ChatBot.model.GroupDocument;
+import com.example.ChatBot.repository.ConversationRepository;
+import com.example.ChatBot.repository.GroupRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hammers a single conversation/group with concurrent last-message updates and
+ * checks that the preview never moves backwards and always matches its timestamp.
+ */
+@DataMongoTest
+@Import({ ConversationService.class, GroupService.class, LastMessageConcurrencyTest.Metrics.class })
+public class LastMessageConcurrencyTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    private static final int THREADS = 16;
+    private static final int UPDATES = 2000;
+    private static final long TORN_WRITE = -2;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Test
+    public void conversationPreviewNeverRegresses() throws Exception {
+        ConversationDocument conv = conversationRepository.save(new ConversationDocument("11111", "22222"));
+        long base = conv.getLastMessageAt() + 1;
+
+        hammer(base, i -> conversationService.advanceLastMessage(conv.getId(), "msg-" + i, base + i), () -> {
+            ConversationDocument current = conversationRepository.findById(conv.getId()).orElseThrow();
+            return new long[] { current.getLastMessageAt(), previewIndex(current.getLastMessagePreview()) };
+        });
+
+        ConversationDocument result = conversationRepository.findById(conv.getId()).orElseThrow();
+        assertEquals(base + UPDATES - 1, result.getLastMessageAt());
+        assertEquals("msg-" + (UPDATES - 1), result.getLastMessagePreview());
+    }
+
+    @Test
+    public void groupPreviewNeverRegresses() throws Exception {
+        GroupDocument group = groupRepository.save(new GroupDocument("g", "11111", new HashSet<>(Set.of("22222"))));
+        long base = group.getLastMessageAt() + 1;
+
+        hammer(base, i -> groupService.advanceLastMessage(group.getId(), "msg-" + i, "sender-" + i, base + i), () -> {
+            GroupDocument current = groupRepository.findById(group.getId()).orElseThrow();
+            long index = previewIndex(current.getLastMessagePreview());
+            if (index >= 0 && !("sender-" + index).equals(current.getLastMessageSenderName())) {
+                return new long[] { current.getLastMessageAt(), TORN_WRITE };
+            }
+            return new long[] { current.getLastMessageAt(), index };
+        });
+
+        GroupDocument result = groupRepository.findById(group.getId()).orElseThrow();
+        assertEquals(base + UPDATES - 1, result.getLastMessageAt());
+        assertEquals("msg-" + (UPDATES - 1), result.getLastMessagePreview());
+        assertEquals("sender-" + (UPDATES - 1), result.getLastMessageSenderName());
+    }
+
+    private interface Update {
+        void apply(int index);
+    }
+
+    private interface Snapshot {
+        /** Returns {lastMessageAt, preview index, -1 for no preview or TORN_WRITE}. */
+        long[] read();
+    }
+
+    private void hammer(long base, Update update, Snapshot snapshot) throws Exception {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < UPDATES; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> violation = new AtomicReference<>();
+
+        Thread observer = new Thread(() -> {
+            long lastSeen = Long.MIN_VALUE;
+            while (writing.get() && violation.get() == null) {
+                long[] current;
+                try {
+                    current = snapshot.read();
+                } catch (RuntimeException e) {
+                    violation.set("snapshot failed: " + e);
+                    return;
+                }
+                if (current[1] == TORN_WRITE) {
+                    violation.set("sender name does not match preview at " + current[0]);
+                } else if (current[0] < lastSeen) {
+                    violation.set("lastMessageAt went from " + lastSeen + " to " + current[0]);
+                } else if (current[1] >= 0 && current[0] != base + current[1]) {
+                    violation.set("preview msg-" + current[1] + " stored with timestamp " + current[0]);
+                }
+                lastSeen = current[0];
+            }
+        });
+        observer.start();
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int slot = t;
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int i = slot; i < order.size(); i += THREADS) {
+                    update.apply(order.get(i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        writing.set(false);
+        observer.join();
+        for (Future<?> writer : writers) {
+            // Rethrows an update that failed, so every update is known to have run
+            writer.get();
+        }
+
+        assertNull(violation.get(), violation.get());
+    }
+
+    private static long previewIndex(String preview) {
+        return preview != null && preview.startsWith("msg-") ? Long.parseLong(preview.substring(4)) : -1;
+    }
+}
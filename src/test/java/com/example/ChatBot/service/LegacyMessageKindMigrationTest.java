@@ -0,0 +1,131 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.model.PollTallyDocument;
+import com.example.ChatBot.model.PollVoteDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prefixed CHAT messages from before typed messages must end up as typed
+ * polls, contacts and events, with their votes replayed into the tallies and
+ * no vote message left behind to be scanned again on the next start.
+ */
+@DataMongoTest
+@Import(PollService.class)
+public class LegacyMessageKindMigrationTest {
+
+    private static final String CONVERSATION = "conv-1";
+    private static final String ANN = "5550001";
+    private static final String BOB = "5550002";
+
+    @Autowired
+    private PollService pollService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private LegacyMessageKindMigration migration;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate.remove(new Query(), ChatMessageDocument.class);
+        mongoTemplate.remove(new Query(), PollTallyDocument.class);
+        mongoTemplate.remove(new Query(), PollVoteDocument.class);
+        migration = new LegacyMessageKindMigration(mongoTemplate, pollService, new ObjectMapper(), true);
+    }
+
+    @Test
+    public void convertsPrefixedMessagesAndReplaysVotes() {
+        String pollId = legacy(ANN, "__POLL__{\"question\":\"Lunch?\",\"options\":[\"Pizza\",\"Sushi\"]}", 1000);
+        // The voter in the JSON was client-supplied; the sender is who voted
+        legacy(BOB, vote(pollId, 1).replace(BOB, ANN), 1001);
+        // A changed vote replays as a move
+        legacy(ANN, vote(pollId, 1), 1002);
+        legacy(ANN, vote(pollId, 0), 1003);
+        String contactId = legacy(ANN, "__CONTACT__{\"name\":\"Cy\",\"phone\":\"5550003\"}", 1004);
+        String eventId = legacy(BOB, "__EVENT__{\"title\":\"Party\",\"date\":\"2024-05-01\"}", 1005);
+        String textId = legacy(ANN, "hello", 1006);
+
+        migration.migrate();
+
+        ChatMessageDocument poll = mongoTemplate.findById(pollId, ChatMessageDocument.class);
+        assertEquals(MessageType.POLL, poll.getType());
+        assertNull(poll.getContent());
+        assertEquals("Lunch?", poll.getPoll().getQuestion());
+        assertEquals(List.of("Pizza", "Sushi"), poll.getPoll().getOptions());
+        assertNull(poll.getPoll().getCounts());
+        assertEquals(List.of(1L, 1L), tally(pollId));
+        assertEquals(1, mongoTemplate.findById(PollVoteDocument.idFor(pollId, BOB), PollVoteDocument.class)
+                .getOption());
+        assertEquals(0, mongoTemplate.findById(PollVoteDocument.idFor(pollId, ANN), PollVoteDocument.class)
+                .getOption());
+
+        ChatMessageDocument contact = mongoTemplate.findById(contactId, ChatMessageDocument.class);
+        assertEquals(MessageType.CONTACT, contact.getType());
+        assertEquals("5550003", contact.getContact().getPhone());
+        ChatMessageDocument event = mongoTemplate.findById(eventId, ChatMessageDocument.class);
+        assertEquals(MessageType.EVENT, event.getType());
+        assertEquals("Party", event.getEvent().getTitle());
+        assertEquals("hello", mongoTemplate.findById(textId, ChatMessageDocument.class).getContent());
+
+        assertEquals(0, legacyVotes());
+        assertEquals(4, mongoTemplate.count(new Query(), ChatMessageDocument.class));
+    }
+
+    @Test
+    public void votesThatCannotBeReplayedAreRemovedToo() {
+        String pollId = legacy(ANN, "__POLL__{\"question\":\"Lunch?\",\"options\":[\"Pizza\",\"Sushi\"]}", 1000);
+        legacy(BOB, vote("deleted-poll", 0), 1001);
+        legacy(BOB, vote(pollId, 5), 1002);
+        legacy(BOB, "__POLL_VOTE__{not json", 1003);
+        String brokenPollId = legacy(ANN, "__POLL__{not json", 1004);
+
+        migration.migrate();
+
+        assertEquals(0, legacyVotes());
+        assertEquals(List.of(0L, 0L), tally(pollId));
+        // An unreadable poll stays readable as text
+        ChatMessageDocument broken = mongoTemplate.findById(brokenPollId, ChatMessageDocument.class);
+        assertEquals(MessageType.CHAT, broken.getType());
+        assertEquals("__POLL__{not json", broken.getContent());
+
+        // Running again finds nothing new to replay
+        legacy(ANN, vote(pollId, 1), 1005);
+        migration.migrate();
+        migration.migrate();
+        assertEquals(List.of(0L, 1L), tally(pollId));
+        assertEquals(0, legacyVotes());
+    }
+
+    private String legacy(String sender, String content, long timestamp) {
+        return mongoTemplate.insert(new ChatMessageDocument(CONVERSATION, MessageType.CHAT, content, sender, null,
+                null, timestamp)).getId();
+    }
+
+    private static String vote(String pollId, int option) {
+        return "__POLL_VOTE__{\"pollMessageId\":\"" + pollId + "\",\"voter\":\"" + BOB + "\",\"optionIndex\":"
+                + option + "}";
+    }
+
+    private List<Long> tally(String pollId) {
+        return mongoTemplate.findById(pollId, PollTallyDocument.class).getCounts();
+    }
+
+    private long legacyVotes() {
+        return mongoTemplate.count(new Query(Criteria.where("content").regex("^__POLL_VOTE__")),
+                ChatMessageDocument.class);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.storage.StoredAttachment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Eviction keeps the cache within budget but never deletes a file that was
+ * just handed out to be served.
+ */
+public class MediaCacheServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private AttachmentService attachmentService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        attachmentService = mock(AttachmentService.class);
+        for (String id : new String[] { "a", "b", "c" }) {
+            byte[] content = (id + id + id + id + id).getBytes(StandardCharsets.UTF_8);
+            when(attachmentService.find(id)).thenReturn(Optional.of(new StoredAttachment(id, "text/plain", 5)));
+            when(attachmentService.open(id)).thenAnswer(call -> Optional.of(new ByteArrayInputStream(content)));
+        }
+    }
+
+    private MediaCacheService cache(long maxBytes, long evictGraceMs) throws IOException {
+        MediaCacheService cache = new MediaCacheService(attachmentService, cacheDir.toString(), maxBytes,
+                evictGraceMs);
+        cache.init();
+        return cache;
+    }
+
+    private Path serve(MediaCacheService cache, String id) {
+        return cache.forAttachment(id).orElseThrow().getPath();
+    }
+
+    private static void age(Path file, long ageMs) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - ageMs));
+    }
+
+    @Test
+    void filesServedWithinTheGracePeriodAreKept() throws IOException {
+        MediaCacheService cache = cache(10, 60_000);
+        Path a = serve(cache, "a");
+        Path b = serve(cache, "b");
+        Path c = serve(cache, "c");
+
+        // Over budget, but every file may still be streaming
+        assertTrue(Files.exists(a));
+        assertTrue(Files.exists(b));
+        assertTrue(Files.exists(c));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyServedIdleFile() throws IOException {
+        MediaCacheService cache = cache(12, 60_000);
+        Path a = serve(cache, "a");
+        Path b = serve(cache, "b");
+        age(a, 600_000);
+        age(b, 300_000);
+
+        // a is the oldest write, but serving it again makes b the eviction candidate
+        assertEquals(a, serve(cache, "a"));
+        Path c = serve(cache, "c");
+
+        assertTrue(Files.exists(a));
+        assertFalse(Files.exists(b));
+        assertTrue(Files.exists(c));
+        verify(attachmentService, times(1)).open("a");
+    }
+
+    @Test
+    void evictedFileIsFetchedAgain() throws IOException {
+        MediaCacheService cache = cache(8, 0);
+        Path a = serve(cache, "a");
+        age(a, 1_000);
+        Path b = serve(cache, "b");
+        assertFalse(Files.exists(a));
+        age(b, 1_000);
+
+        assertEquals("aaaaa", Files.readString(serve(cache, "a")));
+        assertFalse(Files.exists(b));
+        verify(attachmentService, times(2)).open("a");
+    }
+}
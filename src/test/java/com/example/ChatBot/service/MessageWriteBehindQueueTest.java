@@ -0,0 +1,195 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.exception.MessageNotPersistedException;
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class MessageWriteBehindQueueTest {
+
+    /** Longer than any test runs: the background writer only flushes when told to. */
+    private static final long NEVER = 60_000;
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private ConversationService conversationService;
+    /** Ids of the documents in each bulk insert, in call order. */
+    private final List<List<String>> inserts = Collections.synchronizedList(new ArrayList<>());
+    private MessageWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        conversationService = mock(ConversationService.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(ChatMessageDocument.class))).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenAnswer(call -> {
+            List<?> docs = call.getArgument(0);
+            inserts.add(docs.stream().map(doc -> ((ChatMessageDocument) doc).getId()).collect(Collectors.toList()));
+            return bulk;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    private MessageWriteBehindQueue start(MessageWriteBehindQueue.AckMode ackMode, int capacity, long flushIntervalMs,
+            long ackTimeoutMs) {
+        queue = new MessageWriteBehindQueue(mongoTemplate, conversationService, ackMode, capacity, 100,
+                flushIntervalMs, 0, ackTimeoutMs);
+        queue.start();
+        return queue;
+    }
+
+    private static ChatMessageDocument message(String id, String conversationId, long timestamp) {
+        ChatMessageDocument doc = new ChatMessageDocument(conversationId, MessageType.CHAT, id, "5550001", null, null,
+                timestamp);
+        doc.setId(id);
+        return doc;
+    }
+
+    @Test
+    void flushWritesInSubmissionOrderAndAdvancesEachConversationOnce() {
+        start(MessageWriteBehindQueue.AckMode.ASYNC, 100, NEVER, 1000);
+        queue.flush();
+        verifyNoInteractions(mongoTemplate);
+
+        queue.submit(message("m1", "c1", 100), "first");
+        queue.submit(message("m2", "c2", 200), "other");
+        queue.submit(message("m3", "c1", 300), "latest");
+        queue.submit(message("m4", "g1", 400), null);
+        assertEquals(4, queue.getPendingCount());
+        verify(bulk, never()).execute();
+
+        queue.flush();
+        assertEquals(List.of(List.of("m1", "m2", "m3", "m4")), inserts);
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(4, queue.getPersistedCount());
+        verify(conversationService).advanceLastMessage("c1", "latest", 300);
+        verify(conversationService).advanceLastMessage("c2", "other", 200);
+        // Group messages carry no preview and leave conversations alone
+        verify(conversationService, times(2)).advanceLastMessage(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void fullBufferMakesTheCallerWriteItsOwnMessage() {
+        start(MessageWriteBehindQueue.AckMode.ASYNC, 1, NEVER, 1000);
+        queue.submit(message("m1", "c1", 100), "one");
+        queue.submit(message("m2", "c1", 200), "two");
+
+        // m2 did not fit, so it was written before submit returned; m1 is still queued
+        assertEquals(List.of(List.of("m2")), inserts);
+        assertEquals(1, queue.getCallerRunsCount());
+        assertEquals(1, queue.getPendingCount());
+
+        queue.flush();
+        assertEquals(List.of(List.of("m2"), List.of("m1")), inserts);
+        assertEquals(2, queue.getPersistedCount());
+    }
+
+    @Test
+    void failedBulkInsertFallsBackToSingleWrites() {
+        when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("bulk failed"));
+        when(mongoTemplate.save(argThat((ChatMessageDocument doc) -> doc != null && doc.getId().equals("m3"))))
+                .thenThrow(new DataAccessResourceFailureException("m3 failed"));
+        start(MessageWriteBehindQueue.AckMode.ASYNC, 100, NEVER, 1000);
+
+        queue.submit(message("m1", "c1", 100), "one");
+        queue.submit(message("m2", "c2", 200), "two");
+        queue.submit(message("m3", "c1", 300), "three");
+        queue.flush();
+
+        verify(mongoTemplate, times(3)).save(any(ChatMessageDocument.class));
+        assertEquals(2, queue.getPersistedCount());
+        assertEquals(1, queue.getFailedCount());
+        // The newest message in c1 was lost, so c1's preview is the newest one that was saved
+        verify(conversationService, never()).advanceLastMessage("c1", "three", 300);
+        verify(conversationService).advanceLastMessage("c1", "one", 100);
+        verify(conversationService).advanceLastMessage("c2", "two", 200);
+    }
+
+    @Test
+    void durableSendReturnsOnlyOnceWritten() {
+        start(MessageWriteBehindQueue.AckMode.DURABLE, 100, 5, 5_000);
+        queue.submit(message("m1", "c1", 100), "one");
+        assertEquals(List.of(List.of("m1")), inserts);
+        assertEquals(1, queue.getPersistedCount());
+    }
+
+    @Test
+    void durableSendFailsWhenTheWriteFails() {
+        when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("bulk failed"));
+        when(mongoTemplate.save(any(ChatMessageDocument.class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        start(MessageWriteBehindQueue.AckMode.DURABLE, 100, 5, 5_000);
+
+        assertThrows(MessageNotPersistedException.class, () -> queue.submit(message("m1", "c1", 100), "one"));
+        assertEquals(1, queue.getFailedCount());
+    }
+
+    @Test
+    void durableSendFailsWhenNotWrittenInTime() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(bulk.execute()).thenAnswer(call -> {
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        });
+        start(MessageWriteBehindQueue.AckMode.DURABLE, 100, 5, 50);
+        try {
+            assertThrows(MessageNotPersistedException.class, () -> queue.submit(message("m1", "c1", 100), "one"));
+        } finally {
+            release.countDown();
+        }
+        // Not lost: the write goes through once Mongo responds
+        queue.flush();
+        assertEquals(1, queue.getPersistedCount());
+    }
+
+    @Test
+    void syncModeWritesOnTheCallerAndReportsFailures() {
+        start(MessageWriteBehindQueue.AckMode.SYNC, 100, NEVER, 1000);
+        queue.submit(message("m1", "c1", 100), "one");
+        assertEquals(List.of(List.of("m1")), inserts);
+        assertEquals(0, queue.getPendingCount());
+        verify(conversationService).advanceLastMessage("c1", "one", 100);
+
+        when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("bulk failed"));
+        when(mongoTemplate.save(any(ChatMessageDocument.class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        assertThrows(MessageNotPersistedException.class, () -> queue.submit(message("m2", "c1", 200), "two"));
+        verify(conversationService, never()).advanceLastMessage("c1", "two", 200);
+    }
+
+    @Test
+    void asyncSendNeverWaitsOrThrows() {
+        when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("bulk failed"));
+        when(mongoTemplate.save(any(ChatMessageDocument.class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        start(MessageWriteBehindQueue.AckMode.ASYNC, 1, NEVER, 1000);
+
+        queue.submit(message("m1", "c1", 100), "one");
+        // Written by the caller because the buffer is full, and failing: still no exception
+        queue.submit(message("m2", "c1", 200), "two");
+        assertEquals(1, queue.getFailedCount());
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.cluster.ClusterBus;
+import com.example.ChatBot.cluster.LocalClusterBus;
+import com.example.ChatBot.model.ConversationDocument;
+import com.example.ChatBot.model.GroupDocument;
+import com.example.ChatBot.repository.ChatMessageRepository;
+import com.example.ChatBot.repository.ConversationRepository;
+import com.example.ChatBot.repository.GroupRepository;
+import com.example.ChatBot.repository.MessageTombstoneRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Participant and member caches are per node; a change made on one node must
+ * evict the entry on the others.
+ */
+public class ParticipantCacheTest {
+
+    private static StaticListableBeanFactory beans(ClusterBus bus) {
+        return new StaticListableBeanFactory(Map.of("clusterBus", bus));
+    }
+
+    private static ConversationService conversations(ConversationRepository repository, ClusterBus bus) {
+        return new ConversationService(repository, mock(ChatMessageRepository.class), mock(MongoTemplate.class),
+                mock(MessageTombstoneRepository.class), beans(bus).getBeanProvider(ClusterBus.class), 1000, 600,
+                new SimpleMeterRegistry());
+    }
+
+    private static GroupService groups(GroupRepository repository, ClusterBus bus) {
+        GroupService service = new GroupService(1000, 600, new SimpleMeterRegistry(),
+                beans(bus).getBeanProvider(ClusterBus.class));
+        ReflectionTestUtils.setField(service, "groupRepository", repository);
+        return service;
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, what + " within 5s");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void deletedConversationIsEvictedOnEveryNode() throws InterruptedException {
+        ConversationDocument conv = new ConversationDocument("5550001", "5550002");
+        conv.setId("c1");
+        ConversationRepository repository = mock(ConversationRepository.class);
+        when(repository.findById("c1")).thenReturn(Optional.of(conv));
+
+        LocalClusterBus.Hub hub = new LocalClusterBus.Hub();
+        LocalClusterBus busA = new LocalClusterBus("node-a", hub);
+        LocalClusterBus busB = new LocalClusterBus("node-b", hub);
+        try {
+            ConversationService a = conversations(repository, busA);
+            ConversationService b = conversations(repository, busB);
+            assertEquals("5550002", b.getParticipants("c1").other("5550001"));
+
+            assertTrue(a.deleteConversation("c1", "5550001"));
+            verify(repository).delete(conv);
+            when(repository.findById("c1")).thenReturn(Optional.empty());
+
+            await(() -> b.getParticipants("c1") == null, "deletion not seen by node b");
+        } finally {
+            busA.close();
+            busB.close();
+        }
+    }
+
+    @Test
+    void groupMemberChangesReachEveryNode() throws InterruptedException {
+        GroupDocument group = new GroupDocument("g", "5550001", new HashSet<>(Set.of("5550002")));
+        group.setId("g1");
+        GroupRepository repository = mock(GroupRepository.class);
+        when(repository.findById("g1")).thenReturn(Optional.of(group));
+        when(repository.save(any(GroupDocument.class))).thenAnswer(call -> call.getArgument(0));
+
+        LocalClusterBus.Hub hub = new LocalClusterBus.Hub();
+        LocalClusterBus busA = new LocalClusterBus("node-a", hub);
+        LocalClusterBus busB = new LocalClusterBus("node-b", hub);
+        try {
+            GroupService a = groups(repository, busA);
+            GroupService b = groups(repository, busB);
+            assertTrue(b.isUserMember("g1", "5550002"));
+
+            GroupDocument changed = new GroupDocument("g", "5550001", new HashSet<>(Set.of("5550003")));
+            changed.setId("g1");
+            when(repository.findById("g1")).thenReturn(Optional.of(changed));
+            a.save(changed);
+
+            await(() -> !b.isUserMember("g1", "5550002"), "member removal not seen by node b");
+            assertTrue(b.isUserMember("g1", "5550003"));
+        } finally {
+            busA.close();
+            busB.close();
+        }
+    }
+}
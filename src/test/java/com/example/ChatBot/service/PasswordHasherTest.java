@@ -0,0 +1,73 @@
+package com.example.ChatBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTest {
+
+    /** Encodes only once released, to hold the pool busy. */
+    private static final class GatedEncoder implements PasswordEncoder {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+
+    @Test
+    void hashesAndChecksOnThePool() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(4), registry, 1, 4, 5000);
+
+        String hash = hasher.encode("secret123").get(5, TimeUnit.SECONDS);
+        assertTrue(hasher.matches("secret123", hash).get(5, TimeUnit.SECONDS));
+        assertFalse(hasher.matches("wrong", hash).get(5, TimeUnit.SECONDS));
+
+        assertEquals(1, registry.get("chat.auth.hash.time").tag("operation", "encode").timer().count());
+        assertEquals(2, registry.get("chat.auth.hash.wait").tag("operation", "match").timer().count());
+    }
+
+    @Test
+    void refusesRequestsBeyondTheQueueWithoutWaiting() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GatedEncoder encoder = new GatedEncoder();
+        PasswordHasher hasher = new PasswordHasher(encoder, registry, 1, 1, 5000);
+
+        CompletableFuture<String> running = hasher.encode("a");
+        // Wait until the first request holds the only thread
+        while (registry.get("chat.auth.hash.wait").tag("operation", "encode").timer().count() == 0) {
+            Thread.sleep(5);
+        }
+        CompletableFuture<String> queued = hasher.encode("b");
+        CompletableFuture<String> refused = hasher.encode("c");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> refused.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1.0, registry.get("chat.auth.hash.rejected").counter().count());
+
+        encoder.release.countDown();
+        assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash:b", queued.get(5, TimeUnit.SECONDS));
+    }
+}
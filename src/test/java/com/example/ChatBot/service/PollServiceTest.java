@@ -0,0 +1,200 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.dto.chat.PollPayload;
+import com.example.ChatBot.dto.chat.PollVotePayload;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.model.PollTallyDocument;
+import com.example.ChatBot.model.PollVoteDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tallies must always equal the votes behind them: one vote per user per
+ * poll, moved rather than added when the user changes their mind, also when
+ * first votes race.
+ */
+@DataMongoTest
+@Import(PollService.class)
+public class PollServiceTest {
+
+    private static final String CONVERSATION = "conv-1";
+    private static final String POLL = "poll-1";
+    private static final String ANN = "5550001";
+    private static final String BOB = "5550002";
+
+    @Autowired
+    private PollService pollService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate.remove(new Query(), PollTallyDocument.class);
+        mongoTemplate.remove(new Query(), PollVoteDocument.class);
+        pollService.open(POLL, CONVERSATION, 3);
+    }
+
+    @Test
+    public void votesMoveRatherThanAdd() {
+        assertEquals(List.of(1L, 0L, 0L), pollService.vote(CONVERSATION, POLL, ANN, 0).getCounts());
+        assertEquals(List.of(1L, 1L, 0L), pollService.vote(CONVERSATION, POLL, BOB, 1).getCounts());
+
+        // Same vote again changes nothing
+        assertEquals(List.of(1L, 1L, 0L), pollService.vote(CONVERSATION, POLL, ANN, 0).getCounts());
+
+        // Changed vote: -1 on the old option, +1 on the new one
+        PollVotePayload changed = pollService.vote(CONVERSATION, POLL, ANN, 2);
+        assertEquals(List.of(0L, 1L, 1L), changed.getCounts());
+        assertEquals(ANN, changed.getVoter());
+        assertEquals(2, changed.getOptionIndex());
+        assertEquals(List.of(0L, 1L, 1L), tally().getCounts());
+        assertEquals(2, mongoTemplate.count(new Query(), PollVoteDocument.class));
+    }
+
+    @Test
+    public void openingAgainKeepsTheTally() {
+        pollService.vote(CONVERSATION, POLL, ANN, 1);
+        assertEquals(List.of(0L, 0L, 0L), pollService.open(POLL, CONVERSATION, 3));
+        assertEquals(List.of(0L, 1L, 0L), tally().getCounts());
+    }
+
+    @Test
+    public void rejectsUnknownOptionsAndPollsOfOtherConversations() {
+        assertNull(pollService.vote(CONVERSATION, POLL, ANN, 3));
+        assertNull(pollService.vote(CONVERSATION, POLL, ANN, -1));
+        assertNull(pollService.vote("conv-2", POLL, ANN, 0));
+        assertNull(pollService.vote(CONVERSATION, "poll-2", ANN, 0));
+
+        assertEquals(List.of(0L, 0L, 0L), tally().getCounts());
+        assertEquals(0, mongoTemplate.count(new Query(), PollVoteDocument.class));
+    }
+
+    @Test
+    public void concurrentFirstVotesCountOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 20; round++) {
+                String voter = "555100" + round;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<PollVotePayload>> votes = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    int option = t % 3;
+                    votes.add(pool.submit(() -> {
+                        start.await();
+                        return pollService.vote(CONVERSATION, POLL, voter, option);
+                    }));
+                }
+                start.countDown();
+                for (Future<PollVotePayload> vote : votes) {
+                    assertNotNull(vote.get());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Each voter counts once, on the option their vote document holds
+        long[] expected = new long[3];
+        mongoTemplate.findAll(PollVoteDocument.class).forEach(vote -> expected[vote.getOption()]++);
+        assertEquals(20, expected[0] + expected[1] + expected[2]);
+        assertEquals(List.of(expected[0], expected[1], expected[2]), tally().getCounts());
+    }
+
+    @Test
+    public void lostFirstVoteRaceUpdatesTheWinnersDocument() {
+        MongoTemplate racing = spy(mongoTemplate);
+        // A concurrent first vote of the same user wins the upsert and moves the tally first
+        doAnswer(invocation -> {
+            mongoTemplate.upsert(invocation.getArgument(0), new Update().set("pollId", POLL)
+                    .set("conversationId", CONVERSATION).set("voter", ANN).set("option", 0), PollVoteDocument.class);
+            mongoTemplate.updateFirst(new Query(), new Update().inc("counts.0", 1), PollTallyDocument.class);
+            throw new DuplicateKeyException("E11000 duplicate key");
+        }).doCallRealMethod().when(racing).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(PollVoteDocument.class));
+
+        PollVotePayload vote = new PollService(racing).vote(CONVERSATION, POLL, ANN, 1);
+
+        assertEquals(List.of(0L, 1L, 0L), vote.getCounts());
+        assertEquals(1, mongoTemplate.findById(PollVoteDocument.idFor(POLL, ANN), PollVoteDocument.class).getOption());
+    }
+
+    @Test
+    public void attachesCountsAndTheViewersVote() {
+        pollService.open("poll-2", CONVERSATION, 2);
+        pollService.vote(CONVERSATION, POLL, ANN, 2);
+        pollService.vote(CONVERSATION, POLL, BOB, 2);
+        pollService.vote(CONVERSATION, "poll-2", BOB, 0);
+
+        ChatMessageResponse first = poll(POLL, 3);
+        ChatMessageResponse second = poll("poll-2", 2);
+        ChatMessageResponse missing = poll("poll-3", 2);
+        ChatMessageResponse text = ChatMessageResponse.builder().id("m1").type(MessageType.CHAT).content("hi").build();
+        pollService.attachTallies(List.of(first, second, missing, text), ANN);
+
+        assertEquals(List.of(0L, 0L, 2L), first.getPoll().getCounts());
+        assertEquals(2, first.getPoll().getMyVote());
+        assertEquals(List.of(1L, 0L), second.getPoll().getCounts());
+        assertNull(second.getPoll().getMyVote());
+        assertEquals(List.of(0L, 0L), missing.getPoll().getCounts());
+        assertNull(text.getPoll());
+    }
+
+    @Test
+    public void findsTalliesChangedSince() throws Exception {
+        pollService.open("poll-2", CONVERSATION, 2);
+        pollService.open("poll-3", "conv-2", 2);
+        pollService.vote(CONVERSATION, "poll-2", ANN, 1);
+        Thread.sleep(5);
+        long since = System.currentTimeMillis();
+        pollService.vote(CONVERSATION, POLL, ANN, 0);
+        pollService.vote("conv-2", "poll-3", BOB, 1);
+
+        List<PollVotePayload> changed = pollService.findChangedSince(List.of(CONVERSATION), since);
+        assertEquals(Set.of(POLL), changed.stream().map(PollVotePayload::getPollMessageId).collect(Collectors.toSet()));
+        assertEquals(List.of(1L, 0L, 0L), changed.get(0).getCounts());
+
+        assertEquals(3, pollService.findChangedSince(List.of(CONVERSATION, "conv-2"), 0).size());
+        assertTrue(pollService.findChangedSince(List.of(), 0).isEmpty());
+    }
+
+    private PollTallyDocument tally() {
+        return mongoTemplate.findById(POLL, PollTallyDocument.class);
+    }
+
+    private static ChatMessageResponse poll(String id, int options) {
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < options; i++) {
+            labels.add("option " + i);
+        }
+        return ChatMessageResponse.builder()
+                .id(id)
+                .type(MessageType.POLL)
+                .conversationId(CONVERSATION)
+                .poll(PollPayload.builder().question("Lunch?").options(labels).build())
+                .build();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.user.PresenceUpdate;
+import com.example.ChatBot.model.ConversationDocument;
+import com.example.ChatBot.model.GroupDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PresenceNotifierTest {
+
+    private PresenceService presenceService;
+    private ConversationService conversationService;
+    private GroupService groupService;
+    private SimpMessagingTemplate messagingTemplate;
+    private PresenceNotifier notifier;
+
+    @BeforeEach
+    void setUp() {
+        presenceService = mock(PresenceService.class);
+        conversationService = mock(ConversationService.class);
+        groupService = mock(GroupService.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        notifier = new PresenceNotifier(presenceService, conversationService, groupService, messagingTemplate,
+                1000, 300_000);
+    }
+
+    private static SessionSubscribeEvent subscribe(String mobile) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("session-" + mobile);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/user" + PresenceNotifier.DESTINATION);
+        accessor.setUser((Principal) () -> mobile);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionSubscribeEvent(new Object(), message);
+    }
+
+    private static PresenceUpdate snapshot(String... online) {
+        return argThat(update -> update instanceof PresenceUpdate && ((PresenceUpdate) update).isSnapshot()
+                && ((PresenceUpdate) update).getOnline().equals(List.of(online)));
+    }
+
+    private static PresenceUpdate delta(Set<String> online, Set<String> offline) {
+        return argThat(update -> update instanceof PresenceUpdate && !((PresenceUpdate) update).isSnapshot()
+                && new HashSet<>(((PresenceUpdate) update).getOnline()).equals(online)
+                && new HashSet<>(((PresenceUpdate) update).getOffline()).equals(offline));
+    }
+
+    private void online(String... mobiles) {
+        when(presenceService.getOnlineMobiles()).thenReturn(Set.of(mobiles));
+    }
+
+    private void conversationsOf(String mobile, String... others) {
+        List<ConversationDocument> conversations = new ArrayList<>();
+        for (String other : others) {
+            conversations.add(new ConversationDocument(mobile, other));
+        }
+        when(conversationService.listForUser(mobile)).thenReturn(conversations);
+    }
+
+    /** Every update pushed to the subscriber, snapshots included. */
+    private void verifySent(String subscriber, int times) {
+        verify(messagingTemplate, times(times)).convertAndSendToUser(eq(subscriber),
+                eq(PresenceNotifier.DESTINATION), any(), anyMap());
+    }
+
+    @Test
+    void subscriberArrivingMidBatchStillGetsASnapshot() {
+        online("5550001", "5550002", "5550003");
+        when(conversationService.listForUser("5550001"))
+                .thenReturn(List.of(new ConversationDocument("5550001", "5550003")));
+        when(conversationService.listForUser("5550002")).thenAnswer(call -> {
+            // Ann subscribes while Bob's contacts are being loaded
+            notifier.onSubscribe(subscribe("5550001"));
+            return List.of(new ConversationDocument("5550002", "5550003"));
+        });
+
+        notifier.onSubscribe(subscribe("5550002"));
+        notifier.flush();
+        verify(messagingTemplate).convertAndSendToUser(eq("5550002"), eq(PresenceNotifier.DESTINATION),
+                snapshot("5550003"), anyMap());
+
+        notifier.flush();
+        verify(messagingTemplate).convertAndSendToUser(eq("5550001"), eq(PresenceNotifier.DESTINATION),
+                snapshot("5550003"), anyMap());
+    }
+
+    @Test
+    void changesOfSeveralContactsArriveAsOneUpdate() {
+        conversationsOf("5550001", "5550002");
+        when(groupService.getMyGroups("5550001")).thenReturn(List.of(
+                new GroupDocument("team", "5550001", new HashSet<>(Set.of("5550001", "5550003", "5550004")))));
+        notifier.onSubscribe(subscribe("5550001"));
+
+        online("5550002");
+        notifier.flush();
+        verify(messagingTemplate).convertAndSendToUser(eq("5550001"), eq(PresenceNotifier.DESTINATION),
+                snapshot("5550002"), anyMap());
+
+        online("5550003", "5550004");
+        notifier.flush();
+        verify(messagingTemplate).convertAndSendToUser(eq("5550001"), eq(PresenceNotifier.DESTINATION),
+                delta(Set.of("5550003", "5550004"), Set.of("5550002")), anyMap());
+        verifySent("5550001", 2);
+        assertEquals(1, notifier.getDeltasSentCount());
+    }
+
+    @Test
+    void reconnectWithinOneBatchIsNotPushed() {
+        conversationsOf("5550001", "5550002");
+        notifier.onSubscribe(subscribe("5550001"));
+        online("5550002");
+        notifier.flush();
+
+        // Bob dropped and came back between two batches: both reads see him online
+        online("5550002");
+        notifier.flush();
+        verifySent("5550001", 1);
+        assertEquals(0, notifier.getDeltasSentCount());
+
+        // A real disconnect is still pushed
+        online();
+        notifier.flush();
+        verify(messagingTemplate).convertAndSendToUser(eq("5550001"), eq(PresenceNotifier.DESTINATION),
+                delta(Set.of(), Set.of("5550002")), anyMap());
+    }
+
+    @Test
+    void changesAreOnlyPushedToContacts() {
+        conversationsOf("5550001", "5550002");
+        conversationsOf("5550009");
+        notifier.onSubscribe(subscribe("5550001"));
+        notifier.onSubscribe(subscribe("5550009"));
+        online();
+        notifier.flush();
+
+        online("5550002", "5550008");
+        notifier.flush();
+        verify(messagingTemplate).convertAndSendToUser(eq("5550001"), eq(PresenceNotifier.DESTINATION),
+                delta(Set.of("5550002"), Set.of()), anyMap());
+        // Eve only got her snapshot; nobody has Zed as a contact
+        verifySent("5550009", 1);
+        verify(messagingTemplate, never()).convertAndSendToUser(eq("5550008"), anyString(), any(), anyMap());
+        assertEquals(1, notifier.getDeltasSentCount());
+    }
+}
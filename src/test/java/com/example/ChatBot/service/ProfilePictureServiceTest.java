@@ -0,0 +1,123 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.storage.AttachmentStore;
+import com.example.ChatBot.storage.StoredAttachment;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfilePictureServiceTest {
+
+    /** Keeps blobs in memory under a counter id instead of a content hash. */
+    private static final class MemoryStore implements AttachmentStore {
+        final Map<String, byte[]> blobs = new HashMap<>();
+        final Map<String, String> types = new HashMap<>();
+
+        @Override
+        public StoredAttachment store(InputStream content, String contentType) throws IOException {
+            String id = String.format("%064d", blobs.size());
+            byte[] bytes = content.readAllBytes();
+            blobs.put(id, bytes);
+            types.put(id, contentType);
+            return new StoredAttachment(id, contentType, bytes.length);
+        }
+
+        @Override
+        public Optional<StoredAttachment> find(String id) {
+            return Optional.ofNullable(blobs.get(id)).map(b -> new StoredAttachment(id, types.get(id), b.length));
+        }
+
+        @Override
+        public Optional<InputStream> open(String id) {
+            return Optional.ofNullable(blobs.get(id)).map(ByteArrayInputStream::new);
+        }
+
+        @Override
+        public void delete(String id) {
+            blobs.remove(id);
+            types.remove(id);
+        }
+    }
+
+    private final MemoryStore store = new MemoryStore();
+    private final ProfilePictureService service = new ProfilePictureService(store, 5 * 1024 * 1024);
+
+    private static String encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return "data:image/" + format + ";base64," + Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    private BufferedImage stored(String id) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(store.blobs.get(id)));
+    }
+
+    @Test
+    void rendersSquareThumbnailsForEverySize() throws IOException {
+        Map<String, String> variants = service.storeBase64(
+                encode(new BufferedImage(1200, 800, BufferedImage.TYPE_INT_RGB), "png"));
+
+        assertEquals(ProfilePictureService.SIZES.length, variants.size());
+        for (int size : ProfilePictureService.SIZES) {
+            String id = variants.get(String.valueOf(size));
+            BufferedImage thumbnail = stored(id);
+            assertEquals(size, thumbnail.getWidth());
+            assertEquals(size, thumbnail.getHeight());
+            assertEquals("image/jpeg", store.types.get(id));
+        }
+    }
+
+    @Test
+    void keepsTransparencyAndDoesNotUpscale() throws IOException {
+        Map<String, String> variants = service.storeBase64(
+                encode(new BufferedImage(100, 60, BufferedImage.TYPE_INT_ARGB), "png"));
+
+        String large = variants.get("512");
+        assertEquals("image/png", store.types.get(large));
+        assertEquals(60, stored(large).getWidth());
+        assertEquals(48, stored(variants.get("48")).getWidth());
+    }
+
+    @Test
+    void rejectsDataThatIsNotAnImage() {
+        assertThrows(IllegalArgumentException.class, () -> service.storeBase64("not base64!"));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.storeBase64(Base64.getEncoder().encodeToString("hello".getBytes())));
+    }
+
+    @Test
+    void picksTheSmallestSizeThatIsLargeEnough() {
+        Map<String, String> variants = Map.of("48", "a", "128", "b", "512", "c");
+        assertEquals("a", ProfilePictureService.variantFor(variants, 32));
+        assertEquals("b", ProfilePictureService.variantFor(variants, 96));
+        assertEquals("c", ProfilePictureService.variantFor(variants, 2048));
+        assertNull(ProfilePictureService.variantFor(null, 128));
+    }
+
+    @Test
+    void pictureUrlPrefersStoredThumbnailsOverProviderUrl() {
+        UserDocument user = new UserDocument("5550001", "Ann");
+        user.setProfilePicture("https://example.com/a.png");
+        assertEquals("https://example.com/a.png", ProfilePictureService.pictureUrl(user, 128));
+
+        user.setPictureVariants(Map.of("128", "0123456789abcdef"));
+        assertEquals("/api/users/profile/picture?mobile=5550001&size=128&v=0123456789ab",
+                ProfilePictureService.pictureUrl(user, 128));
+
+        user.setPictureVariants(null);
+        user.setProfilePicture("iVBORw0KGgo=");
+        assertNull(ProfilePictureService.pictureUrl(user, 128));
+    }
+}
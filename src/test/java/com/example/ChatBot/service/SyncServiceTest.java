@@ -0,0 +1,120 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.dto.chat.SyncResponse;
+import com.example.ChatBot.model.ChatMessageDocument;
+import com.example.ChatBot.model.MessageTombstoneDocument;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.repository.MessageTombstoneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Delta sync must page through a backlog exactly once, also when a page ends
+ * inside a run of messages sharing a timestamp, and report deletions.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class SyncServiceTest {
+
+    private static final String ANN = "5550001";
+    private static final String BOB = "5550002";
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private MessageTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private String conversationId;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate.remove(new Query(), ChatMessageDocument.class);
+        tombstoneRepository.deleteAll();
+        conversationId = conversationService.getOrCreate(ANN, BOB).getId();
+    }
+
+    @Test
+    public void pagesThroughMessagesSharingATimestamp() {
+        long since = System.currentTimeMillis() - 60_000;
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // Seven messages in one millisecond, then one more
+            long timestamp = i < 7 ? since + 1_000 : since + 2_000;
+            sent.add(mongoTemplate.insert(new ChatMessageDocument(conversationId, MessageType.CHAT, "m" + i, BOB,
+                    null, null, timestamp)).getId());
+        }
+
+        List<String> received = new ArrayList<>();
+        String cursor = null;
+        SyncResponse page;
+        int pages = 0;
+        do {
+            page = syncService.sync(ANN, since, cursor, 3);
+            page.getMessages().stream().map(ChatMessageResponse::getId).forEach(received::add);
+            if (page.isHasMore()) {
+                assertEquals(since, page.getHighWaterMark());
+                assertNotNull(page.getCursor());
+            }
+            cursor = page.getCursor();
+            assertTrue(++pages <= 3, "sync did not make progress");
+        } while (page.isHasMore());
+
+        assertEquals(sent, received);
+        assertNull(page.getCursor());
+        assertTrue(page.getHighWaterMark() >= since);
+    }
+
+    @Test
+    public void reportsDeletedMessagesAndConversations() {
+        long since = System.currentTimeMillis() - 1_000;
+        tombstoneRepository.save(MessageTombstoneDocument.forMessages(conversationId, List.of("m1", "m2")));
+        tombstoneRepository.save(MessageTombstoneDocument.forConversation("gone", List.of(ANN, BOB)));
+
+        SyncResponse response = syncService.sync(ANN, since, null, 10);
+        assertEquals(List.of("m1", "m2"), response.getDeletedMessageIds());
+        assertEquals(List.of("gone"), response.getDeletedConversationIds());
+
+        SyncResponse later = syncService.sync(ANN, System.currentTimeMillis() + 1_000, null, 10);
+        assertTrue(later.getDeletedMessageIds().isEmpty());
+        assertTrue(later.getDeletedConversationIds().isEmpty());
+    }
+
+    @Test
+    public void asksForAFullResyncOnceTombstonesMayHaveExpired() {
+        long retentionMs = Duration.ofSeconds(MessageTombstoneDocument.RETENTION_SECONDS).toMillis();
+        assertTrue(syncService.sync(ANN, 0, null, 10).isFullResyncRequired());
+        assertTrue(syncService.sync(ANN, System.currentTimeMillis() - retentionMs - 60_000, null, 10)
+                .isFullResyncRequired());
+        assertFalse(syncService.sync(ANN, System.currentTimeMillis() - 60_000, null, 10).isFullResyncRequired());
+    }
+
+    @Test
+    public void rejectsForeignCursors() {
+        assertThrows(IllegalArgumentException.class, () -> syncService.sync(ANN, 0, "nonsense", 10));
+    }
+
+    @Test
+    public void tombstonesExpireThroughATtlIndex() {
+        assertTrue(mongoTemplate.indexOps(MessageTombstoneDocument.class).getIndexInfo().stream()
+                .anyMatch(index -> index.getExpireAfter()
+                        .map(ttl -> ttl.getSeconds() == MessageTombstoneDocument.RETENTION_SECONDS)
+                        .orElse(false)));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.dto.chat.ChatMessageResponse;
+import com.example.ChatBot.model.MessageType;
+import com.example.ChatBot.websocket.EphemeralHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TypingAggregatorTest {
+
+    private ConversationService conversationService;
+    private SimpMessagingTemplate messagingTemplate;
+    private TypingAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        conversationService = mock(ConversationService.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        when(conversationService.findOtherParticipant("c1", "5550001")).thenReturn("5550002");
+        when(conversationService.findOtherParticipant("c1", "5550002")).thenReturn("5550001");
+        when(conversationService.findOtherParticipant("c2", "5550001")).thenReturn("5550003");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (aggregator != null) {
+            aggregator.stop();
+        }
+    }
+
+    private TypingAggregator aggregator(long windowMs, long idleTimeoutMs) {
+        aggregator = new TypingAggregator(conversationService, messagingTemplate, windowMs, idleTimeoutMs);
+        return aggregator;
+    }
+
+    /** A TYPING event from the sender; content null while typing, STOPPED when cleared. */
+    private static Object typing(String sender, String content) {
+        return argThat(payload -> payload instanceof ChatMessageResponse
+                && ((ChatMessageResponse) payload).getType() == MessageType.TYPING
+                && sender.equals(((ChatMessageResponse) payload).getSender())
+                && Objects.equals(content, ((ChatMessageResponse) payload).getContent()));
+    }
+
+    /** Marked as a sheddable TYPING frame of the sender. */
+    private static MessageHeaders ephemeral(String sender) {
+        return argThat((MessageHeaders headers) -> headers != null
+                && "TYPING".equals(NativeMessageHeaderAccessor.getFirstNativeHeader(EphemeralHeaders.TYPE, headers))
+                && sender.equals(NativeMessageHeaderAccessor.getFirstNativeHeader(EphemeralHeaders.SENDER, headers)));
+    }
+
+    @Test
+    void coalescesKeystrokesPerSenderAndConversation() {
+        aggregator(60_000, 60_000);
+        for (int i = 0; i < 5; i++) {
+            aggregator.onTyping("5550001", "c1", true);
+        }
+        aggregator.onTyping("5550001", "c2", true);
+        aggregator.onTyping("5550002", "c1", true);
+
+        verify(messagingTemplate).convertAndSendToUser(eq("5550002"), eq("/queue/messages"), typing("5550001", null),
+                ephemeral("5550001"));
+        verify(messagingTemplate).convertAndSendToUser(eq("5550003"), eq("/queue/messages"), typing("5550001", null),
+                ephemeral("5550001"));
+        verify(messagingTemplate).convertAndSendToUser(eq("5550001"), eq("/queue/messages"), typing("5550002", null),
+                ephemeral("5550002"));
+        assertEquals(3, aggregator.getForwardedCount());
+        assertEquals(4, aggregator.getCoalescedCount());
+        assertEquals(3, aggregator.getActiveCount());
+    }
+
+    @Test
+    void forwardsAgainOnceTheWindowHasPassed() throws InterruptedException {
+        aggregator(50, 60_000);
+        aggregator.onTyping("5550001", "c1", true);
+        aggregator.onTyping("5550001", "c1", true);
+        Thread.sleep(80);
+        aggregator.onTyping("5550001", "c1", true);
+
+        verify(messagingTemplate, times(2)).convertAndSendToUser(eq("5550002"), eq("/queue/messages"),
+                typing("5550001", null), ephemeral("5550001"));
+        assertEquals(2, aggregator.getForwardedCount());
+        assertEquals(1, aggregator.getCoalescedCount());
+    }
+
+    @Test
+    void explicitStopClearsTheIndicatorOnce() {
+        aggregator(60_000, 60_000);
+        aggregator.onTyping("5550001", "c1", true);
+        aggregator.onTyping("5550001", "c1", false);
+        aggregator.onTyping("5550001", "c1", false);
+
+        verify(messagingTemplate).convertAndSendToUser(eq("5550002"), eq("/queue/messages"),
+                typing("5550001", TypingAggregator.STOPPED), ephemeral("5550001"));
+        assertEquals(2, aggregator.getForwardedCount());
+        assertEquals(1, aggregator.getUnmatchedStopCount());
+        assertEquals(0, aggregator.getCoalescedCount());
+        assertEquals(0, aggregator.getActiveCount());
+    }
+
+    @Test
+    void idleSenderIsStoppedBySweeper() throws InterruptedException {
+        aggregator(60_000, 100).start();
+        aggregator.onTyping("5550001", "c1", true);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (aggregator.getExpiredCount() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "indicator not expired within 5s");
+            Thread.sleep(10);
+        }
+        verify(messagingTemplate).convertAndSendToUser(eq("5550002"), eq("/queue/messages"),
+                typing("5550001", TypingAggregator.STOPPED), ephemeral("5550001"));
+        assertEquals(0, aggregator.getActiveCount());
+
+        // The client's own stop arrives after the sweep
+        aggregator.onTyping("5550001", "c1", false);
+        assertEquals(1, aggregator.getUnmatchedStopCount());
+        assertEquals(1, aggregator.getExpiredCount());
+    }
+
+    @Test
+    void eventsWithoutARecipientAreCountedSeparately() {
+        aggregator(60_000, 60_000);
+        aggregator.onTyping("5550009", "c1", true);
+        aggregator.onTyping("5550001", null, true);
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(),
+                any(MessageHeaders.class));
+        verify(messagingTemplate).convertAndSend(eq("/topic/public"), typing("5550001", null), ephemeral("5550001"));
+        assertEquals(1, aggregator.getUndeliverableCount());
+        assertEquals(1, aggregator.getForwardedCount());
+        assertEquals(0, aggregator.getCoalescedCount());
+    }
+}
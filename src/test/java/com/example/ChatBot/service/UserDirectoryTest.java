@@ -0,0 +1,80 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.cluster.ClusterBus;
+import com.example.ChatBot.cluster.LocalClusterBus;
+import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class UserDirectoryTest {
+
+    private static UserDirectory directory(UserRepository repository, ClusterBus bus) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(
+                bus != null ? Map.of("clusterBus", bus) : Map.of());
+        return new UserDirectory(repository, beans.getBeanProvider(ClusterBus.class), 1 << 20, 600,
+                new SimpleMeterRegistry());
+    }
+
+    private static UserDocument user(String mobile, String name) {
+        UserDocument user = new UserDocument(mobile, name);
+        user.setHashedPassword("secret");
+        return user;
+    }
+
+    @Test
+    void servesRepeatLookupsAndUnknownUsersFromTheCache() {
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findSummaryByMobileIn(anyList())).thenAnswer(call -> {
+            List<String> mobiles = call.getArgument(0);
+            return mobiles.contains("5550001") ? List.of(user("5550001", "Ann")) : List.of();
+        });
+        UserDirectory directory = directory(repository, null);
+
+        assertEquals("Ann", directory.find("555-0001").getDisplayName());
+        assertEquals("Ann", directory.find("5550001").getDisplayName());
+        assertNull(directory.find("5550002"));
+        assertNull(directory.find("5550002"));
+        verify(repository, times(2)).findSummaryByMobileIn(anyList());
+
+        Map<String, UserDirectory.UserSummary> all = directory.findAll(List.of("5550001", "5550002", "5550003"));
+        assertEquals(1, all.size());
+        assertEquals("Ann", all.get("5550001").getDisplayName());
+        // Only 5550003 was not cached yet
+        verify(repository).findSummaryByMobileIn(List.of("5550003"));
+    }
+
+    @Test
+    void invalidationReachesOtherNodes() throws InterruptedException {
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findSummaryByMobileIn(anyList())).thenReturn(List.of(user("5550001", "Ann")));
+        LocalClusterBus.Hub hub = new LocalClusterBus.Hub();
+        LocalClusterBus busA = new LocalClusterBus("node-a", hub);
+        LocalClusterBus busB = new LocalClusterBus("node-b", hub);
+        try {
+            UserDirectory a = directory(repository, busA);
+            UserDirectory b = directory(repository, busB);
+            assertEquals("Ann", b.find("5550001").getDisplayName());
+
+            when(repository.findSummaryByMobileIn(anyList())).thenReturn(List.of(user("5550001", "Anna")));
+            a.invalidate("5550001");
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!"Anna".equals(b.find("5550001").getDisplayName())) {
+                assertTrue(System.currentTimeMillis() < deadline, "invalidation not received within 5s");
+                Thread.sleep(10);
+            }
+        } finally {
+            busA.close();
+            busB.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.ChatBot.service;
+
+import com.example.ChatBot.model.UserDocument;
+import com.example.ChatBot.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * The new user is saved off the hashing pool, and a number taken by a
+ * concurrent signup fails the same way as one taken before.
+ */
+public class UserServiceSignupTest {
+
+    private UserRepository userRepository;
+    private PasswordHasher passwordHasher;
+    private UserService userService;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository = mock(UserRepository.class);
+        passwordHasher = mock(PasswordHasher.class);
+        when(passwordHasher.encode(any())).thenReturn(CompletableFuture.completedFuture("hash"));
+        userService = new UserService(userRepository, mock(MongoTemplate.class), passwordHasher,
+                mock(ProfilePictureService.class), mock(UserDirectory.class), 1, 4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        userService.stop();
+    }
+
+    @Test
+    public void savesOnTheSignupWriter() throws Exception {
+        AtomicReference<String> savedOn = new AtomicReference<>();
+        when(userRepository.save(any())).thenAnswer(invocation -> {
+            savedOn.set(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+
+        UserDocument user = userService.signup("5550001", "Ann", "secret123").get(5, TimeUnit.SECONDS);
+
+        assertEquals("hash", user.getHashedPassword());
+        assertTrue(savedOn.get().startsWith("signup-write-"), savedOn.get());
+    }
+
+    @Test
+    public void numberTakenByAConcurrentSignupIsRefused() {
+        when(userRepository.save(any())).thenThrow(new DuplicateKeyException("E11000 duplicate key"));
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> userService.signup("5550001", "Ann", "secret123").get(5, TimeUnit.SECONDS));
+
+        assertTrue(failure.getCause() instanceof IllegalArgumentException);
+        assertEquals("Mobile number already registered", failure.getCause().getMessage());
+    }
+
+    @Test
+    public void numberTakenBeforeIsRefusedWithoutHashing() {
+        when(userRepository.existsByMobile("5550001")).thenReturn(true);
+
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class,
+                () -> userService.signup("5550001", "Ann", "secret123"));
+
+        assertEquals("Mobile number already registered", failure.getMessage());
+        verifyNoInteractions(passwordHasher);
+    }
+}
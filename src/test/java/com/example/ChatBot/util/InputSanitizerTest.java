@@ -0,0 +1,104 @@
+package com.example.ChatBot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Randomized equivalence checks: the single-pass escaper (and its streaming
+ * form) must produce exactly what the previous chained-replace version did.
+ */
+public class InputSanitizerTest {
+
+    private static final long SEED = 0x5EED_C4A7L;
+    private static final int RUNS = 5_000;
+
+    /** Biased towards the escaped characters, with some non-ASCII and surrogates. */
+    private static final char[] ALPHABET = {
+            '&', '<', '>', '"', '\'', '/', ';', '#', 'a', 'Z', '0', ' ', '\n',
+            'x', '2', 'F', 'é', '中', '\u0000', '\u007f', '\u0080', 'Ħ', '›'
+    };
+
+    /** The implementation before the single-pass rewrite. */
+    private static String legacy(String input) {
+        if (input == null)
+            return null;
+        return input
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&#x27;")
+                .replace("/", "&#x2F;");
+    }
+
+    private static String randomInput(Random random) {
+        int length = random.nextInt(10) == 0 ? random.nextInt(20_000) : random.nextInt(64);
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            if (random.nextInt(50) == 0) {
+                sb.appendCodePoint(0x1F600 + random.nextInt(64)); // emoji, a surrogate pair
+            } else {
+                sb.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String streamed(Reader in) throws IOException {
+        StringWriter out = new StringWriter();
+        InputSanitizer.sanitize(in, out);
+        return out.toString();
+    }
+
+    @Test
+    void matchesLegacyOnRandomInput() throws IOException {
+        Random random = new Random(SEED);
+        for (int i = 0; i < RUNS; i++) {
+            String input = randomInput(random);
+            String expected = legacy(input);
+            assertEquals(expected, InputSanitizer.sanitize(input), () -> "input: " + input);
+            assertEquals(expected, streamed(new StringReader(input)), () -> "streamed input: " + input);
+        }
+    }
+
+    @Test
+    void streamingHandlesShortReads() throws IOException {
+        Random random = new Random(SEED + 1);
+        for (int i = 0; i < 200; i++) {
+            String input = randomInput(random);
+            // A reader that hands out a few chars at a time, so escapes straddle buffer refills
+            Reader trickle = new StringReader(input) {
+                @Override
+                public int read(char[] cbuf, int off, int len) throws IOException {
+                    return super.read(cbuf, off, Math.min(len, 1 + random.nextInt(7)));
+                }
+            };
+            assertEquals(legacy(input), streamed(trickle), () -> "input: " + input);
+        }
+    }
+
+    @Test
+    void returnsSameInstanceWhenNothingToEscape() {
+        String plain = "Are we still on for lunch tomorrow? 中文 😀";
+        assertSame(plain, InputSanitizer.sanitize(plain));
+        assertSame("", InputSanitizer.sanitize(""));
+    }
+
+    @Test
+    void nullStaysNull() {
+        assertNull(InputSanitizer.sanitize((String) null));
+    }
+
+    @Test
+    void escapesEverySpecialCharacter() {
+        assertEquals("&lt;a href=&quot;x&quot;&gt;&amp;&#x27;&#x2F;&lt;&#x2F;a&gt;",
+                InputSanitizer.sanitize("<a href=\"x\">&'/</a>"));
+    }
+}
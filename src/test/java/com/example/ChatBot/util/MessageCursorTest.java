@@ -0,0 +1,30 @@
+package com.example.ChatBot.util;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageCursorTest {
+
+    @Test
+    void roundTripsTimestampAndId() {
+        ObjectId id = new ObjectId();
+        MessageCursor decoded = MessageCursor.decode(new MessageCursor(1_700_000_000_123L, id).encode());
+        assertEquals(1_700_000_000_123L, decoded.getTimestamp());
+        assertEquals(id, decoded.getId());
+    }
+
+    @Test
+    void tokensAreUrlSafe() {
+        String token = MessageCursor.of(Long.MAX_VALUE, new ObjectId().toHexString()).encode();
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void rejectsForeignTokens() {
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("MTIzNA"));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("YWJjOmRlZg"));
+    }
+}
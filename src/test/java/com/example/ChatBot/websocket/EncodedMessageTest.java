@@ -0,0 +1,51 @@
+package com.example.ChatBot.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Sending a pre-encoded message must reach exactly the destination, with
+ * exactly the bytes, that {@code convertAndSendToUser} would produce.
+ */
+public class EncodedMessageTest {
+
+    @Test
+    void matchesConvertAndSendToUser() {
+        MessageChannel channel = mock(MessageChannel.class);
+        when(channel.send(any())).thenReturn(true);
+        SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        Map<String, String> payload = Map.of("content", "hi");
+
+        for (String user : List.of("5550001", "google/1234", "a/b/c")) {
+            template.convertAndSendToUser(user, "/queue/messages", payload);
+            EncodedMessage.of(template, payload).sendToUser(template, user, "/queue/messages");
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(channel, times(6)).send(sent.capture());
+        List<Message<?>> messages = sent.getAllValues();
+        for (int i = 0; i < messages.size(); i += 2) {
+            Message<?> expected = messages.get(i);
+            Message<?> actual = messages.get(i + 1);
+            assertEquals(SimpMessageHeaderAccessor.getDestination(expected.getHeaders()),
+                    SimpMessageHeaderAccessor.getDestination(actual.getHeaders()));
+            assertArrayEquals((byte[]) expected.getPayload(), (byte[]) actual.getPayload());
+        }
+        assertEquals("/user/google%2F1234/queue/messages",
+                SimpMessageHeaderAccessor.getDestination(messages.get(3).getHeaders()));
+    }
+}
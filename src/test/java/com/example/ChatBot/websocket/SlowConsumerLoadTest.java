@@ -0,0 +1,279 @@
+package com.example.ChatBot.websocket;
+
+import com.example.ChatBot.model.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * One throttled client among many fast ones: the fast clients must keep
+ * receiving everything with low latency while the slow one is shed.
+ */
+public class SlowConsumerLoadTest {
+
+    private static final int FAST_SESSIONS = 20;
+    private static final int FRAMES = 2000;
+
+    private OutboundQueuePolicy policy;
+
+    @AfterEach
+    public void tearDown() {
+        if (policy != null) {
+            policy.stop();
+        }
+    }
+
+    @Test
+    public void slowConsumerDoesNotDelayOthers() throws Exception {
+        policy = new OutboundQueuePolicy(100, 1024 * 1024, 2000, 4);
+
+        List<StubSession> fast = new ArrayList<>();
+        List<OutboundSessionQueue> fastQueues = new ArrayList<>();
+        for (int i = 0; i < FAST_SESSIONS; i++) {
+            StubSession session = new StubSession("fast-" + i, 0, null);
+            fast.add(session);
+            fastQueues.add(policy.wrap(session));
+        }
+        StubSession slow = new StubSession("slow", 20, null);
+        OutboundSessionQueue slowQueue = policy.wrap(slow);
+
+        for (int n = 0; n < FRAMES; n++) {
+            for (OutboundSessionQueue queue : fastQueues) {
+                queue.sendMessage(chatFrame(n));
+            }
+            slowQueue.sendMessage(n % 2 == 0 ? chatFrame(n) : typingFrame("11111", "conv-1"));
+            // Pace the producer so only the slow session can overflow, even on a busy machine
+            while (fastQueues.stream().anyMatch(queue -> queue.getQueuedCount() > 50)) {
+                Thread.sleep(1);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (StubSession session : fast) {
+            while (session.latenciesNanos.size() < FRAMES && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(FRAMES, session.latenciesNanos.size(), "fast session " + session.id + " lost frames");
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        fast.forEach(session -> latencies.addAll(session.latenciesNanos));
+        Collections.sort(latencies);
+        long p99Ms = TimeUnit.NANOSECONDS.toMillis(latencies.get((int) (latencies.size() * 0.99)));
+        assertTrue(p99Ms < 250, "p99 delivery latency for fast sessions was " + p99Ms + " ms");
+
+        assertTrue(slowQueue.isDisconnected(), "slow session should have been disconnected");
+        assertEquals(1, policy.getDisconnectedCount());
+        assertTrue(slow.latenciesNanos.size() < FRAMES);
+    }
+
+    @Test
+    public void ephemeralFramesAreCoalescedThenDroppedBeforeDisconnect() throws Exception {
+        policy = new OutboundQueuePolicy(5, 1024 * 1024, 60_000, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        StubSession blocked = new StubSession("blocked", 0, release);
+        OutboundSessionQueue queue = policy.wrap(blocked);
+
+        try {
+            // First frame is taken by the sender thread and blocks there
+            queue.sendMessage(chatFrame(0));
+            long deadline = System.currentTimeMillis() + 2000;
+            while (queue.getQueuedCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            queue.sendMessage(typingFrame("11111", "conv-1"));
+            queue.sendMessage(typingFrame("11111", "conv-1"));
+            assertEquals(1, policy.getCoalescedCount());
+            assertEquals(1, queue.getQueuedCount());
+
+            for (int n = 1; n <= 4; n++) {
+                queue.sendMessage(chatFrame(n));
+            }
+            assertEquals(5, queue.getQueuedCount());
+
+            // Full: the queued typing frame makes room for a chat message
+            queue.sendMessage(chatFrame(5));
+            assertEquals(1, policy.getDroppedEphemeralCount());
+            assertEquals(5, queue.getQueuedCount());
+            assertFalse(queue.isDisconnected());
+
+            // New ephemeral frames are shed while full
+            queue.sendMessage(typingFrame("22222", "conv-2"));
+            assertEquals(2, policy.getDroppedEphemeralCount());
+
+            // Nothing left to shed: the session is closed
+            queue.sendMessage(chatFrame(6));
+            assertTrue(queue.isDisconnected());
+            assertEquals(1, policy.getDisconnectedCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void ephemeralFramesAreRecognisedByHeadersOnly() {
+        // Encoded the way the STOMP handler writes a read receipt sent with EphemeralHeaders
+        Message<byte[]> read = MessageBuilder.createMessage("{\"type\":\"READ\"}".getBytes(StandardCharsets.UTF_8),
+                EphemeralHeaders.of(MessageType.READ, "11111", "conv-1"));
+        StompHeaderAccessor stomp = StompHeaderAccessor.wrap(read);
+        stomp.updateStompCommandAsServerMessage();
+        stomp.setDestination("/user/queue/messages");
+        byte[] encoded = new StompEncoder().encode(stomp.getMessageHeaders(), read.getPayload());
+        assertEquals("READ|11111|conv-1", OutboundSessionQueue.coalesceKey(new TextMessage(encoded)));
+
+        // A chat message quoting a typing event in its text stays a chat message
+        TextMessage chat = new TextMessage("MESSAGE\ndestination:/user/queue/messages\n\n{\"type\":\"CHAT\","
+                + "\"content\":\"{\\\"type\\\":\\\"TYPING\\\",\\\"sender\\\":\\\"11111\\\"}\"}\u0000");
+        assertNull(OutboundSessionQueue.coalesceKey(chat));
+        assertNull(OutboundSessionQueue.coalesceKey(chatFrame(1)));
+    }
+
+    private static TextMessage chatFrame(int n) {
+        return new TextMessage("MESSAGE\ndestination:/user/queue/messages\n\n{\"type\":\"CHAT\",\"content\":\"m" + n
+                + "\",\"sentNanos\":" + System.nanoTime() + "}\u0000");
+    }
+
+    private static TextMessage typingFrame(String sender, String conversationId) {
+        return new TextMessage("MESSAGE\ndestination:/user/queue/messages\n" + EphemeralHeaders.TYPE + ":TYPING\n"
+                + EphemeralHeaders.SENDER + ":" + sender + "\n" + EphemeralHeaders.CONVERSATION + ":" + conversationId
+                + "\n\n{\"type\":\"TYPING\",\"sender\":\"" + sender + "\",\"conversationId\":\"" + conversationId
+                + "\",\"sentNanos\":" + System.nanoTime() + "}\u0000");
+    }
+
+    private static long sentNanos(String payload) {
+        int start = payload.indexOf("\"sentNanos\":") + "\"sentNanos\":".length();
+        return Long.parseLong(payload.substring(start, payload.indexOf('}', start)));
+    }
+
+    /** Records delivery latency; optionally sleeps per frame or blocks until released. */
+    private static final class StubSession implements WebSocketSession {
+        private final String id;
+        private final long delayMs;
+        private final CountDownLatch release;
+        private final ConcurrentLinkedQueue<Long> latenciesNanos = new ConcurrentLinkedQueue<>();
+        private volatile boolean open = true;
+
+        private StubSession(String id, long delayMs, CountDownLatch release) {
+            this.id = id;
+            this.delayMs = delayMs;
+            this.release = release;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            try {
+                if (release != null) {
+                    release.await();
+                } else if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            latenciesNanos.add(System.nanoTime() - sentNanos(((TextMessage) message).getPayload()));
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            open = false;
+        }
+    }
+}